@@ -0,0 +1,82 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class BookingHistoryTest {
+
+    private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+    private static final long START = 1_700_000_000_000L;
+
+    /**
+     * Booking for a show at the given time of day, made at bookedAtMillis
+     */
+    private static Booking booking(String bookingId, int showStartTime, long bookedAtMillis) {
+        Show show = new Show(1, new Movie(), new Screen(), showStartTime);
+        Booking booking = new Booking();
+        booking.setBookingId(bookingId);
+        booking.setShow(show);
+        booking.setBookedAtMillis(bookedAtMillis);
+        return booking;
+    }
+
+    private static List<String> ids(List<Booking> bookings) {
+        List<String> ids = new ArrayList<>();
+        for (Booking booking : bookings) {
+            ids.add(booking.getBookingId());
+        }
+        return ids;
+    }
+
+    @Test
+    void pagesRunAcrossDaysInBookingOrder() {
+        BookingHistory history = new BookingHistory("CUST1");
+        // An evening show booked first, then morning shows on later days
+        history.add(booking("BMS1", 2100, START));
+        history.add(booking("BMS2", 900, START + DAY_MILLIS));
+        history.add(booking("BMS3", 1800, START + DAY_MILLIS));
+        history.add(booking("BMS4", 900, START + 2 * DAY_MILLIS));
+
+        BookingPage first = history.getPage(null, 2);
+        assertEquals(List.of("BMS4", "BMS3"), ids(first.getBookings()));
+
+        BookingPage second = history.getPage(first.getNextCursor(), 2);
+        assertEquals(List.of("BMS2", "BMS1"), ids(second.getBookings()));
+        assertNull(second.getNextCursor());
+    }
+
+    @Test
+    void olderPagesAreLoadedFromTheBookingTimeCursor() {
+        List<Booking> stored = new ArrayList<>();
+        for (int i = 0; i < 120; i++) {
+            stored.add(booking("BMS" + (1000 + i), 900, START + i * DAY_MILLIS));
+        }
+        BookingHistory history = new BookingHistory("CUST1");
+        history.setBookings(stored.subList(100, 120));
+        history.setLoader((customerId, beforeBookedAtMillis, beforeBookingId, limit) -> {
+            List<Booking> older = new ArrayList<>();
+            for (int i = stored.size() - 1; i >= 0 && older.size() < limit; i--) {
+                if (stored.get(i).getBookedAtMillis() < beforeBookedAtMillis) {
+                    older.add(stored.get(i));
+                }
+            }
+            return older;
+        });
+
+        List<String> seen = new ArrayList<>();
+        String cursor = null;
+        do {
+            BookingPage page = history.getPage(cursor, 30);
+            seen.addAll(ids(page.getBookings()));
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        assertEquals(120, seen.size());
+        for (int i = 0; i < seen.size(); i++) {
+            assertEquals("BMS" + (1119 - i), seen.get(i));
+        }
+    }
+}
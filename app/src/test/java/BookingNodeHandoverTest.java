@@ -0,0 +1,136 @@
+import enums.City;
+import enums.PaymentMode;
+import enums.PaymentStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BookingNodeHandoverTest {
+
+    private final Map<String, LoadSimulator> sims = new HashMap<>();
+    private final Map<String, BookingNode> nodes = new HashMap<>();
+    private final RoutingBookingClient client = new RoutingBookingClient();
+
+    /**
+     * Start a node with the shared demo catalog and a gateway that never fails
+     */
+    private BookingNode node(String nodeId) throws Exception {
+        Map<String, String> config = new LinkedHashMap<>();
+        config.put("cities", "6");
+        config.put("theatresPerCity", "2");
+        config.put("users", "20");
+        config.put("paymentFailureRate", "0");
+        config.put("gatewayP50Millis", "0");
+        config.put("gatewayP99Millis", "1");
+        LoadSimulator sim = new LoadSimulator(config);
+        sim.buildCatalog();
+        sim.registerUsers();
+        BookingNode node = new BookingNode(nodeId, 0, sim.getTheatreController(), sim.getCustomerController(),
+                sim.getBookingController());
+        node.start();
+        sims.put(nodeId, sim);
+        nodes.put(nodeId, node);
+        return node;
+    }
+
+    /**
+     * Book two seats in every city on its current owner and pay for each booking there
+     */
+    private Map<RemoteBooking, Payment> bookAndPayEverywhere() {
+        CatalogSnapshot catalog = sims.get("a").getTheatreController().getCatalog().getSnapshot();
+        Map<RemoteBooking, Payment> payments = new LinkedHashMap<>();
+        for (City city : catalog.getTheatresByCity().keySet()) {
+            int showId = catalog.getShows(city).get(0).getShowId();
+            RemoteBooking booking = client.createBooking(city, "CUST1001", showId, List.of(1, 2));
+            Payment payment = sims.get(booking.getNodeId()).getBookingController()
+                    .confirmBooking(booking.getBookingId(), PaymentMode.UPIPAY).getPayment();
+            assertEquals(PaymentStatus.SUCCESS, payment.getPaymentStatus());
+            payments.put(booking, payment);
+        }
+        return payments;
+    }
+
+    @AfterEach
+    void tearDown() {
+        client.close();
+        for (BookingNode node : nodes.values()) {
+            node.stop();
+        }
+    }
+
+    @Test
+    void paidBookingsMoveWithTheirPayments() throws Exception {
+        BookingNode a = node("a");
+        client.addNode("a", "127.0.0.1", a.getPort());
+        Map<RemoteBooking, Payment> payments = bookAndPayEverywhere();
+
+        BookingNode b = node("b");
+        List<City> moved = client.addNode("b", "127.0.0.1", b.getPort());
+        assertFalse(moved.isEmpty());
+
+        PaymentController oldPayments = sims.get("a").getPaymentController();
+        PaymentController newPayments = sims.get("b").getPaymentController();
+        List<Integer> stillUnsettledOnA = new ArrayList<>();
+        for (Payment payment : oldPayments.drainUnsettledPayments()) {
+            stillUnsettledOnA.add(payment.getPaymentId());
+        }
+        for (Map.Entry<RemoteBooking, Payment> entry : payments.entrySet()) {
+            RemoteBooking booking = entry.getKey();
+            if (!moved.contains(booking.getCity())) {
+                continue;
+            }
+            int paymentId = entry.getValue().getPaymentId();
+            // The old owner forgets the payment, so it neither settles nor refunds it
+            assertNull(oldPayments.getPaymentById(paymentId));
+            assertFalse(stillUnsettledOnA.contains(paymentId));
+
+            Booking taken = sims.get("b").getBookingController().getBooking(booking.getBookingId());
+            assertNotNull(taken);
+            assertEquals(paymentId, taken.getPayment().getPaymentId());
+            assertEquals(PaymentStatus.SUCCESS, taken.getPayment().getPaymentStatus());
+            assertEquals(paymentId, newPayments.getPaymentByBookingId(booking.getBookingId()).getPaymentId());
+
+            // Cancelling on the new owner refunds the payment made on the old one
+            assertTrue(client.cancelBooking(booking));
+            assertTrue(newPayments.getAllPayments().stream()
+                    .anyMatch(p -> p.isRefund() && p.getRefundedPaymentId() == paymentId));
+        }
+    }
+
+    @Test
+    void takeoverWithAClashingPaymentIdIsRefusedAndGivenBack() throws Exception {
+        BookingNode a = node("a");
+        client.addNode("a", "127.0.0.1", a.getPort());
+        Map<RemoteBooking, Payment> payments = bookAndPayEverywhere();
+
+        // Node b has handed out the same payment IDs for payments of its own
+        BookingNode b = node("b");
+        PaymentController otherPayments = sims.get("b").getPaymentController();
+        for (int i = 0; i < payments.size(); i++) {
+            otherPayments.processPayment("LOCAL" + i, PaymentMode.UPIPAY, 100, null);
+        }
+        RuntimeException refused = assertThrows(RuntimeException.class,
+                () -> client.addNode("b", "127.0.0.1", b.getPort()));
+        assertTrue(refused.getMessage().contains("Payment ID already in use"), refused.getMessage());
+
+        for (Map.Entry<RemoteBooking, Payment> entry : payments.entrySet()) {
+            RemoteBooking booking = entry.getKey();
+            assertEquals("a", client.getOwner(booking.getCity()));
+            Booking kept = sims.get("a").getBookingController().getBooking(booking.getBookingId());
+            assertEquals(entry.getValue().getPaymentId(), kept.getPayment().getPaymentId());
+            assertTrue(client.cancelBooking(booking));
+        }
+    }
+}
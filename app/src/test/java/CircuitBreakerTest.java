@@ -0,0 +1,138 @@
+import enums.CircuitState;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CircuitBreakerTest {
+
+    private static final long OPEN_MILLIS = 50;
+    private static final long FAST = 1_000_000L;
+
+    /**
+     * Breaker over the last 4 calls that opens at 50% failures and probes with 2 calls
+     */
+    private static CircuitBreaker breaker() {
+        return new CircuitBreaker(4, 4, 0.5, 1.0, 1000, OPEN_MILLIS, 2);
+    }
+
+    private static void call(CircuitBreaker breaker, boolean success) {
+        CircuitBreaker.Permission permission = breaker.tryAcquirePermission();
+        assertNotNull(permission);
+        breaker.onResult(permission, success, FAST);
+    }
+
+    private static void trip(CircuitBreaker breaker) {
+        for (int i = 0; i < 4; i++) {
+            call(breaker, false);
+        }
+        assertEquals(CircuitState.OPEN, breaker.getState());
+    }
+
+    private static void waitOutOpenPeriod() throws InterruptedException {
+        Thread.sleep(OPEN_MILLIS + 20);
+    }
+
+    @Test
+    void opensAtTheFailureRateAndFailsFast() {
+        CircuitBreaker breaker = breaker();
+        call(breaker, true);
+        call(breaker, true);
+        call(breaker, false);
+        assertEquals(CircuitState.CLOSED, breaker.getState());
+
+        call(breaker, false);
+        assertEquals(CircuitState.OPEN, breaker.getState());
+        assertNull(breaker.tryAcquirePermission());
+    }
+
+    @Test
+    void successfulProbesCloseTheBreaker() throws InterruptedException {
+        CircuitBreaker breaker = breaker();
+        trip(breaker);
+        waitOutOpenPeriod();
+
+        CircuitBreaker.Permission first = breaker.tryAcquirePermission();
+        CircuitBreaker.Permission second = breaker.tryAcquirePermission();
+        assertTrue(first.isProbe() && second.isProbe());
+        assertNull(breaker.tryAcquirePermission());
+        assertEquals(CircuitState.HALF_OPEN, breaker.getState());
+
+        breaker.onResult(first, true, FAST);
+        breaker.onResult(second, true, FAST);
+        assertEquals(CircuitState.CLOSED, breaker.getState());
+        assertFalse(breaker.tryAcquirePermission().isProbe());
+    }
+
+    @Test
+    void failedProbeReopensTheBreaker() throws InterruptedException {
+        CircuitBreaker breaker = breaker();
+        trip(breaker);
+        waitOutOpenPeriod();
+
+        CircuitBreaker.Permission probe = breaker.tryAcquirePermission();
+        breaker.onResult(probe, false, FAST);
+        assertEquals(CircuitState.OPEN, breaker.getState());
+        assertNull(breaker.tryAcquirePermission());
+    }
+
+    @Test
+    void releasedProbeFreesItsSlot() throws InterruptedException {
+        CircuitBreaker breaker = breaker();
+        trip(breaker);
+        waitOutOpenPeriod();
+
+        CircuitBreaker.Permission first = breaker.tryAcquirePermission();
+        breaker.tryAcquirePermission();
+        assertNull(breaker.tryAcquirePermission());
+
+        breaker.releasePermission(first);
+        assertNotNull(breaker.tryAcquirePermission());
+        assertNull(breaker.tryAcquirePermission());
+    }
+
+    @Test
+    void callsAdmittedWhileClosedDoNotCountAsProbes() throws InterruptedException {
+        CircuitBreaker breaker = breaker();
+        CircuitBreaker.Permission slowCall = breaker.tryAcquirePermission();
+        CircuitBreaker.Permission releasedCall = breaker.tryAcquirePermission();
+        trip(breaker);
+        waitOutOpenPeriod();
+
+        CircuitBreaker.Permission first = breaker.tryAcquirePermission();
+        CircuitBreaker.Permission second = breaker.tryAcquirePermission();
+        assertNull(breaker.tryAcquirePermission());
+
+        // Neither frees a probe slot nor counts towards closing
+        breaker.onResult(slowCall, true, FAST);
+        breaker.releasePermission(releasedCall);
+        assertNull(breaker.tryAcquirePermission());
+
+        breaker.onResult(first, true, FAST);
+        assertEquals(CircuitState.HALF_OPEN, breaker.getState());
+        breaker.onResult(second, true, FAST);
+        assertEquals(CircuitState.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void staleFailuresDoNotReopenAClosedBreaker() throws InterruptedException {
+        CircuitBreaker breaker = breaker();
+        CircuitBreaker.Permission[] stale = new CircuitBreaker.Permission[4];
+        for (int i = 0; i < stale.length; i++) {
+            stale[i] = breaker.tryAcquirePermission();
+        }
+        trip(breaker);
+        waitOutOpenPeriod();
+        call(breaker, true);
+        call(breaker, true);
+        assertEquals(CircuitState.CLOSED, breaker.getState());
+
+        for (CircuitBreaker.Permission permission : stale) {
+            breaker.onResult(permission, false, FAST);
+        }
+        assertEquals(CircuitState.CLOSED, breaker.getState());
+    }
+}
@@ -0,0 +1,159 @@
+import enums.PaymentMode;
+import enums.PaymentStatus;
+import enums.SeatCategory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PaymentRetryTest {
+
+    /**
+     * Gateway that answers charges from a script (SUCCESS once the script runs out)
+     */
+    private static final class ScriptedGateway implements PaymentGateway {
+
+        private final ConcurrentLinkedQueue<PaymentStatus> answers = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger charges = new AtomicInteger();
+        private volatile CountDownLatch release;
+
+        @Override
+        public CompletableFuture<PaymentStatus> charge(int paymentId, PaymentMode paymentMode, long amountPaise) {
+            charges.incrementAndGet();
+            PaymentStatus scripted = answers.poll();
+            PaymentStatus answer = scripted != null ? scripted : PaymentStatus.SUCCESS;
+            CountDownLatch gate = release;
+            if (gate == null) {
+                return CompletableFuture.completedFuture(answer);
+            }
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    gate.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return answer;
+            });
+        }
+
+        @Override
+        public CompletableFuture<PaymentStatus[]> settle(PaymentMode paymentMode, int[] paymentIds, long[] amountsPaise) {
+            PaymentStatus[] statuses = new PaymentStatus[paymentIds.length];
+            Arrays.fill(statuses, PaymentStatus.SUCCESS);
+            return CompletableFuture.completedFuture(statuses);
+        }
+    }
+
+    private ScriptedGateway gateway;
+    private PaymentController paymentController;
+    private BookingController bookingController;
+    private Customer customer;
+    private Show show;
+
+    @BeforeEach
+    void setUp() {
+        gateway = new ScriptedGateway();
+        paymentController = new PaymentController();
+        paymentController.setPaymentGateway(gateway);
+        bookingController = new BookingController();
+        bookingController.setPaymentController(paymentController);
+        customer = new Customer("Asha", "asha@example.com", "CUST1", "9999999999", "Pune", "secret");
+
+        List<Seat> seats = new ArrayList<>();
+        for (int i = 1; i <= 10; i++) {
+            Seat seat = new Seat();
+            seat.setSeatNumber(i);
+            seat.setAvailable(true);
+            seat.setSeatCategory(SeatCategory.STANDARD);
+            seats.add(seat);
+        }
+        Screen screen = new Screen();
+        screen.setScreenId(1);
+        screen.setSeats(seats);
+        Movie movie = new Movie();
+        movie.setMovieId(1);
+        show = new Show(1, movie, screen, 1800);
+    }
+
+    @Test
+    void confirmingAgainAfterAFailedPaymentChargesAnew() {
+        gateway.answers.add(PaymentStatus.FAILED);
+        Booking booking = bookingController.createBooking(customer, show, List.of(1, 2));
+
+        Payment failed = bookingController.confirmBooking(booking.getBookingId(), PaymentMode.UPIPAY).getPayment();
+        assertEquals(PaymentStatus.FAILED, failed.getPaymentStatus());
+
+        Payment paid = bookingController.confirmBooking(booking.getBookingId(), PaymentMode.UPIPAY).getPayment();
+        assertEquals(PaymentStatus.SUCCESS, paid.getPaymentStatus());
+        assertNotEquals(failed.getPaymentId(), paid.getPaymentId());
+        assertSame(paid, paymentController.getPaymentByBookingId(booking.getBookingId()));
+        assertEquals(2, gateway.charges.get());
+    }
+
+    @Test
+    void confirmAfterASuccessfulRetryUsesTheRetry() {
+        gateway.answers.add(PaymentStatus.FAILED);
+        Booking booking = bookingController.createBooking(customer, show, List.of(1, 2));
+        Payment failed = bookingController.confirmBooking(booking.getBookingId(), PaymentMode.UPIPAY).getPayment();
+
+        Payment retry = paymentController.retryPayment(failed.getPaymentId(), PaymentMode.CREDITCARD);
+        assertEquals(PaymentStatus.SUCCESS, retry.getPaymentStatus());
+        assertSame(retry, paymentController.getPaymentByBookingId(booking.getBookingId()));
+
+        Booking confirmed = bookingController.confirmBooking(booking.getBookingId(), PaymentMode.UPIPAY);
+        assertSame(retry, confirmed.getPayment());
+        assertEquals(2, gateway.charges.get());
+    }
+
+    @Test
+    void retryOfAPaymentAlreadyReplacedBySuccessIsRefused() {
+        gateway.answers.add(PaymentStatus.FAILED);
+        Booking booking = bookingController.createBooking(customer, show, List.of(1, 2));
+        Payment failed = bookingController.confirmBooking(booking.getBookingId(), PaymentMode.UPIPAY).getPayment();
+        bookingController.confirmBooking(booking.getBookingId(), PaymentMode.UPIPAY);
+
+        assertThrows(RuntimeException.class, () -> paymentController.retryPayment(failed.getPaymentId(), null));
+        assertEquals(2, gateway.charges.get());
+    }
+
+    @Test
+    void concurrentConfirmationsChargeOnce() throws Exception {
+        Booking booking = bookingController.createBooking(customer, show, List.of(3));
+        gateway.release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Booking>> results = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                results.add(executor.submit(() -> bookingController.confirmBooking(booking.getBookingId(),
+                        PaymentMode.UPIPAY)));
+            }
+            Thread.sleep(100);
+            gateway.release.countDown();
+
+            Payment first = results.get(0).get(5, TimeUnit.SECONDS).getPayment();
+            for (Future<Booking> result : results) {
+                assertSame(first, result.get(5, TimeUnit.SECONDS).getPayment());
+            }
+            assertEquals(PaymentStatus.SUCCESS, first.getPaymentStatus());
+            assertEquals(1, gateway.charges.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,216 @@
+import enums.City;
+import enums.PaymentMode;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+class ReplicationConvergenceTest {
+
+    private LoadSimulator primarySim;
+    private BookingController bookingController;
+    private BookingEventBus bus;
+    private ReplicationPrimary primary;
+    private final List<ReplicationFollower> followers = new ArrayList<>();
+
+    private final List<Show> shows = new ArrayList<>();
+    private List<Customer> customers;
+    private final Random random = new Random(42);
+
+    /**
+     * Controllers with the shared demo catalog and customers, and a gateway that never fails
+     */
+    private static LoadSimulator sim() {
+        Map<String, String> config = new LinkedHashMap<>();
+        config.put("cities", "4");
+        config.put("theatresPerCity", "2");
+        config.put("users", "50");
+        config.put("paymentFailureRate", "0");
+        config.put("gatewayP50Millis", "0");
+        config.put("gatewayP99Millis", "1");
+        LoadSimulator sim = new LoadSimulator(config);
+        sim.buildCatalog();
+        sim.registerUsers();
+        return sim;
+    }
+
+    @BeforeEach
+    void setUp() throws Exception {
+        primarySim = sim();
+        bookingController = primarySim.getBookingController();
+        bus = new BookingEventBus();
+        bookingController.setEventBus(bus);
+        primarySim.getPaymentController().setEventBus(bus);
+        primary = new ReplicationPrimary(0, bookingController, primarySim.getPaymentController(), bus);
+        bus.start();
+        primary.start();
+
+        CatalogSnapshot catalog = primarySim.getTheatreController().getCatalog().getSnapshot();
+        for (City city : catalog.getTheatresByCity().keySet()) {
+            shows.addAll(catalog.getShows(city));
+        }
+        customers = primarySim.getCustomerController().getAllCustomers();
+    }
+
+    @AfterEach
+    void tearDown() {
+        for (ReplicationFollower follower : followers) {
+            follower.stop();
+        }
+        primary.stop();
+        bus.shutdown(1000);
+    }
+
+    private ReplicationFollower follower(LoadSimulator sim) {
+        ReplicationFollower follower = new ReplicationFollower("127.0.0.1", primary.getPort(),
+                sim.getTheatreController(), sim.getCustomerController(), sim.getBookingController(),
+                sim.getPaymentController());
+        followers.add(follower);
+        follower.start();
+        return follower;
+    }
+
+    /**
+     * Book, pay for and cancel at random on the primary
+     */
+    private void runBookings(int count) {
+        for (int i = 0; i < count; i++) {
+            Show show = shows.get(random.nextInt(shows.size()));
+            Customer customer = customers.get(random.nextInt(customers.size()));
+            Booking booking;
+            try {
+                booking = bookingController.createBooking(customer, show, List.of(1 + random.nextInt(200)));
+            } catch (RuntimeException e) {
+                // Seat already taken
+                continue;
+            }
+            if (random.nextInt(2) == 0) {
+                bookingController.confirmBooking(booking.getBookingId(), PaymentMode.UPIPAY);
+            }
+            if (random.nextInt(5) == 0) {
+                bookingController.cancelBooking(booking.getBookingId());
+            }
+        }
+    }
+
+    private void awaitCaughtUp(ReplicationFollower follower) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 15_000;
+        while (System.currentTimeMillis() < deadline) {
+            // The primary's last sequence only counts once the bus has handed it every event
+            if (bus.getBacklog("replication") == 0 && follower.isCaughtUp()
+                    && follower.getAppliedSequence() >= primary.getLastSequence()) {
+                return;
+            }
+            Thread.sleep(5);
+        }
+        fail("Follower at " + follower.getAppliedSequence() + " of " + primary.getLastSequence());
+    }
+
+    /**
+     * Live bookings as "customer show seats bookedAt payment" by booking ID
+     */
+    private static Map<String, String> state(BookingController controller, PaymentController payments) {
+        Map<String, String> state = new TreeMap<>();
+        for (Booking booking : controller.getAllBookings()) {
+            StringBuilder seats = new StringBuilder();
+            for (Seat seat : booking.getBookedSeats()) {
+                seats.append(seat.getSeatNumber()).append(',');
+            }
+            Payment payment = payments.getPaymentByBookingId(booking.getBookingId());
+            state.put(booking.getBookingId(), booking.getCustomer().getCustomerId() + " "
+                    + booking.getShow().getShowId() + " " + seats + " " + booking.getBookedAtMillis() + " "
+                    + (payment != null ? payment.getPaymentId() + ":" + payment.getPaymentStatus() : "-"));
+        }
+        return state;
+    }
+
+    private void assertConverged(LoadSimulator followerSim) {
+        assertEquals(state(bookingController, primarySim.getPaymentController()),
+                state(followerSim.getBookingController(), followerSim.getPaymentController()));
+    }
+
+    @Test
+    void snapshotThenLogMatchesThePrimary() throws Exception {
+        runBookings(200);
+        LoadSimulator followerSim = sim();
+        ReplicationFollower follower = follower(followerSim);
+        awaitCaughtUp(follower);
+        assertConverged(followerSim);
+
+        runBookings(500);
+        awaitCaughtUp(follower);
+        assertConverged(followerSim);
+    }
+
+    @Test
+    void reconnectReplacesTheReplicaWithAFreshSnapshot() throws Exception {
+        runBookings(200);
+        LoadSimulator followerSim = sim();
+        ReplicationFollower follower = follower(followerSim);
+        awaitCaughtUp(follower);
+
+        // Bookings cancelled while the follower is away must not survive the next snapshot
+        follower.stop();
+        runBookings(300);
+        for (Booking booking : new ArrayList<>(bookingController.getAllBookings()).subList(0, 20)) {
+            bookingController.cancelBooking(booking.getBookingId());
+        }
+        follower.start();
+        awaitCaughtUp(follower);
+        assertConverged(followerSim);
+    }
+
+    @Test
+    void conflictingClaimBreaksTheStreamAndResyncs() throws Exception {
+        LoadSimulator followerSim = sim();
+        ReplicationFollower follower = follower(followerSim);
+        awaitCaughtUp(follower);
+
+        // A seat taken on the replica but not on the primary: the primary's claim cannot apply
+        Show show = shows.get(0);
+        Customer customer = customers.get(0);
+        Show replicaShow = followerSim.getTheatreController().getShowById(show.getShowId());
+        Customer replicaCustomer = followerSim.getCustomerController().getCustomerById(customer.getCustomerId());
+        Booking stray = followerSim.getBookingController().createBooking(replicaCustomer, replicaShow, List.of(7));
+
+        bookingController.createBooking(customer, show, List.of(7));
+        runBookings(100);
+        awaitCaughtUp(follower);
+
+        assertNull(followerSim.getBookingController().getBooking(stray.getBookingId()));
+        assertConverged(followerSim);
+    }
+
+    @Test
+    void resetDropsBookingsWithoutAnnouncingThem() throws Exception {
+        runBookings(200);
+        LoadSimulator followerSim = sim();
+        ReplicationFollower follower = follower(followerSim);
+        awaitCaughtUp(follower);
+
+        long published = bus.getPublishedEvents();
+        bookingController.resetBookings();
+
+        assertEquals(published, bus.getPublishedEvents());
+        assertTrue(bookingController.getAllBookings().isEmpty());
+        for (Show show : shows) {
+            assertTrue(show.getBookedSeatIds().isEmpty(), "show " + show.getShowId());
+        }
+        // Nothing reached the replica, which still has every booking
+        int replicated = followerSim.getBookingController().getAllBookings().size();
+        awaitCaughtUp(follower);
+        assertTrue(replicated > 0);
+        assertEquals(replicated, followerSim.getBookingController().getAllBookings().size());
+    }
+}
@@ -0,0 +1,113 @@
+import enums.SeatCategory;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SeatMapTest {
+
+    private static Show show(int seatCount) {
+        List<Seat> seats = new ArrayList<>();
+        for (int i = 1; i <= seatCount; i++) {
+            Seat seat = new Seat();
+            seat.setSeatNumber(i);
+            seat.setAvailable(true);
+            seat.setSeatCategory(i <= seatCount / 2 ? SeatCategory.GOLD : SeatCategory.SILVER);
+            seats.add(seat);
+        }
+        Screen screen = new Screen();
+        screen.setScreenId(1);
+        screen.setSeats(seats);
+        Movie movie = new Movie();
+        movie.setMovieId(1);
+        return new Show(7, movie, screen, 1800);
+    }
+
+    private static ByteBuffer encode(SeatMap map, long sinceVersion) {
+        ByteBuffer out = ByteBuffer.allocate(map.getMaxEncodedSize());
+        map.write(sinceVersion, out);
+        out.flip();
+        return out;
+    }
+
+    private static void assertSameSeats(SeatMap map, SeatMapView view) {
+        assertEquals(map.getShowId(), view.getShowId());
+        assertEquals(map.getVersion(), view.getVersion());
+        assertEquals(map.getSeatCount(), view.getSeatCount());
+        for (int i = 0; i < view.getSeatCount(); i++) {
+            assertEquals(map.isFree(view.getSeatNumber(i)), view.isFree(i), "seat " + view.getSeatNumber(i));
+        }
+    }
+
+    @Test
+    void fullMapRoundTripsLayoutAndState() {
+        Show show = show(100);
+        show.getBookedSeatIds().add(3);
+        SeatMap map = new SeatMap(show);
+
+        SeatMapView view = new SeatMapView();
+        view.apply(encode(map, -1));
+
+        assertSameSeats(map, view);
+        assertEquals(99, view.getFreeSeats());
+        assertEquals(SeatCategory.GOLD, view.getSeatCategory(0));
+        assertEquals(SeatCategory.SILVER, view.getSeatCategory(99));
+    }
+
+    @Test
+    void deltaBringsAnOlderCopyUpToDate() {
+        SeatMap map = new SeatMap(show(200));
+        SeatMapView view = new SeatMapView();
+        view.apply(encode(map, -1));
+        long since = view.getVersion();
+
+        assertTrue(map.setFree(10, false));
+        assertTrue(map.setFree(150, false));
+        assertTrue(map.setFree(10, true));
+        assertFalse(map.setFree(150, false));
+
+        ByteBuffer delta = encode(map, since);
+        assertEquals(SeatMap.DELTA, delta.get(0));
+        view.apply(delta);
+
+        assertSameSeats(map, view);
+        assertEquals(199, view.getFreeSeats());
+    }
+
+    @Test
+    void versionsTooOldForTheLogGetAFullMap() {
+        SeatMap map = new SeatMap(show(50));
+        long since = map.getVersion();
+        for (int i = 0; map.getVersion() - since <= SeatMap.LOG_CAPACITY; i++) {
+            int seatNumber = 1 + i % 50;
+            map.setFree(seatNumber, !map.isFree(seatNumber));
+        }
+
+        assertFalse(map.canDelta(since));
+        ByteBuffer message = encode(map, since);
+        assertEquals(SeatMap.FULL, message.get(0));
+
+        SeatMapView view = new SeatMapView();
+        view.apply(message);
+        assertSameSeats(map, view);
+    }
+
+    @Test
+    void deltaAheadOfTheViewIsRejected() {
+        SeatMap map = new SeatMap(show(200));
+        SeatMapView view = new SeatMapView();
+        view.apply(encode(map, -1));
+
+        map.setFree(1, false);
+        long since = map.getVersion();
+        map.setFree(2, false);
+
+        assertThrows(RuntimeException.class, () -> view.apply(encode(map, since)));
+    }
+}
@@ -0,0 +1,18 @@
+#!/bin/sh
+# Run the benchmark suite once per thread count and save JMH JSON results per run.
+#
+#   ./run-benchmarks.sh [output-dir] [extra JMH options...]
+#
+# THREADS overrides the thread counts (default "1 2 4 8 16 32 64").
+set -e
+cd "$(dirname "$0")"
+
+OUT=${1:-results}
+[ $# -gt 0 ] && shift
+THREADS=${THREADS:-"1 2 4 8 16 32 64"}
+
+[ -f target/benchmarks.jar ] || (cd .. && mvn -B -q package -DskipTests)
+mkdir -p "$OUT"
+for threads in $THREADS; do
+    java -jar target/benchmarks.jar -t "$threads" -rf json -rff "$OUT/threads-$threads.json" "$@"
+done
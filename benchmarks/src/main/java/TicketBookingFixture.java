@@ -0,0 +1,134 @@
+import bench.BookingFixture;
+import enums.City;
+import enums.SeatCategory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Benchmark fixture over the real controllers. Every show gets its own screen, so bookings
+ * in one show never touch another show's seats.
+ */
+public class TicketBookingFixture implements BookingFixture {
+
+    private static final City CITY = City.BANGALORE;
+
+    private final int seatsPerScreen;
+    private final Movie movie;
+    private final Show[] shows;
+    private final TheatreController theatreController;
+    private final BookingController bookingController = new BookingController();
+    private final Customer customer = new Customer("Benchmark", "bench@example.com", "CUST0", "9999999999", "", "secret");
+
+    public TicketBookingFixture(int theatres, int showsPerTheatre, int seatsPerScreen) {
+        this.seatsPerScreen = seatsPerScreen;
+        Catalog catalog = new Catalog();
+        MovieController movieController = new MovieController(catalog);
+        theatreController = new TheatreController(catalog);
+
+        movie = new Movie();
+        movie.setMovieId(1);
+        movie.setTitle("Benchmark");
+        movie.setGenre("Drama");
+        movie.setLanguage("English");
+        movie.setDurationInMinutes(120);
+        movieController.addMovie(movie, CITY);
+
+        shows = new Show[theatres * showsPerTheatre];
+        catalog.batch(() -> {
+            int showId = 0;
+            for (int t = 0; t < theatres; t++) {
+                Theatre theatre = new Theatre();
+                theatre.setTheatreId(t + 1);
+                theatre.setCity(CITY);
+                theatreController.addTheatre(theatre, CITY);
+                for (int s = 0; s < showsPerTheatre; s++) {
+                    Screen screen = createScreen(showId + 1, seatsPerScreen);
+                    theatreController.addScreen(theatre, screen);
+                    Show show = new Show(showId + 1, movie, screen, 900 + (s % 12) * 100);
+                    theatreController.addShow(theatre, show);
+                    shows[showId++] = show;
+                }
+            }
+        });
+    }
+
+    private static Screen createScreen(int screenId, int seats) {
+        Screen screen = new Screen();
+        screen.setScreenId(screenId);
+        List<Seat> seatList = new ArrayList<>(seats);
+        SeatCategory[] categories = SeatCategory.values();
+        for (int i = 1; i <= seats; i++) {
+            Seat seat = new Seat();
+            seat.setSeatNumber(i);
+            seat.setAvailable(true);
+            // Rows of premium at the back, standard at the front
+            seat.setSeatCategory(categories[(i - 1) * categories.length / seats]);
+            seatList.add(seat);
+        }
+        screen.setSeats(seatList);
+        return screen;
+    }
+
+    @Override
+    public int getShowCount() {
+        return shows.length;
+    }
+
+    @Override
+    public int getSeatsPerScreen() {
+        return seatsPerScreen;
+    }
+
+    @Override
+    public Object selectSeats(int showIndex, List<Integer> seatNumbers) {
+        List<Seat> selection = new ArrayList<>();
+        for (Seat seat : shows[showIndex].getScreen().getSeats()) {
+            if (seatNumbers.contains(seat.getSeatNumber())) {
+                selection.add(seat);
+            }
+        }
+        return selection;
+    }
+
+    @Override
+    public boolean areSeatsAvailable(int showIndex, List<Integer> seatNumbers) {
+        return bookingController.areSeatsAvailable(shows[showIndex], seatNumbers);
+    }
+
+    @Override
+    public int getAvailableSeats(int showIndex) {
+        return bookingController.getAvailableSeats(shows[showIndex]).size();
+    }
+
+    @Override
+    public String createBooking(int showIndex, List<Integer> seatNumbers) {
+        try {
+            return bookingController.createBooking(customer, shows[showIndex], seatNumbers).getBookingId();
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public boolean cancelBooking(String bookingId) {
+        return bookingController.cancelBooking(bookingId);
+    }
+
+    @Override
+    public int getAllShows() {
+        return theatreController.getAllShows(movie, CITY).size();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public double calculateTotal(Object seatSelection) {
+        return PriceCalculator.calculateTotal((List<Seat>) seatSelection);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public double calculateShowTotal(int showIndex, Object seatSelection) {
+        return PriceCalculator.calculateTotal(shows[showIndex], (List<Seat>) seatSelection);
+    }
+}
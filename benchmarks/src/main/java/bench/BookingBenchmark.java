@@ -0,0 +1,81 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Book-then-cancel round trips through BookingController. With "contended" every thread books
+ * its own block of seats in one shared show, so threads meet on the show lock; with
+ * "uncontended" each thread has a show to itself. Run with -t 1..64 to sweep thread counts.
+ * When threads outnumber the seat blocks of a screen, some bookings find their seats taken,
+ * which is measured as a failed attempt.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BookingBenchmark {
+
+    // One show per thread for the uncontended case
+    private static final int MAX_THREADS = 64;
+
+    @Param({"100", "500", "2000"})
+    public int seatsPerScreen;
+
+    @Param({"1", "4", "10"})
+    public int seatsPerRequest;
+
+    @Param({"contended", "uncontended"})
+    public String contention;
+
+    private BookingFixture fixture;
+    private final AtomicInteger threadCounter = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        fixture = BookingFixtures.create(MAX_THREADS, 1, seatsPerScreen);
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        int showIndex;
+        List<Integer> seats;
+
+        @Setup(Level.Trial)
+        public void setUp(BookingBenchmark benchmark) {
+            int thread = benchmark.threadCounter.getAndIncrement();
+            boolean contended = "contended".equals(benchmark.contention);
+            showIndex = contended ? 0 : thread % benchmark.fixture.getShowCount();
+
+            int blocks = benchmark.seatsPerScreen / benchmark.seatsPerRequest;
+            int firstSeat = (contended ? thread % blocks : 0) * benchmark.seatsPerRequest + 1;
+            seats = new ArrayList<>();
+            for (int seat = firstSeat; seat < firstSeat + benchmark.seatsPerRequest; seat++) {
+                seats.add(seat);
+            }
+        }
+    }
+
+    @Benchmark
+    public boolean bookAndCancel(ThreadState state) {
+        String bookingId = fixture.createBooking(state.showIndex, state.seats);
+        return bookingId != null && fixture.cancelBooking(bookingId);
+    }
+}
@@ -0,0 +1,40 @@
+package bench;
+
+import java.util.List;
+
+/**
+ * Booking system under benchmark. The system's classes live in the default package, which
+ * JMH benchmarks (named packages) cannot import, so benchmarks drive it through this interface.
+ * Shows are addressed by index, and seat selections are opaque handles created once in setup.
+ */
+public interface BookingFixture {
+
+    int getShowCount();
+
+    int getSeatsPerScreen();
+
+    /**
+     * Create a handle for a seat selection in a show, for the pricing benchmarks
+     */
+    Object selectSeats(int showIndex, List<Integer> seatNumbers);
+
+    boolean areSeatsAvailable(int showIndex, List<Integer> seatNumbers);
+
+    int getAvailableSeats(int showIndex);
+
+    /**
+     * Book seats in a show; returns the booking ID, or null if the seats were taken
+     */
+    String createBooking(int showIndex, List<Integer> seatNumbers);
+
+    boolean cancelBooking(String bookingId);
+
+    /**
+     * Number of theatres running the benchmark movie in the benchmark city
+     */
+    int getAllShows();
+
+    double calculateTotal(Object seatSelection);
+
+    double calculateShowTotal(int showIndex, Object seatSelection);
+}
@@ -0,0 +1,24 @@
+package bench;
+
+/**
+ * Creates the default-package fixture reflectively
+ */
+public final class BookingFixtures {
+
+    private BookingFixtures() {
+    }
+
+    /**
+     * Build a catalog with the given number of theatres, each running showsPerTheatre shows of one
+     * movie on its own screen of seatsPerScreen seats
+     */
+    public static BookingFixture create(int theatres, int showsPerTheatre, int seatsPerScreen) {
+        try {
+            return (BookingFixture) Class.forName("TicketBookingFixture")
+                    .getConstructor(int.class, int.class, int.class)
+                    .newInstance(theatres, showsPerTheatre, seatsPerScreen);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Could not create the benchmark fixture", e);
+        }
+    }
+}
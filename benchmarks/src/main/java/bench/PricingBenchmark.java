@@ -0,0 +1,56 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PriceCalculator totals for a seat selection, with base prices only and with show pricing rules
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PricingBenchmark {
+
+    @Param({"1", "4", "10", "50"})
+    public int seatsPerRequest;
+
+    private BookingFixture fixture;
+    private Object selection;
+
+    @Setup
+    public void setUp() {
+        fixture = BookingFixtures.create(1, 1, 200);
+        List<Integer> seats = new ArrayList<>();
+        // Spread the selection over every category
+        for (int i = 0; i < seatsPerRequest; i++) {
+            seats.add(1 + i * (200 / seatsPerRequest));
+        }
+        selection = fixture.selectSeats(0, seats);
+    }
+
+    @Benchmark
+    public double calculateTotal() {
+        return fixture.calculateTotal(selection);
+    }
+
+    @Benchmark
+    public double calculateShowTotal() {
+        return fixture.calculateShowTotal(0, selection);
+    }
+}
@@ -0,0 +1,62 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Seat availability checks on a half-sold show. The requested seats are the last ones on the
+ * screen, the worst case for scans over the seat list.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SeatQueryBenchmark {
+
+    @Param({"100", "500", "2000"})
+    public int seatsPerScreen;
+
+    @Param({"1", "4", "10"})
+    public int seatsPerRequest;
+
+    private BookingFixture fixture;
+    private List<Integer> request;
+
+    @Setup
+    public void setUp() {
+        fixture = BookingFixtures.create(1, 1, seatsPerScreen);
+        // Sell the front half of the screen in pairs, like real bookings
+        for (int seat = 1; seat + 1 <= seatsPerScreen / 2; seat += 2) {
+            fixture.createBooking(0, List.of(seat, seat + 1));
+        }
+        request = new ArrayList<>();
+        for (int seat = seatsPerScreen - seatsPerRequest + 1; seat <= seatsPerScreen; seat++) {
+            request.add(seat);
+        }
+    }
+
+    @Benchmark
+    public boolean areSeatsAvailable() {
+        return fixture.areSeatsAvailable(0, request);
+    }
+
+    @Benchmark
+    public int getAvailableSeats() {
+        return fixture.getAvailableSeats(0);
+    }
+}
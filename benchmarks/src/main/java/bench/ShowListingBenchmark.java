@@ -0,0 +1,45 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TheatreController.getAllShows for one movie in a city, as theatres and shows grow
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShowListingBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int theatres;
+
+    @Param({"1", "8"})
+    public int showsPerTheatre;
+
+    private BookingFixture fixture;
+
+    @Setup
+    public void setUp() {
+        fixture = BookingFixtures.create(theatres, showsPerTheatre, 100);
+    }
+
+    @Benchmark
+    public int getAllShows() {
+        return fixture.getAllShows();
+    }
+}
@@ -0,0 +1,976 @@
+import enums.City;
+import enums.PaymentMode;
+import enums.SeatCategory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Non-blocking HTTP/JSON front end for browsing, availability, booking, payment and
+ * cancellation. One selector thread does all socket I/O and request parsing, and answers the
+ * lock-free reads (catalog, show listings, movie search, availability, booking lookup) itself.
+ * Anything that takes a controller lock or waits on the payment gateway runs on a bounded
+ * worker pool, which hands the finished response back to the selector.
+ *
+ * Connections are kept alive (HTTP/1.1 unless "Connection: close") and may pipeline up to
+ * MAX_PIPELINED requests; responses always go out in request order. Bodies are encoded into
+ * pooled buffers, and a city's catalog is encoded once per catalog version and then sent from
+ * a shared read-only buffer.
+ *
+ * Endpoints:
+ *   GET    /health
+ *   GET    /cities/{city}/catalog                 (ETag / If-None-Match)
+ *   GET    /cities/{city}/shows?from=&to=&movieId=&language=&category=
+ *   GET    /movies?q=&city=&genre=&language=
+ *   GET    /shows/{id}/availability
+ *   GET    /shows/{id}/seats
+ *   GET    /shows/{id}/seatmap?since=            (binary, see SeatMap)
+ *   POST   /customers        {"name","email","phone","address","password"}
+ *   POST   /bookings         {"customerId","showId","seats":[1,2]}
+ *   GET    /bookings/{id}
+ *   POST   /bookings/{id}/payment {"mode":"UPIPAY"}
+ *   DELETE /bookings/{id}
+ *   GET    /metrics
+ *
+ * Usage: java ApiServer [key=value ...], e.g. java ApiServer port=8080 workers=32 cities=2
+ * (other keys are passed to LoadSimulator to build the demo catalog and customers)
+ */
+public class ApiServer {
+
+    // Most requests a connection may have in flight; reading pauses until responses go out
+    private static final int MAX_PIPELINED = 64;
+
+    // Fits any request the parser accepts (headers plus body)
+    private static final int READ_BUFFER_SIZE = HttpRequest.MAX_HEADER_BYTES + HttpRequest.MAX_BODY_BYTES;
+    private static final int RESPONSE_BUFFER_SIZE = 16 * 1024;
+    private static final int MAX_POOLED_BUFFERS = 1024;
+
+    // Requests waiting for a worker before new ones are turned away with 503
+    private static final int MAX_QUEUED_REQUESTS = 4096;
+
+    private static final String JSON = "application/json";
+    private static final String BINARY = "application/octet-stream";
+
+    private static final Map<Integer, String> REASONS = new HashMap<>();
+
+    static {
+        REASONS.put(200, "OK");
+        REASONS.put(201, "Created");
+        REASONS.put(304, "Not Modified");
+        REASONS.put(400, "Bad Request");
+        REASONS.put(404, "Not Found");
+        REASONS.put(405, "Method Not Allowed");
+        REASONS.put(409, "Conflict");
+        REASONS.put(413, "Payload Too Large");
+        REASONS.put(431, "Request Header Fields Too Large");
+        REASONS.put(500, "Internal Server Error");
+        REASONS.put(501, "Not Implemented");
+        REASONS.put(503, "Service Unavailable");
+    }
+
+    // Latency metrics per endpoint, from parsed request to encoded response
+    private static final int GET_CATALOG = Metrics.operation("api.getCatalog");
+    private static final int GET_SHOWS = Metrics.operation("api.getShows");
+    private static final int SEARCH_MOVIES = Metrics.operation("api.searchMovies");
+    private static final int GET_AVAILABILITY = Metrics.operation("api.getAvailability");
+    private static final int GET_SEATS = Metrics.operation("api.getSeats");
+    private static final int GET_SEAT_MAP = Metrics.operation("api.getSeatMap");
+    private static final int REGISTER_CUSTOMER = Metrics.operation("api.registerCustomer");
+    private static final int CREATE_BOOKING = Metrics.operation("api.createBooking");
+    private static final int GET_BOOKING = Metrics.operation("api.getBooking");
+    private static final int PAY_BOOKING = Metrics.operation("api.payBooking");
+    private static final int CANCEL_BOOKING = Metrics.operation("api.cancelBooking");
+
+    private final int port;
+    private final Catalog catalog;
+    private final MovieController movieController;
+    private final TheatreController theatreController;
+    private final CustomerController customerController;
+    private final BookingController bookingController;
+
+    private final BufferPool readBuffers = new BufferPool(READ_BUFFER_SIZE, MAX_POOLED_BUFFERS);
+    private final BufferPool responseBuffers = new BufferPool(RESPONSE_BUFFER_SIZE, MAX_POOLED_BUFFERS);
+    private final ThreadPoolExecutor workers;
+
+    // Connections with responses finished by a worker, for the selector to write out
+    private final ConcurrentLinkedQueue<Connection> completed = new ConcurrentLinkedQueue<>();
+
+    // Encoded catalog per city, replaced when the catalog version changes (selector thread only)
+    private final Map<City, CachedResponse> catalogCache = new EnumMap<>(City.class);
+
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private Thread selectorThread;
+    private volatile boolean running;
+
+    /**
+     * Server on the given port (0 picks a free one) with workerThreads threads for blocking calls
+     */
+    public ApiServer(int port, int workerThreads, MovieController movieController, TheatreController theatreController,
+                     CustomerController customerController, BookingController bookingController) {
+        this.port = port;
+        this.catalog = theatreController.getCatalog();
+        this.movieController = movieController;
+        this.theatreController = theatreController;
+        this.customerController = customerController;
+        this.bookingController = bookingController;
+
+        AtomicInteger workerCount = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(workerThreads, workerThreads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(MAX_QUEUED_REQUESTS), runnable -> {
+                    Thread thread = new Thread(runnable, "api-worker-" + workerCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> config = new LinkedHashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator <= 0) {
+                throw new RuntimeException("Expected key=value but got: " + arg);
+            }
+            config.put(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+        config.putIfAbsent("cities", "2");
+        config.putIfAbsent("theatresPerCity", "5");
+        config.putIfAbsent("users", "100");
+
+        LoadSimulator demo = new LoadSimulator(config);
+        demo.buildCatalog();
+        demo.registerUsers();
+
+        int port = Integer.parseInt(config.getOrDefault("port", "8080"));
+        int workerThreads = Integer.parseInt(config.getOrDefault("workers", "32"));
+        ApiServer server = new ApiServer(port, workerThreads, demo.getMovieController(), demo.getTheatreController(),
+                demo.getCustomerController(), demo.getBookingController());
+        server.start();
+        System.out.println("Listening on http://localhost:" + server.getPort()
+                + " (customers: " + demo.getCustomerController().getAllCustomers().get(0).getCustomerId() + " ...)");
+    }
+
+    /**
+     * Bind the port and start the selector thread
+     */
+    public void start() throws IOException {
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.configureBlocking(false);
+        serverChannel.bind(new InetSocketAddress(port), 1024);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        running = true;
+        selectorThread = new Thread(this::runSelector, "api-selector");
+        selectorThread.start();
+    }
+
+    /**
+     * Stop accepting, close every connection and stop the workers
+     */
+    public void stop() throws InterruptedException {
+        running = false;
+        selector.wakeup();
+        selectorThread.join();
+        workers.shutdownNow();
+    }
+
+    /**
+     * Port the server is listening on
+     */
+    public int getPort() throws IOException {
+        return ((InetSocketAddress) serverChannel.getLocalAddress()).getPort();
+    }
+
+    private void runSelector() {
+        try {
+            while (running) {
+                selector.select();
+
+                Connection finished;
+                while ((finished = completed.poll()) != null) {
+                    if (!finished.closed) {
+                        service(finished);
+                    }
+                }
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    Connection connection = (Connection) key.attachment();
+                    try {
+                        if (key.isReadable()) {
+                            read(connection);
+                        }
+                        if (!connection.closed) {
+                            service(connection);
+                        }
+                    } catch (IOException e) {
+                        close(connection);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("API selector failed", e);
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                if (key.attachment() instanceof Connection) {
+                    close((Connection) key.attachment());
+                }
+            }
+            try {
+                serverChannel.close();
+                selector.close();
+            } catch (IOException ignored) {
+                // Shutting down anyway
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            Connection connection = new Connection(channel, readBuffers.acquire());
+            connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+        }
+    }
+
+    private void read(Connection connection) throws IOException {
+        int read = connection.channel.read(connection.readBuffer);
+        if (read < 0) {
+            // Client finished sending; answer what it already asked for, then close
+            connection.inputClosed = true;
+            if (connection.exchanges.isEmpty()) {
+                close(connection);
+            }
+        }
+    }
+
+    /**
+     * Parse buffered requests and write finished responses until neither makes progress,
+     * then update what the selector waits for (selector thread only)
+     */
+    private void service(Connection connection) {
+        try {
+            while (true) {
+                parseRequests(connection);
+                int written = writeResponses(connection);
+                if (connection.closed) {
+                    return;
+                }
+                // Writing freed pipeline slots, and parsing may have stopped for lack of them
+                if (written == 0 || connection.readBuffer.position() == 0 || connection.closeAfterWrite) {
+                    break;
+                }
+            }
+            if (connection.inputClosed && connection.exchanges.isEmpty()) {
+                close(connection);
+                return;
+            }
+            int ops = 0;
+            if (!connection.closeAfterWrite && !connection.inputClosed
+                    && connection.exchanges.size() < MAX_PIPELINED) {
+                ops |= SelectionKey.OP_READ;
+            }
+            Exchange head = connection.exchanges.peek();
+            if (head != null && head.response != null) {
+                ops |= SelectionKey.OP_WRITE;
+            }
+            connection.key.interestOps(ops);
+        } catch (IOException e) {
+            close(connection);
+        }
+    }
+
+    /**
+     * Take complete requests off the read buffer and dispatch them, in order
+     */
+    private void parseRequests(Connection connection) {
+        ByteBuffer buffer = connection.readBuffer;
+        buffer.flip();
+        try {
+            while (!connection.closeAfterWrite && connection.exchanges.size() < MAX_PIPELINED) {
+                HttpRequest request;
+                try {
+                    request = HttpRequest.parse(buffer);
+                } catch (ApiException e) {
+                    // The stream cannot be resynchronised after a bad request
+                    Exchange exchange = new Exchange(false);
+                    connection.exchanges.add(exchange);
+                    connection.closeAfterWrite = true;
+                    sendError(exchange, e.getStatus(), e.getMessage());
+                    return;
+                }
+                if (request == null) {
+                    return;
+                }
+                Exchange exchange = new Exchange(request.isKeepAlive());
+                connection.exchanges.add(exchange);
+                if (!request.isKeepAlive()) {
+                    connection.closeAfterWrite = true;
+                }
+                dispatch(connection, exchange, request);
+            }
+        } finally {
+            buffer.compact();
+        }
+    }
+
+    /**
+     * Write finished responses from the head of the queue; returns how many were fully written
+     */
+    private int writeResponses(Connection connection) throws IOException {
+        int written = 0;
+        Exchange head;
+        while ((head = connection.exchanges.peek()) != null) {
+            ByteBuffer[] response = head.response;
+            if (response == null) {
+                break;
+            }
+            connection.channel.write(response);
+            if (response[response.length - 1].hasRemaining()) {
+                break;
+            }
+            connection.exchanges.poll();
+            responseBuffers.release(head.pooled);
+            written++;
+            if (!head.keepAlive) {
+                close(connection);
+                break;
+            }
+        }
+        return written;
+    }
+
+    private void close(Connection connection) {
+        if (connection.closed) {
+            return;
+        }
+        connection.closed = true;
+        connection.key.cancel();
+        try {
+            connection.channel.close();
+        } catch (IOException ignored) {
+            // Already gone
+        }
+        readBuffers.release(connection.readBuffer);
+        // Unsent responses; one still being built by a worker is left to the garbage collector
+        for (Exchange exchange : connection.exchanges) {
+            if (exchange.response != null) {
+                responseBuffers.release(exchange.pooled);
+            }
+        }
+        connection.exchanges.clear();
+    }
+
+    /**
+     * Answer lock-free reads inline and hand everything else to a worker
+     */
+    private void dispatch(Connection connection, Exchange exchange, HttpRequest request) {
+        String[] path = splitPath(request.getPath());
+        if (!isBlocking(request.getMethod(), path)) {
+            handle(exchange, request, path);
+            return;
+        }
+        try {
+            workers.execute(() -> {
+                handle(exchange, request, path);
+                completed.offer(connection);
+                selector.wakeup();
+            });
+        } catch (RejectedExecutionException e) {
+            sendError(exchange, 503, "Server busy");
+        }
+    }
+
+    /**
+     * Whether a request takes a controller lock or waits on the payment gateway
+     */
+    private static boolean isBlocking(String method, String[] path) {
+        if (!method.equals("GET")) {
+            return true;
+        }
+        if (path.length == 1 && path[0].equals("metrics")) {
+            return true;
+        }
+        return path.length == 3 && path[0].equals("shows") && (path[2].equals("seats") || path[2].equals("seatmap"));
+    }
+
+    private static String[] splitPath(String path) {
+        List<String> segments = new ArrayList<>(4);
+        int start = 1;
+        while (start <= path.length()) {
+            int slash = path.indexOf('/', start);
+            int end = slash < 0 ? path.length() : slash;
+            if (end > start) {
+                segments.add(path.substring(start, end));
+            }
+            start = end + 1;
+        }
+        return segments.toArray(new String[0]);
+    }
+
+    private void handle(Exchange exchange, HttpRequest request, String[] path) {
+        try {
+            route(exchange, request, path);
+        } catch (ApiException e) {
+            sendError(exchange, e.getStatus(), e.getMessage());
+        } catch (RuntimeException e) {
+            // Controllers reject operations (seats taken, wrong booking state) with RuntimeException
+            sendError(exchange, 409, e.getMessage());
+        }
+    }
+
+    private void route(Exchange exchange, HttpRequest request, String[] path) {
+        String method = request.getMethod();
+        if (path.length == 1 && path[0].equals("health")) {
+            requireMethod(method, "GET");
+            sendJson(exchange, 200, newWriter().beginObject().field("status", "UP").endObject());
+        } else if (path.length == 3 && path[0].equals("cities") && path[2].equals("catalog")) {
+            requireMethod(method, "GET");
+            getCatalog(exchange, request, parseCity(path[1]));
+        } else if (path.length == 3 && path[0].equals("cities") && path[2].equals("shows")) {
+            requireMethod(method, "GET");
+            getShows(exchange, request, parseCity(path[1]));
+        } else if (path.length == 1 && path[0].equals("movies")) {
+            requireMethod(method, "GET");
+            searchMovies(exchange, request);
+        } else if (path.length == 3 && path[0].equals("shows") && path[2].equals("availability")) {
+            requireMethod(method, "GET");
+            getAvailability(exchange, findShow(path[1]));
+        } else if (path.length == 3 && path[0].equals("shows") && path[2].equals("seats")) {
+            requireMethod(method, "GET");
+            getSeats(exchange, findShow(path[1]));
+        } else if (path.length == 3 && path[0].equals("shows") && path[2].equals("seatmap")) {
+            requireMethod(method, "GET");
+            getSeatMap(exchange, request, findShow(path[1]));
+        } else if (path.length == 1 && path[0].equals("customers")) {
+            requireMethod(method, "POST");
+            registerCustomer(exchange, JsonReader.parseObject(request.getBody()));
+        } else if (path.length == 1 && path[0].equals("bookings")) {
+            requireMethod(method, "POST");
+            createBooking(exchange, JsonReader.parseObject(request.getBody()));
+        } else if (path.length == 2 && path[0].equals("bookings")) {
+            if (method.equals("DELETE")) {
+                cancelBooking(exchange, path[1]);
+            } else {
+                requireMethod(method, "GET");
+                getBooking(exchange, path[1]);
+            }
+        } else if (path.length == 3 && path[0].equals("bookings") && path[2].equals("payment")) {
+            requireMethod(method, "POST");
+            payBooking(exchange, path[1], JsonReader.parseObject(request.getBody()));
+        } else if (path.length == 1 && path[0].equals("metrics")) {
+            requireMethod(method, "GET");
+            byte[] json = Metrics.snapshot().toJson().getBytes(StandardCharsets.UTF_8);
+            exchange.complete(header(200, JSON, json.length, exchange.keepAlive, null), ByteBuffer.wrap(json), null);
+        } else {
+            throw new ApiException(404, "No such resource: " + request.getPath());
+        }
+    }
+
+    /**
+     * Movies, theatres and shows of a city, encoded once per catalog version
+     */
+    private void getCatalog(Exchange exchange, HttpRequest request, City city) {
+        long startNanos = System.nanoTime();
+        try {
+            CatalogSnapshot snapshot = catalog.getSnapshot();
+            CachedResponse cached = catalogCache.get(city);
+            if (cached == null || cached.version != snapshot.getVersion()) {
+                cached = encodeCatalog(city, snapshot);
+                catalogCache.put(city, cached);
+            }
+            if (cached.etag.equals(request.getIfNoneMatch())) {
+                exchange.complete(header(304, JSON, -1, exchange.keepAlive, cached.etag), null, null);
+                return;
+            }
+            // Duplicates share the encoded bytes; only the positions are per response
+            ByteBuffer header = exchange.keepAlive ? cached.keepAliveHeader : cached.closeHeader;
+            exchange.complete(header.duplicate(), cached.body.duplicate(), null);
+        } finally {
+            Metrics.record(GET_CATALOG, startNanos);
+        }
+    }
+
+    private CachedResponse encodeCatalog(City city, CatalogSnapshot snapshot) {
+        JsonWriter json = newWriter();
+        json.beginObject().field("city", city.name()).field("version", snapshot.getVersion());
+        json.name("movies").beginArray();
+        for (Movie movie : snapshot.getMovies(city)) {
+            writeMovie(json, movie);
+        }
+        json.endArray();
+        json.name("theatres").beginArray();
+        for (Theatre theatre : snapshot.getTheatres(city)) {
+            json.beginObject().field("theatreId", theatre.getTheatreId()).field("address", theatre.getAddress());
+            json.name("shows").beginArray();
+            for (Show show : snapshot.getShows(theatre)) {
+                json.beginObject()
+                        .field("showId", show.getShowId())
+                        .field("movieId", show.getMovie().getMovieId())
+                        .field("screenId", show.getScreen().getScreenId())
+                        .field("startTime", show.getShowStartTime())
+                        .endObject();
+            }
+            json.endArray().endObject();
+        }
+        json.endArray().endObject();
+
+        ByteBuffer encoded = json.finish();
+        ByteBuffer body = ByteBuffer.allocateDirect(encoded.remaining());
+        body.put(encoded).flip();
+        json.release();
+
+        String etag = "\"" + city.name() + "-" + snapshot.getVersion() + "\"";
+        int length = body.remaining();
+        return new CachedResponse(snapshot.getVersion(), etag, header(200, JSON, length, true, etag).asReadOnlyBuffer(),
+                header(200, JSON, length, false, etag).asReadOnlyBuffer(), body.asReadOnlyBuffer());
+    }
+
+    /**
+     * Shows of a city starting in a time window, with live availability
+     */
+    private void getShows(Exchange exchange, HttpRequest request, City city) {
+        long startNanos = System.nanoTime();
+        try {
+            int from = intParameter(request, "from", 0);
+            int to = intParameter(request, "to", 2359);
+            Movie movie = null;
+            String movieId = request.getParameter("movieId");
+            if (movieId != null) {
+                movie = movieController.getMovieById(parseId(movieId));
+                if (movie == null) {
+                    throw new ApiException(404, "Movie not found");
+                }
+            }
+            SeatCategory category = null;
+            String categoryName = request.getParameter("category");
+            if (categoryName != null) {
+                try {
+                    category = SeatCategory.valueOf(categoryName.toUpperCase());
+                } catch (IllegalArgumentException e) {
+                    throw new ApiException(400, "Unknown seat category: " + categoryName);
+                }
+            }
+            List<Show> shows = theatreController.getShowsBetween(city, from, to, movie,
+                    request.getParameter("language"), category);
+
+            JsonWriter json = newWriter();
+            json.beginObject().name("shows").beginArray();
+            for (Show show : shows) {
+                ShowAvailability availability = show.getAvailability();
+                json.beginObject()
+                        .field("showId", show.getShowId())
+                        .field("movieId", show.getMovie().getMovieId())
+                        .field("title", show.getMovie().getTitle())
+                        .field("language", show.getMovie().getLanguage())
+                        .field("screenId", show.getScreen().getScreenId())
+                        .field("startTime", show.getShowStartTime())
+                        .field("freeSeats", availability.getFreeSeats())
+                        .field("status", availability.getStatus().name())
+                        .endObject();
+            }
+            json.endArray().endObject();
+            sendJson(exchange, 200, json);
+        } finally {
+            Metrics.record(GET_SHOWS, startNanos);
+        }
+    }
+
+    private void searchMovies(Exchange exchange, HttpRequest request) {
+        long startNanos = System.nanoTime();
+        try {
+            String city = request.getParameter("city");
+            List<Movie> movies = movieController.searchMovies(request.getParameter("q"),
+                    city != null ? parseCity(city) : null, request.getParameter("genre"),
+                    request.getParameter("language"));
+            JsonWriter json = newWriter();
+            json.beginObject().name("movies").beginArray();
+            for (Movie movie : movies) {
+                writeMovie(json, movie);
+            }
+            json.endArray().endObject();
+            sendJson(exchange, 200, json);
+        } finally {
+            Metrics.record(SEARCH_MOVIES, startNanos);
+        }
+    }
+
+    /**
+     * Free seats per category from the published summary, without the show lock
+     */
+    private void getAvailability(Exchange exchange, Show show) {
+        long startNanos = System.nanoTime();
+        try {
+            ShowAvailability availability = show.getAvailability();
+            JsonWriter json = newWriter();
+            json.beginObject()
+                    .field("showId", show.getShowId())
+                    .field("totalSeats", availability.getTotalSeats())
+                    .field("freeSeats", availability.getFreeSeats())
+                    .field("status", availability.getStatus().name())
+                    .field("cancelled", bookingController.isShowCancelled(show.getShowId()));
+            json.name("freeByCategory").beginObject();
+            for (SeatCategory category : SeatCategory.values()) {
+                json.field(category.name(), availability.getFreeSeats(category));
+            }
+            json.endObject().endObject();
+            sendJson(exchange, 200, json);
+        } finally {
+            Metrics.record(GET_AVAILABILITY, startNanos);
+        }
+    }
+
+    private void getSeats(Exchange exchange, Show show) {
+        long startNanos = System.nanoTime();
+        try {
+            List<Seat> seats = bookingController.getAvailableSeats(show);
+            JsonWriter json = newWriter();
+            json.beginObject().field("showId", show.getShowId()).name("seats").beginArray();
+            for (Seat seat : seats) {
+                json.beginObject()
+                        .field("number", seat.getSeatNumber())
+                        .field("category", seat.getSeatCategory() != null ? seat.getSeatCategory().name() : null)
+                        .endObject();
+            }
+            json.endArray().endObject();
+            sendJson(exchange, 200, json);
+        } finally {
+            Metrics.record(GET_SEATS, startNanos);
+        }
+    }
+
+    /**
+     * Binary seat map: changes since the client's version, or the whole map
+     */
+    private void getSeatMap(Exchange exchange, HttpRequest request, Show show) {
+        long startNanos = System.nanoTime();
+        try {
+            String since = request.getParameter("since");
+            long sinceVersion;
+            try {
+                sinceVersion = since != null ? Long.parseLong(since) : -1;
+            } catch (NumberFormatException e) {
+                throw new ApiException(400, "Bad since: " + since);
+            }
+            ByteBuffer body = responseBuffers.acquire();
+            try {
+                bookingController.writeSeatMap(show, sinceVersion, body);
+            } catch (RuntimeException e) {
+                responseBuffers.release(body);
+                throw e;
+            }
+            body.flip();
+            exchange.complete(header(200, BINARY, body.remaining(), exchange.keepAlive, null), body, body);
+        } finally {
+            Metrics.record(GET_SEAT_MAP, startNanos);
+        }
+    }
+
+    private void registerCustomer(Exchange exchange, Map<String, Object> body) {
+        long startNanos = System.nanoTime();
+        try {
+            Customer customer = customerController.registerCustomer(requireString(body, "name"),
+                    requireString(body, "email"), requireString(body, "phone"), requireString(body, "address"),
+                    requireString(body, "password"));
+            sendJson(exchange, 201, newWriter().beginObject()
+                    .field("customerId", customer.getCustomerId())
+                    .field("name", customer.getCustomerName())
+                    .endObject());
+        } finally {
+            Metrics.record(REGISTER_CUSTOMER, startNanos);
+        }
+    }
+
+    private void createBooking(Exchange exchange, Map<String, Object> body) {
+        long startNanos = System.nanoTime();
+        try {
+            Customer customer = customerController.getCustomerById(requireString(body, "customerId"));
+            if (customer == null) {
+                throw new ApiException(404, "Customer not found");
+            }
+            Show show = findShow(String.valueOf(body.get("showId")));
+            Object seats = body.get("seats");
+            if (!(seats instanceof List) || ((List<?>) seats).isEmpty()) {
+                throw new ApiException(400, "seats must be a non-empty array of seat numbers");
+            }
+            List<Integer> seatNumbers = new ArrayList<>();
+            for (Object seat : (List<?>) seats) {
+                if (!(seat instanceof Long)) {
+                    throw new ApiException(400, "seats must be a non-empty array of seat numbers");
+                }
+                seatNumbers.add(((Long) seat).intValue());
+            }
+            Booking booking = bookingController.createBooking(customer, show, seatNumbers);
+            sendJson(exchange, 201, writeBooking(newWriter(), booking));
+        } finally {
+            Metrics.record(CREATE_BOOKING, startNanos);
+        }
+    }
+
+    private void getBooking(Exchange exchange, String bookingId) {
+        long startNanos = System.nanoTime();
+        try {
+            sendJson(exchange, 200, writeBooking(newWriter(), findBooking(bookingId)));
+        } finally {
+            Metrics.record(GET_BOOKING, startNanos);
+        }
+    }
+
+    private void payBooking(Exchange exchange, String bookingId, Map<String, Object> body) {
+        long startNanos = System.nanoTime();
+        try {
+            findBooking(bookingId);
+            PaymentMode mode;
+            try {
+                mode = PaymentMode.valueOf(requireString(body, "mode").toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new ApiException(400, "Unknown payment mode: " + body.get("mode"));
+            }
+            Booking booking = bookingController.confirmBooking(bookingId, mode);
+            sendJson(exchange, 200, writeBooking(newWriter(), booking));
+        } finally {
+            Metrics.record(PAY_BOOKING, startNanos);
+        }
+    }
+
+    private void cancelBooking(Exchange exchange, String bookingId) {
+        long startNanos = System.nanoTime();
+        try {
+            Booking booking = findBooking(bookingId);
+            if (!bookingController.cancelBooking(bookingId)) {
+                throw new ApiException(409, "Booking cannot be cancelled");
+            }
+            sendJson(exchange, 200, writeBooking(newWriter(), booking));
+        } finally {
+            Metrics.record(CANCEL_BOOKING, startNanos);
+        }
+    }
+
+    private static void writeMovie(JsonWriter json, Movie movie) {
+        json.beginObject()
+                .field("movieId", movie.getMovieId())
+                .field("title", movie.getTitle())
+                .field("genre", movie.getGenre())
+                .field("language", movie.getLanguage())
+                .field("durationMinutes", movie.getDurationInMinutes())
+                .endObject();
+    }
+
+    private static JsonWriter writeBooking(JsonWriter json, Booking booking) {
+        json.beginObject()
+                .field("bookingId", booking.getBookingId())
+                .field("status", booking.getStatus().name())
+                .field("showId", booking.getShow().getShowId())
+                .field("customerId", booking.getCustomer() != null ? booking.getCustomer().getCustomerId() : null)
+                .field("amountPaise", booking.getTotalAmountPaise());
+        json.name("seats").beginArray();
+        for (Seat seat : booking.getBookedSeats()) {
+            json.value(seat.getSeatNumber());
+        }
+        json.endArray();
+        Payment payment = booking.getPayment();
+        if (payment != null) {
+            json.name("payment").beginObject()
+                    .field("paymentId", payment.getPaymentId())
+                    .field("mode", payment.getPaymentMode() != null ? payment.getPaymentMode().name() : null)
+                    .field("status", payment.getPaymentStatus() != null ? payment.getPaymentStatus().name() : null)
+                    .endObject();
+        }
+        return json.endObject();
+    }
+
+    private Show findShow(String showId) {
+        Show show = theatreController.getShowById(parseId(showId));
+        if (show == null) {
+            throw new ApiException(404, "Show not found");
+        }
+        return show;
+    }
+
+    private Booking findBooking(String bookingId) {
+        Booking booking = bookingController.getBooking(bookingId);
+        if (booking == null) {
+            throw new ApiException(404, "Booking not found");
+        }
+        return booking;
+    }
+
+    private static City parseCity(String name) {
+        try {
+            return City.valueOf(name.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new ApiException(404, "Unknown city: " + name);
+        }
+    }
+
+    private static int parseId(String id) {
+        try {
+            return Integer.parseInt(id);
+        } catch (NumberFormatException e) {
+            throw new ApiException(400, "Bad ID: " + id);
+        }
+    }
+
+    private static int intParameter(HttpRequest request, String name, int defaultValue) {
+        String value = request.getParameter(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new ApiException(400, "Bad " + name + ": " + value);
+        }
+    }
+
+    private static String requireString(Map<String, Object> body, String name) {
+        Object value = body.get(name);
+        if (!(value instanceof String)) {
+            throw new ApiException(400, name + " is required");
+        }
+        return (String) value;
+    }
+
+    private static void requireMethod(String method, String expected) {
+        if (!method.equals(expected)) {
+            throw new ApiException(405, method + " not allowed");
+        }
+    }
+
+    private JsonWriter newWriter() {
+        return new JsonWriter(responseBuffers);
+    }
+
+    private static void sendJson(Exchange exchange, int status, JsonWriter json) {
+        ByteBuffer body = json.finish();
+        exchange.complete(header(status, JSON, body.remaining(), exchange.keepAlive, null), body, body);
+    }
+
+    private void sendError(Exchange exchange, int status, String message) {
+        sendJson(exchange, status, newWriter().beginObject()
+                .field("status", status)
+                .field("error", message != null ? message : REASONS.get(status))
+                .endObject());
+    }
+
+    /**
+     * Status line and headers; contentLength -1 sends no Content-Length (for 304)
+     */
+    private static ByteBuffer header(int status, String contentType, int contentLength, boolean keepAlive,
+                                     String etag) {
+        StringBuilder header = new StringBuilder(128);
+        header.append("HTTP/1.1 ").append(status).append(' ').append(REASONS.getOrDefault(status, "Unknown"))
+                .append("\r\n");
+        if (contentLength >= 0) {
+            header.append("Content-Type: ").append(contentType).append("\r\nContent-Length: ").append(contentLength)
+                    .append("\r\n");
+        }
+        if (etag != null) {
+            header.append("ETag: ").append(etag).append("\r\n");
+        }
+        if (!keepAlive) {
+            header.append("Connection: close\r\n");
+        }
+        header.append("\r\n");
+        return ByteBuffer.wrap(header.toString().getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    /**
+     * One client connection (selector thread only)
+     */
+    private static final class Connection {
+        final SocketChannel channel;
+        final ByteBuffer readBuffer;
+        SelectionKey key;
+
+        // Requests in arrival order; responses are written from the head
+        final ArrayDeque<Exchange> exchanges = new ArrayDeque<>();
+
+        // No more requests are read: the last one asked to close, or was malformed
+        boolean closeAfterWrite;
+
+        // The client shut down its side of the connection
+        boolean inputClosed;
+
+        boolean closed;
+
+        Connection(SocketChannel channel, ByteBuffer readBuffer) {
+            this.channel = channel;
+            this.readBuffer = readBuffer;
+        }
+    }
+
+    /**
+     * One request's response slot, filled by whichever thread handled the request
+     */
+    private static final class Exchange {
+        final boolean keepAlive;
+
+        // Pooled buffer holding the body, returned to the response pool once sent
+        ByteBuffer pooled;
+
+        // Header and optional body; null until the response is ready
+        volatile ByteBuffer[] response;
+
+        Exchange(boolean keepAlive) {
+            this.keepAlive = keepAlive;
+        }
+
+        void complete(ByteBuffer header, ByteBuffer body, ByteBuffer pooled) {
+            this.pooled = pooled;
+            this.response = body != null ? new ByteBuffer[]{header, body} : new ByteBuffer[]{header};
+        }
+    }
+
+    /**
+     * A pre-encoded response for one catalog version
+     */
+    private static final class CachedResponse {
+        final long version;
+        final String etag;
+        final ByteBuffer keepAliveHeader;
+        final ByteBuffer closeHeader;
+        final ByteBuffer body;
+
+        CachedResponse(long version, String etag, ByteBuffer keepAliveHeader, ByteBuffer closeHeader,
+                       ByteBuffer body) {
+            this.version = version;
+            this.etag = etag;
+            this.keepAliveHeader = keepAliveHeader;
+            this.closeHeader = closeHeader;
+            this.body = body;
+        }
+    }
+}
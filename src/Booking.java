@@ -9,9 +9,11 @@ public class Booking {
     Show show;
     List<Seat> bookedSeats = new ArrayList<>();
     Payment payment;
-    double totalAmount;
+    long totalAmountPaise;
     BookingStatus status;
     Customer customer;
+    // When the booking was made (epoch millis); orders the customer's booking history
+    long bookedAtMillis;
 
     public Customer getCustomer() {
         return customer;
@@ -39,7 +41,7 @@ public class Booking {
         generateBookingId();
         // Fixed: Calculate based on booked seats, not all seats
         // This method should just generate ID, actual calculation done in BookingController
-        return totalAmount;
+        return getTotalAmount();
     }
 
     public String getBookingId() {
@@ -75,10 +77,26 @@ public class Booking {
     }
 
     public double getTotalAmount() {
-        return totalAmount;
+        return Money.toRupees(totalAmountPaise);
     }
 
     public void setTotalAmount(double totalAmount) {
-        this.totalAmount = totalAmount;
+        this.totalAmountPaise = Money.ofRupees(totalAmount);
+    }
+
+    public long getBookedAtMillis() {
+        return bookedAtMillis;
+    }
+
+    public void setBookedAtMillis(long bookedAtMillis) {
+        this.bookedAtMillis = bookedAtMillis;
+    }
+
+    public long getTotalAmountPaise() {
+        return totalAmountPaise;
+    }
+
+    public void setTotalAmountPaise(long totalAmountPaise) {
+        this.totalAmountPaise = totalAmountPaise;
     }
 }
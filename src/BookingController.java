@@ -1,33 +1,75 @@
 import enums.BookingStatus;
+import enums.EventType;
 import enums.PaymentMode;
 import enums.PaymentStatus;
 import enums.SeatCategory;
+import enums.WaitlistStatus;
 
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
 
 public class BookingController {
+
+    // Latency metrics of the booking operations
+    private static final int GET_AVAILABLE_SEATS = Metrics.operation("booking.getAvailableSeats");
+    private static final int ARE_SEATS_AVAILABLE = Metrics.operation("booking.areSeatsAvailable");
+    private static final int CREATE_BOOKING = Metrics.operation("booking.createBooking");
+    private static final int CONFIRM_BOOKING = Metrics.operation("booking.confirmBooking");
+    private static final int CANCEL_BOOKING = Metrics.operation("booking.cancelBooking");
+    private static final int CANCEL_SHOW = Metrics.operation("booking.cancelShow");
+    private static final int GET_SHOW_BOOKINGS = Metrics.operation("booking.getShowBookings");
+    private static final int JOIN_WAITLIST = Metrics.operation("booking.joinWaitlist");
+    private static final int CLAIM_WAITLIST_OFFER = Metrics.operation("booking.claimWaitlistOffer");
+    private static final int WRITE_SEAT_MAP = Metrics.operation("booking.writeSeatMap");
+
+    // How long freed seats are held for a waitlisted customer by default
+    private static final long DEFAULT_WAITLIST_HOLD_MILLIS = 2 * 60 * 1000;
     
     // Reference to PaymentController for payment processing
     private PaymentController paymentController;
 
-    private Map<String, Booking> allBookings;
-    private Map<Integer, List<Booking>> showBookings;
+    // Where seat claims and cancellations are announced (null: not published)
+    private volatile BookingEventBus eventBus;
+
+    // All live bookings by booking ID; entries are added and removed under the booking's show lock
+    private final Map<String, Booking> allBookings;
 
-    // Lock for overall booking operations
-    private final Lock bookingLock = new ReentrantLock();
+    // Live bookings of each show by booking ID (each inner map guarded by its show lock)
+    private final Map<Integer, Map<String, Booking>> showBookings;
+
+    // Shows cancelled with cancelShow; they take no new bookings
+    private final Set<Integer> cancelledShowIds = ConcurrentHashMap.newKeySet();
 
     // Per-show locks to allow concurrent bookings for different shows
-    private final Map<Integer, Lock> showLocks = new HashMap<>();
-    private final Lock showLocksMapLock = new ReentrantLock();
+    private final Map<Integer, Lock> showLocks = new ConcurrentHashMap<>();
+
+    // Waitlist of each show by show ID (each guarded by its show lock)
+    private final Map<Integer, ShowWaitlist> waitlists = new ConcurrentHashMap<>();
+
+    // Waitlist entries still waiting or holding seats, by entry ID
+    private final Map<String, WaitlistEntry> waitlistEntries = new ConcurrentHashMap<>();
+
+    // Encodable seat map of each show by show ID, built on first request (each guarded by its show lock)
+    private final Map<Integer, SeatMap> seatMaps = new ConcurrentHashMap<>();
+
+    // How long freed seats are held for a waitlisted customer before going to the next one
+    private volatile long waitlistHoldMillis = DEFAULT_WAITLIST_HOLD_MILLIS;
 
     public BookingController() {
-        this.allBookings = new HashMap<>();
-        this.showBookings = new HashMap<>();
+        this.allBookings = new ConcurrentHashMap<>();
+        this.showBookings = new ConcurrentHashMap<>();
     }
     
     /**
@@ -38,27 +80,37 @@ public class BookingController {
     }
 
     /**
-     * Get or create a lock for a specific show
+     * PaymentController payments are processed and refunded through (null if none is set)
+     */
+    public PaymentController getPaymentController() {
+        return paymentController;
+    }
+
+    /**
+     * Set the event bus that SEAT_CLAIMED and BOOKING_CANCELLED events are published to
+     */
+    public void setEventBus(BookingEventBus eventBus) {
+        this.eventBus = eventBus;
+    }
+
+    /**
+     * Get or create a lock for a specific show (its waits are counted per show)
      */
     private Lock getShowLock(int showId) {
-        showLocksMapLock.lock();
-        try {
-            return showLocks.computeIfAbsent(showId, k -> new ReentrantLock());
-        } finally {
-            showLocksMapLock.unlock();
-        }
+        return showLocks.computeIfAbsent(showId, Metrics::newShowLock);
     }
 
     /**
      * Get available seats for a given show (thread-safe)
      */
     public List<Seat> getAvailableSeats(Show show) {
+        long startNanos = System.nanoTime();
         Lock showLock = getShowLock(show.getShowId());
         showLock.lock();
         try {
             List<Seat> availableSeats = new ArrayList<>();
             List<Seat> allSeats = show.getScreen().getSeats();
-            List<Integer> bookedSeatIds = show.getBookedSeatIds();
+            Set<Integer> bookedSeatIds = show.getBookedSeatIds();
 
             for (Seat seat : allSeats) {
                 if (!bookedSeatIds.contains(seat.getSeatNumber()) && seat.isAvailable()) {
@@ -68,6 +120,34 @@ public class BookingController {
             return availableSeats;
         } finally {
             showLock.unlock();
+            Metrics.record(GET_AVAILABLE_SEATS, startNanos);
+        }
+    }
+
+    /**
+     * Write the show's seat map in SeatMap's binary format: the seats changed since sinceVersion
+     * when those are still known, otherwise the full layout and free-seat bitmap (pass -1 for a
+     * full map). Returns the version written, for the client's next request (thread-safe).
+     */
+    public long writeSeatMap(Show show, long sinceVersion, ByteBuffer out) {
+        long startNanos = System.nanoTime();
+        Lock showLock = getShowLock(show.getShowId());
+        showLock.lock();
+        try {
+            SeatMap seatMap = seatMaps.get(show.getShowId());
+            if (seatMap == null) {
+                seatMap = new SeatMap(show);
+                seatMaps.put(show.getShowId(), seatMap);
+            }
+            if (out.remaining() < seatMap.getMaxEncodedSize()) {
+                throw new RuntimeException("Seat map needs " + seatMap.getMaxEncodedSize() + " bytes but only "
+                        + out.remaining() + " are free");
+            }
+            seatMap.write(sinceVersion, out);
+            return seatMap.getVersion();
+        } finally {
+            showLock.unlock();
+            Metrics.record(WRITE_SEAT_MAP, startNanos);
         }
     }
 
@@ -75,10 +155,11 @@ public class BookingController {
      * Check if seats are available for booking (thread-safe)
      */
     public boolean areSeatsAvailable(Show show, List<Integer> seatNumbers) {
+        long startNanos = System.nanoTime();
         Lock showLock = getShowLock(show.getShowId());
         showLock.lock();
         try {
-            List<Integer> bookedSeatIds = show.getBookedSeatIds();
+            Set<Integer> bookedSeatIds = show.getBookedSeatIds();
             List<Seat> allSeats = show.getScreen().getSeats();
 
             for (Integer seatNumber : seatNumbers) {
@@ -105,6 +186,7 @@ public class BookingController {
             return true;
         } finally {
             showLock.unlock();
+            Metrics.record(ARE_SEATS_AVAILABLE, startNanos);
         }
     }
 
@@ -112,71 +194,64 @@ public class BookingController {
      * Create a booking for a customer (thread-safe)
      */
     public Booking createBooking(Customer customer, Show show, List<Integer> seatNumbers) {
+        long startNanos = System.nanoTime();
         Lock showLock = getShowLock(show.getShowId());
         showLock.lock();
         try {
+            if (cancelledShowIds.contains(show.getShowId())) {
+                throw new RuntimeException("Show has been cancelled");
+            }
+
             // Validate seats are available (double-check after acquiring lock)
             if (!areSeatsAvailableUnsafe(show, seatNumbers)) {
                 throw new RuntimeException("Selected seats are not available");
             }
 
-            // Create booking object
-            Booking booking = new Booking();
-            booking.setShow(show);
-            booking.setCustomer(customer);
-
-            // Get and set booked seats
-            List<Seat> bookedSeats = new ArrayList<>();
-            List<Seat> allSeats = show.getScreen().getSeats();
-            for (Integer seatNumber : seatNumbers) {
-                for (Seat seat : allSeats) {
-                    if (seat.getSeatNumber() == seatNumber) {
-                        bookedSeats.add(seat);
-                        seat.setAvailable(false); // Mark seat as unavailable
-                        break;
-                    }
-                }
-            }
-            booking.setBookedSeats(bookedSeats);
-
-            // Calculate total amount using PriceCalculator
-            double totalAmount = PriceCalculator.calculateTotal(bookedSeats);
-            booking.setTotalAmount(totalAmount);
-
-            // Generate booking ID
-            booking.generateBookingId();
-            
-            // Set initial booking status
-            booking.setStatus(BookingStatus.CONFIRMED);
-
-            // Store booking (need lock for this too)
-            bookingLock.lock();
-            try {
-                allBookings.put(booking.getBookingId(), booking);
-
-                // Add to show bookings
-                List<Booking> bookingsForShow = showBookings.getOrDefault(show.getShowId(), new ArrayList<>());
-                bookingsForShow.add(booking);
-                showBookings.put(show.getShowId(), bookingsForShow);
-            } finally {
-                bookingLock.unlock();
-            }
+            // Priced before the claim, at the occupancy the customer was quoted
+            List<Seat> bookedSeats = findSeatsUnsafe(show, seatNumbers);
+            long totalAmountPaise = PriceCalculator.calculateTotalPaise(show, bookedSeats);
+            claimSeatsUnsafe(show, bookedSeats);
+            return registerBookingUnsafe(customer, show, bookedSeats, totalAmountPaise);
+        } finally {
+            showLock.unlock();
+            Metrics.record(CREATE_BOOKING, startNanos);
+        }
+    }
 
-            // Add booking to customer's booking list
-            synchronized (customer) {
-                if (customer.getBookingList() == null) {
-                    customer.setBookingList(new ArrayList<>());
+    /**
+     * Internal method to look up the show's seats by seat number
+     * (assumes the show lock is already held)
+     */
+    private List<Seat> findSeatsUnsafe(Show show, List<Integer> seatNumbers) {
+        List<Seat> seats = new ArrayList<>();
+        List<Seat> allSeats = show.getScreen().getSeats();
+        for (Integer seatNumber : seatNumbers) {
+            for (Seat seat : allSeats) {
+                if (seat.getSeatNumber() == seatNumber) {
+                    seats.add(seat);
+                    break;
                 }
-                customer.getBookingList().add(booking);
             }
+        }
+        return seats;
+    }
 
-            // Mark seats as booked in the show (CRITICAL: must be atomic)
-            show.getBookedSeatIds().addAll(seatNumbers);
+    /**
+     * Internal method to mark available seats as booked in the show
+     * (assumes the show lock is already held)
+     */
+    private void claimSeatsUnsafe(Show show, List<Seat> bookedSeats) {
+        // Summary from before the seats change
+        ShowAvailability availability = show.getAvailability();
 
-            return booking;
-        } finally {
-            showLock.unlock();
+        // Mark seats as booked in the show (CRITICAL: must be atomic)
+        Set<Integer> bookedSeatIds = show.getBookedSeatIds();
+        for (Seat seat : bookedSeats) {
+            seat.setAvailable(false); // Mark seat as unavailable
+            bookedSeatIds.add(seat.getSeatNumber());
         }
+        show.setAvailability(availability.withBooked(bookedSeats));
+        markSeatsUnsafe(show, bookedSeats, false);
     }
 
     /**
@@ -184,7 +259,7 @@ public class BookingController {
      * (assumes lock is already held)
      */
     private boolean areSeatsAvailableUnsafe(Show show, List<Integer> seatNumbers) {
-        List<Integer> bookedSeatIds = show.getBookedSeatIds();
+        Set<Integer> bookedSeatIds = show.getBookedSeatIds();
         List<Seat> allSeats = show.getScreen().getSeats();
 
         for (Integer seatNumber : seatNumbers) {
@@ -209,12 +284,160 @@ public class BookingController {
         return true;
     }
 
+    /**
+     * Internal method to create and index a booking for seats already marked as booked in the
+     * show, and announce it; the total is priced by the caller before the seats were taken
+     * (assumes the show lock is already held)
+     */
+    private Booking registerBookingUnsafe(Customer customer, Show show, List<Seat> bookedSeats,
+                                          long totalAmountPaise) {
+        Booking booking = new Booking();
+        booking.setShow(show);
+        booking.setCustomer(customer);
+        booking.setBookedSeats(bookedSeats);
+        booking.setTotalAmountPaise(totalAmountPaise);
+        booking.setBookedAtMillis(System.currentTimeMillis());
+
+        // Set initial booking status
+        booking.setStatus(BookingStatus.CONFIRMED);
+
+        // Generate a booking ID and store the booking; random IDs can collide, so draw again until unique
+        booking.generateBookingId();
+        while (allBookings.putIfAbsent(booking.getBookingId(), booking) != null) {
+            booking.setBookingId(null);
+            booking.generateBookingId();
+        }
+        showBookings.computeIfAbsent(show.getShowId(), k -> new LinkedHashMap<>())
+                .put(booking.getBookingId(), booking);
+
+        // Add booking to customer's booking history
+        customer.getBookingHistory().add(booking);
+
+        // Published under the show lock, so a show's events arrive in the order seats changed
+        publishUnsafe(EventType.SEAT_CLAIMED, booking);
+        return booking;
+    }
 
     /**
-     * Confirm booking and process payment (thread-safe)
+     * Register a booking taken over from another node, keeping its ID, seats, amount and booking
+     * time (thread-safe). Fails if the ID is in use or a seat is taken. Announced as SEAT_CLAIMED,
+     * so replicas of this node pick it up.
+     */
+    public Booking attachBooking(String bookingId, Customer customer, Show show, List<Integer> seatNumbers,
+                                 long totalAmountPaise, long bookedAtMillis) {
+        Lock showLock = getShowLock(show.getShowId());
+        showLock.lock();
+        try {
+            if (cancelledShowIds.contains(show.getShowId())) {
+                throw new RuntimeException("Show has been cancelled");
+            }
+            if (allBookings.containsKey(bookingId)) {
+                throw new RuntimeException("Booking ID already in use: " + bookingId);
+            }
+            if (!areSeatsAvailableUnsafe(show, seatNumbers)) {
+                throw new RuntimeException("Selected seats are not available");
+            }
+
+            Booking booking = new Booking();
+            booking.setBookingId(bookingId);
+            booking.setShow(show);
+            booking.setCustomer(customer);
+            List<Seat> bookedSeats = findSeatsUnsafe(show, seatNumbers);
+            claimSeatsUnsafe(show, bookedSeats);
+            booking.setBookedSeats(bookedSeats);
+            booking.setTotalAmountPaise(totalAmountPaise);
+            booking.setBookedAtMillis(bookedAtMillis);
+            booking.setStatus(BookingStatus.CONFIRMED);
+
+            allBookings.put(bookingId, booking);
+            showBookings.computeIfAbsent(show.getShowId(), k -> new LinkedHashMap<>()).put(bookingId, booking);
+            if (customer != null) {
+                customer.getBookingHistory().add(booking);
+            }
+            publishUnsafe(EventType.SEAT_CLAIMED, booking);
+            return booking;
+        } finally {
+            showLock.unlock();
+        }
+    }
+
+    /**
+     * Remove the live bookings of a show and free their seats without cancelling them, so
+     * another node can take the show over; its waitlist is cancelled (thread-safe). Each
+     * booking is announced as BOOKING_CANCELLED, so replicas of this node drop it too.
+     * Returns the removed bookings.
+     */
+    public List<Booking> detachBookings(int showId) {
+        Lock showLock = getShowLock(showId);
+        showLock.lock();
+        try {
+            cancelWaitlistUnsafe(showId);
+            List<Booking> detached = removeBookingsUnsafe(showId);
+            for (Booking booking : detached) {
+                publishUnsafe(EventType.BOOKING_CANCELLED, booking);
+            }
+            return detached;
+        } finally {
+            showLock.unlock();
+        }
+    }
+
+    /**
+     * Forget every live booking and free its seats without announcing anything, e.g. on a
+     * replica about to be refilled from a snapshot (thread-safe). Bookings are not cancelled,
+     * no refunds are queued and waitlists are left alone.
+     */
+    public void resetBookings() {
+        for (int showId : new ArrayList<>(showBookings.keySet())) {
+            Lock showLock = getShowLock(showId);
+            showLock.lock();
+            try {
+                removeBookingsUnsafe(showId);
+            } finally {
+                showLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Internal method to remove the live bookings of a show and free their seats, without
+     * cancelling or announcing them (assumes the show lock is already held)
+     */
+    private List<Booking> removeBookingsUnsafe(int showId) {
+        Map<String, Booking> bookingsForShow = showBookings.remove(showId);
+        if (bookingsForShow == null || bookingsForShow.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        List<Booking> removed = new ArrayList<>(bookingsForShow.values());
+        Show show = removed.get(0).getShow();
+        ShowAvailability availability = show.getAvailability();
+        List<Seat> releasedSeats = new ArrayList<>();
+        for (Booking booking : removed) {
+            for (Seat seat : booking.getBookedSeats()) {
+                show.getBookedSeatIds().remove(seat.getSeatNumber());
+                seat.setAvailable(true);
+            }
+            releasedSeats.addAll(booking.getBookedSeats());
+            allBookings.remove(booking.getBookingId());
+            Customer customer = booking.getCustomer();
+            if (customer != null) {
+                customer.getBookingHistory().remove(booking.getBookingId());
+            }
+        }
+        show.setAvailability(availability.withReleased(releasedSeats));
+        markSeatsUnsafe(show, releasedSeats, true);
+        return removed;
+    }
+
+
+    /**
+     * Confirm booking and process payment (thread-safe). No lock is held during the payment
+     * call; concurrent confirmations of the same booking are collapsed by the payment's
+     * booking-keyed idempotency, and the show lock is taken only to record the result.
      */
     public Booking confirmBooking(String bookingId, PaymentMode paymentMode) {
-        bookingLock.lock();
+        long startNanos = System.nanoTime();
         try {
             Booking booking = allBookings.get(bookingId);
             if (booking == null) {
@@ -229,33 +452,50 @@ public class BookingController {
             Payment payment;
             if (paymentController != null) {
                 String customerId = booking.getCustomer() != null ? booking.getCustomer().getCustomerId() : null;
-                payment = paymentController.processPayment(bookingId, paymentMode, booking.getTotalAmount(), customerId);
+                // Keyed by booking, so a client retrying confirmBooking after a timeout is not charged twice
+                payment = paymentController.processPaymentIdempotent(PaymentController.bookingKey(bookingId),
+                        bookingId, paymentMode, booking.getTotalAmountPaise(), customerId);
             } else {
                 // Fallback to direct payment processing
                 payment = new Payment();
-                payment.processPayment(paymentMode, booking.getTotalAmount());
+                payment.processPaymentInPaise(paymentMode, booking.getTotalAmountPaise());
             }
             
-            booking.setPayment(payment);
-            
-            // Update booking status based on payment status
-            if (payment.getPaymentStatus() == PaymentStatus.SUCCESS) {
-                booking.setStatus(BookingStatus.CONFIRMED);
-            } else {
-                booking.setStatus(BookingStatus.CONFIRMED); // Keep as confirmed, payment can be retried
+            // A cancellation that raced with the payment must see it, or it must see the cancellation
+            boolean cancelled;
+            Lock showLock = getShowLock(booking.getShow().getShowId());
+            showLock.lock();
+            try {
+                // A failed attempt finishing late must not hide a concurrent successful one
+                Payment current = booking.getPayment();
+                if (current == null || current.getPaymentStatus() != PaymentStatus.SUCCESS) {
+                    booking.setPayment(payment);
+                }
+                cancelled = booking.getStatus() == BookingStatus.CANCELLED;
+
+                // Stay confirmed whether or not the payment succeeded; a failed payment can be retried
+                if (!cancelled) {
+                    booking.setStatus(BookingStatus.CONFIRMED);
+                }
+            } finally {
+                showLock.unlock();
+            }
+            if (cancelled) {
+                queueRefunds(List.of(booking), "Booking cancelled during payment");
             }
 
             return booking;
         } finally {
-            bookingLock.unlock();
+            Metrics.record(CONFIRM_BOOKING, startNanos);
         }
     }
 
     /**
-     * Cancel a booking (thread-safe)
+     * Cancel a booking (thread-safe). Its seats are released and a successful payment is
+     * queued for refund. Only the booking's show is locked.
      */
     public boolean cancelBooking(String bookingId) {
-        bookingLock.lock();
+        long startNanos = System.nanoTime();
         try {
             Booking booking = allBookings.get(bookingId);
             if (booking == null) {
@@ -264,86 +504,562 @@ public class BookingController {
 
             Show show = booking.getShow();
             Lock showLock = getShowLock(show.getShowId());
-
-            // Need to hold both locks to avoid deadlock
-            // Always acquire locks in consistent order (showLock first, then bookingLock)
-            // But we already have bookingLock, so we need to release and re-acquire
-            bookingLock.unlock();
-
             showLock.lock();
-            bookingLock.lock();
             try {
-                // Re-check booking still exists
-                booking = allBookings.get(bookingId);
-                if (booking == null) {
+                // Re-check under the show lock; a concurrent cancellation may have won
+                if (allBookings.get(bookingId) != booking) {
                     return false;
                 }
+                ShowAvailability availability = show.getAvailability();
+                cancelUnsafe(booking);
+                show.setAvailability(availability.withReleased(booking.getBookedSeats()));
+
+                Map<String, Booking> bookingsForShow = showBookings.get(show.getShowId());
+                if (bookingsForShow != null) {
+                    bookingsForShow.remove(bookingId);
+                }
+
+                // Freed seats go to the show's waitlist before anyone else can take them
+                offerFreeSeatsUnsafe(show);
+            } finally {
+                showLock.unlock();
+            }
+
+            queueRefunds(List.of(booking), "Booking cancelled");
+            return true;
+        } finally {
+            Metrics.record(CANCEL_BOOKING, startNanos);
+        }
+    }
 
-                List<Seat> bookedSeats = booking.getBookedSeats();
+    /**
+     * Void a booking that was already cancelled elsewhere (e.g. replayed from a replication
+     * primary): its seats are released, but no refund is queued and no waitlist offer is made
+     * (thread-safe). Returns whether the booking was live.
+     */
+    public boolean applyCancellation(String bookingId) {
+        Booking booking = allBookings.get(bookingId);
+        if (booking == null) {
+            return false;
+        }
+        Show show = booking.getShow();
+        Lock showLock = getShowLock(show.getShowId());
+        showLock.lock();
+        try {
+            if (allBookings.get(bookingId) != booking) {
+                return false;
+            }
+            ShowAvailability availability = show.getAvailability();
+            cancelUnsafe(booking);
+            show.setAvailability(availability.withReleased(booking.getBookedSeats()));
+            Map<String, Booking> bookingsForShow = showBookings.get(show.getShowId());
+            if (bookingsForShow != null) {
+                bookingsForShow.remove(bookingId);
+            }
+            return true;
+        } finally {
+            showLock.unlock();
+        }
+    }
+
+    /**
+     * Link a payment made elsewhere to a live booking (thread-safe); returns whether the
+     * booking was found
+     */
+    public boolean attachPayment(String bookingId, Payment payment) {
+        Booking booking = allBookings.get(bookingId);
+        if (booking == null) {
+            return false;
+        }
+        Lock showLock = getShowLock(booking.getShow().getShowId());
+        showLock.lock();
+        try {
+            booking.setPayment(payment);
+            return allBookings.get(bookingId) == booking;
+        } finally {
+            showLock.unlock();
+        }
+    }
 
-                // Remove seat numbers from booked list
-                for (Seat seat : bookedSeats) {
-                    show.getBookedSeatIds().remove(Integer.valueOf(seat.getSeatNumber()));
-                    seat.setAvailable(true); // Mark seat as available again
+    /**
+     * Cancel a show and every booking for it in one pass (e.g. after a projector failure):
+     * seats are released, bookings are voided, successful payments are queued for refund and
+     * the show's waitlist is cancelled.
+     * Only this show's lock is held, so bookings for other shows carry on.
+     * Returns the cancelled bookings.
+     */
+    public List<Booking> cancelShow(int showId) {
+        long startNanos = System.nanoTime();
+        try {
+            List<Booking> cancelled;
+            Lock showLock = getShowLock(showId);
+            showLock.lock();
+            try {
+                cancelledShowIds.add(showId);
+                cancelWaitlistUnsafe(showId);
+                Map<String, Booking> bookingsForShow = showBookings.remove(showId);
+                if (bookingsForShow == null || bookingsForShow.isEmpty()) {
+                    return new ArrayList<>();
                 }
 
-                // Remove from show bookings
-                List<Booking> bookingsForShow = showBookings.get(show.getShowId());
-                if (bookingsForShow != null) {
-                    bookingsForShow.remove(booking);
+                cancelled = new ArrayList<>(bookingsForShow.values());
+                Show show = cancelled.get(0).getShow();
+                ShowAvailability availability = show.getAvailability();
+                List<Seat> releasedSeats = new ArrayList<>();
+                for (Booking booking : cancelled) {
+                    cancelUnsafe(booking);
+                    releasedSeats.addAll(booking.getBookedSeats());
                 }
+                // One availability update for the whole show
+                show.setAvailability(availability.withReleased(releasedSeats));
+            } finally {
+                showLock.unlock();
+            }
+
+            queueRefunds(cancelled, "Show cancelled");
+            return cancelled;
+        } finally {
+            Metrics.record(CANCEL_SHOW, startNanos);
+        }
+    }
+
+    /**
+     * Join a show's waitlist for seatCount seats in a category (null for any), first come,
+     * first served. If the seats are free already they are offered straight away.
+     */
+    public WaitlistEntry joinWaitlist(Customer customer, Show show, int seatCount, SeatCategory seatCategory) {
+        return joinWaitlist(customer, show, seatCount, seatCategory, 0);
+    }
 
-                // Remove from all bookings
-                allBookings.remove(bookingId);
+    /**
+     * Join a show's waitlist with a priority: when seats free up they are held for waiting
+     * customers in order of priority (highest first), then of joining. A customer whose request
+     * does not fit the freed seats keeps their place while smaller requests behind them are served.
+     * Watch the entry's status, or BookingEventBus WAITLIST_OFFERED events, for the offer.
+     */
+    public WaitlistEntry joinWaitlist(Customer customer, Show show, int seatCount, SeatCategory seatCategory,
+                                      int priority) {
+        if (seatCount <= 0) {
+            throw new RuntimeException("Seat count must be greater than zero");
+        }
+        if (seatCount > show.getScreen().getSeats().size()) {
+            throw new RuntimeException("Show has only " + show.getScreen().getSeats().size() + " seats");
+        }
+        long startNanos = System.nanoTime();
+        Lock showLock = getShowLock(show.getShowId());
+        showLock.lock();
+        try {
+            if (cancelledShowIds.contains(show.getShowId())) {
+                throw new RuntimeException("Show has been cancelled");
+            }
+            WaitlistEntry entry = new WaitlistEntry(customer, show, seatCount, seatCategory, priority);
+            waitlists.computeIfAbsent(show.getShowId(), k -> new ShowWaitlist()).add(entry);
+            waitlistEntries.put(entry.getEntryId(), entry);
+            offerFreeSeatsUnsafe(show);
+            return entry;
+        } finally {
+            showLock.unlock();
+            Metrics.record(JOIN_WAITLIST, startNanos);
+        }
+    }
 
-                // Remove from customer's booking list
-                Customer customer = booking.getCustomer();
-                if (customer != null && customer.getBookingList() != null) {
-                    customer.getBookingList().remove(booking);
+    /**
+     * Book the seats held for a waitlist entry. Fails if nothing is on offer for it, including
+     * when the hold has expired.
+     */
+    public Booking claimWaitlistOffer(String entryId) {
+        long startNanos = System.nanoTime();
+        try {
+            WaitlistEntry entry = waitlistEntries.get(entryId);
+            if (entry == null) {
+                throw new RuntimeException("Waitlist entry not found or no longer active: " + entryId);
+            }
+            Show show = entry.getShow();
+            Lock showLock = getShowLock(show.getShowId());
+            showLock.lock();
+            try {
+                if (entry.getStatus() == WaitlistStatus.OFFERED
+                        && System.currentTimeMillis() >= entry.getHoldExpiresAtMillis()) {
+                    releaseHoldUnsafe(entry, WaitlistStatus.EXPIRED);
+                    offerFreeSeatsUnsafe(show);
+                }
+                if (entry.getStatus() != WaitlistStatus.OFFERED) {
+                    throw new RuntimeException("No seats are on offer for waitlist entry " + entryId
+                            + " (" + entry.getStatus() + ")");
                 }
 
-                return true;
+                waitlists.get(show.getShowId()).removeOffered(entry);
+                waitlistEntries.remove(entryId);
+                // Held seats already count as booked; price at the occupancy without them
+                List<Seat> heldSeats = entry.getHeldSeats();
+                double occupancy = show.getAvailability().withReleased(heldSeats).getOccupancy();
+                Booking booking = registerBookingUnsafe(entry.getCustomer(), show, heldSeats,
+                        PriceCalculator.calculateTotalPaise(show, occupancy, heldSeats));
+                entry.setBooking(booking);
+                entry.setStatus(WaitlistStatus.CLAIMED);
+                return booking;
             } finally {
                 showLock.unlock();
             }
         } finally {
-            bookingLock.unlock();
+            Metrics.record(CLAIM_WAITLIST_OFFER, startNanos);
         }
     }
 
     /**
-     * Get booking by ID (thread-safe read)
+     * Leave a waitlist, giving up any seats on offer; returns false if the entry is no longer active
      */
-    public Booking getBooking(String bookingId) {
-        bookingLock.lock();
+    public boolean leaveWaitlist(String entryId) {
+        WaitlistEntry entry = waitlistEntries.get(entryId);
+        if (entry == null) {
+            return false;
+        }
+        Show show = entry.getShow();
+        Lock showLock = getShowLock(show.getShowId());
+        showLock.lock();
         try {
-            return allBookings.get(bookingId);
+            if (entry.getStatus() == WaitlistStatus.WAITING) {
+                waitlists.get(show.getShowId()).removeWaiting(entry);
+                waitlistEntries.remove(entryId);
+                entry.setStatus(WaitlistStatus.CANCELLED);
+                return true;
+            }
+            if (entry.getStatus() == WaitlistStatus.OFFERED) {
+                releaseHoldUnsafe(entry, WaitlistStatus.CANCELLED);
+                offerFreeSeatsUnsafe(show);
+                return true;
+            }
+            return false;
         } finally {
-            bookingLock.unlock();
+            showLock.unlock();
         }
     }
 
+    /**
+     * Get an active (waiting or offered) waitlist entry by ID, or null
+     */
+    public WaitlistEntry getWaitlistEntry(String entryId) {
+        return waitlistEntries.get(entryId);
+    }
+
+    /**
+     * Position of a waiting entry in its show's waitlist (1 is next in line), or 0 if it is not waiting
+     */
+    public int getWaitlistPosition(String entryId) {
+        WaitlistEntry entry = waitlistEntries.get(entryId);
+        if (entry == null) {
+            return 0;
+        }
+        Lock showLock = getShowLock(entry.getShow().getShowId());
+        showLock.lock();
+        try {
+            ShowWaitlist waitlist = waitlists.get(entry.getShow().getShowId());
+            return waitlist != null ? waitlist.positionOf(entry) : 0;
+        } finally {
+            showLock.unlock();
+        }
+    }
+
+    /**
+     * Number of customers waiting for a show (not counting those holding an offer)
+     */
+    public int getWaitlistSize(Show show) {
+        Lock showLock = getShowLock(show.getShowId());
+        showLock.lock();
+        try {
+            ShowWaitlist waitlist = waitlists.get(show.getShowId());
+            return waitlist != null ? waitlist.getWaitingCount() : 0;
+        } finally {
+            showLock.unlock();
+        }
+    }
+
+    /**
+     * Set how long offered seats are held for a waitlisted customer (applies to new offers)
+     */
+    public void setWaitlistHoldMillis(long waitlistHoldMillis) {
+        if (waitlistHoldMillis <= 0) {
+            throw new RuntimeException("Hold time must be greater than zero");
+        }
+        this.waitlistHoldMillis = waitlistHoldMillis;
+    }
+
+    /**
+     * Internal method to hold free seats for waiting customers, in offer order, and tell them
+     * (assumes the show lock is already held)
+     */
+    private void offerFreeSeatsUnsafe(Show show) {
+        ShowWaitlist waitlist = waitlists.get(show.getShowId());
+        if (waitlist == null || !waitlist.hasWaiting()) {
+            return;
+        }
+        ShowAvailability availability = show.getAvailability();
+        if (availability.getFreeSeats() == 0) {
+            return;
+        }
+
+        // Free seats by category, in seat order
+        Map<SeatCategory, ArrayDeque<Seat>> freeSeats = new EnumMap<>(SeatCategory.class);
+        int freeCount = 0;
+        Set<Integer> bookedSeatIds = show.getBookedSeatIds();
+        for (Seat seat : show.getScreen().getSeats()) {
+            if (seat.isAvailable() && !bookedSeatIds.contains(seat.getSeatNumber())) {
+                freeSeats.computeIfAbsent(seat.getSeatCategory(), k -> new ArrayDeque<>()).add(seat);
+                freeCount++;
+            }
+        }
+
+        long holdMillis = waitlistHoldMillis;
+        long expiresAtMillis = System.currentTimeMillis() + holdMillis;
+        List<Seat> heldSeats = new ArrayList<>();
+        Iterator<WaitlistEntry> waiting = waitlist.waitingInOrder();
+        while (freeCount > 0 && waiting.hasNext()) {
+            WaitlistEntry entry = waiting.next();
+            List<Seat> seats = takeFreeSeats(freeSeats, entry.getSeatCategory(), entry.getSeatCount());
+            if (seats == null) {
+                continue;
+            }
+            waiting.remove();
+            freeCount -= seats.size();
+
+            // Held seats count as booked, so nobody else can take them meanwhile
+            for (Seat seat : seats) {
+                bookedSeatIds.add(seat.getSeatNumber());
+                seat.setAvailable(false);
+            }
+            markSeatsUnsafe(show, seats, false);
+            heldSeats.addAll(seats);
+            entry.setHeldSeats(seats);
+            entry.setHoldExpiresAtMillis(expiresAtMillis);
+            entry.setStatus(WaitlistStatus.OFFERED);
+            waitlist.addOffered(entry);
+
+            scheduleHoldExpiry(entry, holdMillis);
+            BookingEventBus bus = eventBus;
+            if (bus != null) {
+                bus.publishWaitlistEvent(EventType.WAITLIST_OFFERED, entry);
+            }
+        }
+        if (!heldSeats.isEmpty()) {
+            show.setAvailability(availability.withBooked(heldSeats));
+        }
+    }
+
+    /**
+     * Take count free seats of a category (any category if null), or null if there are not enough
+     */
+    private static List<Seat> takeFreeSeats(Map<SeatCategory, ArrayDeque<Seat>> freeSeats, SeatCategory category,
+                                            int count) {
+        int available = 0;
+        if (category != null) {
+            ArrayDeque<Seat> seats = freeSeats.get(category);
+            available = seats != null ? seats.size() : 0;
+        } else {
+            for (ArrayDeque<Seat> seats : freeSeats.values()) {
+                available += seats.size();
+            }
+        }
+        if (available < count) {
+            return null;
+        }
+
+        List<Seat> taken = new ArrayList<>(count);
+        for (Map.Entry<SeatCategory, ArrayDeque<Seat>> seats : freeSeats.entrySet()) {
+            if (category != null && seats.getKey() != category) {
+                continue;
+            }
+            while (taken.size() < count && !seats.getValue().isEmpty()) {
+                taken.add(seats.getValue().poll());
+            }
+        }
+        return taken;
+    }
+
+    /**
+     * Internal method to give up the seats held for an entry and end it
+     * (assumes the show lock is already held)
+     */
+    private void releaseHoldUnsafe(WaitlistEntry entry, WaitlistStatus finalStatus) {
+        Show show = entry.getShow();
+        List<Seat> seats = entry.getHeldSeats();
+        for (Seat seat : seats) {
+            show.getBookedSeatIds().remove(seat.getSeatNumber());
+            seat.setAvailable(true);
+        }
+        show.setAvailability(show.getAvailability().withReleased(seats));
+        markSeatsUnsafe(show, seats, true);
+
+        ShowWaitlist waitlist = waitlists.get(show.getShowId());
+        if (waitlist != null) {
+            waitlist.removeOffered(entry);
+        }
+        waitlistEntries.remove(entry.getEntryId());
+        entry.setHeldSeats(null);
+        entry.setStatus(finalStatus);
+    }
+
+    /**
+     * Internal method to cancel every entry of a cancelled show's waitlist
+     * (assumes the show lock is already held)
+     */
+    private void cancelWaitlistUnsafe(int showId) {
+        ShowWaitlist waitlist = waitlists.remove(showId);
+        if (waitlist == null) {
+            return;
+        }
+        for (WaitlistEntry entry : waitlist.clear()) {
+            if (entry.getStatus() == WaitlistStatus.OFFERED) {
+                releaseHoldUnsafe(entry, WaitlistStatus.CANCELLED);
+            } else {
+                waitlistEntries.remove(entry.getEntryId());
+                entry.setStatus(WaitlistStatus.CANCELLED);
+            }
+        }
+    }
+
+    private void scheduleHoldExpiry(WaitlistEntry entry, long delayMillis) {
+        HoldTimer.SCHEDULER.schedule(() -> expireHold(entry), delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Release an unclaimed hold once it has run out and offer the seats to the next customers
+     */
+    private void expireHold(WaitlistEntry entry) {
+        Show show = entry.getShow();
+        Lock showLock = getShowLock(show.getShowId());
+        showLock.lock();
+        try {
+            if (entry.getStatus() != WaitlistStatus.OFFERED) {
+                return;
+            }
+            long remainingMillis = entry.getHoldExpiresAtMillis() - System.currentTimeMillis();
+            if (remainingMillis > 0) {
+                // The timer ran ahead of the wall clock; check again later
+                scheduleHoldExpiry(entry, remainingMillis);
+                return;
+            }
+            releaseHoldUnsafe(entry, WaitlistStatus.EXPIRED);
+            offerFreeSeatsUnsafe(show);
+        } finally {
+            showLock.unlock();
+        }
+    }
+
+    /**
+     * Check whether a show has been cancelled
+     */
+    public boolean isShowCancelled(int showId) {
+        return cancelledShowIds.contains(showId);
+    }
+
+    /**
+     * Internal method to void a booking and release its seats, leaving the show's booking map
+     * and availability summary to the caller (assumes the show lock is already held)
+     */
+    private void cancelUnsafe(Booking booking) {
+        Show show = booking.getShow();
+        for (Seat seat : booking.getBookedSeats()) {
+            show.getBookedSeatIds().remove(seat.getSeatNumber());
+            seat.setAvailable(true); // Mark seat as available again
+        }
+        markSeatsUnsafe(show, booking.getBookedSeats(), true);
+        booking.setStatus(BookingStatus.CANCELLED);
+        allBookings.remove(booking.getBookingId());
+
+        // Remove from customer's booking history
+        Customer customer = booking.getCustomer();
+        if (customer != null) {
+            customer.getBookingHistory().remove(booking.getBookingId());
+        }
+
+        publishUnsafe(EventType.BOOKING_CANCELLED, booking);
+    }
+
+    /**
+     * Internal method to record seat changes in the show's seat map, if one has been built
+     * (assumes the show lock is already held)
+     */
+    private void markSeatsUnsafe(Show show, List<Seat> seats, boolean free) {
+        SeatMap seatMap = seatMaps.get(show.getShowId());
+        if (seatMap == null) {
+            return;
+        }
+        for (Seat seat : seats) {
+            seatMap.setFree(seat.getSeatNumber(), free);
+        }
+    }
+
+    /**
+     * Internal method to publish a booking event, if an event bus is set (assumes the show lock is already held)
+     */
+    private void publishUnsafe(EventType type, Booking booking) {
+        BookingEventBus bus = eventBus;
+        if (bus != null) {
+            bus.publishBookingEvent(type, booking);
+        }
+    }
+
+    /**
+     * Queue refunds for the successful payments of cancelled bookings (needs no show lock)
+     */
+    private void queueRefunds(List<Booking> bookings, String reason) {
+        if (paymentController == null) {
+            return;
+        }
+        List<Integer> paymentIds = new ArrayList<>();
+        for (Booking booking : bookings) {
+            Payment payment = booking.getPayment();
+            if (payment != null && payment.getPaymentStatus() == PaymentStatus.SUCCESS) {
+                paymentIds.add(payment.getPaymentId());
+            }
+        }
+        if (!paymentIds.isEmpty()) {
+            paymentController.queueRefunds(paymentIds, reason);
+        }
+    }
+
+    /**
+     * Get booking by ID (thread-safe read)
+     */
+    public Booking getBooking(String bookingId) {
+        return allBookings.get(bookingId);
+    }
+
+    /**
+     * Get every live booking (thread-safe; bookings made or cancelled meanwhile may be missed)
+     */
+    public List<Booking> getAllBookings() {
+        return new ArrayList<>(allBookings.values());
+    }
+
     /**
      * Get all bookings for a customer (thread-safe)
      */
     public List<Booking> getCustomerBookings(Customer customer) {
-        synchronized (customer) {
-            return customer.getBookingList() != null ?
-                    new ArrayList<>(customer.getBookingList()) : new ArrayList<>();
-        }
+        return customer.getBookingHistory().getBookings();
+    }
+
+    /**
+     * Get a page of a customer's bookings, latest booking first.
+     * Pass null for the first page and the returned cursor for the next one.
+     */
+    public BookingPage getCustomerBookings(Customer customer, String cursor, int limit) {
+        return customer.getBookingHistory().getPage(cursor, limit);
     }
 
     /**
      * Get all bookings for a show (thread-safe)
      */
     public List<Booking> getShowBookings(Show show) {
+        long startNanos = System.nanoTime();
         Lock showLock = getShowLock(show.getShowId());
         showLock.lock();
         try {
-            List<Booking> bookings = showBookings.getOrDefault(show.getShowId(), new ArrayList<>());
-            return new ArrayList<>(bookings); // Return copy to avoid external modification
+            Map<String, Booking> bookings = showBookings.get(show.getShowId());
+            return bookings != null ? new ArrayList<>(bookings.values()) : new ArrayList<>(); // Return copy to avoid external modification
         } finally {
             showLock.unlock();
+            Metrics.record(GET_SHOW_BOOKINGS, startNanos);
         }
     }
 
@@ -356,20 +1072,19 @@ public class BookingController {
             return "Booking not found";
         }
 
-        StringBuilder details = new StringBuilder();
-        details.append("Booking ID: ").append(booking.getBookingId()).append("\n");
-        details.append("Movie: ").append(booking.getShow().getMovie().getTitle()).append("\n");
-        details.append("Show Time: ").append(booking.getShow().getShowStartTime()).append("\n");
-        details.append("Seats: ");
-        for (Seat seat : booking.getBookedSeats()) {
-            details.append(seat.getSeatNumber()).append(" ");
-        }
-        details.append("\n");
-        details.append("Total Amount: ₹").append(booking.getTotalAmount()).append("\n");
-        if (booking.getPayment() != null) {
-            details.append("Payment Status: ").append(booking.getPayment().getPaymentStatus()).append("\n");
-        }
-
+        StringBuilder details = new StringBuilder(256);
+        ReceiptRenderer.renderBookingDetails(booking, details);
         return details.toString();
     }
-}
\ No newline at end of file
+
+    /**
+     * Timer that expires waitlist holds, shared by all controllers and started on first use
+     */
+    private static final class HoldTimer {
+        static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "waitlist-hold-expiry");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
@@ -0,0 +1,201 @@
+import enums.EventType;
+import enums.PaymentMode;
+import enums.PaymentStatus;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * One slot of the booking event ring. Slots are allocated once when the ring is created and
+ * overwritten by each event published into them, so publishing allocates nothing.
+ * Booking events carry the booking, show, customer, seats and booking time; payment events carry the payment;
+ * waitlist events carry the waitlist entry, show, customer and held seats.
+ */
+public class BookingEvent {
+
+    private EventType type;
+    private long timestampMillis;
+
+    // Booking fields (bookingId is also set on payment events when it is known)
+    private String bookingId;
+    private int showId;
+    private String customerId;
+    private long bookedAtMillis;
+
+    // Seat numbers of the booking, in the first seatCount entries
+    private int[] seatNumbers = new int[8];
+    private int seatCount;
+
+    // Payment fields; refundedPaymentId is set on refunds only
+    private int paymentId;
+    private PaymentMode paymentMode;
+    private long amountPaise;
+    private int refundedPaymentId;
+
+    // Payment status and settlement as of the event, on payment events
+    private PaymentStatus paymentStatus;
+    private boolean settled;
+
+    // Waitlist entry the event is about, on waitlist events
+    private String waitlistEntryId;
+
+    /**
+     * Overwrite this slot with a booking event
+     */
+    void setBookingEvent(EventType type, Booking booking) {
+        clear(type);
+        bookingId = booking.getBookingId();
+        showId = booking.getShow().getShowId();
+        customerId = booking.getCustomer() != null ? booking.getCustomer().getCustomerId() : null;
+        amountPaise = booking.getTotalAmountPaise();
+        bookedAtMillis = booking.getBookedAtMillis();
+
+        setSeats(booking.getBookedSeats());
+
+        Payment payment = booking.getPayment();
+        if (payment != null) {
+            paymentId = payment.getPaymentId();
+            paymentMode = payment.getPaymentMode();
+        }
+    }
+
+    /**
+     * Overwrite this slot with a payment event
+     */
+    void setPaymentEvent(EventType type, Payment payment, String bookingId) {
+        clear(type);
+        this.bookingId = bookingId;
+        paymentId = payment.getPaymentId();
+        paymentMode = payment.getPaymentMode();
+        amountPaise = payment.getAmountPaise();
+        refundedPaymentId = payment.getRefundedPaymentId();
+        paymentStatus = payment.getPaymentStatus();
+        settled = payment.isSettled();
+    }
+
+    /**
+     * Overwrite this slot with a waitlist event
+     */
+    void setWaitlistEvent(EventType type, WaitlistEntry entry) {
+        clear(type);
+        waitlistEntryId = entry.getEntryId();
+        showId = entry.getShow().getShowId();
+        customerId = entry.getCustomer() != null ? entry.getCustomer().getCustomerId() : null;
+        List<Seat> seats = entry.getHeldSeats();
+        if (seats != null) {
+            setSeats(seats);
+        }
+    }
+
+    private void setSeats(List<Seat> seats) {
+        if (seats.size() > seatNumbers.length) {
+            seatNumbers = new int[Math.max(seats.size(), seatNumbers.length * 2)];
+        }
+        for (int i = 0; i < seats.size(); i++) {
+            seatNumbers[i] = seats.get(i).getSeatNumber();
+        }
+        seatCount = seats.size();
+    }
+
+    private void clear(EventType type) {
+        this.type = type;
+        timestampMillis = System.currentTimeMillis();
+        bookingId = null;
+        showId = 0;
+        customerId = null;
+        bookedAtMillis = 0;
+        seatCount = 0;
+        paymentId = 0;
+        paymentMode = null;
+        amountPaise = 0;
+        refundedPaymentId = 0;
+        paymentStatus = null;
+        settled = false;
+        waitlistEntryId = null;
+    }
+
+    public EventType getType() {
+        return type;
+    }
+
+    public long getTimestampMillis() {
+        return timestampMillis;
+    }
+
+    public String getBookingId() {
+        return bookingId;
+    }
+
+    public int getShowId() {
+        return showId;
+    }
+
+    public String getCustomerId() {
+        return customerId;
+    }
+
+    /**
+     * When the booking was made, on booking events
+     */
+    public long getBookedAtMillis() {
+        return bookedAtMillis;
+    }
+
+    public int getSeatCount() {
+        return seatCount;
+    }
+
+    /**
+     * Get the i-th seat number without copying
+     */
+    public int getSeatNumber(int i) {
+        if (i >= seatCount) {
+            throw new IndexOutOfBoundsException("Seat " + i + " of " + seatCount);
+        }
+        return seatNumbers[i];
+    }
+
+    /**
+     * Get a copy of the seat numbers
+     */
+    public int[] getSeatNumbers() {
+        return Arrays.copyOf(seatNumbers, seatCount);
+    }
+
+    public int getPaymentId() {
+        return paymentId;
+    }
+
+    public PaymentMode getPaymentMode() {
+        return paymentMode;
+    }
+
+    /**
+     * Booking total for booking events; payment amount for payment events (negative for refunds)
+     */
+    public long getAmountPaise() {
+        return amountPaise;
+    }
+
+    public int getRefundedPaymentId() {
+        return refundedPaymentId;
+    }
+
+    public PaymentStatus getPaymentStatus() {
+        return paymentStatus;
+    }
+
+    public boolean isSettled() {
+        return settled;
+    }
+
+    public String getWaitlistEntryId() {
+        return waitlistEntryId;
+    }
+
+    @Override
+    public String toString() {
+        return type + "{bookingId=" + bookingId + ", showId=" + showId + ", seats=" + seatCount
+                + ", paymentId=" + paymentId + ", amountPaise=" + amountPaise + "}";
+    }
+}
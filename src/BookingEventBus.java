@@ -0,0 +1,357 @@
+import enums.EventType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Stream of booking and payment events for downstream consumers (notifications, analytics,
+ * dashboards), in the style of the LMAX Disruptor. Events go into a pre-allocated ring of
+ * BookingEvent slots: producers claim a slot with a CAS on the cursor, fill it in place and
+ * mark it published; each handler reads the ring on its own thread, in batches, and records
+ * how far it has got.
+ *
+ * Producers never wait on a slow consumer for long: when the ring is full they wait up to
+ * maxPublishWait for the slowest handler to free a slot, then drop the event and count it.
+ */
+public class BookingEventBus {
+
+    // Pause between checks while a producer waits for a slot
+    private static final long FULL_RING_PARK_NANOS = 1_000;
+
+    // Default: 64k slots, consumers park 100 µs when idle, producers wait up to 1 ms for space
+    private static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+    private static final long DEFAULT_SLEEP_NANOS = 100_000;
+    private static final long DEFAULT_MAX_PUBLISH_WAIT_MICROS = 1_000;
+
+    private final int bufferSize;
+    private final int indexMask;
+    private final int indexShift;
+    private final BookingEvent[] slots;
+
+    // Lap number of the event published in each slot, or -1; tells a claimed slot from a published one
+    private final AtomicIntegerArray publishedLaps;
+
+    // Highest sequence claimed by a producer
+    private final PaddedSequence cursor = new PaddedSequence(-1);
+
+    // Last known position of the slowest handler, so producers rarely scan all of them
+    private final PaddedSequence gatingCache = new PaddedSequence(-1);
+
+    private final WaitStrategy waitStrategy;
+    private final long maxPublishWaitNanos;
+
+    // Handlers and their processors; fixed once started (guarded by lifecycleLock)
+    private final List<EventProcessor> processors = new ArrayList<>();
+    private boolean started;
+
+    // Processors as an array for producers to scan; replaced when a handler is added
+    private volatile EventProcessor[] gating = new EventProcessor[0];
+
+    private final Lock lifecycleLock = new ReentrantLock();
+
+    private final LongAdder droppedEvents = new LongAdder();
+    private final LongAdder handlerErrors = new LongAdder();
+
+    public BookingEventBus() {
+        this(DEFAULT_BUFFER_SIZE, WaitStrategy.sleeping(DEFAULT_SLEEP_NANOS), DEFAULT_MAX_PUBLISH_WAIT_MICROS);
+    }
+
+    /**
+     * Bus with a ring of bufferSize slots (a power of two). A producer finding the ring full waits
+     * up to maxPublishWaitMicros (0: not at all) before dropping its event.
+     */
+    public BookingEventBus(int bufferSize, WaitStrategy waitStrategy, long maxPublishWaitMicros) {
+        if (bufferSize < 2 || Integer.bitCount(bufferSize) != 1) {
+            throw new RuntimeException("Buffer size must be a power of two, at least 2");
+        }
+        if (maxPublishWaitMicros < 0) {
+            throw new RuntimeException("Publish wait must not be negative");
+        }
+        this.bufferSize = bufferSize;
+        this.indexMask = bufferSize - 1;
+        this.indexShift = Integer.numberOfTrailingZeros(bufferSize);
+        this.slots = new BookingEvent[bufferSize];
+        this.publishedLaps = new AtomicIntegerArray(bufferSize);
+        for (int i = 0; i < bufferSize; i++) {
+            slots[i] = new BookingEvent();
+            publishedLaps.set(i, -1);
+        }
+        this.waitStrategy = waitStrategy;
+        this.maxPublishWaitNanos = TimeUnit.MICROSECONDS.toNanos(maxPublishWaitMicros);
+    }
+
+    /**
+     * Add a handler; it sees every event published after it was added. Handlers must be added
+     * before start().
+     */
+    public void addHandler(String name, BookingEventHandler handler) {
+        lifecycleLock.lock();
+        try {
+            if (started) {
+                throw new RuntimeException("Handlers must be added before the event bus is started");
+            }
+            EventProcessor processor = new EventProcessor(name, handler, cursor.get());
+            processors.add(processor);
+            gating = processors.toArray(new EventProcessor[0]);
+        } finally {
+            lifecycleLock.unlock();
+        }
+    }
+
+    /**
+     * Start one daemon thread per handler
+     */
+    public void start() {
+        lifecycleLock.lock();
+        try {
+            if (started) {
+                return;
+            }
+            started = true;
+            for (EventProcessor processor : processors) {
+                processor.thread.start();
+            }
+        } finally {
+            lifecycleLock.unlock();
+        }
+    }
+
+    /**
+     * Stop the handlers after they have handled everything published so far, waiting up to
+     * timeoutMillis; returns whether every handler caught up
+     */
+    public boolean shutdown(long timeoutMillis) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        long last = cursor.get();
+        boolean drained = true;
+        for (EventProcessor processor : gating) {
+            while (processor.sequence.get() < last && processor.thread.isAlive()) {
+                if (System.nanoTime() - deadline >= 0) {
+                    drained = false;
+                    break;
+                }
+                LockSupport.parkNanos(FULL_RING_PARK_NANOS);
+            }
+        }
+        for (EventProcessor processor : gating) {
+            processor.stopped = true;
+        }
+        waitStrategy.signalAllWhenBlocking();
+        for (EventProcessor processor : gating) {
+            try {
+                processor.thread.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return drained;
+    }
+
+    /**
+     * Publish a booking event (SEAT_CLAIMED, BOOKING_CANCELLED); returns false if it was dropped
+     */
+    public boolean publishBookingEvent(EventType type, Booking booking) {
+        long sequence = claim();
+        if (sequence < 0) {
+            return false;
+        }
+        slots[(int) sequence & indexMask].setBookingEvent(type, booking);
+        publish(sequence);
+        return true;
+    }
+
+    /**
+     * Publish a payment event (PAYMENT_SUCCEEDED, REFUND_ISSUED, REFUND_QUEUED, PAYMENT_SETTLED) for the given booking, if known;
+     * returns false if it was dropped
+     */
+    public boolean publishPaymentEvent(EventType type, Payment payment, String bookingId) {
+        long sequence = claim();
+        if (sequence < 0) {
+            return false;
+        }
+        slots[(int) sequence & indexMask].setPaymentEvent(type, payment, bookingId);
+        publish(sequence);
+        return true;
+    }
+
+    /**
+     * Publish a waitlist event (WAITLIST_OFFERED); returns false if it was dropped
+     */
+    public boolean publishWaitlistEvent(EventType type, WaitlistEntry entry) {
+        long sequence = claim();
+        if (sequence < 0) {
+            return false;
+        }
+        slots[(int) sequence & indexMask].setWaitlistEvent(type, entry);
+        publish(sequence);
+        return true;
+    }
+
+    /**
+     * Number of events published (including any not yet handled)
+     */
+    public long getPublishedEvents() {
+        return cursor.get() + 1;
+    }
+
+    /**
+     * Number of events dropped because the ring stayed full
+     */
+    public long getDroppedEvents() {
+        return droppedEvents.sum();
+    }
+
+    /**
+     * Number of events a handler threw on (the handler carries on with the next event)
+     */
+    public long getHandlerErrors() {
+        return handlerErrors.sum();
+    }
+
+    /**
+     * How many events a handler still has to handle
+     */
+    public long getBacklog(String handlerName) {
+        for (EventProcessor processor : gating) {
+            if (processor.name.equals(handlerName)) {
+                return cursor.get() - processor.sequence.get();
+            }
+        }
+        throw new RuntimeException("No handler named " + handlerName);
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Claim the next sequence, waiting up to maxPublishWaitNanos while the ring is full;
+     * returns -1 if the event has to be dropped
+     */
+    private long claim() {
+        long deadline = 0;
+        while (true) {
+            long current = cursor.get();
+            long next = current + 1;
+            long wrapPoint = next - bufferSize;
+            if (wrapPoint > gatingCache.get()) {
+                long slowest = slowestHandler(current);
+                gatingCache.set(slowest);
+                if (wrapPoint > slowest) {
+                    long now = System.nanoTime();
+                    if (deadline == 0) {
+                        deadline = now + maxPublishWaitNanos;
+                    }
+                    if (now - deadline >= 0) {
+                        droppedEvents.increment();
+                        return -1;
+                    }
+                    LockSupport.parkNanos(FULL_RING_PARK_NANOS);
+                }
+            } else if (cursor.compareAndSet(current, next)) {
+                return next;
+            }
+        }
+    }
+
+    private void publish(long sequence) {
+        publishedLaps.lazySet((int) sequence & indexMask, (int) (sequence >>> indexShift));
+        waitStrategy.signalAllWhenBlocking();
+    }
+
+    /**
+     * Lowest sequence any handler has finished, or current if there are no handlers
+     */
+    private long slowestHandler(long current) {
+        long slowest = current;
+        for (EventProcessor processor : gating) {
+            slowest = Math.min(slowest, processor.sequence.get());
+        }
+        return slowest;
+    }
+
+    /**
+     * Highest sequence from lowest to available whose slots, and every one before it, are published
+     */
+    private long highestPublished(long lowest, long available) {
+        for (long sequence = lowest; sequence <= available; sequence++) {
+            if (publishedLaps.get((int) sequence & indexMask) != (int) (sequence >>> indexShift)) {
+                return sequence - 1;
+            }
+        }
+        return available;
+    }
+
+    /**
+     * Runs one handler over the ring in batches, on its own thread
+     */
+    private final class EventProcessor implements Runnable {
+        final String name;
+        final BookingEventHandler handler;
+        final Thread thread;
+
+        // Highest sequence this handler has finished with; producers may reuse slots up to it
+        final PaddedSequence sequence;
+
+        volatile boolean stopped;
+
+        EventProcessor(String name, BookingEventHandler handler, long startAfter) {
+            this.name = name;
+            this.handler = handler;
+            this.sequence = new PaddedSequence(startAfter);
+            this.thread = new Thread(this, "booking-events-" + name);
+            this.thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            long next = sequence.get() + 1;
+            while (!stopped) {
+                long available;
+                try {
+                    available = waitStrategy.waitFor(next, cursor, () -> stopped);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long highest = highestPublished(next, available);
+                if (highest < next) {
+                    // Claimed but not yet published, or stopping
+                    Thread.onSpinWait();
+                    continue;
+                }
+                for (long s = next; s <= highest; s++) {
+                    try {
+                        handler.onEvent(slots[(int) s & indexMask], s, s == highest);
+                    } catch (Exception e) {
+                        handlerErrors.increment();
+                    }
+                }
+                sequence.lazySet(highest);
+                next = highest + 1;
+            }
+        }
+    }
+
+    /**
+     * AtomicLong padded to its own cache line, so the cursor and the handlers' sequences,
+     * written by different threads, do not invalidate each other
+     */
+    @SuppressWarnings("unused")
+    private static final class PaddedSequence extends AtomicLong {
+        private static final long serialVersionUID = 1L;
+
+        long p1, p2, p3, p4, p5, p6, p7;
+
+        PaddedSequence(long initialValue) {
+            super(initialValue);
+        }
+    }
+}
@@ -0,0 +1,13 @@
+/**
+ * Consumer of booking events. Each handler runs on its own thread and sees every event in
+ * sequence order. Events are delivered in batches: endOfBatch is true on the last event
+ * currently available, which is the place to flush any buffered work.
+ */
+public interface BookingEventHandler {
+
+    /**
+     * Handle one event. The event object is a reused ring slot: copy what is needed before
+     * returning instead of keeping a reference.
+     */
+    void onEvent(BookingEvent event, long sequence, boolean endOfBatch) throws Exception;
+}
@@ -0,0 +1,275 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A customer's bookings, indexed by booking ID and ordered by when they were made. Pages are
+ * read with an opaque cursor, latest booking first. With a loader, only the recent part of the history is
+ * kept in memory and older pages are loaded the first time they are read.
+ */
+public class BookingHistory {
+
+    // Bookings loaded per call to the loader, at least
+    private static final int LOAD_BATCH_SIZE = 50;
+
+    private final String customerId;
+
+    // bookingId -> position in booking-time order (guarded by historyLock)
+    private final Map<String, Key> keysById = new HashMap<>();
+
+    // Bookings in memory, ordered by booking time then booking ID (guarded by historyLock)
+    private final NavigableMap<Key, Booking> byBookingTime = new TreeMap<>();
+
+    // Source of older bookings that are not in memory yet (null if everything is in memory)
+    private BookingHistoryLoader loader;
+
+    // Whether every booking older than the oldest one in memory has been loaded
+    private boolean fullyLoaded = true;
+
+    private final Lock historyLock = new ReentrantLock();
+
+    public BookingHistory(String customerId) {
+        this.customerId = customerId;
+    }
+
+    /**
+     * Add a booking (replacing any booking with the same ID)
+     */
+    public void add(Booking booking) {
+        historyLock.lock();
+        try {
+            addUnsafe(booking);
+        } finally {
+            historyLock.unlock();
+        }
+    }
+
+    /**
+     * Remove a booking by ID; returns the removed booking or null
+     */
+    public Booking remove(String bookingId) {
+        historyLock.lock();
+        try {
+            Key key = keysById.remove(bookingId);
+            return key != null ? byBookingTime.remove(key) : null;
+        } finally {
+            historyLock.unlock();
+        }
+    }
+
+    public Booking get(String bookingId) {
+        historyLock.lock();
+        try {
+            Key key = keysById.get(bookingId);
+            return key != null ? byBookingTime.get(key) : null;
+        } finally {
+            historyLock.unlock();
+        }
+    }
+
+    public boolean contains(String bookingId) {
+        historyLock.lock();
+        try {
+            return keysById.containsKey(bookingId);
+        } finally {
+            historyLock.unlock();
+        }
+    }
+
+    /**
+     * Number of bookings in memory
+     */
+    public int size() {
+        historyLock.lock();
+        try {
+            return keysById.size();
+        } finally {
+            historyLock.unlock();
+        }
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Get every booking in memory, latest booking first
+     */
+    public List<Booking> getBookings() {
+        historyLock.lock();
+        try {
+            return new ArrayList<>(byBookingTime.descendingMap().values());
+        } finally {
+            historyLock.unlock();
+        }
+    }
+
+    /**
+     * Replace the bookings in memory
+     */
+    public void setBookings(List<Booking> bookings) {
+        historyLock.lock();
+        try {
+            keysById.clear();
+            byBookingTime.clear();
+            for (Booking booking : bookings) {
+                addUnsafe(booking);
+            }
+        } finally {
+            historyLock.unlock();
+        }
+    }
+
+    /**
+     * Set where older bookings are loaded from; bookings in memory are treated as the most recent ones
+     */
+    public void setLoader(BookingHistoryLoader loader) {
+        historyLock.lock();
+        try {
+            this.loader = loader;
+            this.fullyLoaded = loader == null;
+        } finally {
+            historyLock.unlock();
+        }
+    }
+
+    /**
+     * Get up to limit bookings after the cursor (null for the first page), latest booking first.
+     * Older bookings are loaded when the page runs past the ones in memory.
+     */
+    public BookingPage getPage(String cursor, int limit) {
+        if (limit <= 0) {
+            throw new RuntimeException("Page size must be greater than zero");
+        }
+        Key after = cursor != null ? Key.parse(cursor) : null;
+
+        while (true) {
+            Key oldest;
+            BookingHistoryLoader pageLoader;
+            historyLock.lock();
+            try {
+                NavigableMap<Key, Booking> older = after != null
+                        ? byBookingTime.headMap(after, false).descendingMap() : byBookingTime.descendingMap();
+                List<Booking> bookings = new ArrayList<>(Math.min(limit, older.size()));
+                Key last = null;
+                Iterator<Map.Entry<Key, Booking>> entries = older.entrySet().iterator();
+                while (bookings.size() < limit && entries.hasNext()) {
+                    Map.Entry<Key, Booking> entry = entries.next();
+                    bookings.add(entry.getValue());
+                    last = entry.getKey();
+                }
+
+                boolean moreInMemory = entries.hasNext();
+                if (bookings.size() == limit || fullyLoaded) {
+                    boolean more = moreInMemory || (!fullyLoaded && last != null);
+                    return new BookingPage(bookings, more ? last.toCursor() : null);
+                }
+                oldest = byBookingTime.isEmpty() ? null : byBookingTime.firstKey();
+                pageLoader = loader;
+            } finally {
+                historyLock.unlock();
+            }
+
+            // Load the next older page outside the lock, so bookings can be added meanwhile
+            loadOlder(pageLoader, oldest, Math.max(limit, LOAD_BATCH_SIZE));
+        }
+    }
+
+    /**
+     * Load bookings older than the oldest one in memory and add them
+     */
+    private void loadOlder(BookingHistoryLoader pageLoader, Key oldest, int count) {
+        List<Booking> loaded = oldest != null
+                ? pageLoader.loadOlder(customerId, oldest.bookedAtMillis, oldest.bookingId, count)
+                : pageLoader.loadOlder(customerId, Long.MAX_VALUE, null, count);
+
+        historyLock.lock();
+        try {
+            if (loader != pageLoader) {
+                return;
+            }
+            int added = 0;
+            for (Booking booking : loaded) {
+                if (!keysById.containsKey(booking.getBookingId())) {
+                    addUnsafe(booking);
+                    added++;
+                }
+            }
+            // A short page, or one with nothing new, means the history is complete
+            if (loaded.size() < count || added == 0) {
+                fullyLoaded = true;
+            }
+        } finally {
+            historyLock.unlock();
+        }
+    }
+
+    /**
+     * Internal method to index a booking (assumes lock is already held)
+     */
+    private void addUnsafe(Booking booking) {
+        Key previous = keysById.remove(booking.getBookingId());
+        if (previous != null) {
+            byBookingTime.remove(previous);
+        }
+        Key key = new Key(booking.getBookedAtMillis(), booking.getBookingId());
+        keysById.put(booking.getBookingId(), key);
+        byBookingTime.put(key, booking);
+    }
+
+    /**
+     * Position of a booking in booking-time order; also the page cursor ("bookedAtMillis:bookingId").
+     * A full timestamp rather than the show's time of day, so pages run across days.
+     */
+    private static final class Key implements Comparable<Key> {
+        final long bookedAtMillis;
+        final String bookingId;
+
+        Key(long bookedAtMillis, String bookingId) {
+            this.bookedAtMillis = bookedAtMillis;
+            this.bookingId = bookingId;
+        }
+
+        static Key parse(String cursor) {
+            int separator = cursor.indexOf(':');
+            if (separator <= 0) {
+                throw new RuntimeException("Invalid cursor: " + cursor);
+            }
+            try {
+                return new Key(Long.parseLong(cursor.substring(0, separator)), cursor.substring(separator + 1));
+            } catch (NumberFormatException e) {
+                throw new RuntimeException("Invalid cursor: " + cursor);
+            }
+        }
+
+        String toCursor() {
+            return bookedAtMillis + ":" + bookingId;
+        }
+
+        @Override
+        public int compareTo(Key other) {
+            int byTime = Long.compare(bookedAtMillis, other.bookedAtMillis);
+            return byTime != 0 ? byTime : bookingId.compareTo(other.bookingId);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return bookedAtMillis == other.bookedAtMillis && bookingId.equals(other.bookingId);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Long.hashCode(bookedAtMillis) + bookingId.hashCode();
+        }
+    }
+}
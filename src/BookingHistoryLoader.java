@@ -0,0 +1,15 @@
+import java.util.List;
+
+/**
+ * Loads a customer's older bookings from the persistence layer, one page at a time,
+ * so only the recent part of a long history has to stay in memory.
+ */
+public interface BookingHistoryLoader {
+
+    /**
+     * Load up to limit bookings of a customer that come before the given position in booking-time
+     * order (booked earlier, or at the same millisecond with a smaller booking ID), latest first.
+     * Returning fewer than limit bookings means there is nothing older.
+     */
+    List<Booking> loadOlder(String customerId, long beforeBookedAtMillis, String beforeBookingId, int limit);
+}
@@ -0,0 +1,487 @@
+import enums.City;
+import enums.PaymentMode;
+import enums.PaymentStatus;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * One JVM of a multi-node deployment. Every node loads the same catalog and customers; booking
+ * state is partitioned by city, and a node only books and cancels for the cities it owns.
+ * RoutingBookingClient assigns cities with a ConsistentHashRing and moves a city's live bookings
+ * between nodes (RELEASE on the old owner, ACQUIRE on the new one) when nodes join or leave.
+ *
+ * Line protocol over TCP, one request per line, answered in order on each connection:
+ *   <requestId> PING                                -> <requestId> OK <nodeId>
+ *   <requestId> BOOK <customerId> <showId> <seats>  -> <requestId> OK <bookingId> <amountPaise>
+ *   <requestId> CANCEL <bookingId>                  -> <requestId> OK true|false
+ *   <requestId> GET <bookingId>                     -> <requestId> OK <booking>
+ *   <requestId> OWNED                               -> <requestId> OK <city,city,...>
+ *   <requestId> RELEASE <city>                      -> <requestId> OK <n>, then n <booking> lines
+ *   <requestId> ACQUIRE <city> <n>, then n <booking> lines -> <requestId> OK <n>
+ * Seats are comma-separated seat numbers; <booking> is "bookingId customerId showId amountPaise
+ * seats bookedAtMillis payment", where payment is "-" or the booking's current payment as
+ * "paymentId:mode:amountPaise:status:settled:dateMillis". A released payment moves with its
+ * booking: the old owner forgets it, so only the new owner settles or refunds it. Failures are answered "<requestId> ERR <status> <message>" with HTTP-style statuses
+ * (400 bad request, 404 unknown booking/show/customer, 409 conflict, 421 city owned elsewhere).
+ *
+ * Usage: java BookingNode nodeId=a port=7001 [LoadSimulator catalog keys, same on every node]
+ */
+public class BookingNode {
+
+    private final String nodeId;
+    private final int port;
+    private final TheatreController theatreController;
+    private final CustomerController customerController;
+    private final BookingController bookingController;
+
+    // City of every show in the catalog
+    private final Map<Integer, City> showCities = new HashMap<>();
+
+    // Cities whose bookings this node serves (guarded by ownershipLock)
+    private final Set<City> ownedCities = EnumSet.noneOf(City.class);
+
+    // Requests hold the read lock, so a city is never handed over in the middle of a booking
+    private final ReadWriteLock ownershipLock = new ReentrantReadWriteLock();
+
+    private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger connectionCount = new AtomicInteger();
+    private ServerSocket serverSocket;
+    private volatile boolean running;
+
+    public BookingNode(String nodeId, int port, TheatreController theatreController,
+                       CustomerController customerController, BookingController bookingController) {
+        this.nodeId = nodeId;
+        this.port = port;
+        this.theatreController = theatreController;
+        this.customerController = customerController;
+        this.bookingController = bookingController;
+
+        CatalogSnapshot snapshot = theatreController.getCatalog().getSnapshot();
+        for (City city : snapshot.getTheatresByCity().keySet()) {
+            for (Show show : snapshot.getShows(city)) {
+                showCities.put(show.getShowId(), city);
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> config = new LinkedHashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator <= 0) {
+                throw new RuntimeException("Expected key=value but got: " + arg);
+            }
+            config.put(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+        config.putIfAbsent("cities", "4");
+        config.putIfAbsent("theatresPerCity", "3");
+        config.putIfAbsent("users", "100");
+
+        LoadSimulator demo = new LoadSimulator(config);
+        demo.buildCatalog();
+        demo.registerUsers();
+
+        BookingNode node = new BookingNode(config.getOrDefault("nodeId", "node"),
+                Integer.parseInt(config.getOrDefault("port", "7001")), demo.getTheatreController(),
+                demo.getCustomerController(), demo.getBookingController());
+        node.start();
+        System.out.println("Node " + node.getNodeId() + " listening on port " + node.getPort());
+    }
+
+    /**
+     * Listen on the loopback address; one thread per connection
+     */
+    public void start() throws IOException {
+        serverSocket = new ServerSocket(port, 128, InetAddress.getLoopbackAddress());
+        running = true;
+        Thread acceptor = new Thread(this::acceptLoop, "booking-node-" + nodeId);
+        acceptor.start();
+    }
+
+    public void stop() {
+        running = false;
+        try {
+            serverSocket.close();
+        } catch (IOException ignored) {
+            // Closing anyway
+        }
+        for (Socket socket : connections) {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // Closing anyway
+            }
+        }
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Port the node is listening on
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Cities this node currently serves
+     */
+    public Set<City> getOwnedCities() {
+        ownershipLock.readLock().lock();
+        try {
+            return EnumSet.copyOf(ownedCities);
+        } finally {
+            ownershipLock.readLock().unlock();
+        }
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                connections.add(socket);
+                Thread thread = new Thread(() -> serve(socket),
+                        "booking-node-" + nodeId + "-conn-" + connectionCount.incrementAndGet());
+                thread.setDaemon(true);
+                thread.start();
+            } catch (IOException e) {
+                if (running) {
+                    System.err.println("Node " + nodeId + " failed to accept: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (socket;
+             BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                     StandardCharsets.UTF_8));
+             Writer writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(),
+                     StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split(" ");
+                String response;
+                try {
+                    response = parts[0] + " OK " + execute(parts, reader);
+                } catch (ApiException e) {
+                    response = parts[0] + " ERR " + e.getStatus() + " " + e.getMessage();
+                } catch (RuntimeException e) {
+                    // Controllers reject bookings (seats taken, show cancelled) with RuntimeException
+                    response = parts[0] + " ERR 409 " + e.getMessage();
+                }
+                writer.write(response);
+                writer.write('\n');
+                // Answers to pipelined requests go out together
+                if (!reader.ready()) {
+                    writer.flush();
+                }
+            }
+        } catch (IOException e) {
+            // Client went away
+        } finally {
+            connections.remove(socket);
+        }
+    }
+
+    /**
+     * Run one request and return its answer (without the request ID and OK)
+     */
+    private String execute(String[] parts, BufferedReader reader) throws IOException {
+        if (parts.length < 2) {
+            throw new ApiException(400, "Expected: <requestId> <command> [arguments]");
+        }
+        String command = parts[1];
+        if (command.equals("PING")) {
+            return nodeId;
+        }
+        if (command.equals("BOOK")) {
+            requireArguments(parts, 3);
+            return book(parts[2], parseInt(parts[3]), parseSeats(parts[4]));
+        }
+        if (command.equals("CANCEL")) {
+            requireArguments(parts, 1);
+            return cancel(parts[2]);
+        }
+        if (command.equals("GET")) {
+            requireArguments(parts, 1);
+            return encodeBooking(findBooking(parts[2]));
+        }
+        if (command.equals("OWNED")) {
+            StringBuilder cities = new StringBuilder();
+            for (City city : getOwnedCities()) {
+                cities.append(cities.length() > 0 ? "," : "").append(city.name());
+            }
+            return cities.toString();
+        }
+        if (command.equals("RELEASE")) {
+            requireArguments(parts, 1);
+            return release(parseCity(parts[2]));
+        }
+        if (command.equals("ACQUIRE")) {
+            requireArguments(parts, 2);
+            int count = parseInt(parts[3]);
+            List<String> bookings = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                String line = reader.readLine();
+                if (line == null) {
+                    throw new IOException("Connection closed during ACQUIRE");
+                }
+                bookings.add(line);
+            }
+            return acquire(parseCity(parts[2]), bookings);
+        }
+        throw new ApiException(400, "Unknown command: " + command);
+    }
+
+    private String book(String customerId, int showId, List<Integer> seatNumbers) {
+        ownershipLock.readLock().lock();
+        try {
+            Show show = findOwnedShow(showId);
+            Customer customer = customerController.getCustomerById(customerId);
+            if (customer == null) {
+                throw new ApiException(404, "Customer not found: " + customerId);
+            }
+            Booking booking = bookingController.createBooking(customer, show, seatNumbers);
+            return booking.getBookingId() + " " + booking.getTotalAmountPaise();
+        } finally {
+            ownershipLock.readLock().unlock();
+        }
+    }
+
+    private String cancel(String bookingId) {
+        ownershipLock.readLock().lock();
+        try {
+            Booking booking = bookingController.getBooking(bookingId);
+            if (booking == null) {
+                // Same answer as BookingController for unknown or already cancelled bookings
+                return "false";
+            }
+            findOwnedShow(booking.getShow().getShowId());
+            return String.valueOf(bookingController.cancelBooking(bookingId));
+        } finally {
+            ownershipLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Stop serving a city and hand back its live bookings and their payments, freeing their seats here
+     */
+    private String release(City city) {
+        ownershipLock.writeLock().lock();
+        try {
+            if (!ownedCities.remove(city)) {
+                throw new ApiException(421, "City not owned by " + nodeId + ": " + city);
+            }
+            StringBuilder response = new StringBuilder();
+            int count = 0;
+            for (Show show : theatreController.getCatalog().getSnapshot().getShows(city)) {
+                for (Booking booking : bookingController.detachBookings(show.getShowId())) {
+                    response.append('\n').append(encodeBooking(booking, detachPayment(booking)));
+                    count++;
+                }
+            }
+            return count + response.toString();
+        } finally {
+            ownershipLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Take a released booking's current payment off this node, so it moves with the booking
+     */
+    private Payment detachPayment(Booking booking) {
+        PaymentController paymentController = bookingController.getPaymentController();
+        if (paymentController == null) {
+            return booking.getPayment();
+        }
+        Payment payment = paymentController.detachPayment(booking.getBookingId(),
+                booking.getCustomer() != null ? booking.getCustomer().getCustomerId() : null);
+        return payment != null ? payment : booking.getPayment();
+    }
+
+    /**
+     * Start serving a city, taking over the bookings and payments another node released. Every
+     * line is checked before any booking is attached.
+     */
+    private String acquire(City city, List<String> bookings) {
+        ownershipLock.writeLock().lock();
+        try {
+            if (ownedCities.contains(city)) {
+                throw new ApiException(409, "City already owned by " + nodeId + ": " + city);
+            }
+            PaymentController paymentController = bookingController.getPaymentController();
+            List<String[]> parsed = new ArrayList<>(bookings.size());
+            List<Payment> payments = new ArrayList<>(bookings.size());
+            for (String line : bookings) {
+                String[] fields = line.split(" ");
+                if (fields.length != 7) {
+                    throw new ApiException(400, "Malformed booking: " + line);
+                }
+                if (customerController.getCustomerById(fields[1]) == null
+                        || theatreController.getShowById(parseInt(fields[2])) == null) {
+                    throw new ApiException(404, "Unknown customer or show in booking: " + line);
+                }
+                Payment payment = parsePayment(fields[6]);
+                // Payment IDs are given out per node; one already used here cannot be taken over
+                if (payment != null && paymentController != null
+                        && paymentController.paymentExists(payment.getPaymentId())) {
+                    throw new ApiException(409, "Payment ID already in use on " + nodeId + ": "
+                            + payment.getPaymentId());
+                }
+                parsed.add(fields);
+                payments.add(payment);
+            }
+
+            for (int i = 0; i < parsed.size(); i++) {
+                String[] fields = parsed.get(i);
+                Customer customer = customerController.getCustomerById(fields[1]);
+                Show show = theatreController.getShowById(parseInt(fields[2]));
+                bookingController.attachBooking(fields[0], customer, show, parseSeats(fields[4]),
+                        Long.parseLong(fields[3]), Long.parseLong(fields[5]));
+                Payment payment = payments.get(i);
+                if (payment != null) {
+                    if (paymentController != null) {
+                        payment = paymentController.restorePayment(payment, fields[0], fields[1]);
+                    }
+                    bookingController.attachPayment(fields[0], payment);
+                }
+            }
+            ownedCities.add(city);
+            return String.valueOf(bookings.size());
+        } finally {
+            ownershipLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Show with the given ID, if this node serves its city (assumes ownershipLock is held)
+     */
+    private Show findOwnedShow(int showId) {
+        City city = showCities.get(showId);
+        Show show = theatreController.getShowById(showId);
+        if (city == null || show == null) {
+            throw new ApiException(404, "Show not found: " + showId);
+        }
+        if (!ownedCities.contains(city)) {
+            throw new ApiException(421, "City not owned by " + nodeId + ": " + city);
+        }
+        return show;
+    }
+
+    private Booking findBooking(String bookingId) {
+        Booking booking = bookingController.getBooking(bookingId);
+        if (booking == null) {
+            throw new ApiException(404, "Booking not found: " + bookingId);
+        }
+        return booking;
+    }
+
+    static String encodeBooking(Booking booking) {
+        return encodeBooking(booking, booking.getPayment());
+    }
+
+    static String encodeBooking(Booking booking, Payment payment) {
+        StringBuilder line = new StringBuilder();
+        line.append(booking.getBookingId()).append(' ')
+                .append(booking.getCustomer().getCustomerId()).append(' ')
+                .append(booking.getShow().getShowId()).append(' ')
+                .append(booking.getTotalAmountPaise()).append(' ');
+        List<Seat> seats = booking.getBookedSeats();
+        for (int i = 0; i < seats.size(); i++) {
+            line.append(i > 0 ? "," : "").append(seats.get(i).getSeatNumber());
+        }
+        line.append(' ').append(booking.getBookedAtMillis()).append(' ');
+        if (payment == null) {
+            line.append('-');
+        } else {
+            line.append(payment.getPaymentId()).append(':')
+                    .append(payment.getPaymentMode()).append(':')
+                    .append(payment.getAmountPaise()).append(':')
+                    .append(payment.getPaymentStatus()).append(':')
+                    .append(payment.isSettled()).append(':')
+                    .append(payment.getPaymentDate() != null ? payment.getPaymentDate().getTime() : 0);
+        }
+        return line.toString();
+    }
+
+    /**
+     * Payment of a <booking> line, or null for "-"
+     */
+    static Payment parsePayment(String field) {
+        if (field.equals("-")) {
+            return null;
+        }
+        String[] parts = field.split(":");
+        if (parts.length != 6) {
+            throw new ApiException(400, "Malformed payment: " + field);
+        }
+        Payment payment = new Payment();
+        try {
+            payment.setPaymentId(parseInt(parts[0]));
+            payment.setPaymentMode(PaymentMode.valueOf(parts[1]));
+            payment.setAmountPaise(Long.parseLong(parts[2]));
+            payment.setPaymentStatus(PaymentStatus.valueOf(parts[3]));
+            payment.setSettled(Boolean.parseBoolean(parts[4]));
+            payment.setPaymentDate(new Date(Long.parseLong(parts[5])));
+        } catch (IllegalArgumentException e) {
+            throw new ApiException(400, "Malformed payment: " + field);
+        }
+        payment.setPaid(payment.getPaymentStatus() == PaymentStatus.SUCCESS);
+        return payment;
+    }
+
+    static List<Integer> parseSeats(String seats) {
+        List<Integer> seatNumbers = new ArrayList<>();
+        for (String seat : seats.split(",")) {
+            seatNumbers.add(parseInt(seat));
+        }
+        return seatNumbers;
+    }
+
+    private static City parseCity(String name) {
+        try {
+            return City.valueOf(name);
+        } catch (IllegalArgumentException e) {
+            throw new ApiException(400, "Unknown city: " + name);
+        }
+    }
+
+    private static int parseInt(String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new ApiException(400, "Not a number: " + value);
+        }
+    }
+
+    private static void requireArguments(String[] parts, int count) {
+        if (parts.length != count + 2) {
+            throw new ApiException(400, parts[1] + " takes " + count + " argument(s)");
+        }
+    }
+}
@@ -0,0 +1,29 @@
+import java.util.List;
+
+/**
+ * One page of a customer's bookings, latest booking first
+ */
+public class BookingPage {
+
+    private final List<Booking> bookings;
+
+    // Cursor for the next page, or null if this is the last page
+    private final String nextCursor;
+
+    public BookingPage(List<Booking> bookings, String nextCursor) {
+        this.bookings = bookings;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<Booking> getBookings() {
+        return bookings;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public boolean hasMore() {
+        return nextCursor != null;
+    }
+}
@@ -0,0 +1,122 @@
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.UnaryOperator;
+
+/**
+ * Holder for the current CatalogSnapshot. Readers get a consistent catalog with a
+ * single volatile read; writers serialize on the write lock and publish a new
+ * snapshot atomically, once per write or once per batch.
+ */
+public class Catalog {
+
+    // Currently published snapshot
+    private volatile CatalogSnapshot current = CatalogSnapshot.EMPTY;
+
+    // Lock shared by every controller that edits this catalog
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    // Snapshot being built by the current batch (guarded by writeLock)
+    private CatalogSnapshot pending;
+
+    // Nesting depth of batch() calls (guarded by writeLock)
+    private int batchDepth;
+
+    // Writers' flushes to run once when the current batch ends (guarded by writeLock)
+    private final Set<Runnable> deferredFlushes = new LinkedHashSet<>();
+
+    /**
+     * Get the currently published snapshot (lock-free)
+     */
+    public CatalogSnapshot getSnapshot() {
+        return current;
+    }
+
+    /**
+     * Lock that catalog writers must hold while mutating their own state
+     */
+    public Lock getWriteLock() {
+        return writeLock;
+    }
+
+    /**
+     * Apply a change to the catalog; it is published immediately unless a batch is open
+     */
+    public void update(UnaryOperator<CatalogSnapshot> change) {
+        writeLock.lock();
+        try {
+            pending = change.apply(pending != null ? pending : current);
+            if (batchDepth == 0) {
+                publishUnsafe();
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Run a writer's flush (which calls update) now, or once at the end of the current batch
+     * if one is open, so a writer that tracks what it changed rebuilds each part of the
+     * snapshot once per batch instead of once per edit
+     */
+    public void flush(Runnable flush) {
+        writeLock.lock();
+        try {
+            if (batchDepth == 0) {
+                flush.run();
+            } else {
+                deferredFlushes.add(flush);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Run several catalog writes and publish their result as a single new snapshot
+     */
+    public void batch(Runnable writes) {
+        writeLock.lock();
+        try {
+            batchDepth++;
+            try {
+                writes.run();
+            } finally {
+                // Still inside the batch, so the flushes' updates are published together
+                if (batchDepth == 1) {
+                    runDeferredFlushesUnsafe();
+                }
+                batchDepth--;
+            }
+            if (batchDepth == 0 && pending != null) {
+                publishUnsafe();
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Internal method to run the flushes deferred by the batch (assumes write lock is already held)
+     */
+    private void runDeferredFlushesUnsafe() {
+        while (!deferredFlushes.isEmpty()) {
+            List<Runnable> flushes = new ArrayList<>(deferredFlushes);
+            deferredFlushes.clear();
+            for (Runnable flush : flushes) {
+                flush.run();
+            }
+        }
+    }
+
+    /**
+     * Internal method to publish the pending snapshot (assumes write lock is already held)
+     */
+    private void publishUnsafe() {
+        current = pending.withVersion(current.getVersion() + 1);
+        pending = null;
+    }
+}
@@ -0,0 +1,264 @@
+import enums.City;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable, versioned view of the catalog: movies, theatres, screens and shows per city.
+ * A snapshot is never modified after it is published, so readers need no locks.
+ * Each city, and each theatre within it, is kept in its own immutable part; an edit rebuilds
+ * only the parts it touched and shares the rest with the previous snapshot.
+ */
+public final class CatalogSnapshot {
+
+    public static final CatalogSnapshot EMPTY = new CatalogSnapshot(0,
+            Collections.emptyMap(), Collections.emptyMap(), Collections.emptyMap(),
+            Collections.emptyMap(), Collections.emptyMap());
+
+    private final long version;
+
+    // Movies listed in each city, as a list and by movieId
+    private final Map<City, List<Movie>> moviesByCity;
+    private final Map<City, Map<Integer, Movie>> movieIndexByCity;
+
+    // Movies in the catalog but not listed in any city
+    private final Map<Integer, Movie> unlistedMovies;
+
+    private final Map<City, List<Theatre>> theatresByCity;
+    private final Map<City, CityShows> showsByCity;
+
+    private CatalogSnapshot(long version,
+                            Map<City, List<Movie>> moviesByCity, Map<City, Map<Integer, Movie>> movieIndexByCity,
+                            Map<Integer, Movie> unlistedMovies,
+                            Map<City, List<Theatre>> theatresByCity, Map<City, CityShows> showsByCity) {
+        this.version = version;
+        this.moviesByCity = moviesByCity;
+        this.movieIndexByCity = movieIndexByCity;
+        this.unlistedMovies = unlistedMovies;
+        this.theatresByCity = theatresByCity;
+        this.showsByCity = showsByCity;
+    }
+
+    /**
+     * Copy of this snapshot with every movie listing replaced
+     */
+    public CatalogSnapshot withMovies(Map<City, ? extends Map<Integer, Movie>> cityVsMovies,
+                                      Map<Integer, Movie> newUnlistedMovies) {
+        CatalogSnapshot snapshot = new CatalogSnapshot(version, Collections.emptyMap(), Collections.emptyMap(),
+                Map.copyOf(newUnlistedMovies), theatresByCity, showsByCity);
+        for (Map.Entry<City, ? extends Map<Integer, Movie>> entry : cityVsMovies.entrySet()) {
+            snapshot = snapshot.withCityMovies(entry.getKey(), entry.getValue());
+        }
+        return snapshot;
+    }
+
+    /**
+     * Copy of this snapshot with the movie listing of one city replaced
+     */
+    public CatalogSnapshot withCityMovies(City city, Map<Integer, Movie> cityMovies) {
+        Map<City, List<Movie>> newMoviesByCity = new EnumMap<>(City.class);
+        newMoviesByCity.putAll(moviesByCity);
+        Map<City, Map<Integer, Movie>> newMovieIndexByCity = new EnumMap<>(City.class);
+        newMovieIndexByCity.putAll(movieIndexByCity);
+        newMoviesByCity.put(city, List.copyOf(cityMovies.values()));
+        newMovieIndexByCity.put(city, Map.copyOf(cityMovies));
+        return new CatalogSnapshot(version,
+                Collections.unmodifiableMap(newMoviesByCity), Collections.unmodifiableMap(newMovieIndexByCity),
+                unlistedMovies, theatresByCity, showsByCity);
+    }
+
+    /**
+     * Copy of this snapshot with the movies that are not listed in any city replaced
+     */
+    public CatalogSnapshot withUnlistedMovies(Map<Integer, Movie> newUnlistedMovies) {
+        return new CatalogSnapshot(version, moviesByCity, movieIndexByCity, Map.copyOf(newUnlistedMovies),
+                theatresByCity, showsByCity);
+    }
+
+    /**
+     * Copy of this snapshot with the theatres, and their screens and shows, replaced
+     */
+    public CatalogSnapshot withTheatres(Map<City, List<Theatre>> cityVsTheatre) {
+        CatalogSnapshot snapshot = new CatalogSnapshot(version, moviesByCity, movieIndexByCity, unlistedMovies,
+                Collections.emptyMap(), Collections.emptyMap());
+        for (Map.Entry<City, List<Theatre>> entry : cityVsTheatre.entrySet()) {
+            snapshot = snapshot.withCityTheatres(entry.getKey(), entry.getValue(), null);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Copy of this snapshot with one city's theatres replaced. Screens and shows are re-read
+     * from the theatres whose IDs are in changedTheatreIds (null: all of them); the other
+     * theatres keep the screens and shows of this snapshot.
+     */
+    public CatalogSnapshot withCityTheatres(City city, List<Theatre> theatres, Set<Integer> changedTheatreIds) {
+        CityShows previous = showsByCity.get(city);
+        Map<Integer, TheatreShows> theatreShows = new HashMap<>();
+        List<Show> cityShows = new ArrayList<>();
+        for (Theatre theatre : theatres) {
+            TheatreShows shows = null;
+            if (previous != null && changedTheatreIds != null && !changedTheatreIds.contains(theatre.getTheatreId())) {
+                shows = previous.theatres.get(theatre.getTheatreId());
+            }
+            if (shows == null) {
+                shows = new TheatreShows(theatre);
+            }
+            theatreShows.put(theatre.getTheatreId(), shows);
+            cityShows.addAll(shows.shows);
+        }
+
+        Map<City, List<Theatre>> newTheatresByCity = new EnumMap<>(City.class);
+        newTheatresByCity.putAll(theatresByCity);
+        newTheatresByCity.put(city, List.copyOf(theatres));
+        Map<City, CityShows> newShowsByCity = new EnumMap<>(City.class);
+        newShowsByCity.putAll(showsByCity);
+        newShowsByCity.put(city, new CityShows(theatreShows, cityShows));
+        return new CatalogSnapshot(version, moviesByCity, movieIndexByCity, unlistedMovies,
+                Collections.unmodifiableMap(newTheatresByCity), Collections.unmodifiableMap(newShowsByCity));
+    }
+
+    /**
+     * Copy of this snapshot stamped with a new version
+     */
+    CatalogSnapshot withVersion(long newVersion) {
+        return new CatalogSnapshot(newVersion, moviesByCity, movieIndexByCity, unlistedMovies,
+                theatresByCity, showsByCity);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public List<Movie> getMovies(City city) {
+        return moviesByCity.get(city);
+    }
+
+    public Map<City, List<Movie>> getMoviesByCity() {
+        return moviesByCity;
+    }
+
+    public Movie getMovie(int movieId) {
+        for (Map<Integer, Movie> cityMovies : movieIndexByCity.values()) {
+            Movie movie = cityMovies.get(movieId);
+            if (movie != null) {
+                return movie;
+            }
+        }
+        return unlistedMovies.get(movieId);
+    }
+
+    /**
+     * Every movie once, listed ones in city order
+     */
+    public Collection<Movie> getAllMovies() {
+        Map<Integer, Movie> allMovies = new LinkedHashMap<>();
+        for (List<Movie> cityMovies : moviesByCity.values()) {
+            for (Movie movie : cityMovies) {
+                allMovies.putIfAbsent(movie.getMovieId(), movie);
+            }
+        }
+        for (Movie movie : unlistedMovies.values()) {
+            allMovies.putIfAbsent(movie.getMovieId(), movie);
+        }
+        return Collections.unmodifiableCollection(allMovies.values());
+    }
+
+    public List<Theatre> getTheatres(City city) {
+        return theatresByCity.getOrDefault(city, Collections.emptyList());
+    }
+
+    public Map<City, List<Theatre>> getTheatresByCity() {
+        return theatresByCity;
+    }
+
+    public List<Screen> getScreens(Theatre theatre) {
+        TheatreShows shows = findTheatre(theatre.getTheatreId());
+        return shows != null ? shows.screens : Collections.emptyList();
+    }
+
+    public List<Show> getShows(Theatre theatre) {
+        TheatreShows shows = findTheatre(theatre.getTheatreId());
+        return shows != null ? shows.shows : Collections.emptyList();
+    }
+
+    public List<Show> getShows(City city) {
+        CityShows shows = showsByCity.get(city);
+        return shows != null ? shows.shows : Collections.emptyList();
+    }
+
+    public Show getShow(int showId) {
+        for (CityShows shows : showsByCity.values()) {
+            Show show = shows.showsById.get(showId);
+            if (show != null) {
+                return show;
+            }
+        }
+        return null;
+    }
+
+    public ShowTimeIndex getShowTimes(City city) {
+        CityShows shows = showsByCity.get(city);
+        return shows != null ? shows.showTimes : ShowTimeIndex.EMPTY;
+    }
+
+    public ShowTimeIndex getShowTimes(Theatre theatre) {
+        TheatreShows shows = findTheatre(theatre.getTheatreId());
+        return shows != null ? shows.showTimes : ShowTimeIndex.EMPTY;
+    }
+
+    private TheatreShows findTheatre(int theatreId) {
+        for (CityShows shows : showsByCity.values()) {
+            TheatreShows theatreShows = shows.theatres.get(theatreId);
+            if (theatreShows != null) {
+                return theatreShows;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Screens and shows of one theatre, ordered by start time too
+     */
+    private static final class TheatreShows {
+
+        private final List<Screen> screens;
+        private final List<Show> shows;
+        private final ShowTimeIndex showTimes;
+
+        TheatreShows(Theatre theatre) {
+            this.screens = List.copyOf(theatre.getScreens());
+            this.shows = List.copyOf(theatre.getShows());
+            this.showTimes = new ShowTimeIndex(shows);
+        }
+    }
+
+    /**
+     * Theatres and shows of one city
+     */
+    private static final class CityShows {
+
+        private final Map<Integer, TheatreShows> theatres;
+        private final List<Show> shows;
+        private final Map<Integer, Show> showsById;
+        private final ShowTimeIndex showTimes;
+
+        CityShows(Map<Integer, TheatreShows> theatres, List<Show> shows) {
+            this.theatres = Collections.unmodifiableMap(theatres);
+            this.shows = List.copyOf(shows);
+            Map<Integer, Show> byId = new HashMap<>();
+            for (Show show : shows) {
+                byId.put(show.getShowId(), show);
+            }
+            this.showsById = Collections.unmodifiableMap(byId);
+            this.showTimes = new ShowTimeIndex(shows);
+        }
+    }
+}
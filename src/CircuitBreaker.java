@@ -0,0 +1,223 @@
+import enums.CircuitState;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Circuit breaker over a rolling window of the last N calls. It opens when the failure rate or
+ * the slow-call rate in the window crosses its threshold, fails fast while open, and after the
+ * open period lets a few probe calls through (half-open) to decide whether to close again.
+ */
+public class CircuitBreaker {
+
+    private final int windowSize;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final double slowCallRateThreshold;
+    private final long slowCallNanos;
+    private final long openNanos;
+    private final int halfOpenProbes;
+
+    // Rolling window of outcomes (guarded by breakerLock)
+    private final boolean[] failedCalls;
+    private final boolean[] slowCalls;
+    private int windowPosition;
+    private int recordedCalls;
+    private int failureCount;
+    private int slowCount;
+
+    private CircuitState state = CircuitState.CLOSED;
+    // Bumped on every state change, so a permission can tell whether its state is still current
+    private long generation;
+    private long openedAtNanos;
+    private int probesInFlight;
+    private int probeSuccesses;
+
+    private final Lock breakerLock = new ReentrantLock();
+
+    /**
+     * @param windowSize            number of recent calls the rates are computed over
+     * @param minimumCalls          calls needed in the window before the breaker can open
+     * @param failureRateThreshold  failure rate (0.0 to 1.0) that opens the breaker
+     * @param slowCallRateThreshold slow-call rate (0.0 to 1.0) that opens the breaker
+     * @param slowCallMillis        calls slower than this count as slow
+     * @param openMillis            how long the breaker stays open before probing
+     * @param halfOpenProbes        successful probes needed to close again
+     */
+    public CircuitBreaker(int windowSize, int minimumCalls, double failureRateThreshold,
+                          double slowCallRateThreshold, long slowCallMillis, long openMillis, int halfOpenProbes) {
+        if (windowSize <= 0 || minimumCalls <= 0 || minimumCalls > windowSize || halfOpenProbes <= 0) {
+            throw new RuntimeException("Invalid circuit breaker configuration");
+        }
+        this.windowSize = windowSize;
+        this.minimumCalls = minimumCalls;
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.slowCallNanos = slowCallMillis * 1_000_000L;
+        this.openNanos = openMillis * 1_000_000L;
+        this.halfOpenProbes = halfOpenProbes;
+        this.failedCalls = new boolean[windowSize];
+        this.slowCalls = new boolean[windowSize];
+    }
+
+    /**
+     * Permission to make one call, tagged with the state and generation it was granted under
+     */
+    public static final class Permission {
+
+        private final long generation;
+        private final boolean probe;
+
+        private Permission(long generation, boolean probe) {
+            this.generation = generation;
+            this.probe = probe;
+        }
+
+        /**
+         * Whether this call is one of the half-open probes
+         */
+        public boolean isProbe() {
+            return probe;
+        }
+    }
+
+    /**
+     * Ask to make a call; returns null if it must fail fast. Every granted permission must be
+     * passed to exactly one onResult or releasePermission.
+     */
+    public Permission tryAcquirePermission() {
+        breakerLock.lock();
+        try {
+            if (state == CircuitState.OPEN) {
+                if (System.nanoTime() - openedAtNanos < openNanos) {
+                    return null;
+                }
+                changeStateUnsafe(CircuitState.HALF_OPEN);
+            }
+            if (state == CircuitState.HALF_OPEN) {
+                if (probesInFlight >= halfOpenProbes) {
+                    return null;
+                }
+                probesInFlight++;
+                return new Permission(generation, true);
+            }
+            return new Permission(generation, false);
+        } finally {
+            breakerLock.unlock();
+        }
+    }
+
+    /**
+     * Give back a permission whose call never reached the backend, without recording an outcome
+     */
+    public void releasePermission(Permission permission) {
+        breakerLock.lock();
+        try {
+            if (isCurrentProbeUnsafe(permission)) {
+                probesInFlight = Math.max(0, probesInFlight - 1);
+            }
+        } finally {
+            breakerLock.unlock();
+        }
+    }
+
+    /**
+     * Record the outcome of a permitted call. Outcomes of calls granted under an earlier state
+     * (e.g. a call admitted while closed that finishes after the breaker opened) are ignored.
+     */
+    public void onResult(Permission permission, boolean success, long latencyNanos) {
+        boolean slow = latencyNanos > slowCallNanos;
+        breakerLock.lock();
+        try {
+            if (permission.generation != generation) {
+                return;
+            }
+            if (isCurrentProbeUnsafe(permission)) {
+                probesInFlight = Math.max(0, probesInFlight - 1);
+                if (!success || slow) {
+                    openUnsafe();
+                } else if (++probeSuccesses >= halfOpenProbes) {
+                    changeStateUnsafe(CircuitState.CLOSED);
+                }
+                return;
+            }
+            if (state != CircuitState.CLOSED) {
+                return;
+            }
+
+            recordUnsafe(!success, slow);
+            if (recordedCalls >= minimumCalls
+                    && ((double) failureCount / recordedCalls >= failureRateThreshold
+                    || (double) slowCount / recordedCalls >= slowCallRateThreshold)) {
+                openUnsafe();
+            }
+        } finally {
+            breakerLock.unlock();
+        }
+    }
+
+    public CircuitState getState() {
+        breakerLock.lock();
+        try {
+            if (state == CircuitState.OPEN && System.nanoTime() - openedAtNanos >= openNanos) {
+                return CircuitState.HALF_OPEN;
+            }
+            return state;
+        } finally {
+            breakerLock.unlock();
+        }
+    }
+
+    /**
+     * Internal method to add an outcome to the window (assumes lock is already held)
+     */
+    private void recordUnsafe(boolean failed, boolean slow) {
+        if (recordedCalls == windowSize) {
+            // Overwrite the oldest outcome
+            if (failedCalls[windowPosition]) {
+                failureCount--;
+            }
+            if (slowCalls[windowPosition]) {
+                slowCount--;
+            }
+        } else {
+            recordedCalls++;
+        }
+        failedCalls[windowPosition] = failed;
+        slowCalls[windowPosition] = slow;
+        if (failed) {
+            failureCount++;
+        }
+        if (slow) {
+            slowCount++;
+        }
+        windowPosition = (windowPosition + 1) % windowSize;
+    }
+
+    /**
+     * Internal method to check for a probe of the current half-open period (assumes lock is already held)
+     */
+    private boolean isCurrentProbeUnsafe(Permission permission) {
+        return permission.probe && permission.generation == generation && state == CircuitState.HALF_OPEN;
+    }
+
+    private void openUnsafe() {
+        changeStateUnsafe(CircuitState.OPEN);
+        openedAtNanos = System.nanoTime();
+    }
+
+    private void changeStateUnsafe(CircuitState newState) {
+        state = newState;
+        generation++;
+        resetWindowUnsafe();
+    }
+
+    private void resetWindowUnsafe() {
+        windowPosition = 0;
+        recordedCalls = 0;
+        failureCount = 0;
+        slowCount = 0;
+        probesInFlight = 0;
+        probeSuccesses = 0;
+    }
+}
@@ -0,0 +1,130 @@
+import enums.City;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Immutable consistent-hash ring assigning cities to booking nodes. Each node is placed on the
+ * ring at virtualNodes points; a city belongs to the first node point at or after its own hash.
+ * Adding a node therefore moves only the cities that land on its points, about 1/n of them,
+ * and removing one moves only its own cities.
+ */
+public final class ConsistentHashRing {
+
+    // Points per node; more points spread cities more evenly
+    private static final int DEFAULT_VIRTUAL_NODES = 64;
+
+    private final int virtualNodes;
+    private final NavigableMap<Long, String> points;
+    private final List<String> nodes;
+
+    private ConsistentHashRing(int virtualNodes, NavigableMap<Long, String> points, List<String> nodes) {
+        this.virtualNodes = virtualNodes;
+        this.points = points;
+        this.nodes = nodes;
+    }
+
+    public static ConsistentHashRing empty() {
+        return empty(DEFAULT_VIRTUAL_NODES);
+    }
+
+    public static ConsistentHashRing empty(int virtualNodes) {
+        if (virtualNodes < 1) {
+            throw new RuntimeException("A node needs at least one point on the ring");
+        }
+        return new ConsistentHashRing(virtualNodes, Collections.emptyNavigableMap(), List.of());
+    }
+
+    /**
+     * A ring with one more node
+     */
+    public ConsistentHashRing withNode(String nodeId) {
+        if (nodes.contains(nodeId)) {
+            throw new RuntimeException("Node already on the ring: " + nodeId);
+        }
+        List<String> newNodes = new ArrayList<>(nodes);
+        newNodes.add(nodeId);
+        return build(newNodes);
+    }
+
+    /**
+     * A ring without the given node
+     */
+    public ConsistentHashRing withoutNode(String nodeId) {
+        if (!nodes.contains(nodeId)) {
+            throw new RuntimeException("Node not on the ring: " + nodeId);
+        }
+        List<String> newNodes = new ArrayList<>(nodes);
+        newNodes.remove(nodeId);
+        return build(newNodes);
+    }
+
+    private ConsistentHashRing build(List<String> newNodes) {
+        TreeMap<Long, String> newPoints = new TreeMap<>();
+        for (String node : newNodes) {
+            for (int i = 0; i < virtualNodes; i++) {
+                // On the rare hash collision the smaller node ID wins, so every ring agrees
+                newPoints.merge(hash(node + "#" + i), node, (a, b) -> a.compareTo(b) <= 0 ? a : b);
+            }
+        }
+        return new ConsistentHashRing(virtualNodes, Collections.unmodifiableNavigableMap(newPoints),
+                List.copyOf(newNodes));
+    }
+
+    /**
+     * Node that owns a city
+     */
+    public String ownerOf(City city) {
+        if (points.isEmpty()) {
+            throw new RuntimeException("No nodes on the ring");
+        }
+        Map.Entry<Long, String> point = points.ceilingEntry(hash(city.name()));
+        return point != null ? point.getValue() : points.firstEntry().getValue();
+    }
+
+    /**
+     * Owner of every city
+     */
+    public Map<City, String> assignments() {
+        Map<City, String> owners = new EnumMap<>(City.class);
+        for (City city : City.values()) {
+            owners.put(city, ownerOf(city));
+        }
+        return owners;
+    }
+
+    /**
+     * Node IDs in the order they joined
+     */
+    public List<String> getNodes() {
+        return nodes;
+    }
+
+    public boolean isEmpty() {
+        return nodes.isEmpty();
+    }
+
+    /**
+     * 64-bit FNV-1a of the UTF-8 key, finished with MurmurHash3's mixer so that similar keys
+     * ("node#1", "node#2") spread across the ring
+     */
+    static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xFF;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
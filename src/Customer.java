@@ -8,12 +8,19 @@ public class Customer {
     String address;
     String password;
 
+    /**
+     * Get the customer's bookings in memory, latest booking first (a copy)
+     */
     public List<Booking> getBookingList() {
-        return bookingList;
+        return bookingHistory.getBookings();
     }
 
     public void setBookingList(List<Booking> bookingList) {
-        this.bookingList = bookingList;
+        bookingHistory.setBookings(bookingList != null ? bookingList : List.of());
+    }
+
+    public BookingHistory getBookingHistory() {
+        return bookingHistory;
     }
 
     public String getPassword() {
@@ -64,7 +71,8 @@ public class Customer {
         this.customerName = customerName;
     }
 
-    List<Booking> bookingList;
+    // Bookings indexed by ID and ordered by booking time
+    final BookingHistory bookingHistory;
 
 
     public Customer(String customerName, String customerEmail, String customerId, String phoneNumber, String address, String password) {
@@ -74,5 +82,6 @@ public class Customer {
         this.phoneNumber = phoneNumber;
         this.address = address;
         this.password = password;
+        this.bookingHistory = new BookingHistory(customerId);
     }
 }
@@ -2,12 +2,16 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.Lock;
 import java.util.regex.Pattern;
 
 public class CustomerController {
 
+    // Latency metrics of the customer operations
+    private static final int REGISTER_CUSTOMER = Metrics.operation("customer.registerCustomer");
+    private static final int LOGIN = Metrics.operation("customer.login");
+    private static final int GET_CUSTOMER = Metrics.operation("customer.getCustomerById");
+
     // Store all customers by customerId
     private Map<String, Customer> customersById;
 
@@ -18,7 +22,7 @@ public class CustomerController {
     private Map<String, Customer> customersByPhone;
 
     // Lock for customer operations
-    private final Lock customerLock = new ReentrantLock();
+    private final Lock customerLock = Metrics.newLock("customerLock");
 
     // Counter for generating customer IDs
     private int customerIdCounter = 1000;
@@ -42,6 +46,7 @@ public class CustomerController {
      */
     public Customer registerCustomer(String customerName, String customerEmail,
                                      String phoneNumber, String address, String password) {
+        long startNanos = System.nanoTime();
         customerLock.lock();
         try {
             // Validate input
@@ -63,7 +68,6 @@ public class CustomerController {
             // Create new customer
             Customer customer = new Customer(customerName, customerEmail, customerId,
                     phoneNumber, address, password);
-            customer.setBookingList(new ArrayList<>());
 
             // Store customer in all maps
             customersById.put(customerId, customer);
@@ -73,6 +77,7 @@ public class CustomerController {
             return customer;
         } finally {
             customerLock.unlock();
+            Metrics.record(REGISTER_CUSTOMER, startNanos);
         }
     }
 
@@ -117,6 +122,7 @@ public class CustomerController {
      * Customer login/authentication
      */
     public Customer login(String customerEmail, String password) {
+        long startNanos = System.nanoTime();
         customerLock.lock();
         try {
             Customer customer = customersByEmail.get(customerEmail.toLowerCase());
@@ -132,6 +138,7 @@ public class CustomerController {
             return customer;
         } finally {
             customerLock.unlock();
+            Metrics.record(LOGIN, startNanos);
         }
     }
 
@@ -139,11 +146,13 @@ public class CustomerController {
      * Get customer by customer ID
      */
     public Customer getCustomerById(String customerId) {
+        long startNanos = System.nanoTime();
         customerLock.lock();
         try {
             return customersById.get(customerId);
         } finally {
             customerLock.unlock();
+            Metrics.record(GET_CUSTOMER, startNanos);
         }
     }
 
@@ -361,7 +370,7 @@ public class CustomerController {
             }
 
             // Check if customer has active bookings
-            if (customer.getBookingList() != null && !customer.getBookingList().isEmpty()) {
+            if (!customer.getBookingHistory().isEmpty()) {
                 throw new RuntimeException("Cannot delete customer with active bookings. Please cancel all bookings first.");
             }
 
@@ -387,13 +396,24 @@ public class CustomerController {
                 return new ArrayList<>();
             }
 
-            return customer.getBookingList() != null ?
-                    new ArrayList<>(customer.getBookingList()) : new ArrayList<>();
+            return customer.getBookingHistory().getBookings();
         } finally {
             customerLock.unlock();
         }
     }
 
+    /**
+     * Get a page of a customer's bookings, latest booking first.
+     * Pass null for the first page and the returned cursor for the next one.
+     */
+    public BookingPage getCustomerBookings(String customerId, String cursor, int limit) {
+        Customer customer = getCustomerById(customerId);
+        if (customer == null) {
+            return new BookingPage(new ArrayList<>(), null);
+        }
+        return customer.getBookingHistory().getPage(cursor, limit);
+    }
+
     /**
      * Get customer booking count
      */
@@ -405,7 +425,7 @@ public class CustomerController {
                 return 0;
             }
 
-            return customer.getBookingList() != null ? customer.getBookingList().size() : 0;
+            return customer.getBookingHistory().size();
         } finally {
             customerLock.unlock();
         }
@@ -486,9 +506,7 @@ public class CustomerController {
         details.append("Email: ").append(customer.getCustomerEmail()).append("\n");
         details.append("Phone: ").append(customer.getPhoneNumber()).append("\n");
         details.append("Address: ").append(customer.getAddress()).append("\n");
-        details.append("Total Bookings: ").append(
-                customer.getBookingList() != null ? customer.getBookingList().size() : 0
-        ).append("\n");
+        details.append("Total Bookings: ").append(customer.getBookingHistory().size()).append("\n");
 
         return details.toString();
     }
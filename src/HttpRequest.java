@@ -0,0 +1,167 @@
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * One HTTP/1.x request, parsed incrementally from a connection's read buffer. parse() returns
+ * null until the whole request (headers and Content-Length body) has arrived, so pipelined
+ * requests are taken off the buffer one at a time.
+ */
+public class HttpRequest {
+
+    // Limits that keep a whole request inside one pooled read buffer
+    static final int MAX_HEADER_BYTES = 8 * 1024;
+    static final int MAX_BODY_BYTES = 8 * 1024;
+
+    private static final byte[] NO_BODY = new byte[0];
+
+    private final String method;
+    private final String path;
+    private final String query;
+    private final boolean keepAlive;
+    private final String ifNoneMatch;
+    private final byte[] body;
+
+    private HttpRequest(String method, String path, String query, boolean keepAlive, String ifNoneMatch, byte[] body) {
+        this.method = method;
+        this.path = path;
+        this.query = query;
+        this.keepAlive = keepAlive;
+        this.ifNoneMatch = ifNoneMatch;
+        this.body = body;
+    }
+
+    /**
+     * Parse the request starting at the buffer's position (buffer in read mode). On success the
+     * position moves past the request; if it is incomplete, returns null and leaves the buffer
+     * untouched. Throws ApiException for requests that can never be served.
+     */
+    static HttpRequest parse(ByteBuffer buffer) {
+        int start = buffer.position();
+        int headerEnd = findHeaderEnd(buffer, start, buffer.limit());
+        if (headerEnd < 0) {
+            if (buffer.limit() - start >= MAX_HEADER_BYTES) {
+                throw new ApiException(431, "Request headers too large");
+            }
+            return null;
+        }
+
+        byte[] headerBytes = new byte[headerEnd - start];
+        buffer.get(start, headerBytes);
+        String[] lines = new String(headerBytes, StandardCharsets.ISO_8859_1).split("\r\n");
+
+        String[] requestLine = lines[0].split(" ");
+        if (requestLine.length != 3 || !requestLine[2].startsWith("HTTP/1.")) {
+            throw new ApiException(400, "Malformed request line");
+        }
+        boolean http11 = requestLine[2].equals("HTTP/1.1");
+        boolean keepAlive = http11;
+        int contentLength = 0;
+        String ifNoneMatch = null;
+
+        for (int i = 1; i < lines.length; i++) {
+            String line = lines[i];
+            int colon = line.indexOf(':');
+            if (colon <= 0) {
+                throw new ApiException(400, "Malformed header");
+            }
+            String name = line.substring(0, colon).trim();
+            String value = line.substring(colon + 1).trim();
+            if (name.equalsIgnoreCase("Content-Length")) {
+                try {
+                    contentLength = Integer.parseInt(value);
+                } catch (NumberFormatException e) {
+                    throw new ApiException(400, "Bad Content-Length");
+                }
+                if (contentLength < 0) {
+                    throw new ApiException(400, "Bad Content-Length");
+                }
+                if (contentLength > MAX_BODY_BYTES) {
+                    throw new ApiException(413, "Request body too large");
+                }
+            } else if (name.equalsIgnoreCase("Transfer-Encoding")) {
+                throw new ApiException(501, "Transfer-Encoding is not supported");
+            } else if (name.equalsIgnoreCase("Connection")) {
+                String lower = value.toLowerCase();
+                if (lower.contains("close")) {
+                    keepAlive = false;
+                } else if (lower.contains("keep-alive")) {
+                    keepAlive = true;
+                }
+            } else if (name.equalsIgnoreCase("If-None-Match")) {
+                ifNoneMatch = value;
+            }
+        }
+
+        int bodyStart = headerEnd + 4;
+        if (buffer.limit() - bodyStart < contentLength) {
+            return null;
+        }
+        byte[] body = NO_BODY;
+        if (contentLength > 0) {
+            body = new byte[contentLength];
+            buffer.get(bodyStart, body);
+        }
+        buffer.position(bodyStart + contentLength);
+
+        String target = requestLine[1];
+        int question = target.indexOf('?');
+        String path = question < 0 ? target : target.substring(0, question);
+        String query = question < 0 ? null : target.substring(question + 1);
+        return new HttpRequest(requestLine[0], path, query, keepAlive, ifNoneMatch, body);
+    }
+
+    /**
+     * Index of the CRLFCRLF ending the headers, or -1 if it has not arrived
+     */
+    private static int findHeaderEnd(ByteBuffer buffer, int from, int to) {
+        int end = Math.min(to, from + MAX_HEADER_BYTES) - 3;
+        for (int i = from; i < end; i++) {
+            if (buffer.get(i) == '\r' && buffer.get(i + 1) == '\n'
+                    && buffer.get(i + 2) == '\r' && buffer.get(i + 3) == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Get a decoded query parameter, or null if it is absent
+     */
+    public String getParameter(String name) {
+        if (query == null) {
+            return null;
+        }
+        for (String pair : query.split("&")) {
+            int equals = pair.indexOf('=');
+            String key = equals < 0 ? pair : pair.substring(0, equals);
+            if (key.equals(name)) {
+                return equals < 0 ? "" : URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Whether the connection stays open after the response (HTTP/1.1 unless "Connection: close")
+     */
+    public boolean isKeepAlive() {
+        return keepAlive;
+    }
+
+    public String getIfNoneMatch() {
+        return ifNoneMatch;
+    }
+
+    public byte[] getBody() {
+        return body;
+    }
+}
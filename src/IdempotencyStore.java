@@ -0,0 +1,113 @@
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Idempotency-key store. The first request for a key runs the action; concurrent and later
+ * duplicates with the same key get the same in-flight future or result until it expires.
+ */
+public class IdempotencyStore<T> {
+
+    // Sweep expired entries once every this many calls
+    private static final int SWEEP_INTERVAL = 1024;
+
+    private final Map<String, Entry<T>> entries = new ConcurrentHashMap<>();
+    private final long ttlNanos;
+    private final AtomicLong calls = new AtomicLong();
+
+    public IdempotencyStore(long ttlMillis) {
+        this.ttlNanos = ttlMillis * 1_000_000L;
+    }
+
+    /**
+     * Run the action once per key and return its result. Duplicate calls wait for and return
+     * the first call's result. Results rejected by keepResult (and failures) are forgotten once
+     * complete, so a later call with the same key tries again.
+     */
+    public T execute(String key, Supplier<T> action, Predicate<T> keepResult) {
+        if (calls.incrementAndGet() % SWEEP_INTERVAL == 0) {
+            evictExpired();
+        }
+
+        long now = System.nanoTime();
+        Entry<T> mine = new Entry<>(now);
+        Entry<T> existing = entries.compute(key, (k, current) ->
+                current == null || current.isExpired(now, ttlNanos) ? mine : current);
+
+        if (existing != mine) {
+            return await(existing.future);
+        }
+
+        try {
+            T result = action.get();
+            mine.future.complete(result);
+            if (!keepResult.test(result)) {
+                entries.remove(key, mine);
+            }
+            return result;
+        } catch (RuntimeException | Error e) {
+            mine.future.completeExceptionally(e);
+            entries.remove(key, mine);
+            throw e;
+        }
+    }
+
+    /**
+     * Get the completed result for a key, or null if there is none
+     */
+    public T getResult(String key) {
+        Entry<T> entry = entries.get(key);
+        if (entry == null || !entry.future.isDone() || entry.future.isCompletedExceptionally()) {
+            return null;
+        }
+        return entry.future.join();
+    }
+
+    /**
+     * Drop expired entries that are no longer in flight
+     */
+    public void evictExpired() {
+        long now = System.nanoTime();
+        Iterator<Entry<T>> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry<T> entry = iterator.next();
+            if (entry.future.isDone() && entry.isExpired(now, ttlNanos)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private static final class Entry<T> {
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        final long createdAtNanos;
+
+        Entry(long createdAtNanos) {
+            this.createdAtNanos = createdAtNanos;
+        }
+
+        boolean isExpired(long now, long ttlNanos) {
+            // In-flight attempts never expire, so a slow gateway call is never duplicated
+            return future.isDone() && now - createdAtNanos > ttlNanos;
+        }
+    }
+}
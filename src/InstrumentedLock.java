@@ -0,0 +1,100 @@
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * ReentrantLock that records how long each acquire waited. An uncontended acquire records zero
+ * and takes only the tryLock fast path; clock reads happen only when the lock is busy.
+ * Created through Metrics.newLock and Metrics.newShowLock.
+ */
+public final class InstrumentedLock implements Lock {
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // Lock-wait metric to record into
+    private final int metricId;
+
+    // Counters of the show this lock guards, or null for other locks
+    private final Metrics.ShowLockCounters showCounters;
+
+    InstrumentedLock(int metricId, Metrics.ShowLockCounters showCounters) {
+        this.metricId = metricId;
+        this.showCounters = showCounters;
+    }
+
+    @Override
+    public void lock() {
+        if (!Metrics.isEnabled()) {
+            lock.lock();
+            return;
+        }
+        if (lock.tryLock()) {
+            acquired(false, 0);
+            return;
+        }
+        long startNanos = System.nanoTime();
+        lock.lock();
+        acquired(true, System.nanoTime() - startNanos);
+    }
+
+    @Override
+    public void lockInterruptibly() throws InterruptedException {
+        if (!Metrics.isEnabled()) {
+            lock.lockInterruptibly();
+            return;
+        }
+        if (lock.tryLock()) {
+            acquired(false, 0);
+            return;
+        }
+        long startNanos = System.nanoTime();
+        lock.lockInterruptibly();
+        acquired(true, System.nanoTime() - startNanos);
+    }
+
+    @Override
+    public boolean tryLock() {
+        if (!lock.tryLock()) {
+            return false;
+        }
+        if (Metrics.isEnabled()) {
+            acquired(false, 0);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+        if (!Metrics.isEnabled()) {
+            return lock.tryLock(time, unit);
+        }
+        if (lock.tryLock()) {
+            acquired(false, 0);
+            return true;
+        }
+        long startNanos = System.nanoTime();
+        if (!lock.tryLock(time, unit)) {
+            return false;
+        }
+        acquired(true, System.nanoTime() - startNanos);
+        return true;
+    }
+
+    @Override
+    public void unlock() {
+        lock.unlock();
+    }
+
+    @Override
+    public Condition newCondition() {
+        return lock.newCondition();
+    }
+
+    private void acquired(boolean contended, long waitNanos) {
+        Metrics.recordValue(metricId, waitNanos);
+        if (showCounters != null) {
+            showCounters.acquired(contended, waitNanos);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal parser for the flat JSON objects the API accepts as request bodies: string, integer,
+ * boolean and null fields, and arrays of those. Nested objects and fractions are rejected with
+ * a 400, since no request needs them.
+ */
+public class JsonReader {
+
+    private final String text;
+    private int pos;
+
+    private JsonReader(String text) {
+        this.text = text;
+    }
+
+    /**
+     * Parse a UTF-8 object into field name -> String, Long, Boolean, null or List of those
+     */
+    public static Map<String, Object> parseObject(byte[] json) {
+        JsonReader reader = new JsonReader(new String(json, StandardCharsets.UTF_8));
+        Map<String, Object> fields = new LinkedHashMap<>();
+        reader.skipSpace();
+        reader.expect('{');
+        reader.skipSpace();
+        if (reader.peek() == '}') {
+            reader.pos++;
+        } else {
+            while (true) {
+                reader.skipSpace();
+                String name = reader.readString();
+                reader.skipSpace();
+                reader.expect(':');
+                fields.put(name, reader.readValue(true));
+                reader.skipSpace();
+                if (reader.peek() == ',') {
+                    reader.pos++;
+                    continue;
+                }
+                reader.expect('}');
+                break;
+            }
+        }
+        reader.skipSpace();
+        if (reader.pos != reader.text.length()) {
+            throw reader.error("Trailing characters");
+        }
+        return fields;
+    }
+
+    private Object readValue(boolean allowArray) {
+        skipSpace();
+        char c = peek();
+        if (c == '"') {
+            return readString();
+        }
+        if (c == '[' && allowArray) {
+            pos++;
+            List<Object> values = new ArrayList<>();
+            skipSpace();
+            if (peek() == ']') {
+                pos++;
+                return values;
+            }
+            while (true) {
+                values.add(readValue(false));
+                skipSpace();
+                if (peek() == ',') {
+                    pos++;
+                    continue;
+                }
+                expect(']');
+                return values;
+            }
+        }
+        if (c == '-' || (c >= '0' && c <= '9')) {
+            int start = pos++;
+            while (pos < text.length() && Character.isDigit(text.charAt(pos))) {
+                pos++;
+            }
+            try {
+                return Long.parseLong(text.substring(start, pos));
+            } catch (NumberFormatException e) {
+                throw error("Bad number");
+            }
+        }
+        if (text.startsWith("true", pos)) {
+            pos += 4;
+            return Boolean.TRUE;
+        }
+        if (text.startsWith("false", pos)) {
+            pos += 5;
+            return Boolean.FALSE;
+        }
+        if (text.startsWith("null", pos)) {
+            pos += 4;
+            return null;
+        }
+        throw error("Unexpected value");
+    }
+
+    private String readString() {
+        expect('"');
+        StringBuilder value = new StringBuilder();
+        while (true) {
+            char c = next();
+            if (c == '"') {
+                return value.toString();
+            }
+            if (c != '\\') {
+                value.append(c);
+                continue;
+            }
+            char escaped = next();
+            if (escaped == '"' || escaped == '\\' || escaped == '/') {
+                value.append(escaped);
+            } else if (escaped == 'n') {
+                value.append('\n');
+            } else if (escaped == 't') {
+                value.append('\t');
+            } else if (escaped == 'r') {
+                value.append('\r');
+            } else if (escaped == 'b') {
+                value.append('\b');
+            } else if (escaped == 'f') {
+                value.append('\f');
+            } else if (escaped == 'u' && pos + 4 <= text.length()) {
+                try {
+                    value.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+                } catch (NumberFormatException e) {
+                    throw error("Bad escape");
+                }
+                pos += 4;
+            } else {
+                throw error("Bad escape");
+            }
+        }
+    }
+
+    private void skipSpace() {
+        while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+            pos++;
+        }
+    }
+
+    private char peek() {
+        if (pos >= text.length()) {
+            throw error("Unexpected end of JSON");
+        }
+        return text.charAt(pos);
+    }
+
+    private char next() {
+        char c = peek();
+        pos++;
+        return c;
+    }
+
+    private void expect(char c) {
+        if (next() != c) {
+            throw error("Expected '" + c + "'");
+        }
+    }
+
+    private ApiException error(String message) {
+        return new ApiException(400, message + " at offset " + pos);
+    }
+}
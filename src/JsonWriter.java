@@ -0,0 +1,226 @@
+import java.nio.ByteBuffer;
+
+/**
+ * Streaming JSON encoder that writes UTF-8 straight into a pooled buffer, with no intermediate
+ * String or StringBuilder. Commas are placed automatically. A response bigger than a pooled
+ * buffer moves to a larger heap buffer. Call finish() to get the bytes and release() once
+ * they have been sent.
+ */
+public class JsonWriter {
+
+    // Maximum nesting depth (one bit of "needs a comma" state per level)
+    private static final int MAX_DEPTH = 63;
+
+    private static final byte[] HEX = "0123456789abcdef".getBytes();
+
+    private final BufferPool pool;
+    private ByteBuffer buffer;
+
+    // Whether the container at each depth already has an element (bit per level)
+    private long hasElement;
+    private int depth;
+
+    // Set after a field name, so the following value gets no comma
+    private boolean afterName;
+
+    public JsonWriter(BufferPool pool) {
+        this.pool = pool;
+        this.buffer = pool.acquire();
+    }
+
+    public JsonWriter beginObject() {
+        beforeValue();
+        put((byte) '{');
+        push();
+        return this;
+    }
+
+    public JsonWriter endObject() {
+        pop();
+        put((byte) '}');
+        return this;
+    }
+
+    public JsonWriter beginArray() {
+        beforeValue();
+        put((byte) '[');
+        push();
+        return this;
+    }
+
+    public JsonWriter endArray() {
+        pop();
+        put((byte) ']');
+        return this;
+    }
+
+    /**
+     * Write a field name; the next call writes its value
+     */
+    public JsonWriter name(String name) {
+        beforeValue();
+        writeString(name);
+        put((byte) ':');
+        afterName = true;
+        return this;
+    }
+
+    public JsonWriter value(String value) {
+        beforeValue();
+        if (value == null) {
+            putAscii("null");
+        } else {
+            writeString(value);
+        }
+        return this;
+    }
+
+    public JsonWriter value(long value) {
+        beforeValue();
+        if (value == Long.MIN_VALUE) {
+            putAscii("-9223372036854775808");
+            return this;
+        }
+        ensure(20);
+        if (value < 0) {
+            buffer.put((byte) '-');
+            value = -value;
+        }
+        // Digits are produced backwards, so write them from the end of the number
+        int digits = 1;
+        for (long rest = value / 10; rest > 0; rest /= 10) {
+            digits++;
+        }
+        int end = buffer.position() + digits;
+        for (int i = end - 1; i >= buffer.position(); i--) {
+            buffer.put(i, (byte) ('0' + value % 10));
+            value /= 10;
+        }
+        buffer.position(end);
+        return this;
+    }
+
+    public JsonWriter value(boolean value) {
+        beforeValue();
+        putAscii(value ? "true" : "false");
+        return this;
+    }
+
+    public JsonWriter field(String name, String value) {
+        return name(name).value(value);
+    }
+
+    public JsonWriter field(String name, long value) {
+        return name(name).value(value);
+    }
+
+    public JsonWriter field(String name, boolean value) {
+        return name(name).value(value);
+    }
+
+    /**
+     * The encoded bytes, ready to read
+     */
+    public ByteBuffer finish() {
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Give the buffer back to the pool; the writer must not be used afterwards
+     */
+    public void release() {
+        pool.release(buffer);
+        buffer = null;
+    }
+
+    private void beforeValue() {
+        if (afterName) {
+            afterName = false;
+            return;
+        }
+        if (depth > 0) {
+            long bit = 1L << depth;
+            if ((hasElement & bit) != 0) {
+                put((byte) ',');
+            } else {
+                hasElement |= bit;
+            }
+        }
+    }
+
+    private void push() {
+        if (depth == MAX_DEPTH) {
+            throw new RuntimeException("JSON nested too deeply");
+        }
+        depth++;
+        hasElement &= ~(1L << depth);
+    }
+
+    private void pop() {
+        depth--;
+    }
+
+    private void writeString(String value) {
+        // Worst case: every char becomes a 6-byte escape
+        ensure(value.length() * 6 + 2);
+        buffer.put((byte) '"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                buffer.put((byte) '\\');
+                buffer.put((byte) c);
+            } else if (c < 0x20) {
+                buffer.put((byte) '\\');
+                buffer.put((byte) 'u');
+                buffer.put((byte) '0');
+                buffer.put((byte) '0');
+                buffer.put(HEX[c >> 4]);
+                buffer.put(HEX[c & 0xF]);
+            } else if (c < 0x80) {
+                buffer.put((byte) c);
+            } else if (c < 0x800) {
+                buffer.put((byte) (0xC0 | (c >> 6)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer.put((byte) (0xF0 | (codePoint >> 18)));
+                buffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+                buffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (codePoint & 0x3F)));
+            } else {
+                buffer.put((byte) (0xE0 | (c >> 12)));
+                buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+        buffer.put((byte) '"');
+    }
+
+    private void putAscii(String text) {
+        ensure(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            buffer.put((byte) text.charAt(i));
+        }
+    }
+
+    private void put(byte b) {
+        ensure(1);
+        buffer.put(b);
+    }
+
+    /**
+     * Make room for n more bytes, moving to a bigger buffer if needed
+     */
+    private void ensure(int n) {
+        if (buffer.remaining() >= n) {
+            return;
+        }
+        ByteBuffer grown = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + n));
+        buffer.flip();
+        grown.put(buffer);
+        pool.release(buffer);
+        buffer = grown;
+    }
+}
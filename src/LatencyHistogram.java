@@ -0,0 +1,150 @@
+import java.util.Arrays;
+
+/**
+ * Fixed-precision latency histogram in the style of HdrHistogram. Buckets are log-linear:
+ * with the default precision, values below 256 are exact and larger values are kept to within
+ * 1/128 (under 1%). Recording is an array increment with no allocation. A histogram is
+ * single-writer: give each thread its own and merge them with add() when reporting.
+ */
+public class LatencyHistogram {
+
+    // Default sub-bucket bits: under 1% error in about 35 KB
+    public static final int DEFAULT_SUB_BUCKET_BITS = 8;
+
+    // Largest value tracked; larger values are recorded as this (2^40 ns is about 18 minutes)
+    public static final long MAX_TRACKABLE_VALUE = (1L << 40) - 1;
+
+    // Sub-buckets per power of two; sets the precision
+    private final int subBucketBits;
+    private final int subBucketCount;
+    private final int subBucketHalfCount;
+
+    private final long[] counts;
+    private long totalCount;
+    private long minValue = Long.MAX_VALUE;
+    private long maxValue;
+    private double sum;
+
+    public LatencyHistogram() {
+        this(DEFAULT_SUB_BUCKET_BITS);
+    }
+
+    /**
+     * Histogram keeping values to within 1 / 2^(subBucketBits - 1); fewer bits trade precision
+     * for memory (5 bits: about 3% error in under 5 KB)
+     */
+    public LatencyHistogram(int subBucketBits) {
+        if (subBucketBits < 2 || subBucketBits > 16) {
+            throw new RuntimeException("Sub-bucket bits must be between 2 and 16");
+        }
+        this.subBucketBits = subBucketBits;
+        this.subBucketCount = 1 << subBucketBits;
+        this.subBucketHalfCount = subBucketCount / 2;
+        this.counts = new long[indexOf(MAX_TRACKABLE_VALUE) + 1];
+    }
+
+    /**
+     * Record one value (e.g. a latency in nanoseconds); negative values count as zero
+     */
+    public void recordValue(long value) {
+        long clamped = value < 0 ? 0 : Math.min(value, MAX_TRACKABLE_VALUE);
+        counts[indexOf(clamped)]++;
+        totalCount++;
+        sum += clamped;
+        if (clamped < minValue) {
+            minValue = clamped;
+        }
+        if (clamped > maxValue) {
+            maxValue = clamped;
+        }
+    }
+
+    /**
+     * Add every value recorded in another histogram (of the same precision) to this one
+     */
+    public void add(LatencyHistogram other) {
+        if (other.subBucketBits != subBucketBits) {
+            throw new RuntimeException("Cannot add histograms of different precision");
+        }
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        totalCount += other.totalCount;
+        sum += other.sum;
+        minValue = Math.min(minValue, other.minValue);
+        maxValue = Math.max(maxValue, other.maxValue);
+    }
+
+    /**
+     * Copy of this histogram
+     */
+    public LatencyHistogram copy() {
+        LatencyHistogram copy = new LatencyHistogram(subBucketBits);
+        copy.add(this);
+        return copy;
+    }
+
+    public void reset() {
+        Arrays.fill(counts, 0);
+        totalCount = 0;
+        sum = 0;
+        minValue = Long.MAX_VALUE;
+        maxValue = 0;
+    }
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    public long getMinValue() {
+        return totalCount == 0 ? 0 : minValue;
+    }
+
+    public long getMaxValue() {
+        return maxValue;
+    }
+
+    public double getMean() {
+        return totalCount == 0 ? 0 : sum / totalCount;
+    }
+
+    /**
+     * Get the value at a percentile (0 to 100); the result is the highest value equivalent to the
+     * bucket the percentile falls in, never more than the maximum recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (totalCount == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(Math.min(percentile, 100.0) / 100.0 * totalCount));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(highestEquivalentValue(i), maxValue);
+            }
+        }
+        return maxValue;
+    }
+
+    /**
+     * Bucket index of a value: exact below subBucketCount, then subBucketHalfCount
+     * buckets per power of two
+     */
+    private int indexOf(long value) {
+        if (value < subBucketCount) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - (subBucketBits - 1);
+        return shift * subBucketHalfCount + (int) (value >>> shift);
+    }
+
+    private long highestEquivalentValue(int index) {
+        if (index < subBucketCount) {
+            return index;
+        }
+        int shift = index / subBucketHalfCount - 1;
+        long subBucket = index - (long) shift * subBucketHalfCount;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
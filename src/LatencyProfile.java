@@ -0,0 +1,70 @@
+import java.util.Random;
+
+/**
+ * Latency distribution for a simulated call: log-normal with the given median (p50) and p99,
+ * plus an optional heavy tail where a small fraction of calls take much longer.
+ */
+public final class LatencyProfile {
+
+    // z-score of the 99th percentile of a standard normal distribution
+    private static final double Z_99 = 2.326;
+
+    private final double p50Millis;
+    private final double p99Millis;
+    private final double sigma;
+    private final double tailProbability;
+    private final double tailMillis;
+
+    private LatencyProfile(double p50Millis, double p99Millis, double tailProbability, double tailMillis) {
+        if (p50Millis < 0 || p99Millis < p50Millis) {
+            throw new RuntimeException("Latency p99 must be at least p50, and p50 must not be negative");
+        }
+        this.p50Millis = p50Millis;
+        this.p99Millis = p99Millis;
+        this.sigma = p50Millis > 0 ? Math.log(p99Millis / p50Millis) / Z_99 : 0;
+        this.tailProbability = tailProbability;
+        this.tailMillis = tailMillis;
+    }
+
+    /**
+     * Every call takes exactly the given time
+     */
+    public static LatencyProfile fixed(double millis) {
+        return new LatencyProfile(millis, millis, 0, 0);
+    }
+
+    /**
+     * Log-normal latency with the given median and 99th percentile
+     */
+    public static LatencyProfile of(double p50Millis, double p99Millis) {
+        return new LatencyProfile(p50Millis, p99Millis, 0, 0);
+    }
+
+    /**
+     * Copy of this profile where the given fraction of calls take tailMillis instead
+     */
+    public LatencyProfile withTail(double probability, double tailMillis) {
+        return new LatencyProfile(p50Millis, p99Millis, probability, tailMillis);
+    }
+
+    /**
+     * Draw a latency in milliseconds
+     */
+    public double sampleMillis(Random random) {
+        if (tailProbability > 0 && random.nextDouble() < tailProbability) {
+            return tailMillis;
+        }
+        if (sigma == 0) {
+            return p50Millis;
+        }
+        return p50Millis * Math.exp(sigma * random.nextGaussian());
+    }
+
+    public double getP50Millis() {
+        return p50Millis;
+    }
+
+    public double getP99Millis() {
+        return p99Millis;
+    }
+}
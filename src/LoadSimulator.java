@@ -0,0 +1,490 @@
+import enums.City;
+import enums.PaymentMode;
+import enums.PaymentStatus;
+import enums.SeatCategory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Closed-loop load generator that simulates a ticket release. It builds a catalog across many
+ * cities and drives a population of users, each on its own thread, through
+ * browse -> seat check -> book -> pay -> (sometimes) cancel, picking shows with Zipf-skewed
+ * popularity. It reports throughput, latency percentiles per step, when shows sold out, and
+ * checks that no seat was sold twice.
+ *
+ * Usage: java LoadSimulator [key=value ...], e.g.
+ *   java LoadSimulator cities=6 users=400 durationSeconds=30 zipf=1.2
+ */
+public class LoadSimulator {
+
+    // Steps of a user session, in order
+    private static final String[] STEPS = {"browse", "seatCheck", "book", "pay", "cancel"};
+    private static final int BROWSE = 0;
+    private static final int SEAT_CHECK = 1;
+    private static final int BOOK = 2;
+    private static final int PAY = 3;
+    private static final int CANCEL = 4;
+
+    private final Map<String, String> config;
+    private final int cities;
+    private final int theatresPerCity;
+    private final int screensPerTheatre;
+    private final int seatsPerScreen;
+    private final int showsPerScreen;
+    private final int users;
+    private final long durationMillis;
+    private final double zipfExponent;
+    private final int maxSeatsPerBooking;
+    private final double cancelRate;
+    private final long thinkTimeMillis;
+
+    private final Catalog catalog = new Catalog();
+    private final MovieController movieController = new MovieController(catalog);
+    private final TheatreController theatreController = new TheatreController(catalog);
+    private final CustomerController customerController = new CustomerController();
+    private final BookingController bookingController = new BookingController();
+    private final PaymentController paymentController = new PaymentController();
+    private final SimulatedPaymentGateway paymentGateway;
+
+    // All shows, most popular first (the Zipf rank is the index)
+    private final List<Show> shows = new ArrayList<>();
+    private final List<City> showCities = new ArrayList<>();
+    private final List<Customer> customers = new ArrayList<>();
+
+    // Counters shared by all users
+    private final AtomicLong sessions = new AtomicLong();
+    private final AtomicLong seatsBooked = new AtomicLong();
+    private final AtomicLong bookingConflicts = new AtomicLong();
+    private final AtomicLong soldOutAttempts = new AtomicLong();
+    private final AtomicLong paymentsSucceeded = new AtomicLong();
+    private final AtomicLong paymentsFailed = new AtomicLong();
+    private final AtomicLong cancellations = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+
+    // showId -> millis from start until the show sold out
+    private final Map<Integer, Long> soldOutAtMillis = new ConcurrentHashMap<>();
+
+    private volatile long startNanos;
+    private volatile long elapsedMillis;
+
+    public LoadSimulator(Map<String, String> config) {
+        this.config = config;
+        this.cities = Math.min(intConfig("cities", 6), City.values().length);
+        this.theatresPerCity = intConfig("theatresPerCity", 10);
+        this.screensPerTheatre = intConfig("screensPerTheatre", 4);
+        this.seatsPerScreen = intConfig("seatsPerScreen", 300);
+        this.showsPerScreen = intConfig("showsPerScreen", 5);
+        this.users = intConfig("users", 200);
+        this.durationMillis = intConfig("durationSeconds", 20) * 1000L;
+        this.zipfExponent = doubleConfig("zipf", 1.1);
+        this.maxSeatsPerBooking = intConfig("maxSeatsPerBooking", 4);
+        this.cancelRate = doubleConfig("cancelRate", 0.05);
+        this.thinkTimeMillis = intConfig("thinkTimeMillis", 0);
+
+        paymentGateway = new SimulatedPaymentGateway(LatencyProfile.of(intConfig("gatewayP50Millis", 2),
+                intConfig("gatewayP99Millis", 20)), doubleConfig("paymentFailureRate", 0.02));
+        paymentController.setPaymentGateway(paymentGateway);
+        bookingController.setPaymentController(paymentController);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        Map<String, String> config = new LinkedHashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator <= 0) {
+                throw new RuntimeException("Expected key=value but got: " + arg);
+            }
+            config.put(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+
+        LoadSimulator simulator = new LoadSimulator(config);
+        simulator.buildCatalog();
+        simulator.registerUsers();
+        LatencyHistogram[] latencies = simulator.run();
+        simulator.report(latencies);
+        simulator.paymentGateway.shutdown();
+    }
+
+    /**
+     * Build movies, theatres, screens and shows in every city, published as one catalog snapshot
+     */
+    public void buildCatalog() {
+        long buildStart = System.nanoTime();
+        SeatCategory[] categories = SeatCategory.values();
+        int[] startTimes = {1000, 1300, 1600, 1900, 2200};
+
+        catalog.batch(() -> {
+            int movieId = 1;
+            int theatreId = 1;
+            int screenId = 1;
+            int showId = 1;
+            for (int c = 0; c < cities; c++) {
+                City city = City.values()[c];
+                List<Movie> cityMovies = new ArrayList<>();
+                for (int m = 0; m < 8; m++) {
+                    Movie movie = new Movie();
+                    movie.setMovieId(movieId);
+                    movie.setTitle("Movie " + movieId);
+                    movie.setGenre(m % 2 == 0 ? "Action" : "Drama");
+                    movie.setLanguage(m % 3 == 0 ? "Hindi" : "English");
+                    movie.setDurationInMinutes(120 + m * 5);
+                    movieController.addMovie(movie, city);
+                    cityMovies.add(movie);
+                    movieId++;
+                }
+
+                for (int t = 0; t < theatresPerCity; t++) {
+                    Theatre theatre = new Theatre();
+                    theatre.setTheatreId(theatreId++);
+                    theatre.setCity(city);
+                    theatre.setAddress("Theatre " + theatre.getTheatreId() + ", " + city);
+                    theatreController.addTheatre(theatre, city);
+
+                    for (int s = 0; s < screensPerTheatre; s++) {
+                        for (int slot = 0; slot < showsPerScreen; slot++) {
+                            // Each show gets its own seats so shows never share seat state
+                            Screen screen = new Screen();
+                            screen.setScreenId(screenId++);
+                            List<Seat> seats = new ArrayList<>(seatsPerScreen);
+                            for (int n = 1; n <= seatsPerScreen; n++) {
+                                Seat seat = new Seat();
+                                seat.setSeatNumber(n);
+                                seat.setAvailable(true);
+                                seat.setSeatCategory(categories[(n - 1) * categories.length / seatsPerScreen]);
+                                seats.add(seat);
+                            }
+                            screen.setSeats(seats);
+                            theatre.getScreens().add(screen);
+
+                            Movie movie = cityMovies.get((t + s + slot) % cityMovies.size());
+                            Show show = new Show(showId++, movie, screen, startTimes[slot % startTimes.length]);
+                            theatre.getShows().add(show);
+                            shows.add(show);
+                            showCities.add(city);
+                        }
+                    }
+                }
+            }
+            theatreController.publish();
+        });
+
+        // Spread popularity over cities and theatres: the Zipf rank follows a fixed shuffle of the shows
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < shows.size(); i++) {
+            order.add(i);
+        }
+        Collections.shuffle(order, new Random(intConfig("seed", 42)));
+        List<Show> rankedShows = new ArrayList<>(shows.size());
+        List<City> rankedCities = new ArrayList<>(shows.size());
+        for (int i : order) {
+            rankedShows.add(shows.get(i));
+            rankedCities.add(showCities.get(i));
+        }
+        shows.clear();
+        shows.addAll(rankedShows);
+        showCities.clear();
+        showCities.addAll(rankedCities);
+
+        System.out.printf("Catalog: %d cities, %d theatres, %d shows, %d seats (built in %d ms)%n",
+                cities, cities * theatresPerCity, shows.size(), (long) shows.size() * seatsPerScreen,
+                (System.nanoTime() - buildStart) / 1_000_000);
+    }
+
+    public void registerUsers() {
+        for (int u = 0; u < users; u++) {
+            customers.add(customerController.registerCustomer("User " + u, "user" + u + "@example.com",
+                    String.format("9%09d", u), "Address " + u, "password" + u));
+        }
+    }
+
+    /**
+     * Run every user until the duration elapses or every seat is sold.
+     * Returns one merged latency histogram (nanoseconds) per step.
+     */
+    public LatencyHistogram[] run() throws InterruptedException {
+        ZipfSampler popularity = new ZipfSampler(shows.size(), zipfExponent);
+        LatencyHistogram[][] perUser = new LatencyHistogram[users][];
+        CountDownLatch done = new CountDownLatch(users);
+        List<Thread> threads = new ArrayList<>(users);
+
+        startNanos = System.nanoTime();
+        long deadline = startNanos + durationMillis * 1_000_000L;
+        for (int u = 0; u < users; u++) {
+            int user = u;
+            perUser[u] = newHistograms();
+            Thread thread = new Thread(() -> {
+                try {
+                    runUser(customers.get(user), popularity, perUser[user], deadline);
+                } finally {
+                    done.countDown();
+                }
+            }, "load-user-" + u);
+            thread.setDaemon(true);
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        done.await();
+        elapsedMillis = (System.nanoTime() - startNanos) / 1_000_000;
+
+        LatencyHistogram[] merged = newHistograms();
+        for (LatencyHistogram[] histograms : perUser) {
+            for (int step = 0; step < STEPS.length; step++) {
+                merged[step].add(histograms[step]);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * One user's closed loop: each session starts as soon as the previous one ends (plus think time)
+     */
+    private void runUser(Customer customer, ZipfSampler popularity, LatencyHistogram[] latencies, long deadline) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        PaymentMode[] paymentModes = PaymentMode.values();
+
+        while (System.nanoTime() < deadline && soldOutAtMillis.size() < shows.size()) {
+            sessions.incrementAndGet();
+            try {
+                int rank = popularity.sample(random);
+                Show show = shows.get(rank);
+                City city = showCities.get(rank);
+
+                // Browse: list the shows of this movie around the show's start time
+                long t0 = System.nanoTime();
+                theatreController.getShowsBetween(city, show.getShowStartTime() - 100, show.getShowStartTime() + 100,
+                        show.getMovie(), null, null);
+                long t1 = System.nanoTime();
+                latencies[BROWSE].recordValue(t1 - t0);
+
+                // Seat check: look at free seats and pick a block of adjacent ones
+                List<Seat> available = bookingController.getAvailableSeats(show);
+                long t2 = System.nanoTime();
+                latencies[SEAT_CHECK].recordValue(t2 - t1);
+                if (available.isEmpty()) {
+                    soldOutAttempts.incrementAndGet();
+                    markSoldOut(show);
+                    continue;
+                }
+                int wanted = 1 + random.nextInt(maxSeatsPerBooking);
+                int first = random.nextInt(available.size());
+                List<Integer> seatNumbers = new ArrayList<>(wanted);
+                for (int i = first; i < available.size() && seatNumbers.size() < wanted; i++) {
+                    seatNumbers.add(available.get(i).getSeatNumber());
+                }
+
+                // Book: other users may have taken the seats since the check
+                Booking booking;
+                long t3 = System.nanoTime();
+                try {
+                    booking = bookingController.createBooking(customer, show, seatNumbers);
+                } catch (RuntimeException e) {
+                    latencies[BOOK].recordValue(System.nanoTime() - t3);
+                    bookingConflicts.incrementAndGet();
+                    continue;
+                }
+                long t4 = System.nanoTime();
+                latencies[BOOK].recordValue(t4 - t3);
+                seatsBooked.addAndGet(seatNumbers.size());
+                if (show.getAvailability().getFreeSeats() == 0) {
+                    markSoldOut(show);
+                }
+
+                // Pay
+                bookingController.confirmBooking(booking.getBookingId(), paymentModes[random.nextInt(paymentModes.length)]);
+                long t5 = System.nanoTime();
+                latencies[PAY].recordValue(t5 - t4);
+                boolean paid = booking.getPayment() != null
+                        && booking.getPayment().getPaymentStatus() == PaymentStatus.SUCCESS;
+                if (paid) {
+                    paymentsSucceeded.incrementAndGet();
+                } else {
+                    paymentsFailed.incrementAndGet();
+                }
+
+                // Cancel: unpaid bookings always release their seats, paid ones sometimes
+                if (!paid || random.nextDouble() < cancelRate) {
+                    if (bookingController.cancelBooking(booking.getBookingId())) {
+                        cancellations.incrementAndGet();
+                        seatsBooked.addAndGet(-seatNumbers.size());
+                    }
+                    latencies[CANCEL].recordValue(System.nanoTime() - t5);
+                }
+            } catch (RuntimeException e) {
+                // e.g. a payment mode failing fast while its circuit is open
+                errors.incrementAndGet();
+            }
+
+            if (thinkTimeMillis > 0) {
+                try {
+                    Thread.sleep(thinkTimeMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void markSoldOut(Show show) {
+        soldOutAtMillis.putIfAbsent(show.getShowId(), (System.nanoTime() - startNanos) / 1_000_000);
+    }
+
+    /**
+     * Print throughput, latency percentiles, sold-out times and the oversell check
+     */
+    public void report(LatencyHistogram[] latencies) {
+        double seconds = elapsedMillis / 1000.0;
+        long completedBookings = latencies[BOOK].getTotalCount() - bookingConflicts.get();
+
+        System.out.printf("%nRan %d users for %.1f s (%d sessions)%n", users, seconds, sessions.get());
+        System.out.printf("Throughput: %.0f sessions/s, %.0f bookings/s, %.0f payments/s%n",
+                sessions.get() / seconds, completedBookings / seconds,
+                (paymentsSucceeded.get() + paymentsFailed.get()) / seconds);
+        System.out.printf("Bookings: %d made, %d seat conflicts, %d sold-out hits; payments: %d ok, %d failed; "
+                        + "%d cancelled; %d errors%n",
+                completedBookings, bookingConflicts.get(), soldOutAttempts.get(), paymentsSucceeded.get(),
+                paymentsFailed.get(), cancellations.get(), errors.get());
+
+        System.out.printf("%nLatency (microseconds)%n%-10s %10s %8s %8s %8s %8s %8s %8s%n",
+                "step", "count", "mean", "p50", "p90", "p99", "p99.9", "max");
+        for (int step = 0; step < STEPS.length; step++) {
+            LatencyHistogram histogram = latencies[step];
+            System.out.printf("%-10s %10d %8.1f %8.1f %8.1f %8.1f %8.1f %8.1f%n", STEPS[step],
+                    histogram.getTotalCount(), histogram.getMean() / 1000.0,
+                    histogram.getValueAtPercentile(50) / 1000.0, histogram.getValueAtPercentile(90) / 1000.0,
+                    histogram.getValueAtPercentile(99) / 1000.0, histogram.getValueAtPercentile(99.9) / 1000.0,
+                    histogram.getMaxValue() / 1000.0);
+        }
+
+        long[] soldOut = soldOutAtMillis.values().stream().mapToLong(Long::longValue).sorted().toArray();
+        System.out.printf("%nSold out: %d of %d shows", soldOut.length, shows.size());
+        if (soldOut.length > 0) {
+            System.out.printf("; first after %d ms, median after %d ms, last after %d ms",
+                    soldOut[0], soldOut[soldOut.length / 2], soldOut[soldOut.length - 1]);
+        }
+        System.out.printf("%nMost popular show: %d of %d seats sold%n",
+                seatsPerScreen - shows.get(0).getAvailability().getFreeSeats(), seatsPerScreen);
+
+        List<String> problems = checkOversell();
+        if (problems.isEmpty()) {
+            System.out.printf("Oversell check: PASS (%d seats held by live bookings)%n", seatsBooked.get());
+        } else {
+            System.out.printf("Oversell check: FAIL (%d problems)%n", problems.size());
+            for (String problem : problems.subList(0, Math.min(10, problems.size()))) {
+                System.out.println("  " + problem);
+            }
+        }
+
+        // Where the time went inside the controllers, including lock waits
+        System.out.println();
+        System.out.print(Metrics.snapshot().toText());
+    }
+
+    /**
+     * Check every show: no seat in two live bookings, booked seats match the show's record and
+     * the published availability, and nothing beyond capacity
+     */
+    private List<String> checkOversell() {
+        List<String> problems = new ArrayList<>();
+        for (Show show : shows) {
+            Set<Integer> seatsInBookings = new HashSet<>();
+            for (Booking booking : bookingController.getShowBookings(show)) {
+                for (Seat seat : booking.getBookedSeats()) {
+                    if (!seatsInBookings.add(seat.getSeatNumber())) {
+                        problems.add("Show " + show.getShowId() + ": seat " + seat.getSeatNumber() + " sold twice");
+                    }
+                }
+            }
+            int capacity = show.getScreen().getSeats().size();
+            if (seatsInBookings.size() > capacity) {
+                problems.add("Show " + show.getShowId() + ": " + seatsInBookings.size() + " seats sold of " + capacity);
+            }
+            if (!seatsInBookings.equals(show.getBookedSeatIds())) {
+                problems.add("Show " + show.getShowId() + ": booked seats do not match live bookings");
+            }
+            if (show.getAvailability().getFreeSeats() != capacity - seatsInBookings.size()) {
+                problems.add("Show " + show.getShowId() + ": availability shows "
+                        + show.getAvailability().getFreeSeats() + " free, expected " + (capacity - seatsInBookings.size()));
+            }
+        }
+        return problems;
+    }
+
+    private static LatencyHistogram[] newHistograms() {
+        LatencyHistogram[] histograms = new LatencyHistogram[STEPS.length];
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+        return histograms;
+    }
+
+    public MovieController getMovieController() {
+        return movieController;
+    }
+
+    public TheatreController getTheatreController() {
+        return theatreController;
+    }
+
+    public CustomerController getCustomerController() {
+        return customerController;
+    }
+
+    public BookingController getBookingController() {
+        return bookingController;
+    }
+
+    public PaymentController getPaymentController() {
+        return paymentController;
+    }
+
+    private int intConfig(String key, int defaultValue) {
+        String value = config.get(key);
+        return value != null ? Integer.parseInt(value) : defaultValue;
+    }
+
+    private double doubleConfig(String key, double defaultValue) {
+        String value = config.get(key);
+        return value != null ? Double.parseDouble(value) : defaultValue;
+    }
+
+    /**
+     * Samples ranks 0..n-1 with probability proportional to 1 / (rank + 1)^exponent,
+     * by binary search over the precomputed cumulative distribution
+     */
+    private static final class ZipfSampler {
+        private final double[] cumulative;
+
+        ZipfSampler(int n, double exponent) {
+            cumulative = new double[n];
+            double total = 0;
+            for (int rank = 0; rank < n; rank++) {
+                total += 1.0 / Math.pow(rank + 1, exponent);
+                cumulative[rank] = total;
+            }
+            for (int rank = 0; rank < n; rank++) {
+                cumulative[rank] /= total;
+            }
+        }
+
+        int sample(ThreadLocalRandom random) {
+            int index = Arrays.binarySearch(cumulative, random.nextDouble());
+            int rank = index >= 0 ? index : -index - 1;
+            return Math.min(rank, cumulative.length - 1);
+        }
+    }
+}
@@ -13,8 +13,9 @@ public class Main {
         System.out.println("=== Ticket Booking System ===\n");
         
         // Initialize controllers
-        MovieController movieController = new MovieController();
-        TheatreController theatreController = new TheatreController();
+        Catalog catalog = new Catalog();
+        MovieController movieController = new MovieController(catalog);
+        TheatreController theatreController = new TheatreController(catalog);
         CustomerController customerController = new CustomerController();
         BookingController bookingController = new BookingController();
         PaymentController paymentController = new PaymentController();
@@ -134,7 +135,7 @@ public class Main {
             Booking booking = bookingController.createBooking(customer, show1, selectedSeats);
             System.out.println("   ✓ Booking created!");
             System.out.println("   Booking ID: " + booking.getBookingId());
-            System.out.println("   Total Amount: ₹" + booking.getTotalAmount());
+            System.out.println("   Total Amount: ₹" + Money.format(booking.getTotalAmountPaise()));
             System.out.println("   Status: " + booking.getStatus() + "\n");
             
             // Demo: Process payment
@@ -165,7 +166,7 @@ public class Main {
             Map<String, Object> stats = paymentController.getCustomerPaymentStats(customer.getCustomerId());
             System.out.println("   Total Payments: " + stats.get("totalPayments"));
             System.out.println("   Successful: " + stats.get("successfulPayments"));
-            System.out.println("   Total Amount: ₹" + stats.get("totalAmount"));
+            System.out.println("   Total Amount: ₹" + Money.format((Long) stats.get("totalAmountPaise")));
             
         } catch (Exception e) {
             System.out.println("   ✗ Error: " + e.getMessage());
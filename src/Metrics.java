@@ -0,0 +1,332 @@
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Process-wide latency and contention metrics for the controllers' hot paths: a histogram per
+ * operation, a lock-wait histogram per lock, and acquisition counters per show lock.
+ *
+ * Every thread records into its own histograms, so recording takes no lock and, once a thread
+ * has seen a metric, allocates nothing. Snapshots merge the threads' histograms while they keep
+ * recording, so a snapshot taken under load may miss the values being recorded at that moment.
+ */
+public final class Metrics {
+
+    // Histogram precision: about 3% error, under 5 KB per metric per thread
+    private static final int SUB_BUCKET_BITS = 5;
+
+    // Recorders kept before dead threads' recorders are folded in without waiting for a snapshot
+    private static final int MIN_PRUNE_THRESHOLD = 256;
+
+    // Whether anything is recorded; instrumented code checks this first
+    private static volatile boolean enabled = true;
+
+    // Metric names by ID, whether each is a lock wait, and IDs by name (guarded by REGISTRY_LOCK)
+    private static final List<String> NAMES = new ArrayList<>();
+    private static final List<Boolean> LOCK_WAITS = new ArrayList<>();
+    private static final Map<String, Integer> IDS_BY_NAME = new LinkedHashMap<>();
+
+    // One recorder per thread that has recorded anything (guarded by REGISTRY_LOCK)
+    private static final List<Recorder> RECORDERS = new ArrayList<>();
+
+    // Values recorded by threads that have ended, by metric ID (guarded by REGISTRY_LOCK)
+    private static final List<LatencyHistogram> RETIRED = new ArrayList<>();
+
+    private static int pruneThreshold = MIN_PRUNE_THRESHOLD;
+
+    private static final Lock REGISTRY_LOCK = new ReentrantLock();
+
+    private static final ThreadLocal<Recorder> RECORDER = ThreadLocal.withInitial(Metrics::newRecorder);
+
+    // Show lock counters by show ID, shared by every controller locking that show
+    private static final Map<Integer, ShowLockCounters> SHOW_COUNTERS = new ConcurrentHashMap<>();
+
+    // Lock-wait metric shared by all show locks
+    private static final int SHOW_LOCK = register("showLock", true);
+
+    // Periodic dump, if started (guarded by REGISTRY_LOCK)
+    private static ScheduledExecutorService dumpScheduler;
+
+    private Metrics() {
+    }
+
+    /**
+     * Register an operation and get the ID to record its latency with
+     * (registering the same name again returns the same ID)
+     */
+    public static int operation(String name) {
+        return register(name, false);
+    }
+
+    /**
+     * Create a lock whose acquire waits are recorded under the given name
+     */
+    public static Lock newLock(String name) {
+        return new InstrumentedLock(register(name, true), null);
+    }
+
+    /**
+     * Create a lock for a show; its waits are recorded under "showLock" and counted per show
+     */
+    public static Lock newShowLock(int showId) {
+        return new InstrumentedLock(SHOW_LOCK, SHOW_COUNTERS.computeIfAbsent(showId, ShowLockCounters::new));
+    }
+
+    /**
+     * Record the latency of an operation that started at startNanos (a System.nanoTime() value)
+     */
+    public static void record(int operationId, long startNanos) {
+        if (enabled) {
+            RECORDER.get().record(operationId, System.nanoTime() - startNanos);
+        }
+    }
+
+    /**
+     * Record a value in nanoseconds
+     */
+    static void recordValue(int metricId, long nanos) {
+        RECORDER.get().record(metricId, nanos);
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Turn recording on or off; while off, instrumented code only pays for a volatile read
+     */
+    public static void setEnabled(boolean enabled) {
+        Metrics.enabled = enabled;
+    }
+
+    /**
+     * Get everything recorded since the process started
+     */
+    public static MetricsSnapshot snapshot() {
+        Map<String, LatencyHistogram> operations = new LinkedHashMap<>();
+        Map<String, LatencyHistogram> lockWaits = new LinkedHashMap<>();
+        REGISTRY_LOCK.lock();
+        try {
+            int metricCount = NAMES.size();
+            LatencyHistogram[] totals = new LatencyHistogram[metricCount];
+            for (int id = 0; id < metricCount; id++) {
+                totals[id] = new LatencyHistogram(SUB_BUCKET_BITS);
+                if (RETIRED.get(id) != null) {
+                    totals[id].add(RETIRED.get(id));
+                }
+            }
+
+            Iterator<Recorder> recorders = RECORDERS.iterator();
+            while (recorders.hasNext()) {
+                Recorder recorder = recorders.next();
+                // Check liveness first: once a thread is seen dead, its histograms are final
+                boolean alive = recorder.thread.isAlive();
+                LatencyHistogram[] histograms = recorder.histograms();
+                for (int id = 0; id < histograms.length; id++) {
+                    if (histograms[id] != null) {
+                        totals[id].add(histograms[id]);
+                    }
+                }
+                if (!alive) {
+                    retireUnsafe(histograms);
+                    recorders.remove();
+                }
+            }
+
+            for (int id = 0; id < metricCount; id++) {
+                if (totals[id].getTotalCount() > 0) {
+                    (LOCK_WAITS.get(id) ? lockWaits : operations).put(NAMES.get(id), totals[id]);
+                }
+            }
+        } finally {
+            REGISTRY_LOCK.unlock();
+        }
+
+        List<ShowContention> contendedShows = new ArrayList<>();
+        for (ShowLockCounters counters : SHOW_COUNTERS.values()) {
+            long contended = counters.contended.sum();
+            if (contended > 0) {
+                contendedShows.add(new ShowContention(counters.showId, counters.acquisitions.sum(), contended,
+                        counters.waitNanos.sum()));
+            }
+        }
+        // Most time spent waiting first
+        contendedShows.sort((a, b) -> Long.compare(b.getWaitNanos(), a.getWaitNanos()));
+
+        return new MetricsSnapshot(System.currentTimeMillis(), operations, lockWaits, contendedShows);
+    }
+
+    /**
+     * Print a snapshot to out every periodMillis, as text or JSON, replacing any dump already running
+     */
+    public static void startPeriodicDump(PrintStream out, long periodMillis, boolean json) {
+        if (periodMillis <= 0) {
+            throw new RuntimeException("Dump period must be greater than zero");
+        }
+        REGISTRY_LOCK.lock();
+        try {
+            stopPeriodicDumpUnsafe();
+            dumpScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "metrics-dump");
+                thread.setDaemon(true);
+                return thread;
+            });
+            dumpScheduler.scheduleAtFixedRate(() -> {
+                MetricsSnapshot snapshot = snapshot();
+                out.println(json ? snapshot.toJson() : snapshot.toText());
+                out.flush();
+            }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+        } finally {
+            REGISTRY_LOCK.unlock();
+        }
+    }
+
+    public static void stopPeriodicDump() {
+        REGISTRY_LOCK.lock();
+        try {
+            stopPeriodicDumpUnsafe();
+        } finally {
+            REGISTRY_LOCK.unlock();
+        }
+    }
+
+    /**
+     * Internal method to stop the periodic dump (assumes lock is already held)
+     */
+    private static void stopPeriodicDumpUnsafe() {
+        if (dumpScheduler != null) {
+            dumpScheduler.shutdownNow();
+            dumpScheduler = null;
+        }
+    }
+
+    private static int register(String name, boolean lockWait) {
+        REGISTRY_LOCK.lock();
+        try {
+            Integer id = IDS_BY_NAME.get(name);
+            if (id != null) {
+                if (LOCK_WAITS.get(id) != lockWait) {
+                    throw new RuntimeException("Metric " + name + " is already registered as another kind");
+                }
+                return id;
+            }
+            id = NAMES.size();
+            NAMES.add(name);
+            LOCK_WAITS.add(lockWait);
+            RETIRED.add(null);
+            IDS_BY_NAME.put(name, id);
+            return id;
+        } finally {
+            REGISTRY_LOCK.unlock();
+        }
+    }
+
+    private static Recorder newRecorder() {
+        Recorder recorder = new Recorder(Thread.currentThread());
+        REGISTRY_LOCK.lock();
+        try {
+            // Short-lived threads would otherwise pile up recorders between snapshots
+            if (RECORDERS.size() >= pruneThreshold) {
+                Iterator<Recorder> recorders = RECORDERS.iterator();
+                while (recorders.hasNext()) {
+                    Recorder existing = recorders.next();
+                    if (!existing.thread.isAlive()) {
+                        retireUnsafe(existing.histograms());
+                        recorders.remove();
+                    }
+                }
+                pruneThreshold = Math.max(MIN_PRUNE_THRESHOLD, RECORDERS.size() * 2);
+            }
+            RECORDERS.add(recorder);
+        } finally {
+            REGISTRY_LOCK.unlock();
+        }
+        return recorder;
+    }
+
+    /**
+     * Internal method to keep the values of an ended thread (assumes lock is already held)
+     */
+    private static void retireUnsafe(LatencyHistogram[] histograms) {
+        for (int id = 0; id < histograms.length; id++) {
+            if (histograms[id] != null) {
+                if (RETIRED.get(id) == null) {
+                    RETIRED.set(id, new LatencyHistogram(SUB_BUCKET_BITS));
+                }
+                RETIRED.get(id).add(histograms[id]);
+            }
+        }
+    }
+
+    /**
+     * One thread's histograms, by metric ID. Only the owning thread writes them.
+     */
+    private static final class Recorder {
+        final Thread thread;
+
+        // Replaced (never changed in place) when a metric is first seen by this thread
+        private volatile LatencyHistogram[] histograms = new LatencyHistogram[0];
+
+        // Bumped after every value (a release store), so a reader that reads it sees the counts
+        private final AtomicLong records = new AtomicLong();
+
+        Recorder(Thread thread) {
+            this.thread = thread;
+        }
+
+        void record(int metricId, long nanos) {
+            LatencyHistogram[] current = histograms;
+            if (metricId >= current.length || current[metricId] == null) {
+                current = grow(metricId);
+            }
+            current[metricId].recordValue(nanos);
+            records.lazySet(records.get() + 1);
+        }
+
+        LatencyHistogram[] histograms() {
+            records.get();
+            return histograms;
+        }
+
+        private LatencyHistogram[] grow(int metricId) {
+            LatencyHistogram[] grown = new LatencyHistogram[Math.max(metricId + 1, histograms.length)];
+            System.arraycopy(histograms, 0, grown, 0, histograms.length);
+            grown[metricId] = new LatencyHistogram(SUB_BUCKET_BITS);
+            histograms = grown;
+            return grown;
+        }
+    }
+
+    /**
+     * Acquisition counters of one show's lock
+     */
+    static final class ShowLockCounters {
+        final int showId;
+        final LongAdder acquisitions = new LongAdder();
+        final LongAdder contended = new LongAdder();
+        final LongAdder waitNanos = new LongAdder();
+
+        ShowLockCounters(int showId) {
+            this.showId = showId;
+        }
+
+        void acquired(boolean wasContended, long nanosWaited) {
+            acquisitions.increment();
+            if (wasContended) {
+                contended.increment();
+                waitNanos.add(nanosWaited);
+            }
+        }
+    }
+}
@@ -0,0 +1,133 @@
+import java.time.Instant;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Metrics recorded up to one moment: latency per operation, wait per lock (both in nanoseconds)
+ * and the show locks that have been contended, most time waited first
+ */
+public class MetricsSnapshot {
+
+    // Shows listed by toText and toJson
+    private static final int TOP_CONTENDED_SHOWS = 10;
+
+    // Percentiles reported by toText and toJson
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    private final long takenAtMillis;
+    private final Map<String, LatencyHistogram> operations;
+    private final Map<String, LatencyHistogram> lockWaits;
+    private final List<ShowContention> contendedShows;
+
+    public MetricsSnapshot(long takenAtMillis, Map<String, LatencyHistogram> operations,
+                           Map<String, LatencyHistogram> lockWaits, List<ShowContention> contendedShows) {
+        this.takenAtMillis = takenAtMillis;
+        this.operations = operations;
+        this.lockWaits = lockWaits;
+        this.contendedShows = contendedShows;
+    }
+
+    public long getTakenAtMillis() {
+        return takenAtMillis;
+    }
+
+    /**
+     * Latency histograms by operation name, for operations that have run
+     */
+    public Map<String, LatencyHistogram> getOperations() {
+        return operations;
+    }
+
+    /**
+     * Acquire-wait histograms by lock name, for locks that have been taken
+     */
+    public Map<String, LatencyHistogram> getLockWaits() {
+        return lockWaits;
+    }
+
+    public List<ShowContention> getContendedShows() {
+        return contendedShows;
+    }
+
+    /**
+     * Render as a table, times in microseconds
+     */
+    public String toText() {
+        StringBuilder text = new StringBuilder(2048);
+        text.append("Metrics at ").append(Instant.ofEpochMilli(takenAtMillis)).append('\n');
+        appendTable(text, "operation (us)", operations);
+        appendTable(text, "lock wait (us)", lockWaits);
+        if (!contendedShows.isEmpty()) {
+            text.append(String.format(Locale.ROOT, "%-32s %12s %12s %12s%n",
+                    "contended show", "acquired", "contended", "waited ms"));
+            for (ShowContention show : contendedShows.subList(0, Math.min(TOP_CONTENDED_SHOWS, contendedShows.size()))) {
+                text.append(String.format(Locale.ROOT, "%-32d %12d %12d %12.1f%n", show.getShowId(),
+                        show.getAcquisitions(), show.getContendedAcquisitions(), show.getWaitNanos() / 1e6));
+            }
+        }
+        return text.toString();
+    }
+
+    /**
+     * Render as a single-line JSON object, times in nanoseconds
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder(2048);
+        json.append("{\"takenAtMillis\":").append(takenAtMillis);
+        json.append(",\"operations\":");
+        appendJson(json, operations);
+        json.append(",\"lockWaits\":");
+        appendJson(json, lockWaits);
+        json.append(",\"contendedShows\":[");
+        for (int i = 0; i < Math.min(TOP_CONTENDED_SHOWS, contendedShows.size()); i++) {
+            ShowContention show = contendedShows.get(i);
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"showId\":").append(show.getShowId())
+                    .append(",\"acquisitions\":").append(show.getAcquisitions())
+                    .append(",\"contended\":").append(show.getContendedAcquisitions())
+                    .append(",\"waitNanos\":").append(show.getWaitNanos()).append('}');
+        }
+        return json.append("]}").toString();
+    }
+
+    private static void appendTable(StringBuilder text, String title, Map<String, LatencyHistogram> histograms) {
+        if (histograms.isEmpty()) {
+            return;
+        }
+        text.append(String.format(Locale.ROOT, "%-32s %12s %10s %10s %10s %10s %10s %10s%n",
+                title, "count", "mean", "p50", "p90", "p99", "p99.9", "max"));
+        for (Map.Entry<String, LatencyHistogram> entry : histograms.entrySet()) {
+            LatencyHistogram histogram = entry.getValue();
+            text.append(String.format(Locale.ROOT, "%-32s %12d %10.1f", entry.getKey(),
+                    histogram.getTotalCount(), histogram.getMean() / 1000));
+            for (double percentile : PERCENTILES) {
+                text.append(String.format(Locale.ROOT, " %10.1f", histogram.getValueAtPercentile(percentile) / 1000.0));
+            }
+            text.append(String.format(Locale.ROOT, " %10.1f%n", histogram.getMaxValue() / 1000.0));
+        }
+    }
+
+    private static void appendJson(StringBuilder json, Map<String, LatencyHistogram> histograms) {
+        json.append('{');
+        boolean first = true;
+        for (Map.Entry<String, LatencyHistogram> entry : histograms.entrySet()) {
+            LatencyHistogram histogram = entry.getValue();
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            // Metric names are code identifiers such as "booking.createBooking"; nothing to escape
+            json.append('"').append(entry.getKey()).append("\":{\"count\":").append(histogram.getTotalCount())
+                    .append(",\"meanNanos\":").append(Math.round(histogram.getMean()))
+                    .append(",\"p50Nanos\":").append(histogram.getValueAtPercentile(50))
+                    .append(",\"p90Nanos\":").append(histogram.getValueAtPercentile(90))
+                    .append(",\"p99Nanos\":").append(histogram.getValueAtPercentile(99))
+                    .append(",\"p999Nanos\":").append(histogram.getValueAtPercentile(99.9))
+                    .append(",\"maxNanos\":").append(histogram.getMaxValue()).append('}');
+        }
+        json.append('}');
+    }
+}
@@ -0,0 +1,81 @@
+/**
+ * Money helpers. Amounts are held as a primitive long of paise (1 rupee = 100 paise), so sums
+ * are exact and the hot paths never allocate. Rupee doubles are only used at the API edges.
+ */
+public final class Money {
+
+    public static final long PAISE_PER_RUPEE = 100;
+
+    private Money() {
+    }
+
+    /**
+     * Convert a rupee amount to paise, rounding half away from zero
+     */
+    public static long ofRupees(double rupees) {
+        if (Double.isNaN(rupees) || Double.isInfinite(rupees)) {
+            throw new RuntimeException("Invalid amount: " + rupees);
+        }
+        return rupees >= 0 ? Math.round(rupees * PAISE_PER_RUPEE) : -Math.round(-rupees * PAISE_PER_RUPEE);
+    }
+
+    /**
+     * Convert whole rupees to paise
+     */
+    public static long ofRupees(long rupees) {
+        return Math.multiplyExact(rupees, PAISE_PER_RUPEE);
+    }
+
+    /**
+     * Convert paise to rupees (for display and legacy double APIs only)
+     */
+    public static double toRupees(long paise) {
+        return paise / (double) PAISE_PER_RUPEE;
+    }
+
+    /**
+     * Add two amounts, failing on overflow instead of wrapping
+     */
+    public static long add(long paise, long otherPaise) {
+        return Math.addExact(paise, otherPaise);
+    }
+
+    /**
+     * Multiply an amount by a quantity, failing on overflow
+     */
+    public static long times(long paise, long quantity) {
+        return Math.multiplyExact(paise, quantity);
+    }
+
+    /**
+     * Scale an amount by a factor (e.g. a surge multiplier), rounding to the nearest paisa
+     */
+    public static long scale(long paise, double factor) {
+        return Math.round(paise * factor);
+    }
+
+    /**
+     * Format an amount as rupees with two decimals, e.g. 150050 -> "1500.50"
+     */
+    public static String format(long paise) {
+        StringBuilder builder = new StringBuilder(24);
+        appendTo(builder, paise);
+        return builder.toString();
+    }
+
+    /**
+     * Append an amount as rupees with two decimals without creating intermediate strings
+     */
+    public static void appendTo(StringBuilder builder, long paise) {
+        if (paise < 0) {
+            builder.append('-');
+        }
+        long abs = Math.abs(paise);
+        long fraction = abs % PAISE_PER_RUPEE;
+        builder.append(abs / PAISE_PER_RUPEE).append('.');
+        if (fraction < 10) {
+            builder.append('0');
+        }
+        builder.append(fraction);
+    }
+}
@@ -1,86 +1,300 @@
 import enums.City;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
 
 public class MovieController {
 
-    Map<City, List<Movie>> cityVsMovies;
-    List<Movie> allMovies;
+    // Latency metric of movie search
+    private static final int SEARCH_MOVIES = Metrics.operation("movie.searchMovies");
+
+    // Movies listed in each city, keyed by movieId for O(1) removal (insertion order preserved)
+    private final Map<City, Map<Integer, Movie>> cityVsMovies;
+
+    // All movies by movieId
+    private final Map<Integer, Movie> moviesById;
+
+    // Movies in moviesById that are not listed in any city
+    private final Map<Integer, Movie> unlistedMovies = new LinkedHashMap<>();
+
+    // Listings changed since the last flush; everything when rebuildAll is set (guarded by catalogLock)
+    private final Set<City> changedCities = EnumSet.noneOf(City.class);
+    private boolean unlistedChanged;
+    private boolean rebuildAll;
+
+    private final Runnable flushTask = this::flushUnsafe;
+
+    // Published, immutable view of the catalog that all reads go through
+    private final Catalog catalog;
+
+    // Lock for catalog edits (the catalog's write lock), so admin tools can change the catalog while it is being browsed
+    private final Lock catalogLock;
+
+    // Inverted index over title, genre and language, kept in step with the maps above
+    private final MovieSearchIndex searchIndex = new MovieSearchIndex();
 
     public MovieController() {
-        cityVsMovies = new HashMap<>();
-        allMovies = new ArrayList<>();
+        this(new Catalog());
+    }
+
+    /**
+     * Create a controller that publishes into a catalog shared with other controllers
+     */
+    public MovieController(Catalog catalog) {
+        this.catalog = catalog;
+        this.catalogLock = catalog.getWriteLock();
+        cityVsMovies = new EnumMap<>(City.class);
+        moviesById = new LinkedHashMap<>();
+    }
+
+    public Catalog getCatalog() {
+        return catalog;
     }
 
     public void addMovie(Movie movie, City city) {
-        allMovies.add(movie);
-        List<Movie> moviesInCity = cityVsMovies.getOrDefault(city, new ArrayList<>());
-        moviesInCity.add(movie);
-        cityVsMovies.put(city, moviesInCity);
+        catalogLock.lock();
+        try {
+            moviesById.put(movie.getMovieId(), movie);
+            cityVsMovies.computeIfAbsent(city, k -> new LinkedHashMap<>()).put(movie.getMovieId(), movie);
+            changedCities.add(city);
+            if (unlistedMovies.remove(movie.getMovieId()) != null) {
+                unlistedChanged = true;
+            }
+            searchIndex.index(movie, city);
+            publishUnsafe();
+        } finally {
+            catalogLock.unlock();
+        }
+    }
+
+    /**
+     * Internal method to publish the movie listings to the catalog, now or at the end of the
+     * current batch (assumes lock is already held)
+     */
+    private void publishUnsafe() {
+        catalog.flush(flushTask);
+    }
+
+    /**
+     * Internal method to rebuild the listings that changed since the last flush
+     * (assumes lock is already held)
+     */
+    private void flushUnsafe() {
+        catalog.update(snapshot -> {
+            if (rebuildAll) {
+                return snapshot.withMovies(cityVsMovies, unlistedMovies);
+            }
+            CatalogSnapshot updated = snapshot;
+            for (City city : changedCities) {
+                updated = updated.withCityMovies(city, cityVsMovies.getOrDefault(city, Map.of()));
+            }
+            if (unlistedChanged) {
+                updated = updated.withUnlistedMovies(unlistedMovies);
+            }
+            return updated;
+        });
+        rebuildAll = false;
+        unlistedChanged = false;
+        changedCities.clear();
     }
+
     public Movie getMovieByName(String movieName) {
-        for (Movie movie : allMovies) {
+        for (Movie movie : catalog.getSnapshot().getAllMovies()) {
             if ((movie.getTitle()).equals(movieName)) {
                 return movie;
             }
         }
         return null;
     }
+
+    /**
+     * Get movie by movie ID
+     */
+    public Movie getMovieById(int movieId) {
+        return catalog.getSnapshot().getMovie(movieId);
+    }
+
     public List<Movie> getMoviesByCity(City city) {
-        return cityVsMovies.get(city);
+        return catalog.getSnapshot().getMovies(city);
+    }
+
+    /**
+     * Search movies by title, genre or language (case-insensitive, prefix match per word)
+     */
+    public List<Movie> searchMovies(String query) {
+        return searchMovies(query, null, null, null);
     }
 
+    /**
+     * Search movies narrowed by city, genre and language (null filters match anything)
+     */
+    public List<Movie> searchMovies(String query, City city, String genre, String language) {
+        long startNanos = System.nanoTime();
+        List<Movie> movies = searchIndex.search(query, city, genre, language);
+        Metrics.record(SEARCH_MOVIES, startNanos);
+        return movies;
+    }
+
+    /**
+     * Get genre, language and city counts for the movies matching a query
+     */
+    public MovieFacets getSearchFacets(String query) {
+        return searchIndex.facets(query);
+    }
 
     public void removeMovie(Movie movie, City city) {
-        allMovies.remove(movie);
-        List<Movie> moviesInCity = cityVsMovies.get(city);
-        moviesInCity.remove(movie);
-        cityVsMovies.put(city, moviesInCity);
+        catalogLock.lock();
+        try {
+            Map<Integer, Movie> moviesInCity = cityVsMovies.get(city);
+            if (moviesInCity != null && moviesInCity.remove(movie.getMovieId()) != null) {
+                changedCities.add(city);
+            }
+            if (!isListedInAnyCityUnsafe(movie.getMovieId())) {
+                moviesById.remove(movie.getMovieId());
+                if (unlistedMovies.remove(movie.getMovieId()) != null) {
+                    unlistedChanged = true;
+                }
+            }
+            searchIndex.remove(movie, city);
+            publishUnsafe();
+        } finally {
+            catalogLock.unlock();
+        }
     }
 
     public void updateMovie(Movie movie, City city) {
-        removeMovie(movie, city);
-        addMovie(movie, city);
+        catalog.batch(() -> {
+            removeMovie(movie, city);
+            addMovie(movie, city);
+        });
     }
 
+    /**
+     * Replace a movie's title, duration, genre and language. The published Movie is never
+     * modified; a new one takes its place everywhere it is listed, so readers see either the
+     * old movie or the new one. Shows keep the Movie they were scheduled with.
+     */
     public void updateMovieById(int movieId, Movie movie) {
-        for (Movie movieObj : allMovies) {
-            if (movieObj.getMovieId() == movieId) {
-                movieObj.setTitle(movieObj.getTitle());
-                movieObj.setDurationInMinutes(movieObj.getDurationInMinutes());
-                movieObj.setGenre(movieObj.getGenre());
-                movieObj.setLanguage(movieObj.getLanguage());
-                break;
+        catalogLock.lock();
+        try {
+            if (!moviesById.containsKey(movieId)) {
+                return;
+            }
+            Movie updated = new Movie();
+            updated.setMovieId(movieId);
+            updated.setTitle(movie.getTitle());
+            updated.setDurationInMinutes(movie.getDurationInMinutes());
+            updated.setGenre(movie.getGenre());
+            updated.setLanguage(movie.getLanguage());
+
+            moviesById.put(movieId, updated);
+            for (Map.Entry<City, Map<Integer, Movie>> entry : cityVsMovies.entrySet()) {
+                if (entry.getValue().replace(movieId, updated) != null) {
+                    changedCities.add(entry.getKey());
+                }
+            }
+            if (unlistedMovies.replace(movieId, updated) != null) {
+                unlistedChanged = true;
             }
+            searchIndex.reindex(updated);
+            publishUnsafe();
+        } finally {
+            catalogLock.unlock();
         }
     }
 
     public void deleteMovieById(int movieId) {
-        for (Movie movieObj : allMovies) {
-            if (movieObj.getMovieId() == movieId) {
-                allMovies.remove(movieObj);
-                break;
+        catalogLock.lock();
+        try {
+            if (moviesById.remove(movieId) == null) {
+                return;
+            }
+            for (Map.Entry<City, Map<Integer, Movie>> entry : cityVsMovies.entrySet()) {
+                if (entry.getValue().remove(movieId) != null) {
+                    changedCities.add(entry.getKey());
+                }
+            }
+            if (unlistedMovies.remove(movieId) != null) {
+                unlistedChanged = true;
+            }
+            searchIndex.removeAll(movieId);
+            publishUnsafe();
+        } finally {
+            catalogLock.unlock();
+        }
+    }
+
+    /**
+     * Internal method to check whether a movie is still listed anywhere
+     * (assumes lock is already held)
+     */
+    private boolean isListedInAnyCityUnsafe(int movieId) {
+        for (Map<Integer, Movie> moviesInCity : cityVsMovies.values()) {
+            if (moviesInCity.containsKey(movieId)) {
+                return true;
             }
         }
+        return false;
     }
 
     public Map<City, List<Movie>> getCityVsMovies() {
-        return cityVsMovies;
+        return catalog.getSnapshot().getMoviesByCity();
     }
 
     public void setCityVsMovies(Map<City, List<Movie>> cityVsMovies) {
-        this.cityVsMovies = cityVsMovies;
+        catalog.batch(() -> {
+            this.cityVsMovies.clear();
+            this.moviesById.clear();
+            unlistedMovies.clear();
+            rebuildAll = true;
+            searchIndex.clear();
+            for (Map.Entry<City, List<Movie>> entry : cityVsMovies.entrySet()) {
+                for (Movie movie : entry.getValue()) {
+                    addMovie(movie, entry.getKey());
+                }
+            }
+            publishUnsafe();
+        });
     }
 
     public List<Movie> getAllMovies() {
-        return allMovies;
+        return new ArrayList<>(catalog.getSnapshot().getAllMovies());
     }
 
     public void setAllMovies(List<Movie> allMovies) {
-        this.allMovies = allMovies;
+        catalogLock.lock();
+        try {
+            moviesById.clear();
+            for (Movie movie : allMovies) {
+                moviesById.put(movie.getMovieId(), movie);
+            }
+            // Drop city listings of movies that are no longer in the catalog
+            for (Map<Integer, Movie> moviesInCity : cityVsMovies.values()) {
+                moviesInCity.keySet().retainAll(moviesById.keySet());
+            }
+            unlistedMovies.clear();
+            for (Movie movie : allMovies) {
+                if (!isListedInAnyCityUnsafe(movie.getMovieId())) {
+                    unlistedMovies.put(movie.getMovieId(), movie);
+                }
+            }
+            rebuildAll = true;
+            searchIndex.clear();
+            for (Map.Entry<City, Map<Integer, Movie>> entry : cityVsMovies.entrySet()) {
+                for (Movie movie : entry.getValue().values()) {
+                    searchIndex.index(movie, entry.getKey());
+                }
+            }
+            publishUnsafe();
+        } finally {
+            catalogLock.unlock();
+        }
     }
 
 }
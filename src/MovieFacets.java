@@ -0,0 +1,29 @@
+import enums.City;
+
+import java.util.Map;
+
+public class MovieFacets {
+
+    Map<String, Integer> genreCounts;
+    Map<String, Integer> languageCounts;
+    Map<City, Integer> cityCounts;
+
+    public MovieFacets(Map<String, Integer> genreCounts, Map<String, Integer> languageCounts,
+                       Map<City, Integer> cityCounts) {
+        this.genreCounts = genreCounts;
+        this.languageCounts = languageCounts;
+        this.cityCounts = cityCounts;
+    }
+
+    public Map<String, Integer> getGenreCounts() {
+        return genreCounts;
+    }
+
+    public Map<String, Integer> getLanguageCounts() {
+        return languageCounts;
+    }
+
+    public Map<City, Integer> getCityCounts() {
+        return cityCounts;
+    }
+}
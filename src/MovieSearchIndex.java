@@ -0,0 +1,270 @@
+import enums.City;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+public class MovieSearchIndex {
+
+    // Sorted token -> movieIds, so a prefix lookup is a single range scan
+    private final NavigableMap<String, Set<Integer>> tokenIndex = new TreeMap<>();
+
+    // Indexed movies by movieId
+    private final Map<Integer, Movie> moviesById = new HashMap<>();
+
+    // Tokens each movie was indexed under (kept so removal does not depend on the movie's current fields)
+    private final Map<Integer, Set<String>> tokensByMovie = new HashMap<>();
+
+    // Genre and language each movie was indexed under, used for facet counts
+    private final Map<Integer, String> genreByMovie = new HashMap<>();
+    private final Map<Integer, String> languageByMovie = new HashMap<>();
+
+    // Cities each movie is listed in (mirrors MovieController.cityVsMovies)
+    private final Map<Integer, Set<City>> citiesByMovie = new HashMap<>();
+
+    // Searches vastly outnumber catalog edits, so readers share the lock
+    private final ReadWriteLock indexLock = new ReentrantReadWriteLock();
+
+    /**
+     * Index a movie for a city (re-indexes the movie's text if it is already present)
+     */
+    public void index(Movie movie, City city) {
+        indexLock.writeLock().lock();
+        try {
+            indexTextUnsafe(movie);
+            citiesByMovie.computeIfAbsent(movie.getMovieId(), k -> EnumSet.noneOf(City.class)).add(city);
+        } finally {
+            indexLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove a movie from a city; the movie leaves the index once it is listed in no city
+     */
+    public void remove(Movie movie, City city) {
+        indexLock.writeLock().lock();
+        try {
+            Set<City> cities = citiesByMovie.get(movie.getMovieId());
+            if (cities == null) {
+                return;
+            }
+            cities.remove(city);
+            if (cities.isEmpty()) {
+                removeUnsafe(movie.getMovieId());
+            }
+        } finally {
+            indexLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove a movie from every city
+     */
+    public void removeAll(int movieId) {
+        indexLock.writeLock().lock();
+        try {
+            removeUnsafe(movieId);
+        } finally {
+            indexLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Refresh the indexed title, genre and language of a movie after it was edited
+     */
+    public void reindex(Movie movie) {
+        indexLock.writeLock().lock();
+        try {
+            if (moviesById.containsKey(movie.getMovieId())) {
+                indexTextUnsafe(movie);
+            }
+        } finally {
+            indexLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Drop everything from the index
+     */
+    public void clear() {
+        indexLock.writeLock().lock();
+        try {
+            tokenIndex.clear();
+            moviesById.clear();
+            tokensByMovie.clear();
+            genreByMovie.clear();
+            languageByMovie.clear();
+            citiesByMovie.clear();
+        } finally {
+            indexLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Search movies by title, genre or language. Every query token must match the
+     * prefix of some indexed token, case-insensitively. Null filters match anything.
+     */
+    public List<Movie> search(String query, City city, String genre, String language) {
+        indexLock.readLock().lock();
+        try {
+            List<Movie> result = new ArrayList<>();
+            for (Integer movieId : matchUnsafe(query)) {
+                if (city != null && !citiesByMovie.get(movieId).contains(city)) {
+                    continue;
+                }
+                if (genre != null && !genre.equalsIgnoreCase(genreByMovie.get(movieId))) {
+                    continue;
+                }
+                if (language != null && !language.equalsIgnoreCase(languageByMovie.get(movieId))) {
+                    continue;
+                }
+                result.add(moviesById.get(movieId));
+            }
+            result.sort(Comparator.comparing(Movie::getTitle, Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER)));
+            return result;
+        } finally {
+            indexLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get genre, language and city counts for the movies matching a query
+     */
+    public MovieFacets facets(String query) {
+        indexLock.readLock().lock();
+        try {
+            Map<String, Integer> genreCounts = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            Map<String, Integer> languageCounts = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            Map<City, Integer> cityCounts = new TreeMap<>();
+
+            for (Integer movieId : matchUnsafe(query)) {
+                String genre = genreByMovie.get(movieId);
+                if (genre != null) {
+                    genreCounts.merge(genre, 1, Integer::sum);
+                }
+                String language = languageByMovie.get(movieId);
+                if (language != null) {
+                    languageCounts.merge(language, 1, Integer::sum);
+                }
+                for (City city : citiesByMovie.get(movieId)) {
+                    cityCounts.merge(city, 1, Integer::sum);
+                }
+            }
+            return new MovieFacets(genreCounts, languageCounts, cityCounts);
+        } finally {
+            indexLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Internal method to find the movieIds matching every query token
+     * (assumes read lock is already held)
+     */
+    private Set<Integer> matchUnsafe(String query) {
+        List<String> queryTokens = tokenize(query);
+        if (queryTokens.isEmpty()) {
+            return new HashSet<>(moviesById.keySet());
+        }
+
+        Set<Integer> matches = null;
+        for (String token : queryTokens) {
+            Set<Integer> tokenMatches = new HashSet<>();
+            // All indexed tokens starting with this query token sort before token + Character.MAX_VALUE
+            for (Set<Integer> movieIds : tokenIndex.subMap(token, true, token + Character.MAX_VALUE, false).values()) {
+                tokenMatches.addAll(movieIds);
+            }
+            if (matches == null) {
+                matches = tokenMatches;
+            } else {
+                matches.retainAll(tokenMatches);
+            }
+            if (matches.isEmpty()) {
+                break;
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Internal method to (re)index a movie's text (assumes write lock is already held)
+     */
+    private void indexTextUnsafe(Movie movie) {
+        int movieId = movie.getMovieId();
+        unindexTextUnsafe(movieId);
+
+        Set<String> tokens = new HashSet<>();
+        tokens.addAll(tokenize(movie.getTitle()));
+        tokens.addAll(tokenize(movie.getGenre()));
+        tokens.addAll(tokenize(movie.getLanguage()));
+        for (String token : tokens) {
+            tokenIndex.computeIfAbsent(token, k -> new HashSet<>()).add(movieId);
+        }
+
+        moviesById.put(movieId, movie);
+        tokensByMovie.put(movieId, tokens);
+        genreByMovie.put(movieId, movie.getGenre());
+        languageByMovie.put(movieId, movie.getLanguage());
+    }
+
+    /**
+     * Internal method to drop a movie's postings (assumes write lock is already held)
+     */
+    private void unindexTextUnsafe(int movieId) {
+        Set<String> tokens = tokensByMovie.remove(movieId);
+        if (tokens == null) {
+            return;
+        }
+        for (String token : tokens) {
+            Set<Integer> movieIds = tokenIndex.get(token);
+            if (movieIds != null) {
+                movieIds.remove(movieId);
+                if (movieIds.isEmpty()) {
+                    tokenIndex.remove(token);
+                }
+            }
+        }
+    }
+
+    /**
+     * Internal method to drop a movie entirely (assumes write lock is already held)
+     */
+    private void removeUnsafe(int movieId) {
+        unindexTextUnsafe(movieId);
+        moviesById.remove(movieId);
+        genreByMovie.remove(movieId);
+        languageByMovie.remove(movieId);
+        citiesByMovie.remove(movieId);
+    }
+
+    /**
+     * Split text into lower-case alphanumeric tokens
+     */
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        String lower = text.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i <= lower.length(); i++) {
+            boolean tokenChar = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+            if (tokenChar && start < 0) {
+                start = i;
+            } else if (!tokenChar && start >= 0) {
+                tokens.add(lower.substring(start, i));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+}
@@ -7,13 +7,24 @@ public class Payment {
 
     int paymentId;
     PaymentMode paymentMode;
-    double amount;
+    long amountPaise;
     Date paymentDate;
     boolean isPaid;
     PaymentStatus paymentStatus;
+
+    // Whether the gateway has settled this capture or refund
+    boolean settled;
+
+    // For a refund, the payment it refunds (0 otherwise)
+    int refundedPaymentId;
+
     public void processPayment(PaymentMode paymentMode, double amount) {
+        processPaymentInPaise(paymentMode, Money.ofRupees(amount));
+    }
+
+    public void processPaymentInPaise(PaymentMode paymentMode, long amountPaise) {
         this.paymentId = generatePaymentId();
-        this.amount = amount;
+        this.amountPaise = amountPaise;
         this.paymentMode = paymentMode;
         this.isPaid = true;
         this.paymentDate = new Date();
@@ -41,11 +52,19 @@ public class Payment {
     }
 
     public double getAmount() {
-        return amount;
+        return Money.toRupees(amountPaise);
     }
 
     public void setAmount(double amount) {
-        this.amount = amount;
+        this.amountPaise = Money.ofRupees(amount);
+    }
+
+    public long getAmountPaise() {
+        return amountPaise;
+    }
+
+    public void setAmountPaise(long amountPaise) {
+        this.amountPaise = amountPaise;
     }
 
     public Date getPaymentDate() {
@@ -71,4 +90,27 @@ public class Payment {
     public void setPaymentStatus(PaymentStatus paymentStatus) {
         this.paymentStatus = paymentStatus;
     }
+
+    public boolean isSettled() {
+        return settled;
+    }
+
+    public void setSettled(boolean settled) {
+        this.settled = settled;
+    }
+
+    public int getRefundedPaymentId() {
+        return refundedPaymentId;
+    }
+
+    public void setRefundedPaymentId(int refundedPaymentId) {
+        this.refundedPaymentId = refundedPaymentId;
+    }
+
+    /**
+     * Whether this payment is a refund (negative amount)
+     */
+    public boolean isRefund() {
+        return amountPaise < 0;
+    }
 }
@@ -1,19 +1,43 @@
+import enums.CircuitState;
+import enums.EventType;
 import enums.PaymentMode;
 import enums.PaymentStatus;
 
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.locks.Lock;
 import java.util.stream.Collectors;
 
 public class PaymentController {
 
+    // Latency metrics of the payment operations
+    private static final int PROCESS_PAYMENT = Metrics.operation("payment.processPayment");
+    private static final int GATEWAY_CHARGE = Metrics.operation("payment.gatewayCharge");
+    private static final int RETRY_PAYMENT = Metrics.operation("payment.retryPayment");
+    private static final int PROCESS_REFUND = Metrics.operation("payment.processRefund");
+    private static final int QUEUE_REFUNDS = Metrics.operation("payment.queueRefunds");
+    private static final int APPLY_SETTLEMENT = Metrics.operation("payment.applySettlement");
+
     // Store all payments by payment ID
     private Map<Integer, Payment> paymentsById;
 
-    // Store payments by booking ID (if booking has payment reference)
+    // Store payments by booking ID (if booking has payment reference); a booking has at most
+    // one payment that has not FAILED, and it is the one linked here
     private Map<String, Payment> paymentsByBookingId;
 
+    // Booking ID each payment or retry was made for, by payment ID
+    private final Map<Integer, String> bookingIdsByPaymentId = new HashMap<>();
+
     // Store payments by customer ID
     private Map<String, List<Payment>> paymentsByCustomerId;
 
@@ -21,76 +45,163 @@ public class PaymentController {
     private List<Payment> paymentHistory;
 
     // Lock for payment operations
-    private final Lock paymentLock = new ReentrantLock();
+    private final Lock paymentLock = Metrics.newLock("paymentLock");
 
     // Counter for generating payment IDs
     private int paymentIdCounter = 10000;
 
-    // Minimum payment amount
-    private static final double MIN_PAYMENT_AMOUNT = 1.0;
+    // How long a completed payment stays attached to its idempotency key
+    private static final long IDEMPOTENCY_TTL_MILLIS = 15 * 60 * 1000;
+
+    // Idempotency key -> in-flight or successful payment, so client retries coalesce onto one charge
+    private final IdempotencyStore<Payment> idempotencyStore = new IdempotencyStore<>(IDEMPOTENCY_TTL_MILLIS);
+
+    // Failed payment ID -> the retry that succeeded for it
+    private Map<Integer, Payment> successfulRetries;
+
+    // Successful captures and refunds not yet settled with the gateway, in the order they happened
+    private Map<Integer, Payment> unsettledPayments;
+
+    // Payment ID -> its refund (pending or done), so a payment is refunded at most once
+    private Map<Integer, Payment> refundsByPaymentId;
+
+    // Gateway that charges payments; swappable for load tests and benchmarks
+    private volatile PaymentGateway paymentGateway = new SimulatedPaymentGateway();
+
+    // Where successful payments and refunds are announced (null: not published)
+    private volatile BookingEventBus eventBus;
+
+    // How long to wait for the gateway before the outcome is treated as unknown (PENDING)
+    private volatile long gatewayTimeoutMillis = 5000;
 
-    // Maximum payment amount (safety limit)
-    private static final double MAX_PAYMENT_AMOUNT = 100000.0;
+    // Gateway calls allowed in flight per payment mode, so one slow mode cannot use up every thread
+    private static final int DEFAULT_MAX_CONCURRENT_CALLS = 32;
+
+    // How long a payment waits for a free slot in its mode's bulkhead before failing fast
+    private static final long BULKHEAD_WAIT_MILLIS = 50;
+
+    // Per-mode bulkheads limiting concurrent gateway calls
+    private final Map<PaymentMode, Semaphore> bulkheads = new ConcurrentHashMap<>();
+
+    // Per-mode circuit breakers; an open breaker rejects payments in that mode without calling the gateway
+    private final Map<PaymentMode, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
+
+    // Minimum payment amount in paise (1 rupee)
+    private static final long MIN_PAYMENT_AMOUNT_PAISE = Money.ofRupees(1L);
+
+    // Maximum payment amount in paise (safety limit, 100000 rupees)
+    private static final long MAX_PAYMENT_AMOUNT_PAISE = Money.ofRupees(100000L);
 
     public PaymentController() {
         this.paymentsById = new HashMap<>();
         this.paymentsByBookingId = new HashMap<>();
         this.paymentsByCustomerId = new HashMap<>();
         this.paymentHistory = new ArrayList<>();
+        this.successfulRetries = new HashMap<>();
+        this.unsettledPayments = new LinkedHashMap<>();
+        this.refundsByPaymentId = new HashMap<>();
+        for (PaymentMode paymentMode : PaymentMode.values()) {
+            bulkheads.put(paymentMode, new Semaphore(DEFAULT_MAX_CONCURRENT_CALLS));
+            circuitBreakers.put(paymentMode, newDefaultCircuitBreaker());
+        }
     }
 
     /**
      * Process a payment for a booking
      */
     public Payment processPayment(String bookingId, PaymentMode paymentMode, double amount, String customerId) {
-        paymentLock.lock();
-        try {
-            // Validate payment amount
-            validatePaymentAmount(amount);
-
-            // Check if payment already exists for this booking
-            if (paymentsByBookingId.containsKey(bookingId)) {
-                throw new RuntimeException("Payment already exists for booking: " + bookingId);
-            }
+        return processPaymentInPaise(bookingId, paymentMode, Money.ofRupees(amount), customerId);
+    }
 
-            // Create payment object
+    /**
+     * Process a payment for a booking, with the amount in paise
+     */
+    public Payment processPaymentInPaise(String bookingId, PaymentMode paymentMode, long amountPaise, String customerId) {
+        long startNanos = System.nanoTime();
+        // Validate payment amount
+        validatePaymentAmount(amountPaise);
+
+        // Fail fast if this payment mode is saturated or its circuit is open
+        CircuitBreaker circuitBreaker = circuitBreakers.get(paymentMode);
+        Semaphore bulkhead = bulkheads.get(paymentMode);
+        CircuitBreaker.Permission permission = acquireGatewayPermit(paymentMode, circuitBreaker);
+        boolean charged = false;
+        try {
+            // Reserve the booking's payment as PENDING, so the gateway call can run without the lock
             Payment payment = new Payment();
-            payment.setPaymentId(generatePaymentId());
-            payment.setPaymentMode(paymentMode);
-            payment.setAmount(amount);
-            payment.setPaymentDate(new Date());
-
-            // Simulate payment processing (in real system, this would call payment gateway)
-            boolean paymentSuccess = simulatePaymentProcessing(paymentMode, amount);
+            paymentLock.lock();
+            try {
+                // A failed payment may be replaced by a new attempt; a pending or successful one stands
+                Payment existing = paymentsByBookingId.get(bookingId);
+                if (existing != null && existing.getPaymentStatus() != PaymentStatus.FAILED) {
+                    throw new RuntimeException("Payment already exists for booking: " + bookingId);
+                }
 
-            if (paymentSuccess) {
-                payment.setPaid(true);
-                payment.setPaymentStatus(PaymentStatus.SUCCESS);
-            } else {
+                payment.setPaymentId(generatePaymentId());
+                payment.setPaymentMode(paymentMode);
+                payment.setAmountPaise(amountPaise);
+                payment.setPaymentDate(new Date());
                 payment.setPaid(false);
-                payment.setPaymentStatus(PaymentStatus.FAILED);
-            }
+                payment.setPaymentStatus(PaymentStatus.PENDING);
+
+                // Store payment
+                paymentsById.put(payment.getPaymentId(), payment);
+                paymentsByBookingId.put(bookingId, payment);
+                bookingIdsByPaymentId.put(payment.getPaymentId(), bookingId);
 
-            // Store payment
-            paymentsById.put(payment.getPaymentId(), payment);
-            paymentsByBookingId.put(bookingId, payment);
+                // Add to customer's payment history
+                if (customerId != null) {
+                    paymentsByCustomerId.computeIfAbsent(customerId, k -> new ArrayList<>()).add(payment);
+                }
 
-            // Add to customer's payment history
-            if (customerId != null) {
-                List<Payment> customerPayments = paymentsByCustomerId.getOrDefault(customerId, new ArrayList<>());
-                customerPayments.add(payment);
-                paymentsByCustomerId.put(customerId, customerPayments);
+                // Add to payment history
+                paymentHistory.add(payment);
+            } finally {
+                paymentLock.unlock();
             }
 
-            // Add to payment history
-            paymentHistory.add(payment);
+            // Charge through the payment gateway
+            charged = true;
+            PaymentStatus status = chargeThroughGateway(circuitBreaker, permission, payment.getPaymentId(), paymentMode, amountPaise);
 
+            paymentLock.lock();
+            try {
+                payment.setPaid(status == PaymentStatus.SUCCESS);
+                payment.setPaymentStatus(status);
+                if (status == PaymentStatus.SUCCESS) {
+                    unsettledPayments.put(payment.getPaymentId(), payment);
+                    publishSucceededUnsafe(payment, bookingId);
+                }
+            } finally {
+                paymentLock.unlock();
+            }
             return payment;
         } finally {
-            paymentLock.unlock();
+            if (!charged) {
+                circuitBreaker.releasePermission(permission);
+            }
+            bulkhead.release();
+            Metrics.record(PROCESS_PAYMENT, startNanos);
         }
     }
 
+    /**
+     * Process a payment for a booking at most once per idempotency key. Duplicate requests
+     * (e.g. client retries after a timeout) wait for the first attempt and get its payment
+     * instead of charging again. A booking that already has a successful payment (including a
+     * successful retryPayment) gets that payment back; one whose payment failed is charged anew.
+     */
+    public Payment processPaymentIdempotent(String idempotencyKey, String bookingId, PaymentMode paymentMode,
+                                            long amountPaise, String customerId) {
+        return idempotencyStore.execute(idempotencyKey, () -> {
+            Payment existing = getPaymentByBookingId(bookingId);
+            if (existing != null && existing.getPaymentStatus() == PaymentStatus.SUCCESS) {
+                return existing;
+            }
+            return processPaymentInPaise(bookingId, paymentMode, amountPaise, customerId);
+        }, this::isSuccessful);
+    }
+
     /**
      * Process payment with retry mechanism
      */
@@ -101,7 +212,11 @@ public class PaymentController {
 
         while (attempts < maxRetries) {
             try {
-                payment = processPayment(bookingId, paymentMode, amount, customerId);
+                // First attempt charges the booking; later attempts retry the last failed payment
+                payment = payment == null
+                        ? processPaymentIdempotent(bookingKey(bookingId), bookingId, paymentMode,
+                                Money.ofRupees(amount), customerId)
+                        : retryPayment(payment.getPaymentId(), paymentMode);
                 if (payment.getPaymentStatus() == PaymentStatus.SUCCESS) {
                     return payment;
                 }
@@ -118,36 +233,140 @@ public class PaymentController {
     }
 
     /**
-     * Simulate payment processing (replace with actual payment gateway integration)
+     * Idempotency key used for the payment of a booking
+     */
+    public static String bookingKey(String bookingId) {
+        return "booking:" + bookingId;
+    }
+
+    private boolean isSuccessful(Payment payment) {
+        return payment.getPaymentStatus() == PaymentStatus.SUCCESS;
+    }
+
+    /**
+     * Take a slot in the payment mode's bulkhead and a permission from its circuit breaker,
+     * or fail fast. Returns the breaker permission; release the bulkhead when the call is done.
      */
-    private boolean simulatePaymentProcessing(PaymentMode paymentMode, double amount) {
-        // Simulate network delay
+    private CircuitBreaker.Permission acquireGatewayPermit(PaymentMode paymentMode, CircuitBreaker circuitBreaker) {
+        Semaphore bulkhead = bulkheads.get(paymentMode);
+        boolean acquired;
         try {
-            Thread.sleep(100);
+            acquired = bulkhead.tryAcquire(BULKHEAD_WAIT_MILLIS, TimeUnit.MILLISECONDS);
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            throw new RuntimeException("Too many payments in progress for " + paymentMode + ", please retry");
+        }
+        CircuitBreaker.Permission permission = circuitBreaker.tryAcquirePermission();
+        if (permission == null) {
+            bulkhead.release();
+            throw new RuntimeException("Payment mode " + paymentMode + " is temporarily unavailable");
+        }
+        return permission;
+    }
+
+    /**
+     * Charge through the gateway and wait for its answer, recording the outcome in the circuit
+     * breaker. A call that times out is PENDING: the gateway may still have charged, so it must
+     * be reconciled rather than retried.
+     */
+    private PaymentStatus chargeThroughGateway(CircuitBreaker circuitBreaker, CircuitBreaker.Permission permission,
+                                               int paymentId, PaymentMode paymentMode, long amountPaise) {
+        long startNanos = System.nanoTime();
+        PaymentStatus status = PaymentStatus.FAILED;
+        try {
+            Future<PaymentStatus> result = paymentGateway.charge(paymentId, paymentMode, amountPaise);
+            try {
+                status = result.get(gatewayTimeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                result.cancel(false);
+                status = PaymentStatus.PENDING;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                status = PaymentStatus.PENDING;
+            } catch (ExecutionException | CancellationException e) {
+                status = PaymentStatus.FAILED;
+            }
+            return status;
+        } finally {
+            circuitBreaker.onResult(permission, status == PaymentStatus.SUCCESS, System.nanoTime() - startNanos);
+            Metrics.record(GATEWAY_CHARGE, startNanos);
+        }
+    }
+
+    /**
+     * Circuit breaker used for a payment mode until replaced: opens when half of the last 50
+     * calls (at least 20) failed or took over 2 seconds, and probes again after 10 seconds
+     */
+    private CircuitBreaker newDefaultCircuitBreaker() {
+        return new CircuitBreaker(50, 20, 0.5, 0.5, 2000, 10_000, 3);
+    }
+
+    /**
+     * Get the circuit state of a payment mode
+     */
+    public CircuitState getCircuitState(PaymentMode paymentMode) {
+        return circuitBreakers.get(paymentMode).getState();
+    }
+
+    /**
+     * Replace the circuit breaker of a payment mode
+     */
+    public void setCircuitBreaker(PaymentMode paymentMode, CircuitBreaker circuitBreaker) {
+        circuitBreakers.put(paymentMode, circuitBreaker);
+    }
+
+    /**
+     * Set how many gateway calls a payment mode may have in flight; calls already running keep their slot
+     */
+    public void setMaxConcurrentCalls(PaymentMode paymentMode, int maxConcurrentCalls) {
+        if (maxConcurrentCalls <= 0) {
+            throw new RuntimeException("Max concurrent calls must be greater than zero");
         }
+        bulkheads.put(paymentMode, new Semaphore(maxConcurrentCalls));
+    }
+
+    /**
+     * Set the payment gateway used for new charges
+     */
+    public void setPaymentGateway(PaymentGateway paymentGateway) {
+        this.paymentGateway = paymentGateway;
+    }
+
+    public PaymentGateway getPaymentGateway() {
+        return paymentGateway;
+    }
 
-        // Simulate payment success/failure (90% success rate for demo)
-        // In real system, this would call actual payment gateway API
-        Random random = new Random();
-        return random.nextDouble() > 0.1; // 90% success rate
+    /**
+     * Set the event bus that PAYMENT_SUCCEEDED, REFUND_ISSUED, REFUND_QUEUED and PAYMENT_SETTLED events are published to
+     */
+    public void setEventBus(BookingEventBus eventBus) {
+        this.eventBus = eventBus;
+    }
+
+    /**
+     * Set how long to wait for the gateway before a payment is left PENDING
+     */
+    public void setGatewayTimeoutMillis(long gatewayTimeoutMillis) {
+        this.gatewayTimeoutMillis = gatewayTimeoutMillis;
     }
 
     /**
      * Validate payment amount
      */
-    private void validatePaymentAmount(double amount) {
-        if (amount <= 0) {
+    private void validatePaymentAmount(long amountPaise) {
+        if (amountPaise <= 0) {
             throw new RuntimeException("Payment amount must be greater than zero");
         }
 
-        if (amount < MIN_PAYMENT_AMOUNT) {
-            throw new RuntimeException("Payment amount must be at least ₹" + MIN_PAYMENT_AMOUNT);
+        if (amountPaise < MIN_PAYMENT_AMOUNT_PAISE) {
+            throw new RuntimeException("Payment amount must be at least ₹" + Money.format(MIN_PAYMENT_AMOUNT_PAISE));
         }
 
-        if (amount > MAX_PAYMENT_AMOUNT) {
-            throw new RuntimeException("Payment amount exceeds maximum limit of ₹" + MAX_PAYMENT_AMOUNT);
+        if (amountPaise > MAX_PAYMENT_AMOUNT_PAISE) {
+            throw new RuntimeException("Payment amount exceeds maximum limit of ₹" + Money.format(MAX_PAYMENT_AMOUNT_PAISE));
         }
     }
 
@@ -236,6 +455,7 @@ public class PaymentController {
      * Process refund for a payment
      */
     public Payment processRefund(int paymentId, String reason) {
+        long startNanos = System.nanoTime();
         paymentLock.lock();
         try {
             Payment payment = paymentsById.get(paymentId);
@@ -243,22 +463,12 @@ public class PaymentController {
                 throw new RuntimeException("Payment not found: " + paymentId);
             }
 
-            if (payment.getPaymentStatus() != PaymentStatus.SUCCESS) {
-                throw new RuntimeException("Cannot refund payment that was not successful");
-            }
-
             // Create refund payment (negative amount)
-            Payment refund = new Payment();
-            refund.setPaymentId(generatePaymentId());
-            refund.setPaymentMode(payment.getPaymentMode());
-            refund.setAmount(-payment.getAmount()); // Negative amount for refund
-            refund.setPaymentDate(new Date());
+            Payment refund = createRefundUnsafe(payment);
             refund.setPaid(true);
             refund.setPaymentStatus(PaymentStatus.SUCCESS);
-
-            // Store refund
-            paymentsById.put(refund.getPaymentId(), refund);
-            paymentHistory.add(refund);
+            unsettledPayments.put(refund.getPaymentId(), refund);
+            publishSucceededUnsafe(refund, null);
 
             // Update original payment status (optional - you might want to keep it as SUCCESS)
             // payment.setPaymentStatus(PaymentStatus.REFUNDED); // If you add REFUNDED to enum
@@ -266,6 +476,180 @@ public class PaymentController {
             return refund;
         } finally {
             paymentLock.unlock();
+            Metrics.record(PROCESS_REFUND, startNanos);
+        }
+    }
+
+    /**
+     * Queue a refund for the next settlement run instead of issuing it immediately.
+     * The refund stays PENDING until the gateway settles it.
+     */
+    public Payment queueRefund(int paymentId, String reason) {
+        paymentLock.lock();
+        try {
+            Payment payment = paymentsById.get(paymentId);
+            if (payment == null) {
+                throw new RuntimeException("Payment not found: " + paymentId);
+            }
+
+            Payment refund = createRefundUnsafe(payment);
+            refund.setPaid(false);
+            refund.setPaymentStatus(PaymentStatus.PENDING);
+            unsettledPayments.put(refund.getPaymentId(), refund);
+            publishQueuedUnsafe(refund);
+            return refund;
+        } finally {
+            paymentLock.unlock();
+        }
+    }
+
+    /**
+     * Queue refunds for many payments under a single lock acquisition (e.g. for a cancelled show).
+     * Payments that are missing, not successful or already refunded are skipped.
+     */
+    public List<Payment> queueRefunds(List<Integer> paymentIds, String reason) {
+        long startNanos = System.nanoTime();
+        List<Payment> refunds = new ArrayList<>(paymentIds.size());
+        paymentLock.lock();
+        try {
+            for (Integer paymentId : paymentIds) {
+                Payment payment = paymentsById.get(paymentId);
+                if (payment == null || payment.getPaymentStatus() != PaymentStatus.SUCCESS || payment.isRefund()
+                        || refundsByPaymentId.containsKey(paymentId)) {
+                    continue;
+                }
+                Payment refund = createRefundUnsafe(payment);
+                refund.setPaid(false);
+                refund.setPaymentStatus(PaymentStatus.PENDING);
+                unsettledPayments.put(refund.getPaymentId(), refund);
+                publishQueuedUnsafe(refund);
+                refunds.add(refund);
+            }
+            return refunds;
+        } finally {
+            paymentLock.unlock();
+            Metrics.record(QUEUE_REFUNDS, startNanos);
+        }
+    }
+
+    /**
+     * Internal method to create and store a refund for a successful payment
+     * (assumes lock is already held)
+     */
+    private Payment createRefundUnsafe(Payment payment) {
+        if (payment.getPaymentStatus() != PaymentStatus.SUCCESS || payment.isRefund()) {
+            throw new RuntimeException("Cannot refund payment that was not successful");
+        }
+        if (refundsByPaymentId.containsKey(payment.getPaymentId())) {
+            throw new RuntimeException("Payment already refunded: " + payment.getPaymentId());
+        }
+
+        Payment refund = new Payment();
+        refund.setPaymentId(generatePaymentId());
+        refund.setPaymentMode(payment.getPaymentMode());
+        refund.setAmountPaise(-payment.getAmountPaise()); // Negative amount for refund
+        refund.setPaymentDate(new Date());
+        refund.setRefundedPaymentId(payment.getPaymentId());
+
+        // Store refund
+        paymentsById.put(refund.getPaymentId(), refund);
+        paymentHistory.add(refund);
+        refundsByPaymentId.put(payment.getPaymentId(), refund);
+        return refund;
+    }
+
+    /**
+     * Take every capture and refund waiting for settlement. Payments a settlement run does not
+     * finish go back through applySettlement.
+     */
+    public List<Payment> drainUnsettledPayments() {
+        paymentLock.lock();
+        try {
+            List<Payment> unsettled = new ArrayList<>(unsettledPayments.values());
+            unsettledPayments.clear();
+            return unsettled;
+        } finally {
+            paymentLock.unlock();
+        }
+    }
+
+    /**
+     * Apply the gateway's settlement results to payment statuses, all under one lock acquisition.
+     * Rejected captures become FAILED; rejected refunds become FAILED and may be queued again;
+     * payments without an answer (PENDING) wait for the next settlement run.
+     */
+    public void applySettlement(List<SettlementBatch> batches) {
+        long startNanos = System.nanoTime();
+        paymentLock.lock();
+        try {
+            for (SettlementBatch batch : batches) {
+                for (int i = 0; i < batch.size(); i++) {
+                    applySettlementUnsafe(batch.getPayment(i), batch.getResult(i));
+                }
+            }
+        } finally {
+            paymentLock.unlock();
+            Metrics.record(APPLY_SETTLEMENT, startNanos);
+        }
+    }
+
+    /**
+     * Internal method to apply one settlement result (assumes lock is already held)
+     */
+    private void applySettlementUnsafe(Payment payment, PaymentStatus result) {
+        if (result == null || result == PaymentStatus.PENDING) {
+            unsettledPayments.put(payment.getPaymentId(), payment);
+            return;
+        }
+        payment.setSettled(true);
+        if (result == PaymentStatus.SUCCESS) {
+            // Queued refunds succeed here; captures were announced when they were charged
+            boolean newlySucceeded = payment.getPaymentStatus() != PaymentStatus.SUCCESS;
+            payment.setPaid(true);
+            payment.setPaymentStatus(PaymentStatus.SUCCESS);
+            if (newlySucceeded) {
+                publishSucceededUnsafe(payment, null);
+            }
+        } else {
+            payment.setPaid(false);
+            payment.setPaymentStatus(PaymentStatus.FAILED);
+            if (payment.isRefund()) {
+                refundsByPaymentId.remove(payment.getRefundedPaymentId());
+            }
+        }
+        publishSettledUnsafe(payment);
+    }
+
+    /**
+     * Internal method to announce a payment or refund that has just succeeded, so events keep
+     * the order of status changes (assumes lock is already held)
+     */
+    private void publishSucceededUnsafe(Payment payment, String bookingId) {
+        BookingEventBus bus = eventBus;
+        if (bus != null) {
+            bus.publishPaymentEvent(payment.isRefund() ? EventType.REFUND_ISSUED : EventType.PAYMENT_SUCCEEDED,
+                    payment, bookingId);
+        }
+    }
+
+    /**
+     * Internal method to announce that the gateway settled a payment or refund, or rejected it
+     * (FAILED), so replicas never settle it again (assumes lock is already held)
+     */
+    private void publishSettledUnsafe(Payment payment) {
+        BookingEventBus bus = eventBus;
+        if (bus != null) {
+            bus.publishPaymentEvent(EventType.PAYMENT_SETTLED, payment, null);
+        }
+    }
+
+    /**
+     * Internal method to announce a refund queued for settlement (assumes lock is already held)
+     */
+    private void publishQueuedUnsafe(Payment refund) {
+        BookingEventBus bus = eventBus;
+        if (bus != null) {
+            bus.publishPaymentEvent(EventType.REFUND_QUEUED, refund, null);
         }
     }
 
@@ -280,8 +664,16 @@ public class PaymentController {
                 return false;
             }
 
+            boolean newlySucceeded = newStatus == PaymentStatus.SUCCESS
+                    && payment.getPaymentStatus() != PaymentStatus.SUCCESS;
             payment.setPaymentStatus(newStatus);
             payment.setPaid(newStatus == PaymentStatus.SUCCESS);
+            if (newStatus == PaymentStatus.SUCCESS && !payment.isSettled()) {
+                unsettledPayments.put(paymentId, payment);
+            }
+            if (newlySucceeded) {
+                publishSucceededUnsafe(payment, null);
+            }
 
             return true;
         } finally {
@@ -290,39 +682,99 @@ public class PaymentController {
     }
 
     /**
-     * Retry failed payment
+     * Retry failed payment. Concurrent retries of the same payment share one attempt, and once
+     * a retry succeeds every later retry of that payment returns it instead of charging again.
      */
     public Payment retryPayment(int paymentId, PaymentMode paymentMode) {
-        paymentLock.lock();
-        try {
-            Payment originalPayment = paymentsById.get(paymentId);
-            if (originalPayment == null) {
-                throw new RuntimeException("Payment not found: " + paymentId);
+        return idempotencyStore.execute("retry:" + paymentId, () -> {
+            paymentLock.lock();
+            try {
+                Payment successfulRetry = successfulRetries.get(paymentId);
+                if (successfulRetry != null) {
+                    return successfulRetry;
+                }
+            } finally {
+                paymentLock.unlock();
             }
+            return retryPaymentOnce(paymentId, paymentMode);
+        }, this::isSuccessful);
+    }
 
-            if (originalPayment.getPaymentStatus() != PaymentStatus.FAILED) {
-                throw new RuntimeException("Can only retry failed payments");
-            }
+    /**
+     * Make one retry attempt for a failed payment
+     */
+    private Payment retryPaymentOnce(int paymentId, PaymentMode paymentMode) {
+        long startNanos = System.nanoTime();
+        Payment originalPayment = getPaymentById(paymentId);
+        if (originalPayment == null) {
+            throw new RuntimeException("Payment not found: " + paymentId);
+        }
+        PaymentMode retryMode = paymentMode != null ? paymentMode : originalPayment.getPaymentMode();
 
-            // Create new payment attempt
+        CircuitBreaker circuitBreaker = circuitBreakers.get(retryMode);
+        Semaphore bulkhead = bulkheads.get(retryMode);
+        CircuitBreaker.Permission permission = acquireGatewayPermit(retryMode, circuitBreaker);
+        boolean charged = false;
+        try {
             Payment retryPayment = new Payment();
-            retryPayment.setPaymentId(generatePaymentId());
-            retryPayment.setPaymentMode(paymentMode != null ? paymentMode : originalPayment.getPaymentMode());
-            retryPayment.setAmount(originalPayment.getAmount());
-            retryPayment.setPaymentDate(new Date());
+            String bookingId;
+            paymentLock.lock();
+            try {
+                if (originalPayment.getPaymentStatus() != PaymentStatus.FAILED) {
+                    throw new RuntimeException("Can only retry failed payments");
+                }
+                // Another attempt for the booking is pending or has succeeded; do not charge twice
+                bookingId = bookingIdsByPaymentId.get(paymentId);
+                Payment current = bookingId != null ? paymentsByBookingId.get(bookingId) : null;
+                if (current != null && current != originalPayment && current.getPaymentStatus() != PaymentStatus.FAILED) {
+                    throw new RuntimeException("Booking " + bookingId + " already has a newer payment: "
+                            + current.getPaymentId());
+                }
 
-            // Process payment
-            boolean success = simulatePaymentProcessing(retryPayment.getPaymentMode(), retryPayment.getAmount());
-            retryPayment.setPaid(success);
-            retryPayment.setPaymentStatus(success ? PaymentStatus.SUCCESS : PaymentStatus.FAILED);
+                // Create new payment attempt
+                retryPayment.setPaymentId(generatePaymentId());
+                retryPayment.setPaymentMode(retryMode);
+                retryPayment.setAmountPaise(originalPayment.getAmountPaise());
+                retryPayment.setPaymentDate(new Date());
+                retryPayment.setPaid(false);
+                retryPayment.setPaymentStatus(PaymentStatus.PENDING);
+
+                // Store retry payment; it becomes the booking's payment, so confirmBooking finds it
+                paymentsById.put(retryPayment.getPaymentId(), retryPayment);
+                paymentHistory.add(retryPayment);
+                if (bookingId != null) {
+                    paymentsByBookingId.put(bookingId, retryPayment);
+                    bookingIdsByPaymentId.put(retryPayment.getPaymentId(), bookingId);
+                }
+            } finally {
+                paymentLock.unlock();
+            }
 
-            // Store retry payment
-            paymentsById.put(retryPayment.getPaymentId(), retryPayment);
-            paymentHistory.add(retryPayment);
+            // Process payment
+            charged = true;
+            PaymentStatus status = chargeThroughGateway(circuitBreaker, permission, retryPayment.getPaymentId(),
+                    retryMode, retryPayment.getAmountPaise());
 
+            paymentLock.lock();
+            try {
+                boolean success = status == PaymentStatus.SUCCESS;
+                retryPayment.setPaid(success);
+                retryPayment.setPaymentStatus(status);
+                if (success) {
+                    successfulRetries.put(paymentId, retryPayment);
+                    unsettledPayments.put(retryPayment.getPaymentId(), retryPayment);
+                    publishSucceededUnsafe(retryPayment, bookingId);
+                }
+            } finally {
+                paymentLock.unlock();
+            }
             return retryPayment;
         } finally {
-            paymentLock.unlock();
+            if (!charged) {
+                circuitBreaker.releasePermission(permission);
+            }
+            bulkhead.release();
+            Metrics.record(RETRY_PAYMENT, startNanos);
         }
     }
 
@@ -347,14 +799,19 @@ public class PaymentController {
                     .count();
             stats.put("failedPayments", failedPayments);
 
-            double totalAmount = payments.stream()
-                    .filter(p -> p.getPaymentStatus() == PaymentStatus.SUCCESS)
-                    .mapToDouble(Payment::getAmount)
-                    .sum();
-            stats.put("totalAmount", totalAmount);
+            long totalAmountPaise = 0;
+            for (Payment payment : payments) {
+                if (payment.getPaymentStatus() == PaymentStatus.SUCCESS) {
+                    totalAmountPaise = Money.add(totalAmountPaise, payment.getAmountPaise());
+                }
+            }
+            stats.put("totalAmountPaise", totalAmountPaise);
+            stats.put("totalAmount", Money.toRupees(totalAmountPaise));
 
-            double averageAmount = successfulPayments > 0 ? totalAmount / successfulPayments : 0.0;
-            stats.put("averageAmount", averageAmount);
+            long averageAmountPaise = successfulPayments > 0
+                    ? (totalAmountPaise + successfulPayments / 2) / successfulPayments : 0;
+            stats.put("averageAmountPaise", averageAmountPaise);
+            stats.put("averageAmount", Money.toRupees(averageAmountPaise));
 
             return stats;
         } finally {
@@ -418,16 +875,150 @@ public class PaymentController {
         }
     }
 
+    /**
+     * Get every payment in the order they were made, each with the booking it was made for
+     * (null for refunds and retries), under one lock acquisition
+     */
+    public Map<Payment, String> getPaymentsWithBookingIds() {
+        paymentLock.lock();
+        try {
+            Map<Payment, String> bookingIds = new IdentityHashMap<>();
+            for (Map.Entry<String, Payment> entry : paymentsByBookingId.entrySet()) {
+                bookingIds.put(entry.getValue(), entry.getKey());
+            }
+            Map<Payment, String> payments = new LinkedHashMap<>();
+            for (Payment payment : paymentHistory) {
+                payments.put(payment, bookingIds.get(payment));
+            }
+            return payments;
+        } finally {
+            paymentLock.unlock();
+        }
+    }
+
+    /**
+     * ID the next payment will get
+     */
+    public int getNextPaymentId() {
+        paymentLock.lock();
+        try {
+            return paymentIdCounter;
+        } finally {
+            paymentLock.unlock();
+        }
+    }
+
+    /**
+     * Make new payment IDs start at nextPaymentId or later, so they cannot reuse IDs given out
+     * elsewhere (e.g. by a replication primary)
+     */
+    public void advancePaymentIds(int nextPaymentId) {
+        paymentLock.lock();
+        try {
+            paymentIdCounter = Math.max(paymentIdCounter, nextPaymentId);
+        } finally {
+            paymentLock.unlock();
+        }
+    }
+
+    /**
+     * Store a payment recorded elsewhere (e.g. replayed from a replication primary) under its
+     * own ID, or bring the stored copy up to date. Nothing is charged or announced, and new
+     * payment IDs continue after it. Successful payments and pending refunds not yet settled
+     * are queued for settlement. Returns the stored payment.
+     */
+    public Payment restorePayment(Payment payment, String bookingId, String customerId) {
+        paymentLock.lock();
+        try {
+            Payment stored = paymentsById.get(payment.getPaymentId());
+            if (stored == null) {
+                stored = payment;
+                paymentsById.put(payment.getPaymentId(), payment);
+                paymentHistory.add(payment);
+                if (customerId != null) {
+                    paymentsByCustomerId.computeIfAbsent(customerId, k -> new ArrayList<>()).add(payment);
+                }
+                paymentIdCounter = Math.max(paymentIdCounter, payment.getPaymentId() + 1);
+            } else {
+                stored.setPaymentMode(payment.getPaymentMode());
+                stored.setAmountPaise(payment.getAmountPaise());
+                stored.setPaid(payment.isPaid());
+                stored.setPaymentStatus(payment.getPaymentStatus());
+                stored.setSettled(stored.isSettled() || payment.isSettled());
+            }
+
+            if (bookingId != null) {
+                paymentsByBookingId.put(bookingId, stored);
+                bookingIdsByPaymentId.put(stored.getPaymentId(), bookingId);
+            }
+            // A rejected refund frees its payment to be refunded again
+            if (stored.isRefund() && stored.getPaymentStatus() != PaymentStatus.FAILED) {
+                refundsByPaymentId.put(stored.getRefundedPaymentId(), stored);
+            } else if (stored.isRefund()) {
+                refundsByPaymentId.remove(stored.getRefundedPaymentId(), stored);
+            }
+            // Captures wait for settlement once they succeed, refunds from the moment they are queued
+            boolean awaitingSettlement = stored.getPaymentStatus() == PaymentStatus.SUCCESS
+                    || (stored.isRefund() && stored.getPaymentStatus() == PaymentStatus.PENDING);
+            if (awaitingSettlement && !stored.isSettled()) {
+                unsettledPayments.put(stored.getPaymentId(), stored);
+            } else {
+                unsettledPayments.remove(stored.getPaymentId());
+            }
+            return stored;
+        } finally {
+            paymentLock.unlock();
+        }
+    }
+
+    /**
+     * Hand a booking's payment over to another node: unlink it and forget it here, including any
+     * pending settlement, so only the new owner settles or refunds it. Earlier failed attempts
+     * for the booking stay behind. Nothing is announced. Returns the payment, or null if the
+     * booking has none.
+     */
+    public Payment detachPayment(String bookingId, String customerId) {
+        paymentLock.lock();
+        try {
+            Payment payment = paymentsByBookingId.remove(bookingId);
+            if (payment == null) {
+                return null;
+            }
+            bookingIdsByPaymentId.remove(payment.getPaymentId());
+            paymentsById.remove(payment.getPaymentId());
+            unsettledPayments.remove(payment.getPaymentId());
+            paymentHistory.remove(payment);
+            successfulRetries.values().remove(payment);
+            List<Payment> customerPayments = customerId != null ? paymentsByCustomerId.get(customerId) : null;
+            if (customerPayments != null) {
+                customerPayments.remove(payment);
+            }
+            return payment;
+        } finally {
+            paymentLock.unlock();
+        }
+    }
+
     /**
      * Get total revenue (sum of all successful payments)
      */
     public double getTotalRevenue() {
+        return Money.toRupees(getTotalRevenuePaise());
+    }
+
+    /**
+     * Get total revenue in paise (exact sum of all successful payments)
+     */
+    public long getTotalRevenuePaise() {
         paymentLock.lock();
         try {
-            return paymentHistory.stream()
-                    .filter(p -> p.getPaymentStatus() == PaymentStatus.SUCCESS && p.getAmount() > 0)
-                    .mapToDouble(Payment::getAmount)
-                    .sum();
+            long total = 0;
+            for (Payment payment : paymentHistory) {
+                if (payment.getPaymentStatus() == PaymentStatus.SUCCESS && payment.getAmountPaise() > 0) {
+                    total = Money.add(total, payment.getAmountPaise());
+                }
+            }
+            return total;
         } finally {
             paymentLock.unlock();
         }
@@ -437,12 +1028,23 @@ public class PaymentController {
      * Get total refunds (sum of all refund payments)
      */
     public double getTotalRefunds() {
+        return Money.toRupees(getTotalRefundsPaise());
+    }
+
+    /**
+     * Get total refunds in paise (exact sum of all refund payments, as a positive amount)
+     */
+    public long getTotalRefundsPaise() {
         paymentLock.lock();
         try {
-            return Math.abs(paymentHistory.stream()
-                    .filter(p -> p.getAmount() < 0)
-                    .mapToDouble(Payment::getAmount)
-                    .sum());
+            long total = 0;
+            for (Payment payment : paymentHistory) {
+                // Rejected refunds never returned any money
+                if (payment.getAmountPaise() < 0 && payment.getPaymentStatus() != PaymentStatus.FAILED) {
+                    total = Money.add(total, -payment.getAmountPaise());
+                }
+            }
+            return total;
         } finally {
             paymentLock.unlock();
         }
@@ -469,18 +1071,8 @@ public class PaymentController {
             return "Payment not found";
         }
 
-        StringBuilder details = new StringBuilder();
-        details.append("Payment ID: ").append(payment.getPaymentId()).append("\n");
-        details.append("Amount: ₹").append(Math.abs(payment.getAmount())).append("\n");
-        details.append("Payment Mode: ").append(payment.getPaymentMode()).append("\n");
-        details.append("Status: ").append(payment.getPaymentStatus()).append("\n");
-        details.append("Date: ").append(payment.getPaymentDate()).append("\n");
-        details.append("Paid: ").append(payment.isPaid()).append("\n");
-
-        if (payment.getAmount() < 0) {
-            details.append("Type: REFUND\n");
-        }
-
+        StringBuilder details = new StringBuilder(256);
+        ReceiptRenderer.renderPaymentDetails(payment, details);
         return details.toString();
     }
 
@@ -497,18 +1089,37 @@ public class PaymentController {
             return "Cannot generate receipt for unsuccessful payment";
         }
 
-        StringBuilder receipt = new StringBuilder();
-        receipt.append("================================\n");
-        receipt.append("      PAYMENT RECEIPT\n");
-        receipt.append("================================\n");
-        receipt.append("Payment ID: ").append(payment.getPaymentId()).append("\n");
-        receipt.append("Amount: ₹").append(payment.getAmount()).append("\n");
-        receipt.append("Payment Mode: ").append(payment.getPaymentMode()).append("\n");
-        receipt.append("Status: ").append(payment.getPaymentStatus()).append("\n");
-        receipt.append("Date: ").append(payment.getPaymentDate()).append("\n");
-        receipt.append("================================\n");
-        receipt.append("Thank you for your payment!\n");
-
+        StringBuilder receipt = new StringBuilder(320);
+        ReceiptRenderer.renderReceipt(payment, receipt);
         return receipt.toString();
     }
-}
\ No newline at end of file
+
+    /**
+     * Export the receipts of all successful payments made between from (inclusive) and
+     * to (exclusive) to a file, streaming them without building Strings.
+     * Returns the number of receipts written.
+     */
+    public int exportReceipts(Date from, Date to, Path file) {
+        List<Payment> payments = new ArrayList<>();
+        paymentLock.lock();
+        try {
+            for (Payment payment : paymentHistory) {
+                Date paymentDate = payment.getPaymentDate();
+                if (payment.getPaymentStatus() == PaymentStatus.SUCCESS && !payment.isRefund()
+                        && paymentDate != null && !paymentDate.before(from) && paymentDate.before(to)) {
+                    payments.add(payment);
+                }
+            }
+        } finally {
+            paymentLock.unlock();
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ReceiptRenderer.writeReceipts(payments, channel);
+        } catch (IOException e) {
+            throw new RuntimeException("Could not export receipts to " + file + ": " + e.getMessage());
+        }
+        return payments.size();
+    }
+}
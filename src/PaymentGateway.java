@@ -0,0 +1,23 @@
+import enums.PaymentMode;
+import enums.PaymentStatus;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Payment gateway SPI. Calls are asynchronous; the future completes with SUCCESS or FAILED
+ * once the gateway answers. A future that never completes models a gateway that hangs, and
+ * callers are expected to apply their own timeout.
+ */
+public interface PaymentGateway {
+
+    /**
+     * Charge an amount (in paise) for a payment
+     */
+    CompletableFuture<PaymentStatus> charge(int paymentId, PaymentMode paymentMode, long amountPaise);
+
+    /**
+     * Settle a batch of captures (positive amounts) and refunds (negative amounts) in one call.
+     * The future completes with one status per entry, in the same order.
+     */
+    CompletableFuture<PaymentStatus[]> settle(PaymentMode paymentMode, int[] paymentIds, long[] amountsPaise);
+}
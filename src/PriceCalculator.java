@@ -1,43 +1,258 @@
 import enums.SeatCategory;
 
+import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class PriceCalculator {
-    
-    // Pricing map for different seat categories
-    private static final Map<SeatCategory, Double> SEAT_PRICING = new HashMap<>();
-    
+
+    // Price in paise used for a category with no base price (100 rupees)
+    static final long DEFAULT_PRICE_PAISE = Money.ofRupees(100L);
+
+    // Pricing map for different seat categories, in paise
+    private static final Map<SeatCategory, Long> SEAT_PRICING = new EnumMap<>(SeatCategory.class);
+
+    // Active pricing rules (guarded by RULES_LOCK)
+    private static List<PricingRule> rules = new ArrayList<>();
+
+    // Lock for changing base prices or rules; lookups never take it
+    private static final Lock RULES_LOCK = new ReentrantLock();
+
+    // Compiled rules; replaced atomically so bookings never wait for a rule change
+    private static volatile PricingTable pricingTable;
+
+    // Per-show pricing versions; bumping one invalidates that show's cached quotes
+    private static final Map<Integer, Long> SHOW_PRICING_VERSIONS = new ConcurrentHashMap<>();
+
+    // Cached quotes for seat selections, keyed by the pricing versions they were computed under
+    private static final QuoteCache QUOTE_CACHE = new QuoteCache(10_000, 60_000);
+
     static {
-        SEAT_PRICING.put(SeatCategory.PREMIUM, 500.0);
-        SEAT_PRICING.put(SeatCategory.GOLD, 300.0);
-        SEAT_PRICING.put(SeatCategory.SILVER, 200.0);
-        SEAT_PRICING.put(SeatCategory.STANDARD, 100.0);
+        SEAT_PRICING.put(SeatCategory.PREMIUM, Money.ofRupees(500L));
+        SEAT_PRICING.put(SeatCategory.GOLD, Money.ofRupees(300L));
+        SEAT_PRICING.put(SeatCategory.SILVER, Money.ofRupees(200L));
+        SEAT_PRICING.put(SeatCategory.STANDARD, Money.ofRupees(100L));
+        pricingTable = PricingTable.compile(1, SEAT_PRICING, rules);
     }
-    
+
     /**
      * Get price for a seat category
      */
     public static double getPrice(SeatCategory category) {
-        return SEAT_PRICING.getOrDefault(category, 100.0); // Default to 100 if category not found
+        return Money.toRupees(getPricePaise(category));
+    }
+
+    /**
+     * Get price in paise for a seat category
+     */
+    public static long getPricePaise(SeatCategory category) {
+        return pricingTable.basePrice(category); // Categories without a base price default to 100 rupees
+    }
+
+    /**
+     * Get price for a seat category in a show, after pricing rules
+     */
+    public static double getPrice(Show show, SeatCategory category) {
+        return Money.toRupees(getPricePaise(show, category));
+    }
+
+    /**
+     * Get price in paise for a seat category in a show, after pricing rules
+     */
+    public static long getPricePaise(Show show, SeatCategory category) {
+        long[] prices = pricingTable.pricesFor(show.getShowId());
+        int slot = PricingTable.slot(show.getShowStartTime(), show.getAvailability().getOccupancy());
+        return PricingTable.price(prices, category, slot);
     }
-    
+
     /**
      * Get all pricing map
      */
     public static Map<SeatCategory, Double> getAllPricing() {
-        return new HashMap<>(SEAT_PRICING);
+        RULES_LOCK.lock();
+        try {
+            Map<SeatCategory, Double> pricing = new HashMap<>();
+            for (Map.Entry<SeatCategory, Long> entry : SEAT_PRICING.entrySet()) {
+                pricing.put(entry.getKey(), Money.toRupees(entry.getValue()));
+            }
+            return pricing;
+        } finally {
+            RULES_LOCK.unlock();
+        }
     }
-    
+
     /**
      * Calculate total amount for a list of seats
      */
     public static double calculateTotal(List<Seat> seats) {
-        double total = 0.0;
+        return Money.toRupees(calculateTotalPaise(seats));
+    }
+
+    /**
+     * Calculate total amount in paise for a list of seats
+     */
+    public static long calculateTotalPaise(List<Seat> seats) {
+        PricingTable table = pricingTable;
+        long total = 0;
+        for (Seat seat : seats) {
+            total += table.basePrice(seat.getSeatCategory());
+        }
+        return total;
+    }
+
+    /**
+     * Calculate total amount for a list of seats in a show, after pricing rules
+     */
+    public static double calculateTotal(Show show, List<Seat> seats) {
+        return Money.toRupees(calculateTotalPaise(show, seats));
+    }
+
+    /**
+     * Calculate total amount in paise for a list of seats in a show, after pricing rules
+     */
+    public static long calculateTotalPaise(Show show, List<Seat> seats) {
+        return calculateTotalPaise(show, show.getAvailability().getOccupancy(), seats);
+    }
+
+    /**
+     * Calculate total amount in paise for a list of seats in a show, after pricing rules, as
+     * if the show were at the given occupancy
+     */
+    public static long calculateTotalPaise(Show show, double occupancy, List<Seat> seats) {
+        // One volatile read, so the whole total comes from a single rule set
+        long[] prices = pricingTable.pricesFor(show.getShowId());
+        int slot = PricingTable.slot(show.getShowStartTime(), occupancy);
+        long total = 0;
+        for (int i = 0; i < seats.size(); i++) {
+            total += PricingTable.price(prices, seats.get(i).getSeatCategory(), slot);
+        }
+        return total;
+    }
+
+    /**
+     * Quote the price of a seat selection in a show (cached until pricing changes)
+     */
+    public static double quote(Show show, List<Seat> seats) {
+        return Money.toRupees(quotePaise(show, seats));
+    }
+
+    /**
+     * Quote the price in paise of a seat selection in a show (cached until pricing changes)
+     */
+    public static long quotePaise(Show show, List<Seat> seats) {
+        PricingTable table = pricingTable;
+        int slot = PricingTable.slot(show.getShowStartTime(), show.getAvailability().getOccupancy());
+        int[] seatsPerCategory = new int[SeatCategory.values().length];
         for (Seat seat : seats) {
-            total += getPrice(seat.getSeatCategory());
+            seatsPerCategory[seat.getSeatCategory().ordinal()]++;
+        }
+
+        QuoteCache.QuoteKey key = new QuoteCache.QuoteKey(show.getShowId(), seatsPerCategory, slot,
+                table.getVersion(), getShowPricingVersion(show.getShowId()));
+        long cached = QUOTE_CACHE.get(key);
+        if (cached >= 0) {
+            return cached;
+        }
+
+        long[] prices = table.pricesFor(show.getShowId());
+        long total = 0;
+        for (SeatCategory category : SeatCategory.values()) {
+            total += Money.times(PricingTable.price(prices, category, slot), seatsPerCategory[category.ordinal()]);
         }
+        QUOTE_CACHE.put(key, total);
         return total;
     }
+
+    /**
+     * Invalidate every cached quote for a show
+     */
+    public static void invalidateShowQuotes(int showId) {
+        SHOW_PRICING_VERSIONS.merge(showId, 1L, Long::sum);
+    }
+
+    /**
+     * Invalidate every cached quote
+     */
+    public static void invalidateAllQuotes() {
+        RULES_LOCK.lock();
+        try {
+            recompileUnsafe();
+            QUOTE_CACHE.clear();
+        } finally {
+            RULES_LOCK.unlock();
+        }
+    }
+
+    /**
+     * Get the quote cache (for monitoring hit rates)
+     */
+    public static QuoteCache getQuoteCache() {
+        return QUOTE_CACHE;
+    }
+
+    private static long getShowPricingVersion(int showId) {
+        Long version = SHOW_PRICING_VERSIONS.get(showId);
+        return version != null ? version : 0L;
+    }
+
+    /**
+     * Change the base price of a seat category
+     */
+    public static void setBasePrice(SeatCategory category, double price) {
+        long pricePaise = Money.ofRupees(price);
+        if (pricePaise <= 0) {
+            throw new RuntimeException("Price must be greater than zero");
+        }
+        RULES_LOCK.lock();
+        try {
+            SEAT_PRICING.put(category, pricePaise);
+            recompileUnsafe();
+        } finally {
+            RULES_LOCK.unlock();
+        }
+    }
+
+    /**
+     * Replace the pricing rules; takes effect for the next price lookup
+     */
+    public static void setRules(List<PricingRule> newRules) {
+        RULES_LOCK.lock();
+        try {
+            rules = new ArrayList<>(newRules);
+            recompileUnsafe();
+        } finally {
+            RULES_LOCK.unlock();
+        }
+    }
+
+    /**
+     * Get the active pricing rules
+     */
+    public static List<PricingRule> getRules() {
+        RULES_LOCK.lock();
+        try {
+            return new ArrayList<>(rules);
+        } finally {
+            RULES_LOCK.unlock();
+        }
+    }
+
+    /**
+     * Get the version of the active pricing table; it changes whenever prices or rules change
+     */
+    public static long getPricingVersion() {
+        return pricingTable.getVersion();
+    }
+
+    /**
+     * Internal method to compile and publish a new table (assumes lock is already held)
+     */
+    private static void recompileUnsafe() {
+        pricingTable = PricingTable.compile(pricingTable.getVersion() + 1, SEAT_PRICING, rules);
+    }
 }
@@ -0,0 +1,89 @@
+import enums.SeatCategory;
+
+/**
+ * A pricing adjustment: seats matching the show, category, start hour and occupancy range
+ * have their price multiplied by the rule's multiplier. Matching rules stack.
+ */
+public class PricingRule {
+
+    // Show ID, or ANY_SHOW to apply to every show
+    public static final int ANY_SHOW = -1;
+
+    int showId;
+    SeatCategory seatCategory;
+    int fromHour;
+    int toHour;
+    int minOccupancyPercent;
+    int maxOccupancyPercent;
+    double multiplier;
+
+    /**
+     * @param showId              show ID, or ANY_SHOW
+     * @param seatCategory        seat category, or null for every category
+     * @param fromHour            first show start hour (0-23) the rule applies to
+     * @param toHour              last show start hour (0-23); may be before fromHour to wrap past midnight
+     * @param minOccupancyPercent lowest occupancy (0-100) the rule applies to
+     * @param maxOccupancyPercent highest occupancy (0-100) the rule applies to
+     * @param multiplier          factor applied to the price, e.g. 1.2 for a 20% surge
+     */
+    public PricingRule(int showId, SeatCategory seatCategory, int fromHour, int toHour,
+                       int minOccupancyPercent, int maxOccupancyPercent, double multiplier) {
+        if (fromHour < 0 || fromHour > 23 || toHour < 0 || toHour > 23) {
+            throw new RuntimeException("Hours must be between 0 and 23");
+        }
+        if (minOccupancyPercent < 0 || maxOccupancyPercent > 100 || minOccupancyPercent > maxOccupancyPercent) {
+            throw new RuntimeException("Invalid occupancy range: " + minOccupancyPercent + "-" + maxOccupancyPercent);
+        }
+        if (multiplier <= 0) {
+            throw new RuntimeException("Multiplier must be greater than zero");
+        }
+        this.showId = showId;
+        this.seatCategory = seatCategory;
+        this.fromHour = fromHour;
+        this.toHour = toHour;
+        this.minOccupancyPercent = minOccupancyPercent;
+        this.maxOccupancyPercent = maxOccupancyPercent;
+        this.multiplier = multiplier;
+    }
+
+    /**
+     * Check whether the rule applies to a category, start hour and occupancy percentage
+     */
+    boolean matches(SeatCategory category, int hour, int occupancyPercent) {
+        if (seatCategory != null && seatCategory != category) {
+            return false;
+        }
+        boolean inHours = fromHour <= toHour
+                ? hour >= fromHour && hour <= toHour
+                : hour >= fromHour || hour <= toHour;
+        return inHours && occupancyPercent >= minOccupancyPercent && occupancyPercent <= maxOccupancyPercent;
+    }
+
+    public int getShowId() {
+        return showId;
+    }
+
+    public SeatCategory getSeatCategory() {
+        return seatCategory;
+    }
+
+    public int getFromHour() {
+        return fromHour;
+    }
+
+    public int getToHour() {
+        return toHour;
+    }
+
+    public int getMinOccupancyPercent() {
+        return minOccupancyPercent;
+    }
+
+    public int getMaxOccupancyPercent() {
+        return maxOccupancyPercent;
+    }
+
+    public double getMultiplier() {
+        return multiplier;
+    }
+}
@@ -0,0 +1,135 @@
+import enums.SeatCategory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Pricing rules compiled into flat lookup tables of paise, indexed by category, show start hour
+ * and occupancy decile. Immutable, so a new rule set is swapped in by publishing a new table.
+ */
+public final class PricingTable {
+
+    private static final SeatCategory[] CATEGORIES = SeatCategory.values();
+    private static final int HOURS = 24;
+
+    // Occupancy deciles 0%, 10%, ... 100%
+    private static final int OCCUPANCY_BUCKETS = 11;
+
+    private static final int TABLE_SIZE = CATEGORIES.length * HOURS * OCCUPANCY_BUCKETS;
+
+    private final long version;
+
+    // Base prices in paise indexed by SeatCategory ordinal, before any rule
+    private final long[] basePrices;
+
+    // Prices in paise for shows without show-specific rules
+    private final long[] defaultPrices;
+
+    // Sorted show IDs with show-specific rules, and their tables (same order)
+    private final int[] showIds;
+    private final long[][] showPrices;
+
+    private PricingTable(long version, long[] basePrices, long[] defaultPrices,
+                         int[] showIds, long[][] showPrices) {
+        this.version = version;
+        this.basePrices = basePrices;
+        this.defaultPrices = defaultPrices;
+        this.showIds = showIds;
+        this.showPrices = showPrices;
+    }
+
+    /**
+     * Compile base prices and rules into a table
+     */
+    static PricingTable compile(long version, Map<SeatCategory, Long> basePrices, List<PricingRule> rules) {
+        List<PricingRule> globalRules = new ArrayList<>();
+        Map<Integer, List<PricingRule>> rulesByShow = new TreeMap<>();
+        for (PricingRule rule : rules) {
+            if (rule.getShowId() == PricingRule.ANY_SHOW) {
+                globalRules.add(rule);
+            } else {
+                rulesByShow.computeIfAbsent(rule.getShowId(), k -> new ArrayList<>()).add(rule);
+            }
+        }
+
+        long[] categoryPrices = new long[CATEGORIES.length];
+        for (SeatCategory category : CATEGORIES) {
+            categoryPrices[category.ordinal()] = basePrices.getOrDefault(category, PriceCalculator.DEFAULT_PRICE_PAISE);
+        }
+        long[] defaultPrices = fill(basePrices, globalRules);
+
+        int[] showIds = new int[rulesByShow.size()];
+        long[][] showPrices = new long[rulesByShow.size()][];
+        int i = 0;
+        for (Map.Entry<Integer, List<PricingRule>> entry : rulesByShow.entrySet()) {
+            List<PricingRule> showRules = new ArrayList<>(globalRules);
+            showRules.addAll(entry.getValue());
+            showIds[i] = entry.getKey();
+            showPrices[i] = fill(basePrices, showRules);
+            i++;
+        }
+        return new PricingTable(version, categoryPrices, defaultPrices, showIds, showPrices);
+    }
+
+    private static long[] fill(Map<SeatCategory, Long> basePrices, List<PricingRule> rules) {
+        long[] prices = new long[TABLE_SIZE];
+        for (SeatCategory category : CATEGORIES) {
+            long basePrice = basePrices.getOrDefault(category, PriceCalculator.DEFAULT_PRICE_PAISE);
+            for (int hour = 0; hour < HOURS; hour++) {
+                for (int bucket = 0; bucket < OCCUPANCY_BUCKETS; bucket++) {
+                    double factor = 1.0;
+                    for (PricingRule rule : rules) {
+                        if (rule.matches(category, hour, bucket * 10)) {
+                            factor *= rule.getMultiplier();
+                        }
+                    }
+                    // Rounded once per cell, so every lookup returns whole paise
+                    prices[index(category.ordinal(), hour, bucket)] = Money.scale(basePrice, factor);
+                }
+            }
+        }
+        return prices;
+    }
+
+    private static int index(int categoryOrdinal, int hour, int bucket) {
+        return (categoryOrdinal * HOURS + hour) * OCCUPANCY_BUCKETS + bucket;
+    }
+
+    /**
+     * Get the base price of a category, before any rule
+     */
+    long basePrice(SeatCategory category) {
+        return basePrices[category.ordinal()];
+    }
+
+    /**
+     * Get the price table for a show (allocation-free)
+     */
+    long[] pricesFor(int showId) {
+        int position = Arrays.binarySearch(showIds, showId);
+        return position >= 0 ? showPrices[position] : defaultPrices;
+    }
+
+    /**
+     * Offset of a show's start hour and occupancy within a category block
+     */
+    static int slot(int showStartTime, double occupancy) {
+        int hour = Math.min(HOURS - 1, Math.max(0, showStartTime / 100));
+        int bucket = Math.min(OCCUPANCY_BUCKETS - 1, Math.max(0, (int) (occupancy * 10)));
+        return hour * OCCUPANCY_BUCKETS + bucket;
+    }
+
+    /**
+     * Look up a price in a table returned by pricesFor
+     */
+    static long price(long[] prices, SeatCategory category, int slot) {
+        return prices[category.ordinal() * HOURS * OCCUPANCY_BUCKETS + slot];
+    }
+
+    public long getVersion() {
+        return version;
+    }
+}
@@ -0,0 +1,225 @@
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded LRU cache of price quotes with a time-to-live. Keys carry the pricing versions they
+ * were computed under, so bumping a version makes every older entry unreachable at once.
+ * Entries are split by key hash over independent LRU segments, each with its own lock, so
+ * lookups for different shows rarely wait on each other; eviction is LRU per segment, which
+ * keeps about maxEntries in total.
+ */
+public class QuoteCache {
+
+    // Upper bound on segments; more would only spread a small cache thinner
+    private static final int MAX_SEGMENTS = 64;
+
+    private final long ttlNanos;
+
+    private final Segment[] segments;
+    private final int segmentMask;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public QuoteCache(int maxEntries, long ttlMillis) {
+        if (maxEntries <= 0) {
+            throw new RuntimeException("Cache size must be greater than zero");
+        }
+        this.ttlNanos = ttlMillis * 1_000_000L;
+
+        // A power of two, about four per processor, and never more segments than entries
+        int wanted = Math.min(Math.min(MAX_SEGMENTS, maxEntries), 4 * Runtime.getRuntime().availableProcessors());
+        int segmentCount = Integer.highestOneBit(Math.max(1, wanted));
+        int segmentCapacity = (maxEntries + segmentCount - 1) / segmentCount;
+        this.segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment(segmentCapacity);
+        }
+        this.segmentMask = segmentCount - 1;
+    }
+
+    /**
+     * Get a cached quote in paise, or -1 if there is none or it has expired
+     */
+    public long get(QuoteKey key) {
+        Segment segment = segmentFor(key);
+        long amountPaise = -1;
+        segment.lock.lock();
+        try {
+            CachedQuote quote = segment.entries.get(key);
+            if (quote != null) {
+                if (System.nanoTime() - quote.createdAtNanos > ttlNanos) {
+                    segment.entries.remove(key);
+                } else {
+                    amountPaise = quote.amountPaise;
+                }
+            }
+        } finally {
+            segment.lock.unlock();
+        }
+        if (amountPaise < 0) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return amountPaise;
+    }
+
+    /**
+     * Cache a quote in paise
+     */
+    public void put(QuoteKey key, long amountPaise) {
+        CachedQuote quote = new CachedQuote(amountPaise, System.nanoTime());
+        Segment segment = segmentFor(key);
+        segment.lock.lock();
+        try {
+            segment.entries.put(key, quote);
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    /**
+     * Drop expired entries
+     */
+    public void evictExpired() {
+        long now = System.nanoTime();
+        for (Segment segment : segments) {
+            segment.lock.lock();
+            try {
+                Iterator<CachedQuote> iterator = segment.entries.values().iterator();
+                while (iterator.hasNext()) {
+                    if (now - iterator.next().createdAtNanos > ttlNanos) {
+                        iterator.remove();
+                    }
+                }
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Drop every entry
+     */
+    public void clear() {
+        for (Segment segment : segments) {
+            segment.lock.lock();
+            try {
+                segment.entries.clear();
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Number of entries (summed segment by segment, so not a snapshot under concurrent use)
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            segment.lock.lock();
+            try {
+                size += segment.entries.size();
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+        return size;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    private Segment segmentFor(QuoteKey key) {
+        int h = key.hashCode();
+        return segments[(h ^ (h >>> 16)) & segmentMask];
+    }
+
+    /**
+     * One LRU segment
+     */
+    private static final class Segment {
+
+        private final Lock lock = new ReentrantLock();
+
+        // Access-ordered, so the eldest entry is the least recently used (guarded by lock)
+        private final LinkedHashMap<QuoteKey, CachedQuote> entries;
+
+        Segment(int capacity) {
+            this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<QuoteKey, CachedQuote> eldest) {
+                    return size() > capacity;
+                }
+            };
+        }
+    }
+
+    private static final class CachedQuote {
+        final long amountPaise;
+        final long createdAtNanos;
+
+        CachedQuote(long amountPaise, long createdAtNanos) {
+            this.amountPaise = amountPaise;
+            this.createdAtNanos = createdAtNanos;
+        }
+    }
+
+    /**
+     * Quote key: show, seats per category, pricing slot (start hour and occupancy decile)
+     * and the global and per-show pricing versions the quote was computed under
+     */
+    public static final class QuoteKey {
+        final int showId;
+        final int[] seatsPerCategory;
+        final int slot;
+        final long pricingVersion;
+        final long showVersion;
+        private final int hash;
+
+        QuoteKey(int showId, int[] seatsPerCategory, int slot, long pricingVersion, long showVersion) {
+            this.showId = showId;
+            this.seatsPerCategory = seatsPerCategory;
+            this.slot = slot;
+            this.pricingVersion = pricingVersion;
+            this.showVersion = showVersion;
+            int h = showId;
+            h = 31 * h + Arrays.hashCode(seatsPerCategory);
+            h = 31 * h + slot;
+            h = 31 * h + Long.hashCode(pricingVersion);
+            h = 31 * h + Long.hashCode(showVersion);
+            this.hash = h;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof QuoteKey)) {
+                return false;
+            }
+            QuoteKey other = (QuoteKey) o;
+            return showId == other.showId && slot == other.slot
+                    && pricingVersion == other.pricingVersion && showVersion == other.showVersion
+                    && Arrays.equals(seatsPerCategory, other.seatsPerCategory);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
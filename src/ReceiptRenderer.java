@@ -0,0 +1,367 @@
+import enums.PaymentMode;
+import enums.PaymentStatus;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+
+/**
+ * Renders receipts, payment details and booking details straight into an Appendable, a
+ * ByteBuffer or a channel. The fixed text is encoded once up front, enum names and dates are
+ * cached, and numbers are written digit by digit, so rendering does not build Strings.
+ */
+public final class ReceiptRenderer {
+
+    // Fixed text of the templates, as text (for Appendable) and UTF-8 bytes (for buffers)
+    private static final Fragment RULE = new Fragment("================================\n");
+    private static final Fragment RECEIPT_TITLE = new Fragment("      PAYMENT RECEIPT\n");
+    private static final Fragment PAYMENT_ID = new Fragment("Payment ID: ");
+    private static final Fragment AMOUNT = new Fragment("Amount: ₹");
+    private static final Fragment PAYMENT_MODE = new Fragment("Payment Mode: ");
+    private static final Fragment STATUS = new Fragment("Status: ");
+    private static final Fragment DATE = new Fragment("Date: ");
+    private static final Fragment PAID = new Fragment("Paid: ");
+    private static final Fragment REFUND_TYPE = new Fragment("Type: REFUND\n");
+    private static final Fragment THANK_YOU = new Fragment("Thank you for your payment!\n");
+    private static final Fragment BOOKING_ID = new Fragment("Booking ID: ");
+    private static final Fragment MOVIE = new Fragment("Movie: ");
+    private static final Fragment SHOW_TIME = new Fragment("Show Time: ");
+    private static final Fragment SEATS = new Fragment("Seats: ");
+    private static final Fragment TOTAL_AMOUNT = new Fragment("Total Amount: ₹");
+    private static final Fragment PAYMENT_STATUS = new Fragment("Payment Status: ");
+    private static final Fragment NULL = new Fragment("null");
+    private static final Fragment TRUE = new Fragment("true");
+    private static final Fragment FALSE = new Fragment("false");
+
+    private static final Fragment[] PAYMENT_MODES = fragments(PaymentMode.values());
+    private static final Fragment[] PAYMENT_STATUSES = fragments(PaymentStatus.values());
+
+    // Upper bound on the size of one rendered receipt, used to decide when to flush during export
+    private static final int MAX_RECEIPT_BYTES = 512;
+
+    // Reused export buffer per thread
+    private static final ThreadLocal<ByteBuffer> EXPORT_BUFFERS =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(64 * 1024));
+
+    // Last formatted date per thread; bulk exports see the same second over and over
+    private static final ThreadLocal<DateCache> DATE_CACHES = ThreadLocal.withInitial(DateCache::new);
+
+    private ReceiptRenderer() {
+    }
+
+    /**
+     * Render a payment receipt
+     */
+    public static void renderReceipt(Payment payment, Appendable out) throws IOException {
+        try {
+            receipt(payment, new TextOutput(out));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Render a payment receipt into a StringBuilder
+     */
+    public static void renderReceipt(Payment payment, StringBuilder out) {
+        receipt(payment, new TextOutput(out));
+    }
+
+    /**
+     * Render a payment receipt as UTF-8 into a buffer
+     */
+    public static void renderReceipt(Payment payment, ByteBuffer out) {
+        receipt(payment, new BufferOutput(out));
+    }
+
+    /**
+     * Render the details of a payment
+     */
+    public static void renderPaymentDetails(Payment payment, Appendable out) throws IOException {
+        try {
+            paymentDetails(payment, new TextOutput(out));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Render the details of a payment into a StringBuilder
+     */
+    public static void renderPaymentDetails(Payment payment, StringBuilder out) {
+        paymentDetails(payment, new TextOutput(out));
+    }
+
+    /**
+     * Render the details of a payment as UTF-8 into a buffer
+     */
+    public static void renderPaymentDetails(Payment payment, ByteBuffer out) {
+        paymentDetails(payment, new BufferOutput(out));
+    }
+
+    /**
+     * Render the details of a booking
+     */
+    public static void renderBookingDetails(Booking booking, Appendable out) throws IOException {
+        try {
+            bookingDetails(booking, new TextOutput(out));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Render the details of a booking into a StringBuilder
+     */
+    public static void renderBookingDetails(Booking booking, StringBuilder out) {
+        bookingDetails(booking, new TextOutput(out));
+    }
+
+    /**
+     * Render the details of a booking as UTF-8 into a buffer
+     */
+    public static void renderBookingDetails(Booking booking, ByteBuffer out) {
+        bookingDetails(booking, new BufferOutput(out));
+    }
+
+    /**
+     * Stream receipts for the given payments to a channel, separated by blank lines.
+     * Returns the number of bytes written.
+     */
+    public static long writeReceipts(Iterable<Payment> payments, WritableByteChannel channel) throws IOException {
+        ByteBuffer buffer = EXPORT_BUFFERS.get();
+        buffer.clear();
+        BufferOutput output = new BufferOutput(buffer);
+        long written = 0;
+        for (Payment payment : payments) {
+            if (buffer.remaining() < MAX_RECEIPT_BYTES) {
+                written += flush(buffer, channel);
+            }
+            receipt(payment, output);
+            buffer.put((byte) '\n');
+        }
+        return written + flush(buffer, channel);
+    }
+
+    private static long flush(ByteBuffer buffer, WritableByteChannel channel) throws IOException {
+        buffer.flip();
+        long written = buffer.remaining();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+        return written;
+    }
+
+    private static void receipt(Payment payment, Output out) {
+        out.put(RULE);
+        out.put(RECEIPT_TITLE);
+        out.put(RULE);
+        out.put(PAYMENT_ID).putLong(payment.getPaymentId()).newLine();
+        out.put(AMOUNT).putPaise(payment.getAmountPaise()).newLine();
+        out.put(PAYMENT_MODE).put(fragment(PAYMENT_MODES, payment.getPaymentMode())).newLine();
+        out.put(STATUS).put(fragment(PAYMENT_STATUSES, payment.getPaymentStatus())).newLine();
+        out.put(DATE).put(formatDate(payment.getPaymentDate())).newLine();
+        out.put(RULE);
+        out.put(THANK_YOU);
+    }
+
+    private static void paymentDetails(Payment payment, Output out) {
+        out.put(PAYMENT_ID).putLong(payment.getPaymentId()).newLine();
+        out.put(AMOUNT).putPaise(Math.abs(payment.getAmountPaise())).newLine();
+        out.put(PAYMENT_MODE).put(fragment(PAYMENT_MODES, payment.getPaymentMode())).newLine();
+        out.put(STATUS).put(fragment(PAYMENT_STATUSES, payment.getPaymentStatus())).newLine();
+        out.put(DATE).put(formatDate(payment.getPaymentDate())).newLine();
+        out.put(PAID).put(payment.isPaid() ? TRUE : FALSE).newLine();
+        if (payment.isRefund()) {
+            out.put(REFUND_TYPE);
+        }
+    }
+
+    private static void bookingDetails(Booking booking, Output out) {
+        out.put(BOOKING_ID).putText(booking.getBookingId()).newLine();
+        out.put(MOVIE).putText(booking.getShow().getMovie().getTitle()).newLine();
+        out.put(SHOW_TIME).putLong(booking.getShow().getShowStartTime()).newLine();
+        out.put(SEATS);
+        for (Seat seat : booking.getBookedSeats()) {
+            out.putLong(seat.getSeatNumber()).putByte(' ');
+        }
+        out.newLine();
+        out.put(TOTAL_AMOUNT).putPaise(booking.getTotalAmountPaise()).newLine();
+        if (booking.getPayment() != null) {
+            out.put(PAYMENT_STATUS).put(fragment(PAYMENT_STATUSES, booking.getPayment().getPaymentStatus())).newLine();
+        }
+    }
+
+    private static Fragment fragment(Fragment[] fragments, Enum<?> value) {
+        return value != null ? fragments[value.ordinal()] : NULL;
+    }
+
+    private static Fragment[] fragments(Enum<?>[] values) {
+        Fragment[] fragments = new Fragment[values.length];
+        for (Enum<?> value : values) {
+            fragments[value.ordinal()] = new Fragment(value.name());
+        }
+        return fragments;
+    }
+
+    /**
+     * Format a date the way Date.toString does, reusing the last result within the same second
+     */
+    private static Fragment formatDate(Date date) {
+        if (date == null) {
+            return NULL;
+        }
+        DateCache cache = DATE_CACHES.get();
+        long second = Math.floorDiv(date.getTime(), 1000L);
+        if (cache.formatted == null || cache.second != second) {
+            cache.second = second;
+            cache.formatted = new Fragment(date.toString());
+        }
+        return cache.formatted;
+    }
+
+    /**
+     * Fixed piece of text, kept both as a String and as UTF-8 bytes
+     */
+    private static final class Fragment {
+        final String text;
+        final byte[] utf8;
+
+        Fragment(String text) {
+            this.text = text;
+            this.utf8 = text.getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    private static final class DateCache {
+        long second;
+        Fragment formatted;
+    }
+
+    /**
+     * Destination of rendered text
+     */
+    private abstract static class Output {
+
+        abstract Output put(Fragment fragment);
+
+        abstract Output putByte(char ascii);
+
+        abstract Output putText(String text);
+
+        Output newLine() {
+            return putByte('\n');
+        }
+
+        /**
+         * Write a number as digits without creating a String
+         */
+        Output putLong(long value) {
+            if (value < 0) {
+                putByte('-');
+                if (value == Long.MIN_VALUE) {
+                    return putText("9223372036854775808");
+                }
+                value = -value;
+            }
+            long divisor = 1;
+            while (value / divisor >= 10) {
+                divisor *= 10;
+            }
+            for (; divisor > 0; divisor /= 10) {
+                putByte((char) ('0' + (value / divisor) % 10));
+            }
+            return this;
+        }
+
+        /**
+         * Write an amount in paise as rupees with two decimals, like Money.format
+         */
+        Output putPaise(long paise) {
+            if (paise < 0) {
+                putByte('-');
+            }
+            long abs = Math.abs(paise);
+            long fraction = abs % Money.PAISE_PER_RUPEE;
+            putLong(abs / Money.PAISE_PER_RUPEE).putByte('.');
+            if (fraction < 10) {
+                putByte('0');
+            }
+            return putLong(fraction);
+        }
+    }
+
+    private static final class TextOutput extends Output {
+        private final Appendable out;
+
+        TextOutput(Appendable out) {
+            this.out = out;
+        }
+
+        @Override
+        Output put(Fragment fragment) {
+            return putText(fragment.text);
+        }
+
+        @Override
+        Output putByte(char ascii) {
+            try {
+                out.append(ascii);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return this;
+        }
+
+        @Override
+        Output putText(String text) {
+            try {
+                out.append(text != null ? text : "null");
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return this;
+        }
+    }
+
+    private static final class BufferOutput extends Output {
+        private final ByteBuffer out;
+
+        BufferOutput(ByteBuffer out) {
+            this.out = out;
+        }
+
+        @Override
+        Output put(Fragment fragment) {
+            out.put(fragment.utf8);
+            return this;
+        }
+
+        @Override
+        Output putByte(char ascii) {
+            out.put((byte) ascii);
+            return this;
+        }
+
+        @Override
+        Output putText(String text) {
+            if (text == null) {
+                return put(NULL);
+            }
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (c >= 0x80) {
+                    // Non-ASCII text (e.g. a regional movie title) goes through the encoder
+                    out.put(text.substring(i).getBytes(StandardCharsets.UTF_8));
+                    return this;
+                }
+                out.put((byte) c);
+            }
+            return this;
+        }
+    }
+}
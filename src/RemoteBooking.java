@@ -0,0 +1,76 @@
+import enums.City;
+
+import java.util.List;
+
+/**
+ * A booking made through RoutingBookingClient, as reported by the node that owns its city
+ */
+public class RemoteBooking {
+
+    private String bookingId;
+    private City city;
+    private int showId;
+    private List<Integer> seatNumbers;
+    private long totalAmountPaise;
+
+    // Node that took the booking; the city may have moved since
+    private String nodeId;
+
+    public RemoteBooking(String bookingId, City city, int showId, List<Integer> seatNumbers,
+                         long totalAmountPaise, String nodeId) {
+        this.bookingId = bookingId;
+        this.city = city;
+        this.showId = showId;
+        this.seatNumbers = seatNumbers;
+        this.totalAmountPaise = totalAmountPaise;
+        this.nodeId = nodeId;
+    }
+
+    public String getBookingId() {
+        return bookingId;
+    }
+
+    public void setBookingId(String bookingId) {
+        this.bookingId = bookingId;
+    }
+
+    public City getCity() {
+        return city;
+    }
+
+    public void setCity(City city) {
+        this.city = city;
+    }
+
+    public int getShowId() {
+        return showId;
+    }
+
+    public void setShowId(int showId) {
+        this.showId = showId;
+    }
+
+    public List<Integer> getSeatNumbers() {
+        return seatNumbers;
+    }
+
+    public void setSeatNumbers(List<Integer> seatNumbers) {
+        this.seatNumbers = seatNumbers;
+    }
+
+    public long getTotalAmountPaise() {
+        return totalAmountPaise;
+    }
+
+    public void setTotalAmountPaise(long totalAmountPaise) {
+        this.totalAmountPaise = totalAmountPaise;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public void setNodeId(String nodeId) {
+        this.nodeId = nodeId;
+    }
+}
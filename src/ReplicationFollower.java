@@ -0,0 +1,318 @@
+import enums.PaymentMode;
+import enums.PaymentStatus;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Follower side of booking state replication: applies the log streamed by a ReplicationPrimary
+ * to its own BookingController and PaymentController, and serves read-only booking and payment
+ * queries from them. The follower needs the same catalog and customers as the primary; only
+ * bookings and payments are replicated.
+ *
+ * After a primary failure, promote() the follower that got furthest (see promoteMostCaughtUp);
+ * replication stops and its controllers take writes from then on. Payments keep the settlement
+ * state the primary reported, so a promoted follower only settles what the primary had not.
+ * Waitlists and seat holds are not carried over.
+ */
+public class ReplicationFollower {
+
+    // Wait between attempts to reach the primary
+    private static final long RECONNECT_MILLIS = 1000;
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 2000;
+
+    private final InetSocketAddress primary;
+    private final TheatreController theatreController;
+    private final CustomerController customerController;
+    private final BookingController bookingController;
+    private final PaymentController paymentController;
+
+    // Sequence of the primary's log applied so far
+    private volatile long appliedSequence = -1;
+
+    // Whether a complete snapshot has been applied (false while one is arriving)
+    private volatile boolean synced;
+
+    // Whether the stream is connected and the last heartbeat has been reached
+    private volatile boolean caughtUp;
+
+    private volatile boolean running;
+    private volatile boolean promoted;
+    private volatile Socket socket;
+    private Thread thread;
+
+    public ReplicationFollower(String primaryHost, int primaryPort, TheatreController theatreController,
+                               CustomerController customerController, BookingController bookingController,
+                               PaymentController paymentController) {
+        this.primary = new InetSocketAddress(primaryHost, primaryPort);
+        this.theatreController = theatreController;
+        this.customerController = customerController;
+        this.bookingController = bookingController;
+        this.paymentController = paymentController;
+    }
+
+    /**
+     * Start following the primary, reconnecting (from a fresh snapshot) whenever the stream breaks
+     */
+    public void start() {
+        if (promoted) {
+            throw new RuntimeException("Follower has been promoted");
+        }
+        running = true;
+        thread = new Thread(this::followLoop, "replication-follower");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stop following and let the controllers take writes. Refuses a follower that has not
+     * applied a complete snapshot yet.
+     */
+    public void promote() {
+        if (!synced) {
+            throw new RuntimeException("Follower has not caught up with the primary");
+        }
+        stopFollowing();
+        if (!synced) {
+            // A fresh snapshot was arriving when the stream was cut
+            throw new RuntimeException("Follower lost its snapshot while being promoted");
+        }
+        promoted = true;
+    }
+
+    /**
+     * Promote the synced follower that has applied the most of the log; returns it
+     */
+    public static ReplicationFollower promoteMostCaughtUp(Collection<ReplicationFollower> followers) {
+        ReplicationFollower best = null;
+        for (ReplicationFollower follower : followers) {
+            if (follower.isSynced() && (best == null || follower.getAppliedSequence() > best.getAppliedSequence())) {
+                best = follower;
+            }
+        }
+        if (best == null) {
+            throw new RuntimeException("No follower has caught up with the primary");
+        }
+        best.promote();
+        for (ReplicationFollower follower : followers) {
+            if (follower != best) {
+                follower.stop();
+            }
+        }
+        return best;
+    }
+
+    public void stop() {
+        stopFollowing();
+    }
+
+    private void stopFollowing() {
+        running = false;
+        Socket current = socket;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException ignored) {
+                // Closing anyway
+            }
+        }
+        if (thread != null && thread != Thread.currentThread()) {
+            // Wakes it if it is waiting to reconnect
+            thread.interrupt();
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        caughtUp = false;
+    }
+
+    public Booking getBooking(String bookingId) {
+        return bookingController.getBooking(bookingId);
+    }
+
+    public List<Booking> getShowBookings(int showId) {
+        Show show = theatreController.getShowById(showId);
+        return show != null ? bookingController.getShowBookings(show) : new ArrayList<>();
+    }
+
+    public Payment getPaymentById(int paymentId) {
+        return paymentController.getPaymentById(paymentId);
+    }
+
+    public Payment getPaymentByBookingId(String bookingId) {
+        return paymentController.getPaymentByBookingId(bookingId);
+    }
+
+    public List<Payment> getCustomerPayments(String customerId) {
+        return paymentController.getCustomerPayments(customerId);
+    }
+
+    /**
+     * Booking controller for writes; only after promote()
+     */
+    public BookingController getBookingController() {
+        requirePromoted();
+        return bookingController;
+    }
+
+    /**
+     * Payment controller for writes; only after promote()
+     */
+    public PaymentController getPaymentController() {
+        requirePromoted();
+        return paymentController;
+    }
+
+    public long getAppliedSequence() {
+        return appliedSequence;
+    }
+
+    public boolean isSynced() {
+        return synced;
+    }
+
+    /**
+     * Whether the follower is connected and has applied everything the primary has sent
+     */
+    public boolean isCaughtUp() {
+        return caughtUp;
+    }
+
+    public boolean isPromoted() {
+        return promoted;
+    }
+
+    private void requirePromoted() {
+        if (!promoted) {
+            throw new RuntimeException("Follower is read-only until promoted");
+        }
+    }
+
+    private void followLoop() {
+        while (running) {
+            try (Socket current = new Socket()) {
+                current.setTcpNoDelay(true);
+                current.connect(primary, CONNECT_TIMEOUT_MILLIS);
+                socket = current;
+                if (!running) {
+                    return;
+                }
+                follow(current);
+            } catch (IOException | RuntimeException e) {
+                // Primary unreachable, gone or sending garbage; keep what has been applied and try again
+            } finally {
+                socket = null;
+                caughtUp = false;
+            }
+            if (running) {
+                try {
+                    Thread.sleep(RECONNECT_MILLIS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void follow(Socket current) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(current.getInputStream(),
+                StandardCharsets.UTF_8), 64 * 1024);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(current.getOutputStream(), StandardCharsets.UTF_8));
+        boolean inSnapshot = false;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            String[] fields = line.split(" ");
+            String type = fields[0];
+            long sequence = Long.parseLong(fields[1]);
+            if (type.equals("S")) {
+                inSnapshot = true;
+                synced = false;
+                caughtUp = false;
+                clearBookings();
+            } else if (type.equals("E")) {
+                inSnapshot = false;
+                appliedSequence = sequence;
+                synced = true;
+            } else if (type.equals("H")) {
+                appliedSequence = Math.max(appliedSequence, sequence);
+                paymentController.advancePaymentIds(Integer.parseInt(fields[2]));
+                caughtUp = synced && !reader.ready();
+            } else if (inSnapshot || sequence > appliedSequence) {
+                apply(type, fields);
+                if (!inSnapshot) {
+                    appliedSequence = sequence;
+                }
+            }
+
+            // Acknowledge once everything received so far is applied
+            if (!reader.ready()) {
+                writer.write("A " + appliedSequence + "\n");
+                writer.flush();
+            }
+        }
+    }
+
+    /**
+     * Apply one booking or payment record
+     */
+    private void apply(String type, String[] fields) {
+        if (type.equals("C")) {
+            Customer customer = fields[3].equals("-") ? null : customerController.getCustomerById(fields[3]);
+            Show show = theatreController.getShowById(Integer.parseInt(fields[4]));
+            if (show == null) {
+                return;
+            }
+            if (bookingController.getBooking(fields[2]) != null) {
+                // Already applied (a snapshot may run ahead of the log)
+                return;
+            }
+            // Any other failure (e.g. a seat still taken) means records were missed; the
+            // RuntimeException breaks the stream, and the reconnect brings a fresh snapshot
+            bookingController.attachBooking(fields[2], customer, show, BookingNode.parseSeats(fields[6]),
+                    Long.parseLong(fields[5]), Long.parseLong(fields[7]));
+        } else if (type.equals("X")) {
+            bookingController.applyCancellation(fields[2]);
+        } else if (type.equals("P")) {
+            Payment payment = new Payment();
+            payment.setPaymentId(Integer.parseInt(fields[2]));
+            payment.setPaymentMode(PaymentMode.valueOf(fields[4]));
+            payment.setAmountPaise(Long.parseLong(fields[5]));
+            payment.setRefundedPaymentId(Integer.parseInt(fields[6]));
+            payment.setPaymentStatus(fields[7].equals("-") ? null : PaymentStatus.valueOf(fields[7]));
+            payment.setPaid(payment.getPaymentStatus() == PaymentStatus.SUCCESS);
+            payment.setSettled(Boolean.parseBoolean(fields[8]));
+            payment.setPaymentDate(new Date(Long.parseLong(fields[9])));
+
+            String bookingId = fields[3].equals("-") ? null : fields[3];
+            Booking booking = bookingId != null ? bookingController.getBooking(bookingId) : null;
+            String customerId = booking != null && booking.getCustomer() != null
+                    ? booking.getCustomer().getCustomerId() : null;
+            Payment stored = paymentController.restorePayment(payment, bookingId, customerId);
+            if (booking != null) {
+                bookingController.attachPayment(bookingId, stored);
+            }
+        }
+    }
+
+    /**
+     * Drop every replicated booking before a snapshot replaces them, without cancelling or
+     * announcing them
+     */
+    private void clearBookings() {
+        bookingController.resetBookings();
+    }
+}
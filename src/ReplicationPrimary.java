@@ -0,0 +1,408 @@
+import enums.EventType;
+import enums.PaymentStatus;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Primary side of booking state replication. Registered as a handler on the BookingEventBus,
+ * it turns seat claims, cancellations, payments and refunds into log records, batches them per
+ * bus batch and streams them to every connected ReplicationFollower. The booking path only
+ * publishes to the bus as before; encoding and shipping run on the handler thread and on one
+ * sender thread per follower, which writes batches back to back without waiting for acks.
+ *
+ * A follower starts from a snapshot of the live bookings and all payments, then gets the log
+ * from there. It is sent a fresh snapshot whenever it may have missed records: when it falls
+ * more than queueBatches batches behind, or when the bus dropped events because its ring was full.
+ *
+ * Records are text lines, each tagged with the bus sequence it was taken at:
+ *   C <seq> <bookingId> <customerId|-> <showId> <amountPaise> <seat,seat,...> <bookedAtMillis>   booking claimed
+ *   X <seq> <bookingId>                                                                          booking cancelled
+ *   P <seq> <paymentId> <bookingId|-> <mode> <amountPaise> <refundedPaymentId> <status|-> <settled> <dateMillis>
+ *   S <seq> ... E <seq>     snapshot taken at seq: every live booking (C) and payment (P) in between
+ *   H <seq> <nextPaymentId> everything up to seq has been sent; payment IDs given out so far
+ * The follower answers "A <seq>" once it has applied everything up to seq.
+ */
+public class ReplicationPrimary implements BookingEventHandler {
+
+    // Batches a follower may fall behind before it is sent a snapshot instead
+    private static final int DEFAULT_QUEUE_BATCHES = 1024;
+
+    // A bus batch is cut into several log batches past this size
+    private static final int MAX_BATCH_CHARS = 64 * 1024;
+
+    // Idle followers get a heartbeat this often
+    private static final long HEARTBEAT_MILLIS = 100;
+
+    private final int port;
+    private final BookingController bookingController;
+    private final PaymentController paymentController;
+    private final BookingEventBus eventBus;
+    private final int queueBatches;
+
+    private final List<FollowerLink> followers = new CopyOnWriteArrayList<>();
+
+    // Records of the batch being built (handler thread only)
+    private final StringBuilder batch = new StringBuilder();
+
+    // Bus drop count at the last batch, to notice lost events (handler thread only)
+    private long droppedEvents;
+
+    // Sequence of the last event handed to the followers
+    private volatile long lastSequence = -1;
+
+    private final AtomicInteger followerCount = new AtomicInteger();
+    private final LongAdder batchesShipped = new LongAdder();
+    private final LongAdder snapshotsSent = new LongAdder();
+
+    private ServerSocket serverSocket;
+    private volatile boolean running;
+
+    /**
+     * Replicate the controllers' changes as published on eventBus, which must not be started yet
+     */
+    public ReplicationPrimary(int port, BookingController bookingController, PaymentController paymentController,
+                              BookingEventBus eventBus) {
+        this(port, bookingController, paymentController, eventBus, DEFAULT_QUEUE_BATCHES);
+    }
+
+    public ReplicationPrimary(int port, BookingController bookingController, PaymentController paymentController,
+                              BookingEventBus eventBus, int queueBatches) {
+        if (queueBatches < 1) {
+            throw new RuntimeException("Follower queue must hold at least one batch");
+        }
+        this.port = port;
+        this.bookingController = bookingController;
+        this.paymentController = paymentController;
+        this.eventBus = eventBus;
+        this.queueBatches = queueBatches;
+        this.droppedEvents = eventBus.getDroppedEvents();
+        eventBus.addHandler("replication", this);
+    }
+
+    /**
+     * Accept followers on the port
+     */
+    public void start() throws IOException {
+        serverSocket = new ServerSocket(port);
+        running = true;
+        Thread acceptor = new Thread(this::acceptLoop, "replication-primary");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public void stop() {
+        running = false;
+        try {
+            serverSocket.close();
+        } catch (IOException ignored) {
+            // Closing anyway
+        }
+        for (FollowerLink follower : followers) {
+            follower.close();
+        }
+    }
+
+    /**
+     * Port the primary is listening on
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public int getFollowerCount() {
+        return followers.size();
+    }
+
+    /**
+     * Sequence of the last event handed to the followers
+     */
+    public long getLastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * How many events the slowest follower has yet to acknowledge
+     */
+    public long getMaxFollowerLag() {
+        long lag = 0;
+        for (FollowerLink follower : followers) {
+            lag = Math.max(lag, lastSequence - follower.ackedSequence);
+        }
+        return lag;
+    }
+
+    public long getBatchesShipped() {
+        return batchesShipped.sum();
+    }
+
+    public long getSnapshotsSent() {
+        return snapshotsSent.sum();
+    }
+
+    @Override
+    public void onEvent(BookingEvent event, long sequence, boolean endOfBatch) {
+        appendRecord(event, sequence);
+        if (endOfBatch || batch.length() >= MAX_BATCH_CHARS) {
+            ship(sequence);
+        }
+    }
+
+    private void appendRecord(BookingEvent event, long sequence) {
+        EventType type = event.getType();
+        if (type == EventType.SEAT_CLAIMED) {
+            batch.append("C ").append(sequence).append(' ').append(event.getBookingId()).append(' ')
+                    .append(orDash(event.getCustomerId())).append(' ').append(event.getShowId()).append(' ')
+                    .append(event.getAmountPaise()).append(' ');
+            for (int i = 0; i < event.getSeatCount(); i++) {
+                batch.append(i > 0 ? "," : "").append(event.getSeatNumber(i));
+            }
+            batch.append(' ').append(event.getBookedAtMillis()).append('\n');
+        } else if (type == EventType.BOOKING_CANCELLED) {
+            batch.append("X ").append(sequence).append(' ').append(event.getBookingId()).append('\n');
+        } else if (type == EventType.PAYMENT_SUCCEEDED || type == EventType.REFUND_ISSUED
+                || type == EventType.REFUND_QUEUED || type == EventType.PAYMENT_SETTLED) {
+            PaymentStatus status = event.getPaymentStatus();
+            appendPayment(batch, sequence, event.getPaymentId(), event.getBookingId(), event.getPaymentMode().name(),
+                    event.getAmountPaise(), event.getRefundedPaymentId(), status != null ? status.name() : null,
+                    event.isSettled(), event.getTimestampMillis());
+        }
+        // Waitlist offers only hold seats; the booking they turn into is replicated when claimed
+    }
+
+    /**
+     * Hand the batch to every follower (handler thread only)
+     */
+    private void ship(long sequence) {
+        long dropped = eventBus.getDroppedEvents();
+        boolean lost = dropped != droppedEvents;
+        droppedEvents = dropped;
+
+        byte[] records = batch.length() > 0 ? batch.toString().getBytes(StandardCharsets.UTF_8) : null;
+        batch.setLength(0);
+        for (FollowerLink follower : followers) {
+            follower.offer(records, sequence, lost);
+        }
+        lastSequence = sequence;
+        if (records != null) {
+            batchesShipped.increment();
+        }
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                FollowerLink follower = new FollowerLink(socket, lastSequence);
+                followers.add(follower);
+                follower.start();
+            } catch (IOException e) {
+                if (running) {
+                    System.err.println("Replication primary failed to accept: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private static void appendPayment(StringBuilder out, long sequence, int paymentId, String bookingId,
+                                      String mode, long amountPaise, int refundedPaymentId, String status,
+                                      boolean settled, long dateMillis) {
+        out.append("P ").append(sequence).append(' ').append(paymentId).append(' ').append(orDash(bookingId))
+                .append(' ').append(mode).append(' ').append(amountPaise).append(' ').append(refundedPaymentId)
+                .append(' ').append(orDash(status)).append(' ').append(settled).append(' ').append(dateMillis)
+                .append('\n');
+    }
+
+    private static String orDash(String value) {
+        return value != null ? value : "-";
+    }
+
+    /**
+     * Connection to one follower: a queue of batches filled by the handler thread and drained
+     * by a sender thread, plus a reader for the follower's acknowledgements
+     */
+    private class FollowerLink {
+
+        private final Socket socket;
+        private final OutputStream out;
+        private final Thread sender;
+        private final Thread ackReader;
+
+        private final Lock lock = new ReentrantLock();
+        private final Condition ready = lock.newCondition();
+
+        // Batches not yet sent (guarded by lock)
+        private final ArrayDeque<byte[]> queue = new ArrayDeque<>();
+
+        // Whether the next thing to send is a snapshot (guarded by lock)
+        private boolean needsSnapshot = true;
+
+        // Sequence of the last batch handed over (guarded by lock)
+        private long published;
+
+        private volatile long ackedSequence = -1;
+        private volatile boolean closed;
+
+        FollowerLink(Socket socket, long published) throws IOException {
+            this.socket = socket;
+            this.out = new BufferedOutputStream(socket.getOutputStream(), MAX_BATCH_CHARS);
+            this.published = published;
+            int id = followerCount.incrementAndGet();
+            this.sender = new Thread(this::sendLoop, "replication-sender-" + id);
+            this.ackReader = new Thread(this::ackLoop, "replication-acks-" + id);
+            sender.setDaemon(true);
+            ackReader.setDaemon(true);
+        }
+
+        void start() {
+            sender.start();
+            ackReader.start();
+        }
+
+        /**
+         * Queue a batch (null: none) taken up to sequence; if records may have been lost, or the
+         * follower is too far behind, drop its queue and send a snapshot instead
+         */
+        void offer(byte[] records, long sequence, boolean lost) {
+            lock.lock();
+            try {
+                if (lost || (records != null && !needsSnapshot && queue.size() == queueBatches)) {
+                    queue.clear();
+                    needsSnapshot = true;
+                } else if (records != null && !needsSnapshot) {
+                    // While a snapshot is pending the batch is covered by it
+                    queue.add(records);
+                }
+                published = sequence;
+                ready.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void sendLoop() {
+            List<byte[]> batches = new ArrayList<>();
+            try {
+                while (running && !closed) {
+                    boolean snapshot;
+                    long sequence;
+                    lock.lock();
+                    try {
+                        if (queue.isEmpty() && !needsSnapshot) {
+                            ready.await(HEARTBEAT_MILLIS, TimeUnit.MILLISECONDS);
+                        }
+                        snapshot = needsSnapshot;
+                        needsSnapshot = false;
+                        if (snapshot) {
+                            queue.clear();
+                        }
+                        batches.addAll(queue);
+                        queue.clear();
+                        sequence = published;
+                    } finally {
+                        lock.unlock();
+                    }
+
+                    // Everything queued after this point is newer than the snapshot
+                    if (snapshot) {
+                        writeSnapshot(sequence);
+                    }
+                    for (byte[] records : batches) {
+                        out.write(records);
+                    }
+                    batches.clear();
+                    // Failed charges are not replicated, so pass on how far payment IDs have got
+                    out.write(("H " + sequence + " " + paymentController.getNextPaymentId() + "\n")
+                            .getBytes(StandardCharsets.UTF_8));
+                    out.flush();
+                }
+            } catch (IOException | InterruptedException e) {
+                // Follower went away
+            } finally {
+                close();
+            }
+        }
+
+        /**
+         * Send every live booking and every payment, framed as a snapshot taken at sequence
+         */
+        private void writeSnapshot(long sequence) throws IOException {
+            StringBuilder records = new StringBuilder();
+            records.append("S ").append(sequence).append('\n');
+            for (Booking booking : bookingController.getAllBookings()) {
+                records.append("C ").append(sequence).append(' ').append(booking.getBookingId()).append(' ')
+                        .append(orDash(booking.getCustomer() != null ? booking.getCustomer().getCustomerId() : null))
+                        .append(' ').append(booking.getShow().getShowId()).append(' ')
+                        .append(booking.getTotalAmountPaise()).append(' ');
+                List<Seat> seats = booking.getBookedSeats();
+                for (int i = 0; i < seats.size(); i++) {
+                    records.append(i > 0 ? "," : "").append(seats.get(i).getSeatNumber());
+                }
+                records.append(' ').append(booking.getBookedAtMillis()).append('\n');
+                flushIfFull(records);
+            }
+            for (Map.Entry<Payment, String> entry : paymentController.getPaymentsWithBookingIds().entrySet()) {
+                Payment payment = entry.getKey();
+                appendPayment(records, sequence, payment.getPaymentId(), entry.getValue(),
+                        payment.getPaymentMode().name(), payment.getAmountPaise(), payment.getRefundedPaymentId(),
+                        payment.getPaymentStatus() != null ? payment.getPaymentStatus().name() : null,
+                        payment.isSettled(), payment.getPaymentDate() != null ? payment.getPaymentDate().getTime() : 0);
+                flushIfFull(records);
+            }
+            records.append("E ").append(sequence).append('\n');
+            out.write(records.toString().getBytes(StandardCharsets.UTF_8));
+            snapshotsSent.increment();
+        }
+
+        private void flushIfFull(StringBuilder records) throws IOException {
+            if (records.length() >= MAX_BATCH_CHARS) {
+                out.write(records.toString().getBytes(StandardCharsets.UTF_8));
+                records.setLength(0);
+            }
+        }
+
+        private void ackLoop() {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                    StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.startsWith("A ")) {
+                        ackedSequence = Long.parseLong(line.substring(2));
+                    }
+                }
+            } catch (IOException | NumberFormatException e) {
+                // Follower went away or is confused; the sender notices too
+            } finally {
+                close();
+            }
+        }
+
+        void close() {
+            closed = true;
+            followers.remove(this);
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // Closing anyway
+            }
+        }
+    }
+}
@@ -0,0 +1,371 @@
+import enums.City;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Client side of a multi-node deployment: keeps the ConsistentHashRing of BookingNodes, sends
+ * each booking and cancellation to the node that owns the show's city, and moves cities between
+ * nodes when membership changes. Bookings wait while a rebalance is moving cities, so they never
+ * reach a node that is halfway through handing a city over. Thread-safe.
+ */
+public class RoutingBookingClient implements AutoCloseable {
+
+    // Open connections kept per node
+    private static final int DEFAULT_CONNECTIONS_PER_NODE = 4;
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 2000;
+
+    private final int connectionsPerNode;
+    private final Map<String, NodeConnections> nodes = new ConcurrentHashMap<>();
+    private volatile ConsistentHashRing ring = ConsistentHashRing.empty();
+
+    // Node actually serving each city, updated as each city's move succeeds; it differs from
+    // the ring only after a rebalance failed partway (guarded by membershipLock)
+    private final Map<City, String> owners = new EnumMap<>(City.class);
+
+    // Requests hold the read lock; adding or removing a node holds the write lock
+    private final ReadWriteLock membershipLock = new ReentrantReadWriteLock();
+
+    private final AtomicLong requestIds = new AtomicLong();
+
+    public RoutingBookingClient() {
+        this(DEFAULT_CONNECTIONS_PER_NODE);
+    }
+
+    public RoutingBookingClient(int connectionsPerNode) {
+        if (connectionsPerNode < 1) {
+            throw new RuntimeException("Need at least one connection per node");
+        }
+        this.connectionsPerNode = connectionsPerNode;
+    }
+
+    /**
+     * Add a node and move to it the cities it now owns; returns the moved cities. If a move
+     * fails, the cities moved so far stay with the new node and the rest with their old owners;
+     * a node that ended up with no cities is forgotten again.
+     */
+    public List<City> addNode(String nodeId, String host, int port) {
+        membershipLock.writeLock().lock();
+        try {
+            if (nodes.containsKey(nodeId)) {
+                throw new RuntimeException("Node already added: " + nodeId);
+            }
+            NodeConnections connections = new NodeConnections(nodeId, new InetSocketAddress(host, port));
+            String reportedId = connections.call("PING", List.of());
+            if (!reportedId.equals(nodeId)) {
+                connections.close();
+                throw new RuntimeException("Node at " + host + ":" + port + " is " + reportedId + ", not " + nodeId);
+            }
+            nodes.put(nodeId, connections);
+            ConsistentHashRing oldRing = ring;
+            ring = oldRing.withNode(nodeId);
+            try {
+                return rebalanceUnsafe();
+            } catch (RuntimeException e) {
+                if (!owners.containsValue(nodeId)) {
+                    ring = oldRing;
+                    nodes.remove(nodeId);
+                    connections.close();
+                }
+                throw e;
+            }
+        } finally {
+            membershipLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Move a node's cities to the remaining nodes and forget it; returns the moved cities. If a
+     * move fails, the node is kept, still serving the cities not moved yet, and can be removed
+     * again later.
+     */
+    public List<City> removeNode(String nodeId) {
+        membershipLock.writeLock().lock();
+        try {
+            NodeConnections connections = nodes.get(nodeId);
+            if (connections == null) {
+                throw new RuntimeException("Unknown node: " + nodeId);
+            }
+            ConsistentHashRing oldRing = ring;
+            ConsistentHashRing newRing = oldRing.withoutNode(nodeId);
+            if (newRing.isEmpty()) {
+                throw new RuntimeException("Cannot remove the last node: " + nodeId);
+            }
+            ring = newRing;
+            try {
+                List<City> moved = rebalanceUnsafe();
+                nodes.remove(nodeId);
+                connections.close();
+                return moved;
+            } catch (RuntimeException e) {
+                ring = oldRing;
+                throw e;
+            }
+        } finally {
+            membershipLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Book seats on the node that owns the city; the show must be in that city
+     */
+    public RemoteBooking createBooking(City city, String customerId, int showId, List<Integer> seatNumbers) {
+        if (seatNumbers == null || seatNumbers.isEmpty()) {
+            throw new RuntimeException("No seats selected");
+        }
+        StringBuilder seats = new StringBuilder();
+        for (int i = 0; i < seatNumbers.size(); i++) {
+            seats.append(i > 0 ? "," : "").append(seatNumbers.get(i));
+        }
+        membershipLock.readLock().lock();
+        try {
+            String owner = ownerUnsafe(city);
+            String[] result = nodes.get(owner).call("BOOK " + customerId + " " + showId + " " + seats,
+                    List.of()).split(" ");
+            return new RemoteBooking(result[0], city, showId, new ArrayList<>(seatNumbers),
+                    Long.parseLong(result[1]), owner);
+        } finally {
+            membershipLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Cancel a booking on the node that owns its city; returns whether it was cancelled
+     */
+    public boolean cancelBooking(City city, String bookingId) {
+        membershipLock.readLock().lock();
+        try {
+            return Boolean.parseBoolean(nodes.get(ownerUnsafe(city)).call("CANCEL " + bookingId, List.of()));
+        } finally {
+            membershipLock.readLock().unlock();
+        }
+    }
+
+    public boolean cancelBooking(RemoteBooking booking) {
+        return cancelBooking(booking.getCity(), booking.getBookingId());
+    }
+
+    /**
+     * Node currently serving the city
+     */
+    public String getOwner(City city) {
+        membershipLock.readLock().lock();
+        try {
+            return ownerUnsafe(city);
+        } finally {
+            membershipLock.readLock().unlock();
+        }
+    }
+
+    public ConsistentHashRing getRing() {
+        return ring;
+    }
+
+    @Override
+    public void close() {
+        membershipLock.writeLock().lock();
+        try {
+            for (NodeConnections connections : nodes.values()) {
+                connections.close();
+            }
+            nodes.clear();
+            owners.clear();
+            ring = ConsistentHashRing.empty();
+        } finally {
+            membershipLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Node serving the city (assumes membershipLock is already held)
+     */
+    private String ownerUnsafe(City city) {
+        String owner = owners.get(city);
+        if (owner == null) {
+            throw new RuntimeException("No booking nodes");
+        }
+        return owner;
+    }
+
+    /**
+     * Move every city whose owner is not its owner on the ring, with its live bookings; this
+     * also finishes the moves left over from an earlier failed rebalance
+     * (assumes the membershipLock write lock is already held)
+     */
+    private List<City> rebalanceUnsafe() {
+        List<City> moved = new ArrayList<>();
+        for (City city : City.values()) {
+            String from = owners.get(city);
+            String to = ring.ownerOf(city);
+            if (to.equals(from)) {
+                continue;
+            }
+            List<String> bookings = from != null ? nodes.get(from).release(city) : List.of();
+            try {
+                nodes.get(to).call("ACQUIRE " + city.name() + " " + bookings.size(), bookings);
+            } catch (RuntimeException e) {
+                // Give the city back rather than lose its bookings
+                if (from != null) {
+                    nodes.get(from).call("ACQUIRE " + city.name() + " " + bookings.size(), bookings);
+                }
+                throw new RuntimeException("Failed to move " + city + " from " + from + " to " + to
+                        + ": " + e.getMessage(), e);
+            }
+            owners.put(city, to);
+            moved.add(city);
+        }
+        return moved;
+    }
+
+    /**
+     * Pool of connections to one node; each connection carries one request at a time
+     */
+    private class NodeConnections {
+
+        private final String nodeId;
+        private final InetSocketAddress address;
+        private final BlockingQueue<Connection> idle;
+
+        NodeConnections(String nodeId, InetSocketAddress address) {
+            this.nodeId = nodeId;
+            this.address = address;
+            this.idle = new ArrayBlockingQueue<>(connectionsPerNode);
+        }
+
+        /**
+         * Send a request (plus any following lines) and return the answer after OK
+         */
+        String call(String request, List<String> lines) {
+            return exchange(request, lines, false).get(0);
+        }
+
+        /**
+         * Take the city away from this node; returns its bookings in wire form
+         */
+        List<String> release(City city) {
+            List<String> response = exchange("RELEASE " + city.name(), List.of(), true);
+            return response.subList(1, response.size());
+        }
+
+        private List<String> exchange(String request, List<String> lines, boolean countedLines) {
+            Connection connection = idle.poll();
+            try {
+                if (connection == null) {
+                    connection = new Connection(address);
+                }
+                List<String> response = connection.exchange(requestIds.incrementAndGet() + " " + request,
+                        lines, countedLines);
+                recycle(connection);
+                return response;
+            } catch (ApiException e) {
+                // The node answered, so the connection is still good
+                recycle(connection);
+                throw e;
+            } catch (IOException e) {
+                if (connection != null) {
+                    connection.close();
+                }
+                throw new RuntimeException("Node " + nodeId + " unreachable: " + e.getMessage(), e);
+            }
+        }
+
+        private void recycle(Connection connection) {
+            if (!idle.offer(connection)) {
+                connection.close();
+            }
+        }
+
+        void close() {
+            Connection connection;
+            while ((connection = idle.poll()) != null) {
+                connection.close();
+            }
+        }
+    }
+
+    /**
+     * One socket to a node
+     */
+    private static class Connection {
+
+        private final Socket socket;
+        private final BufferedReader reader;
+        private final Writer writer;
+
+        Connection(InetSocketAddress address) throws IOException {
+            socket = new Socket();
+            socket.setTcpNoDelay(true);
+            socket.connect(address, CONNECT_TIMEOUT_MILLIS);
+            reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+        }
+
+        /**
+         * Send a request line plus lines, and read the answer; with countedLines the answer is a
+         * count followed by that many lines
+         */
+        List<String> exchange(String request, List<String> lines, boolean countedLines) throws IOException {
+            writer.write(request);
+            writer.write('\n');
+            for (String line : lines) {
+                writer.write(line);
+                writer.write('\n');
+            }
+            writer.flush();
+
+            String line = reader.readLine();
+            if (line == null) {
+                throw new IOException("Connection closed");
+            }
+            String requestId = request.substring(0, request.indexOf(' '));
+            String[] parts = line.split(" ", 3);
+            if (parts.length < 2 || !parts[0].equals(requestId)) {
+                throw new IOException("Unexpected response: " + line);
+            }
+            if (parts[1].equals("ERR")) {
+                String[] error = parts.length > 2 ? parts[2].split(" ", 2) : new String[]{"500"};
+                throw new ApiException(Integer.parseInt(error[0]), error.length > 1 ? error[1] : "");
+            }
+            String result = parts.length > 2 ? parts[2] : "";
+            List<String> response = new ArrayList<>();
+            response.add(result);
+            if (countedLines) {
+                int count = Integer.parseInt(result);
+                for (int i = 0; i < count; i++) {
+                    String booking = reader.readLine();
+                    if (booking == null) {
+                        throw new IOException("Connection closed");
+                    }
+                    response.add(booking);
+                }
+            }
+            return response;
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // Closing anyway
+            }
+        }
+    }
+}
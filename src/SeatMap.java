@@ -0,0 +1,310 @@
+import enums.SeatCategory;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Seat layout and free/taken state of one show, kept in a form that encodes to a compact
+ * binary message without allocating. Every seat change bumps the version and is remembered in a
+ * ring of the last LOG_CAPACITY changes, so a client that knows an earlier version can be sent
+ * just the seats that changed since. Not thread-safe: BookingController keeps it under the show
+ * lock.
+ *
+ * Messages (big-endian; varint = unsigned LEB128):
+ *   FULL:  byte 1, int showId, long version, varint seatCount,
+ *          varint numberRunCount, (varint firstSeatNumber, varint length)*  seat numbers in layout order
+ *          varint categoryRunCount, (byte category, varint length)*         255 = no category
+ *          ceil(seatCount / 8) bytes of free-seat bitmap, seat i in bit (i % 8) of byte i / 8
+ *   DELTA: byte 2, int showId, long fromVersion, long toVersion, varint changeCount,
+ *          (varint (indexGap << 1 | free))*                                  seats by increasing index
+ *
+ * A delta gives the current state of each seat changed after fromVersion, so it also applies to a
+ * copy at any version up to toVersion.
+ */
+public class SeatMap {
+
+    static final byte FULL = 1;
+    static final byte DELTA = 2;
+
+    // Category byte of seats without one
+    static final int NO_CATEGORY = 255;
+
+    // Changes remembered for deltas; older versions get a full map
+    static final int LOG_CAPACITY = 1024;
+    private static final int LOG_MASK = LOG_CAPACITY - 1;
+
+    // Keeps every delta entry within a 3-byte varint
+    private static final int MAX_SEATS = 1 << 20;
+
+    private static final SeatCategory[] CATEGORIES = SeatCategory.values();
+
+    private final int showId;
+    private final int seatCount;
+
+    // Seat numbers and category bytes in layout order
+    private final int[] seatNumbers;
+    private final byte[] categories;
+
+    // Layout index of each seat number, or -1
+    private final int[] indexByNumber;
+
+    // Free-seat bitmap, bit i for layout index i
+    private final long[] free;
+
+    // Seat index changed by each of the last LOG_CAPACITY versions, at version & LOG_MASK
+    private final int[] changeLog = new int[LOG_CAPACITY];
+
+    // Scratch bitmap of seats changed in a delta (reused so encoding does not allocate)
+    private final long[] touched;
+
+    private final int fullSize;
+
+    // Version the map was built at; deltas cannot reach back before it
+    private final long baseVersion;
+    private long version;
+
+    /**
+     * Build the map from the show's current seats (caller should hold the show lock)
+     */
+    SeatMap(Show show) {
+        this.showId = show.getShowId();
+        List<Seat> seats = show.getScreen().getSeats();
+        Set<Integer> bookedSeatIds = show.getBookedSeatIds();
+        if (seats.size() > MAX_SEATS) {
+            throw new RuntimeException("Seat maps support up to " + MAX_SEATS + " seats");
+        }
+        this.seatCount = seats.size();
+        this.seatNumbers = new int[seatCount];
+        this.categories = new byte[seatCount];
+        this.free = new long[(seatCount + 63) >>> 6];
+        this.touched = new long[free.length];
+
+        int maxNumber = 0;
+        for (int i = 0; i < seatCount; i++) {
+            Seat seat = seats.get(i);
+            if (seat.getSeatNumber() < 0) {
+                throw new RuntimeException("Seat numbers must not be negative: " + seat.getSeatNumber());
+            }
+            seatNumbers[i] = seat.getSeatNumber();
+            categories[i] = (byte) (seat.getSeatCategory() != null ? seat.getSeatCategory().ordinal() : NO_CATEGORY);
+            if (seat.isAvailable() && !bookedSeatIds.contains(seat.getSeatNumber())) {
+                free[i >>> 6] |= 1L << i;
+            }
+            maxNumber = Math.max(maxNumber, seat.getSeatNumber());
+        }
+        this.indexByNumber = new int[maxNumber + 1];
+        Arrays.fill(indexByNumber, -1);
+        for (int i = 0; i < seatCount; i++) {
+            indexByNumber[seatNumbers[i]] = i;
+        }
+
+        this.fullSize = 1 + 4 + 8 + varintSize(seatCount) + writeLayout(null) + (seatCount + 7) / 8;
+
+        // Start from the clock, so a version a client got before a restart is not taken for this map's
+        this.baseVersion = System.currentTimeMillis() << 10;
+        this.version = baseVersion;
+    }
+
+    /**
+     * Mark a seat free or taken; returns whether it changed
+     */
+    public boolean setFree(int seatNumber, boolean isFree) {
+        int index = seatNumber < indexByNumber.length ? indexByNumber[seatNumber] : -1;
+        if (index < 0) {
+            return false;
+        }
+        long bit = 1L << index;
+        if (((free[index >>> 6] & bit) != 0) == isFree) {
+            return false;
+        }
+        free[index >>> 6] ^= bit;
+        version++;
+        changeLog[(int) version & LOG_MASK] = index;
+        return true;
+    }
+
+    public int getShowId() {
+        return showId;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public int getSeatCount() {
+        return seatCount;
+    }
+
+    public boolean isFree(int seatNumber) {
+        int index = seatNumber < indexByNumber.length ? indexByNumber[seatNumber] : -1;
+        return index >= 0 && (free[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * Size of a FULL message; no message is bigger
+     */
+    public int getMaxEncodedSize() {
+        return fullSize;
+    }
+
+    /**
+     * Upper bound of getMaxEncodedSize() for a layout of seatCount seats
+     */
+    public static int maxEncodedSize(int seatCount) {
+        // Header, then at worst one run of each kind per seat, then the bitmap
+        return 32 + seatCount * 16 + (seatCount + 7) / 8;
+    }
+
+    /**
+     * Whether a delta from sinceVersion can still be built
+     */
+    public boolean canDelta(long sinceVersion) {
+        return sinceVersion >= baseVersion && sinceVersion <= version && version - sinceVersion <= LOG_CAPACITY;
+    }
+
+    /**
+     * Write the changes since sinceVersion, or the full map if they are no longer known or
+     * would not be smaller. out needs getMaxEncodedSize() bytes free.
+     */
+    public void write(long sinceVersion, ByteBuffer out) {
+        if (!canDelta(sinceVersion)) {
+            writeFull(out);
+            return;
+        }
+
+        // Collapse repeated changes to a seat into one entry carrying its current state
+        Arrays.fill(touched, 0);
+        int changed = 0;
+        for (long v = sinceVersion + 1; v <= version; v++) {
+            int index = changeLog[(int) v & LOG_MASK];
+            long bit = 1L << index;
+            if ((touched[index >>> 6] & bit) == 0) {
+                touched[index >>> 6] |= bit;
+                changed++;
+            }
+        }
+        // Each entry is at most a 3-byte varint (see MAX_SEATS)
+        if (1 + 4 + 8 + 8 + 5 + changed * 3 >= fullSize) {
+            writeFull(out);
+            return;
+        }
+
+        out.put(DELTA);
+        out.putInt(showId);
+        out.putLong(sinceVersion);
+        out.putLong(version);
+        putVarint(out, changed);
+        int previous = 0;
+        for (int word = 0; word < touched.length; word++) {
+            long bits = touched[word];
+            while (bits != 0) {
+                int index = (word << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                int isFree = (free[word] & (1L << index)) != 0 ? 1 : 0;
+                putVarint(out, (index - previous) << 1 | isFree);
+                previous = index;
+            }
+        }
+    }
+
+    /**
+     * Write the full layout and free-seat bitmap. out needs getMaxEncodedSize() bytes free.
+     */
+    public void writeFull(ByteBuffer out) {
+        out.put(FULL);
+        out.putInt(showId);
+        out.putLong(version);
+        putVarint(out, seatCount);
+        writeLayout(out);
+        for (int i = 0; i < (seatCount + 7) / 8; i++) {
+            out.put((byte) (free[i >>> 3] >>> ((i & 7) << 3)));
+        }
+    }
+
+    /**
+     * Write the run-length seat numbers and categories, or with a null out just count the bytes
+     */
+    private int writeLayout(ByteBuffer out) {
+        int size = 0;
+
+        int numberRuns = 0;
+        for (int i = 0; i < seatCount; i++) {
+            if (i == 0 || seatNumbers[i] != seatNumbers[i - 1] + 1) {
+                numberRuns++;
+            }
+        }
+        size += putVarint(out, numberRuns);
+        for (int start = 0; start < seatCount; ) {
+            int end = start + 1;
+            while (end < seatCount && seatNumbers[end] == seatNumbers[end - 1] + 1) {
+                end++;
+            }
+            size += putVarint(out, seatNumbers[start]);
+            size += putVarint(out, end - start);
+            start = end;
+        }
+
+        int categoryRuns = 0;
+        for (int i = 0; i < seatCount; i++) {
+            if (i == 0 || categories[i] != categories[i - 1]) {
+                categoryRuns++;
+            }
+        }
+        size += putVarint(out, categoryRuns);
+        for (int start = 0; start < seatCount; ) {
+            int end = start + 1;
+            while (end < seatCount && categories[end] == categories[start]) {
+                end++;
+            }
+            if (out != null) {
+                out.put(categories[start]);
+            }
+            size += 1 + putVarint(out, end - start);
+            start = end;
+        }
+        return size;
+    }
+
+    /**
+     * Write an unsigned varint (skipped if out is null); returns its size
+     */
+    static int putVarint(ByteBuffer out, int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            if (out != null) {
+                out.put((byte) ((value & 0x7F) | 0x80));
+            }
+            value >>>= 7;
+            size++;
+        }
+        if (out != null) {
+            out.put((byte) value);
+        }
+        return size;
+    }
+
+    static int getVarint(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new RuntimeException("Malformed varint");
+    }
+
+    private static int varintSize(int value) {
+        return putVarint(null, value);
+    }
+
+    /**
+     * Category for a category byte, or null for NO_CATEGORY
+     */
+    static SeatCategory categoryOf(int code) {
+        return code == NO_CATEGORY ? null : CATEGORIES[code];
+    }
+}
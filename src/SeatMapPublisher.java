@@ -0,0 +1,193 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pushes live seat maps to viewers of a show. Bookings and cancellations only update the show's
+ * SeatMap under the show lock, as they already do; once per tick this publisher takes each
+ * watched show's changes since the last tick as one delta and hands the same bytes to every
+ * subscriber. The booking path therefore costs the same whether a show has no viewers or
+ * thousands, and a burst of bookings within a tick reaches viewers as a single message.
+ *
+ * Each subscriber has a bounded buffer; one that falls behind gets a full map in place of its
+ * backlog (see SeatMapSubscription).
+ */
+public class SeatMapPublisher {
+
+    // Defaults: publish every 100 ms, buffer up to 32 messages per subscriber
+    private static final long DEFAULT_TICK_MILLIS = 100;
+    private static final int DEFAULT_BUFFER_SIZE = 32;
+
+    private static final int TICK = Metrics.operation("seatMap.tick");
+
+    private final BookingController bookingController;
+    private final long tickMillis;
+
+    // Feed of each watched show by show ID; removed when its last subscriber leaves
+    private final Map<Integer, ShowFeed> feeds = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService ticker;
+
+    private final LongAdder messagesPublished = new LongAdder();
+    private final LongAdder publishErrors = new LongAdder();
+
+    public SeatMapPublisher(BookingController bookingController) {
+        this(bookingController, DEFAULT_TICK_MILLIS);
+    }
+
+    public SeatMapPublisher(BookingController bookingController, long tickMillis) {
+        if (tickMillis <= 0) {
+            throw new RuntimeException("Tick must be positive");
+        }
+        this.bookingController = bookingController;
+        this.tickMillis = tickMillis;
+        this.ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "seat-map-publisher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Start publishing every tick
+     */
+    public void start() {
+        ticker.scheduleWithFixedDelay(this::tick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void shutdown() {
+        ticker.shutdownNow();
+    }
+
+    public SeatMapSubscription subscribe(Show show) {
+        return subscribe(show, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Watch a show's seat map; the first message (within a tick) is the full map
+     */
+    public SeatMapSubscription subscribe(Show show, int bufferSize) {
+        if (bufferSize < 1) {
+            throw new RuntimeException("Buffer size must be at least 1");
+        }
+        SeatMapSubscription subscription = new SeatMapSubscription(this, show, bufferSize);
+        feeds.compute(show.getShowId(), (showId, feed) -> {
+            if (feed == null) {
+                feed = new ShowFeed(show);
+            }
+            feed.subscribers.add(subscription);
+            return feed;
+        });
+        return subscription;
+    }
+
+    void unsubscribe(SeatMapSubscription subscription) {
+        feeds.computeIfPresent(subscription.getShow().getShowId(), (showId, feed) -> {
+            feed.subscribers.remove(subscription);
+            return feed.subscribers.isEmpty() ? null : feed;
+        });
+    }
+
+    /**
+     * Number of subscribers of a show
+     */
+    public int getSubscriberCount(Show show) {
+        ShowFeed feed = feeds.get(show.getShowId());
+        return feed != null ? feed.subscribers.size() : 0;
+    }
+
+    /**
+     * Number of distinct messages encoded (each shared by all of a show's subscribers)
+     */
+    public long getMessagesPublished() {
+        return messagesPublished.sum();
+    }
+
+    public long getPublishErrors() {
+        return publishErrors.sum();
+    }
+
+    /**
+     * Publish every watched show's changes since the last tick
+     */
+    void tick() {
+        long startNanos = System.nanoTime();
+        for (ShowFeed feed : feeds.values()) {
+            try {
+                feed.publish();
+            } catch (RuntimeException e) {
+                // A failing show must not stop the others, or later ticks
+                publishErrors.increment();
+            }
+        }
+        Metrics.record(TICK, startNanos);
+    }
+
+    /**
+     * Subscribers of one show and the version they were last sent (publisher thread only,
+     * apart from the subscriber list)
+     */
+    private final class ShowFeed {
+        final Show show;
+        final List<SeatMapSubscription> subscribers = new CopyOnWriteArrayList<>();
+        final ByteBuffer scratch;
+
+        // Version the last delta went up to; -1 before the first tick
+        long version = -1;
+
+        ShowFeed(Show show) {
+            this.show = show;
+            this.scratch = ByteBuffer.allocate(SeatMap.maxEncodedSize(show.getScreen().getSeats().size()));
+        }
+
+        void publish() {
+            // One delta for everyone, taken before any full map so that the full map is never
+            // older than the delta that follows it next tick
+            byte[] delta = null;
+            long previous = version;
+            version = encode(previous);
+            if (version != previous) {
+                delta = copyScratch();
+                messagesPublished.increment();
+            }
+
+            byte[] snapshot = null;
+            for (SeatMapSubscription subscription : subscribers) {
+                if (delta != null && !subscription.needsSnapshot()) {
+                    subscription.offerDelta(delta);
+                }
+                if (subscription.needsSnapshot()) {
+                    if (snapshot == null) {
+                        // The first delta of a feed is already a full map
+                        if (delta != null && delta[0] == SeatMap.FULL) {
+                            snapshot = delta;
+                        } else {
+                            encode(-1);
+                            snapshot = copyScratch();
+                            messagesPublished.increment();
+                        }
+                    }
+                    subscription.offerSnapshot(snapshot);
+                }
+            }
+        }
+
+        private long encode(long sinceVersion) {
+            scratch.clear();
+            long written = bookingController.writeSeatMap(show, sinceVersion, scratch);
+            scratch.flip();
+            return written;
+        }
+
+        private byte[] copyScratch() {
+            return Arrays.copyOf(scratch.array(), scratch.limit());
+        }
+    }
+}
@@ -0,0 +1,95 @@
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * One viewer's feed of a show's seat map: a full map first, then coalesced deltas, in SeatMap's
+ * binary format (apply them to a SeatMapView). Messages wait in a bounded buffer; a viewer that
+ * falls behind loses the buffered deltas and gets a fresh full map instead.
+ */
+public class SeatMapSubscription {
+
+    private final SeatMapPublisher publisher;
+    private final Show show;
+    private final BlockingQueue<byte[]> messages;
+
+    // Set when the buffer overflowed (or before the first message); the next tick sends a full map
+    private volatile boolean needsSnapshot = true;
+    private volatile boolean closed;
+
+    private final LongAdder overflows = new LongAdder();
+
+    SeatMapSubscription(SeatMapPublisher publisher, Show show, int bufferSize) {
+        this.publisher = publisher;
+        this.show = show;
+        this.messages = new ArrayBlockingQueue<>(bufferSize);
+    }
+
+    /**
+     * Next message, or null if none is waiting
+     */
+    public ByteBuffer poll() {
+        byte[] message = messages.poll();
+        return message != null ? ByteBuffer.wrap(message).asReadOnlyBuffer() : null;
+    }
+
+    /**
+     * Next message, waiting up to timeout for one; null if none arrived
+     */
+    public ByteBuffer poll(long timeout, TimeUnit unit) throws InterruptedException {
+        byte[] message = messages.poll(timeout, unit);
+        return message != null ? ByteBuffer.wrap(message).asReadOnlyBuffer() : null;
+    }
+
+    /**
+     * Stop receiving updates
+     */
+    public void close() {
+        if (!closed) {
+            closed = true;
+            publisher.unsubscribe(this);
+            messages.clear();
+        }
+    }
+
+    public Show getShow() {
+        return show;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * How many times the buffer overflowed and was replaced by a full map
+     */
+    public long getOverflows() {
+        return overflows.sum();
+    }
+
+    boolean needsSnapshot() {
+        return needsSnapshot;
+    }
+
+    /**
+     * Queue a delta (publisher thread); on overflow, drop the backlog and ask for a full map
+     */
+    void offerDelta(byte[] delta) {
+        if (!messages.offer(delta)) {
+            messages.clear();
+            overflows.increment();
+            needsSnapshot = true;
+        }
+    }
+
+    /**
+     * Replace anything queued with a full map (publisher thread)
+     */
+    void offerSnapshot(byte[] snapshot) {
+        messages.clear();
+        messages.offer(snapshot);
+        needsSnapshot = false;
+    }
+}
@@ -0,0 +1,134 @@
+import enums.SeatCategory;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Client-side copy of a show's seat map, kept up to date by applying the FULL and DELTA
+ * messages that SeatMap writes. A delta applies to any version from its fromVersion up to its
+ * toVersion, since it carries the current state of every seat changed in between; older deltas
+ * are ignored. Not thread-safe.
+ */
+public class SeatMapView {
+
+    private int showId;
+    private long version = -1;
+    private int seatCount;
+    private int[] seatNumbers = new int[0];
+    private SeatCategory[] categories = new SeatCategory[0];
+    private boolean[] free = new boolean[0];
+    private int freeSeats;
+
+    /**
+     * Apply one message. A delta starting after this view's version is rejected; request a full map.
+     */
+    public void apply(ByteBuffer message) {
+        byte type = message.get();
+        if (type == SeatMap.FULL) {
+            applyFull(message);
+        } else if (type == SeatMap.DELTA) {
+            applyDelta(message);
+        } else {
+            throw new RuntimeException("Unknown seat map message type " + type);
+        }
+    }
+
+    private void applyFull(ByteBuffer message) {
+        showId = message.getInt();
+        version = message.getLong();
+        seatCount = SeatMap.getVarint(message);
+        seatNumbers = new int[seatCount];
+        categories = new SeatCategory[seatCount];
+        free = new boolean[seatCount];
+
+        int numberRuns = SeatMap.getVarint(message);
+        int index = 0;
+        for (int r = 0; r < numberRuns; r++) {
+            int first = SeatMap.getVarint(message);
+            int length = SeatMap.getVarint(message);
+            for (int i = 0; i < length; i++) {
+                seatNumbers[index++] = first + i;
+            }
+        }
+
+        int categoryRuns = SeatMap.getVarint(message);
+        index = 0;
+        for (int r = 0; r < categoryRuns; r++) {
+            SeatCategory category = SeatMap.categoryOf(message.get() & 0xFF);
+            int length = SeatMap.getVarint(message);
+            Arrays.fill(categories, index, index + length, category);
+            index += length;
+        }
+
+        freeSeats = 0;
+        for (int b = 0; b < (seatCount + 7) / 8; b++) {
+            int bits = message.get() & 0xFF;
+            for (int i = 0; i < 8 && b * 8 + i < seatCount; i++) {
+                free[b * 8 + i] = (bits & (1 << i)) != 0;
+                if (free[b * 8 + i]) {
+                    freeSeats++;
+                }
+            }
+        }
+    }
+
+    private void applyDelta(ByteBuffer message) {
+        int deltaShowId = message.getInt();
+        long fromVersion = message.getLong();
+        long toVersion = message.getLong();
+        if (deltaShowId != showId || fromVersion > version) {
+            throw new RuntimeException("Delta from version " + fromVersion + " of show " + deltaShowId
+                    + " does not apply to version " + version + " of show " + showId);
+        }
+        if (toVersion <= version) {
+            // Already covered by a newer message
+            return;
+        }
+        int changes = SeatMap.getVarint(message);
+        int index = 0;
+        for (int c = 0; c < changes; c++) {
+            int entry = SeatMap.getVarint(message);
+            index += entry >>> 1;
+            boolean isFree = (entry & 1) != 0;
+            if (free[index] != isFree) {
+                free[index] = isFree;
+                freeSeats += isFree ? 1 : -1;
+            }
+        }
+        version = toVersion;
+    }
+
+    public int getShowId() {
+        return showId;
+    }
+
+    /**
+     * Version of the last message applied, or -1 before the first; send it to get the next delta
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public int getSeatCount() {
+        return seatCount;
+    }
+
+    public int getFreeSeats() {
+        return freeSeats;
+    }
+
+    /**
+     * Seat number at a layout index
+     */
+    public int getSeatNumber(int index) {
+        return seatNumbers[index];
+    }
+
+    public SeatCategory getSeatCategory(int index) {
+        return categories[index];
+    }
+
+    public boolean isFree(int index) {
+        return free[index];
+    }
+}
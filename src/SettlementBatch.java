@@ -0,0 +1,65 @@
+import enums.PaymentMode;
+import enums.PaymentStatus;
+
+import java.util.Arrays;
+
+/**
+ * Captures and refunds of one payment mode and time window, settled with the gateway in a
+ * single call. Results are filled in by the settlement engine, one per payment.
+ */
+public class SettlementBatch {
+
+    private final PaymentMode paymentMode;
+
+    // Start of the time window (epoch millis) the payments were made in
+    private final long windowStartMillis;
+
+    private final Payment[] payments;
+
+    // Gateway result per payment (null until settled)
+    private final PaymentStatus[] results;
+
+    public SettlementBatch(PaymentMode paymentMode, long windowStartMillis, Payment[] payments) {
+        this.paymentMode = paymentMode;
+        this.windowStartMillis = windowStartMillis;
+        this.payments = payments;
+        this.results = new PaymentStatus[payments.length];
+    }
+
+    public PaymentMode getPaymentMode() {
+        return paymentMode;
+    }
+
+    public long getWindowStartMillis() {
+        return windowStartMillis;
+    }
+
+    public int size() {
+        return payments.length;
+    }
+
+    public Payment getPayment(int index) {
+        return payments[index];
+    }
+
+    public PaymentStatus getResult(int index) {
+        return results[index];
+    }
+
+    /**
+     * Record the gateway's answer for the whole batch (one status per payment, in order)
+     */
+    public void setResults(PaymentStatus[] statuses) {
+        if (statuses.length != payments.length) {
+            throw new RuntimeException("Expected " + payments.length + " settlement results but got " + statuses.length);
+        }
+        System.arraycopy(statuses, 0, results, 0, statuses.length);
+    }
+
+    /**
+     * Leave every payment in the batch unsettled, to be picked up by the next run
+     */
+    public void markUnanswered() {
+        Arrays.fill(results, PaymentStatus.PENDING);
+    }
+}
@@ -0,0 +1,313 @@
+import enums.PaymentMode;
+import enums.PaymentStatus;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Settles captures and refunds with the gateway in batches. Each run drains the payments waiting
+ * for settlement, groups them by payment mode and time window, settles the batches in parallel,
+ * appends one line per payment to a settlement file and then reconciles every result back into
+ * the payment statuses under a single lock acquisition.
+ */
+public class SettlementEngine {
+
+    // Header of the settlement file
+    private static final byte[] FILE_HEADER =
+            "paymentId,paymentMode,windowStart,type,amountPaise,status\n".getBytes(StandardCharsets.US_ASCII);
+
+    // Size of each worker's write buffer
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    // Longest settlement line is well under this
+    private static final int MAX_LINE_LENGTH = 128;
+
+    private final PaymentController paymentController;
+    private final Path settlementDirectory;
+
+    // Payments made within the same window (and mode) settle together
+    private final long windowMillis;
+
+    // Batches larger than this are split, to bound each gateway call
+    private final int maxBatchSize;
+
+    // How long to wait for the gateway to answer a batch before leaving it for the next run
+    private final long batchTimeoutMillis;
+
+    private final ExecutorService workers;
+
+    // Reused direct buffer per worker thread
+    private final ThreadLocal<ByteBuffer> writeBuffers =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE));
+
+    // Held while a batch is written, so lines from different batches never interleave even
+    // when a batch is larger than the write buffer and goes out in several flushes
+    private final Lock fileLock = new ReentrantLock();
+
+    private final AtomicInteger runCounter = new AtomicInteger();
+
+    public SettlementEngine(PaymentController paymentController, Path settlementDirectory) {
+        this(paymentController, settlementDirectory, 15 * 60 * 1000, 5000, 30_000,
+                Runtime.getRuntime().availableProcessors());
+    }
+
+    public SettlementEngine(PaymentController paymentController, Path settlementDirectory, long windowMillis,
+                            int maxBatchSize, long batchTimeoutMillis, int parallelism) {
+        if (windowMillis <= 0 || maxBatchSize <= 0 || parallelism <= 0) {
+            throw new RuntimeException("Invalid settlement configuration");
+        }
+        this.paymentController = paymentController;
+        this.settlementDirectory = settlementDirectory;
+        this.windowMillis = windowMillis;
+        this.maxBatchSize = maxBatchSize;
+        this.batchTimeoutMillis = batchTimeoutMillis;
+        this.workers = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "settlement-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Settle everything waiting for settlement and write it to a new settlement file
+     */
+    public SettlementReport settle() {
+        long startNanos = System.nanoTime();
+        List<SettlementBatch> batches = createBatches(paymentController.drainUnsettledPayments());
+        Path settlementFile = settlementDirectory.resolve("settlement-"
+                + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) + "-" + runCounter.incrementAndGet() + ".csv");
+
+        IOException writeFailure = null;
+        try (FileChannel channel = FileChannel.open(settlementFile,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            writeFully(channel, ByteBuffer.wrap(FILE_HEADER));
+
+            List<Future<?>> results = new ArrayList<>(batches.size());
+            for (SettlementBatch batch : batches) {
+                results.add(workers.submit(() -> {
+                    settleBatch(batch);
+                    writeBatch(channel, batch);
+                    return null;
+                }));
+            }
+            for (Future<?> result : results) {
+                writeFailure = awaitBatch(result, writeFailure);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            writeFailure = e;
+        } finally {
+            // Reconcile whatever the gateway answered, even if the file could not be written
+            paymentController.applySettlement(batches);
+        }
+
+        if (writeFailure != null) {
+            throw new RuntimeException("Could not write settlement file " + settlementFile + ": " + writeFailure.getMessage());
+        }
+        return createReport(settlementFile, batches, (System.nanoTime() - startNanos) / 1_000_000);
+    }
+
+    /**
+     * Stop the worker threads
+     */
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    /**
+     * Group payments by mode and time window, splitting groups larger than maxBatchSize
+     */
+    private List<SettlementBatch> createBatches(List<Payment> payments) {
+        Map<PaymentMode, Map<Long, List<Payment>>> groups = new EnumMap<>(PaymentMode.class);
+        for (Payment payment : payments) {
+            long paidAt = payment.getPaymentDate() != null ? payment.getPaymentDate().getTime() : 0L;
+            long windowStart = paidAt - Math.floorMod(paidAt, windowMillis);
+            groups.computeIfAbsent(payment.getPaymentMode(), k -> new TreeMap<>())
+                    .computeIfAbsent(windowStart, k -> new ArrayList<>())
+                    .add(payment);
+        }
+
+        List<SettlementBatch> batches = new ArrayList<>();
+        for (Map.Entry<PaymentMode, Map<Long, List<Payment>>> modeGroup : groups.entrySet()) {
+            for (Map.Entry<Long, List<Payment>> windowGroup : modeGroup.getValue().entrySet()) {
+                List<Payment> group = windowGroup.getValue();
+                for (int from = 0; from < group.size(); from += maxBatchSize) {
+                    int to = Math.min(group.size(), from + maxBatchSize);
+                    batches.add(new SettlementBatch(modeGroup.getKey(), windowGroup.getKey(),
+                            group.subList(from, to).toArray(new Payment[0])));
+                }
+            }
+        }
+        return batches;
+    }
+
+    /**
+     * Send one batch to the gateway and record its answer; a batch with no answer stays unsettled
+     */
+    private void settleBatch(SettlementBatch batch) {
+        int[] paymentIds = new int[batch.size()];
+        long[] amountsPaise = new long[batch.size()];
+        for (int i = 0; i < batch.size(); i++) {
+            paymentIds[i] = batch.getPayment(i).getPaymentId();
+            amountsPaise[i] = batch.getPayment(i).getAmountPaise();
+        }
+
+        Future<PaymentStatus[]> answer = paymentController.getPaymentGateway()
+                .settle(batch.getPaymentMode(), paymentIds, amountsPaise);
+        try {
+            batch.setResults(answer.get(batchTimeoutMillis, TimeUnit.MILLISECONDS));
+        } catch (TimeoutException e) {
+            answer.cancel(false);
+            batch.markUnanswered();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            batch.markUnanswered();
+        } catch (ExecutionException | RuntimeException e) {
+            batch.markUnanswered();
+        }
+    }
+
+    /**
+     * Append one line per payment in the batch to the settlement file
+     */
+    private void writeBatch(FileChannel channel, SettlementBatch batch) throws IOException {
+        ByteBuffer buffer = writeBuffers.get();
+        buffer.clear();
+        fileLock.lock();
+        try {
+            writeBatchUnsafe(channel, batch, buffer);
+        } finally {
+            fileLock.unlock();
+        }
+    }
+
+    /**
+     * Internal method to encode and write the batch's lines (assumes fileLock is already held)
+     */
+    private void writeBatchUnsafe(FileChannel channel, SettlementBatch batch, ByteBuffer buffer)
+            throws IOException {
+        for (int i = 0; i < batch.size(); i++) {
+            if (buffer.remaining() < MAX_LINE_LENGTH) {
+                flush(channel, buffer);
+            }
+            Payment payment = batch.getPayment(i);
+            putLong(buffer, payment.getPaymentId());
+            buffer.put((byte) ',');
+            putAscii(buffer, batch.getPaymentMode().name());
+            buffer.put((byte) ',');
+            putLong(buffer, batch.getWindowStartMillis());
+            buffer.put((byte) ',');
+            putAscii(buffer, payment.isRefund() ? "REFUND" : "CAPTURE");
+            buffer.put((byte) ',');
+            putLong(buffer, Math.abs(payment.getAmountPaise()));
+            buffer.put((byte) ',');
+            putAscii(buffer, batch.getResult(i).name());
+            buffer.put((byte) '\n');
+        }
+        flush(channel, buffer);
+    }
+
+    private void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        writeFully(channel, buffer);
+        buffer.clear();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static void putAscii(ByteBuffer buffer, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            buffer.put((byte) value.charAt(i));
+        }
+    }
+
+    /**
+     * Write a non-negative number as ASCII digits without creating a String
+     */
+    private static void putLong(ByteBuffer buffer, long value) {
+        if (value < 10) {
+            buffer.put((byte) ('0' + value));
+            return;
+        }
+        int digits = 0;
+        for (long rest = value; rest > 0; rest /= 10) {
+            digits++;
+        }
+        int end = buffer.position() + digits;
+        for (int position = end - 1; position >= buffer.position(); position--) {
+            buffer.put(position, (byte) ('0' + value % 10));
+            value /= 10;
+        }
+        buffer.position(end);
+    }
+
+    /**
+     * Wait for a batch to finish, keeping the first write failure
+     */
+    private static IOException awaitBatch(Future<?> result, IOException firstFailure) {
+        try {
+            result.get();
+            return firstFailure;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return firstFailure != null ? firstFailure : new IOException("Interrupted while writing settlement file");
+        } catch (ExecutionException e) {
+            if (firstFailure != null) {
+                return firstFailure;
+            }
+            return e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        }
+    }
+
+    private static SettlementReport createReport(Path settlementFile, List<SettlementBatch> batches, long elapsedMillis) {
+        int settledCaptures = 0;
+        int settledRefunds = 0;
+        int rejected = 0;
+        int unanswered = 0;
+        long capturedAmountPaise = 0;
+        long refundedAmountPaise = 0;
+        for (SettlementBatch batch : batches) {
+            for (int i = 0; i < batch.size(); i++) {
+                Payment payment = batch.getPayment(i);
+                PaymentStatus result = batch.getResult(i);
+                if (result == PaymentStatus.PENDING) {
+                    unanswered++;
+                } else if (result == PaymentStatus.FAILED) {
+                    rejected++;
+                } else if (payment.isRefund()) {
+                    settledRefunds++;
+                    refundedAmountPaise = Money.add(refundedAmountPaise, -payment.getAmountPaise());
+                } else {
+                    settledCaptures++;
+                    capturedAmountPaise = Money.add(capturedAmountPaise, payment.getAmountPaise());
+                }
+            }
+        }
+        return new SettlementReport(settlementFile, batches.size(), settledCaptures, capturedAmountPaise,
+                settledRefunds, refundedAmountPaise, rejected, unanswered, elapsedMillis);
+    }
+}
@@ -0,0 +1,84 @@
+import java.nio.file.Path;
+
+/**
+ * Outcome of one settlement run
+ */
+public class SettlementReport {
+
+    private final Path settlementFile;
+    private final int batches;
+    private final int settledCaptures;
+    private final long capturedAmountPaise;
+    private final int settledRefunds;
+    private final long refundedAmountPaise;
+    private final int rejected;
+    private final int unanswered;
+    private final long elapsedMillis;
+
+    public SettlementReport(Path settlementFile, int batches, int settledCaptures, long capturedAmountPaise,
+                            int settledRefunds, long refundedAmountPaise, int rejected, int unanswered,
+                            long elapsedMillis) {
+        this.settlementFile = settlementFile;
+        this.batches = batches;
+        this.settledCaptures = settledCaptures;
+        this.capturedAmountPaise = capturedAmountPaise;
+        this.settledRefunds = settledRefunds;
+        this.refundedAmountPaise = refundedAmountPaise;
+        this.rejected = rejected;
+        this.unanswered = unanswered;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public Path getSettlementFile() {
+        return settlementFile;
+    }
+
+    public int getBatches() {
+        return batches;
+    }
+
+    public int getSettledCaptures() {
+        return settledCaptures;
+    }
+
+    public long getCapturedAmountPaise() {
+        return capturedAmountPaise;
+    }
+
+    public int getSettledRefunds() {
+        return settledRefunds;
+    }
+
+    /**
+     * Total refunded, as a positive amount in paise
+     */
+    public long getRefundedAmountPaise() {
+        return refundedAmountPaise;
+    }
+
+    /**
+     * Captures and refunds the gateway rejected
+     */
+    public int getRejected() {
+        return rejected;
+    }
+
+    /**
+     * Payments left unsettled because their batch got no answer; the next run retries them
+     */
+    public int getUnanswered() {
+        return unanswered;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "Settlement of " + batches + " batches in " + elapsedMillis + " ms: "
+                + settledCaptures + " captures (₹" + Money.format(capturedAmountPaise) + "), "
+                + settledRefunds + " refunds (₹" + Money.format(refundedAmountPaise) + "), "
+                + rejected + " rejected, " + unanswered + " unanswered";
+    }
+}
@@ -1,5 +1,9 @@
-import java.util.ArrayList;
+import enums.SeatCategory;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 public class Show {
 
@@ -7,23 +11,51 @@ public class Show {
     Movie movie;
     Screen screen;
     int showStartTime;
-    List<Integer> bookedSeatIds = new ArrayList<>();
+    // Booked seat numbers, a set so cancellations release seats in O(1)
+    Set<Integer> bookedSeatIds = new LinkedHashSet<>();
+
+    // Published availability summary, built when the show is created and replaced by
+    // BookingController under the show lock
+    private volatile ShowAvailability availability;
 
     public Show(int showId, Movie movie, Screen screen, int showStartTime, List<Integer> bookedSeatIds) {
         this.showId = showId;
         this.movie = movie;
         this.screen = screen;
         this.showStartTime = showStartTime;
-        this.bookedSeatIds = bookedSeatIds != null ? bookedSeatIds : new ArrayList<>();
+        this.bookedSeatIds = bookedSeatIds != null ? new LinkedHashSet<>(bookedSeatIds) : new LinkedHashSet<>();
+        this.availability = ShowAvailability.compute(this);
     }
     
-    // Constructor without bookedSeatIds (defaults to empty list)
+    // Constructor without bookedSeatIds (defaults to empty set)
     public Show(int showId, Movie movie, Screen screen, int showStartTime) {
         this.showId = showId;
         this.movie = movie;
         this.screen = screen;
         this.showStartTime = showStartTime;
-        this.bookedSeatIds = new ArrayList<>();
+        this.bookedSeatIds = new LinkedHashSet<>();
+        this.availability = ShowAvailability.compute(this);
+    }
+
+    /**
+     * Get the availability summary of this show (lock-free read)
+     */
+    public ShowAvailability getAvailability() {
+        return availability;
+    }
+
+    /**
+     * Publish a new availability summary (caller must hold the show lock)
+     */
+    void setAvailability(ShowAvailability newAvailability) {
+        availability = newAvailability;
+    }
+
+    /**
+     * Check whether at least one seat of the given category is still free
+     */
+    public boolean hasAvailableSeat(SeatCategory category) {
+        return getAvailability().getFreeSeats(category) > 0;
     }
 
     public int getShowId() {
@@ -46,8 +78,13 @@ public class Show {
         return screen;
     }
 
+    /**
+     * Set the screen and recompute the availability summary (for setting a show up, before it
+     * takes bookings)
+     */
     public void setScreen(Screen screen) {
         this.screen = screen;
+        this.availability = ShowAvailability.compute(this);
     }
 
     public int getShowStartTime() {
@@ -58,11 +95,16 @@ public class Show {
         this.showStartTime = showStartTime;
     }
 
-    public List<Integer> getBookedSeatIds() {
+    public Set<Integer> getBookedSeatIds() {
         return bookedSeatIds;
     }
 
-    public void setBookedSeatIds(List<Integer> bookedSeatIds) {
-        this.bookedSeatIds = bookedSeatIds;
+    /**
+     * Set the booked seats and recompute the availability summary (for setting a show up,
+     * before it takes bookings)
+     */
+    public void setBookedSeatIds(Collection<Integer> bookedSeatIds) {
+        this.bookedSeatIds = new LinkedHashSet<>(bookedSeatIds);
+        this.availability = ShowAvailability.compute(this);
     }
 }
@@ -0,0 +1,107 @@
+import enums.AvailabilityStatus;
+import enums.SeatCategory;
+
+import java.util.List;
+
+/**
+ * Immutable availability summary of a show: free seats per category and an occupancy bucket.
+ * A new summary is published on every booking and cancellation, so listing pages can read it
+ * without taking the show lock.
+ */
+public final class ShowAvailability {
+
+    // Occupancy at or above which a show is marked FAST_FILLING
+    private static final double FAST_FILLING_OCCUPANCY = 0.7;
+
+    private static final SeatCategory[] CATEGORIES = SeatCategory.values();
+
+    private final int totalSeats;
+    private final int freeSeats;
+
+    // Free seats indexed by SeatCategory ordinal
+    private final int[] freeByCategory;
+
+    private final AvailabilityStatus status;
+
+    private ShowAvailability(int totalSeats, int[] freeByCategory) {
+        int free = 0;
+        for (int count : freeByCategory) {
+            free += count;
+        }
+        this.totalSeats = totalSeats;
+        this.freeSeats = free;
+        this.freeByCategory = freeByCategory;
+        this.status = statusFor(totalSeats, free);
+    }
+
+    /**
+     * Compute the summary of a show by scanning its seats; only while the show is being set
+     * up or under its show lock, since bookings change the seats. A show without a screen or
+     * seats has none.
+     */
+    static ShowAvailability compute(Show show) {
+        Screen screen = show.getScreen();
+        List<Seat> seats = screen != null && screen.getSeats() != null ? screen.getSeats() : List.of();
+        int[] free = new int[CATEGORIES.length];
+        for (Seat seat : seats) {
+            if (seat.isAvailable() && !show.getBookedSeatIds().contains(seat.getSeatNumber())) {
+                free[seat.getSeatCategory().ordinal()]++;
+            }
+        }
+        return new ShowAvailability(seats.size(), free);
+    }
+
+    /**
+     * Summary after the given seats were booked
+     */
+    ShowAvailability withBooked(List<Seat> seats) {
+        return adjust(seats, -1);
+    }
+
+    /**
+     * Summary after the given seats were released
+     */
+    ShowAvailability withReleased(List<Seat> seats) {
+        return adjust(seats, 1);
+    }
+
+    private ShowAvailability adjust(List<Seat> seats, int delta) {
+        int[] free = freeByCategory.clone();
+        for (Seat seat : seats) {
+            int ordinal = seat.getSeatCategory().ordinal();
+            free[ordinal] = Math.max(0, free[ordinal] + delta);
+        }
+        return new ShowAvailability(totalSeats, free);
+    }
+
+    private static AvailabilityStatus statusFor(int totalSeats, int freeSeats) {
+        if (freeSeats == 0) {
+            return AvailabilityStatus.SOLD_OUT;
+        }
+        double occupancy = (double) (totalSeats - freeSeats) / totalSeats;
+        return occupancy >= FAST_FILLING_OCCUPANCY ? AvailabilityStatus.FAST_FILLING : AvailabilityStatus.AVAILABLE;
+    }
+
+    public int getTotalSeats() {
+        return totalSeats;
+    }
+
+    public int getFreeSeats() {
+        return freeSeats;
+    }
+
+    public int getFreeSeats(SeatCategory category) {
+        return freeByCategory[category.ordinal()];
+    }
+
+    /**
+     * Fraction of seats that are booked, between 0.0 and 1.0
+     */
+    public double getOccupancy() {
+        return totalSeats == 0 ? 1.0 : (double) (totalSeats - freeSeats) / totalSeats;
+    }
+
+    public AvailabilityStatus getStatus() {
+        return status;
+    }
+}
@@ -0,0 +1,37 @@
+/**
+ * How contended one show's lock has been
+ */
+public class ShowContention {
+
+    private final int showId;
+    private final long acquisitions;
+
+    // Acquisitions that had to wait for another thread
+    private final long contendedAcquisitions;
+
+    // Total time spent waiting, in nanoseconds
+    private final long waitNanos;
+
+    public ShowContention(int showId, long acquisitions, long contendedAcquisitions, long waitNanos) {
+        this.showId = showId;
+        this.acquisitions = acquisitions;
+        this.contendedAcquisitions = contendedAcquisitions;
+        this.waitNanos = waitNanos;
+    }
+
+    public int getShowId() {
+        return showId;
+    }
+
+    public long getAcquisitions() {
+        return acquisitions;
+    }
+
+    public long getContendedAcquisitions() {
+        return contendedAcquisitions;
+    }
+
+    public long getWaitNanos() {
+        return waitNanos;
+    }
+}
@@ -0,0 +1,46 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Immutable index of shows ordered by start time, for time-window queries.
+ * Built once per catalog snapshot.
+ */
+public final class ShowTimeIndex {
+
+    public static final ShowTimeIndex EMPTY = new ShowTimeIndex(Collections.emptyList());
+
+    // showStartTime -> shows starting at that time
+    private final NavigableMap<Integer, List<Show>> showsByStartTime;
+
+    public ShowTimeIndex(Collection<Show> shows) {
+        TreeMap<Integer, List<Show>> index = new TreeMap<>();
+        for (Show show : shows) {
+            index.computeIfAbsent(show.getShowStartTime(), k -> new ArrayList<>()).add(show);
+        }
+        index.replaceAll((startTime, showsAtTime) -> List.copyOf(showsAtTime));
+        this.showsByStartTime = Collections.unmodifiableNavigableMap(index);
+    }
+
+    /**
+     * Get shows starting between fromTime and toTime (inclusive, 24-hour format like 1800),
+     * ordered by start time
+     */
+    public List<Show> getShowsBetween(int fromTime, int toTime) {
+        List<Show> result = new ArrayList<>();
+        if (fromTime > toTime) {
+            return result;
+        }
+        for (List<Show> showsAtTime : showsByStartTime.subMap(fromTime, true, toTime, true).values()) {
+            result.addAll(showsAtTime);
+        }
+        return result;
+    }
+
+    public NavigableMap<Integer, List<Show>> getShowsByStartTime() {
+        return showsByStartTime;
+    }
+}
@@ -0,0 +1,83 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Waitlist of one show: customers still waiting, highest priority then earliest first, and
+ * customers holding offered seats. Not thread-safe: it lives in the show's partition and is
+ * only used under the show lock.
+ */
+public class ShowWaitlist {
+
+    private static final Comparator<WaitlistEntry> OFFER_ORDER =
+            Comparator.comparingInt(WaitlistEntry::getPriority).reversed()
+                    .thenComparingLong(WaitlistEntry::getSequence);
+
+    private final TreeSet<WaitlistEntry> waiting = new TreeSet<>(OFFER_ORDER);
+
+    // Entries holding seats, by entry ID
+    private final Map<String, WaitlistEntry> offered = new LinkedHashMap<>();
+
+    // Next joining position
+    private long nextSequence;
+
+    /**
+     * Add an entry at the back of its priority
+     */
+    public void add(WaitlistEntry entry) {
+        entry.setSequence(nextSequence++);
+        waiting.add(entry);
+    }
+
+    public boolean removeWaiting(WaitlistEntry entry) {
+        return waiting.remove(entry);
+    }
+
+    public boolean hasWaiting() {
+        return !waiting.isEmpty();
+    }
+
+    public int getWaitingCount() {
+        return waiting.size();
+    }
+
+    /**
+     * Waiting entries in offer order; entries may be removed through the iterator
+     */
+    public Iterator<WaitlistEntry> waitingInOrder() {
+        return waiting.iterator();
+    }
+
+    public void addOffered(WaitlistEntry entry) {
+        offered.put(entry.getEntryId(), entry);
+    }
+
+    public boolean removeOffered(WaitlistEntry entry) {
+        return offered.remove(entry.getEntryId()) != null;
+    }
+
+    /**
+     * Position of a waiting entry (1 is next in line), or 0 if it is not waiting
+     */
+    public int positionOf(WaitlistEntry entry) {
+        if (!waiting.contains(entry)) {
+            return 0;
+        }
+        return waiting.headSet(entry, true).size();
+    }
+
+    /**
+     * Remove and return every entry, waiting or offered
+     */
+    public List<WaitlistEntry> clear() {
+        List<WaitlistEntry> entries = new ArrayList<>(waiting);
+        entries.addAll(offered.values());
+        waiting.clear();
+        offered.clear();
+        return entries;
+    }
+}
@@ -0,0 +1,119 @@
+import enums.PaymentMode;
+import enums.PaymentStatus;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Local gateway simulator with per-mode latency profiles, failure rates and hang rates.
+ * Responses are completed by a scheduler after the sampled latency, so no caller thread
+ * sleeps while a call is outstanding.
+ */
+public class SimulatedPaymentGateway implements PaymentGateway {
+
+    private final Map<PaymentMode, LatencyProfile> latencyProfiles = new EnumMap<>(PaymentMode.class);
+    private final Map<PaymentMode, Double> failureRates = new EnumMap<>(PaymentMode.class);
+    private final Map<PaymentMode, Double> hangRates = new EnumMap<>(PaymentMode.class);
+    private final Map<PaymentMode, Double> settlementFailureRates = new EnumMap<>(PaymentMode.class);
+
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * Gateway with the defaults the controllers used to hardcode: 100 ms per call, 10% failures
+     */
+    public SimulatedPaymentGateway() {
+        this(LatencyProfile.fixed(100), 0.1);
+    }
+
+    public SimulatedPaymentGateway(LatencyProfile defaultLatency, double defaultFailureRate) {
+        for (PaymentMode mode : PaymentMode.values()) {
+            latencyProfiles.put(mode, defaultLatency);
+            failureRates.put(mode, defaultFailureRate);
+            hangRates.put(mode, 0.0);
+            settlementFailureRates.put(mode, 0.0);
+        }
+        this.scheduler = Executors.newScheduledThreadPool(2, runnable -> {
+            Thread thread = new Thread(runnable, "payment-gateway-simulator");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public CompletableFuture<PaymentStatus> charge(int paymentId, PaymentMode paymentMode, long amountPaise) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        CompletableFuture<PaymentStatus> result = new CompletableFuture<>();
+
+        // A hung call never answers; the caller's timeout decides what happens
+        if (random.nextDouble() < rate(hangRates, paymentMode)) {
+            return result;
+        }
+
+        PaymentStatus status = random.nextDouble() < rate(failureRates, paymentMode)
+                ? PaymentStatus.FAILED : PaymentStatus.SUCCESS;
+        long delayMicros = (long) (profile(paymentMode).sampleMillis(random) * 1000);
+        scheduler.schedule(() -> result.complete(status), delayMicros, TimeUnit.MICROSECONDS);
+        return result;
+    }
+
+    @Override
+    public CompletableFuture<PaymentStatus[]> settle(PaymentMode paymentMode, int[] paymentIds, long[] amountsPaise) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        double failureRate = rate(settlementFailureRates, paymentMode);
+        PaymentStatus[] statuses = new PaymentStatus[paymentIds.length];
+        for (int i = 0; i < statuses.length; i++) {
+            statuses[i] = random.nextDouble() < failureRate ? PaymentStatus.FAILED : PaymentStatus.SUCCESS;
+        }
+
+        // One round trip per batch, however many entries it carries
+        CompletableFuture<PaymentStatus[]> result = new CompletableFuture<>();
+        long delayMicros = (long) (profile(paymentMode).sampleMillis(random) * 1000);
+        scheduler.schedule(() -> result.complete(statuses), delayMicros, TimeUnit.MICROSECONDS);
+        return result;
+    }
+
+    private synchronized LatencyProfile profile(PaymentMode paymentMode) {
+        return latencyProfiles.get(paymentMode);
+    }
+
+    private synchronized double rate(Map<PaymentMode, Double> rates, PaymentMode paymentMode) {
+        return rates.get(paymentMode);
+    }
+
+    public synchronized void setLatencyProfile(PaymentMode paymentMode, LatencyProfile profile) {
+        latencyProfiles.put(paymentMode, profile);
+    }
+
+    /**
+     * Set the fraction of calls (0.0 to 1.0) that are declined
+     */
+    public synchronized void setFailureRate(PaymentMode paymentMode, double failureRate) {
+        failureRates.put(paymentMode, failureRate);
+    }
+
+    /**
+     * Set the fraction of calls (0.0 to 1.0) that never answer
+     */
+    public synchronized void setHangRate(PaymentMode paymentMode, double hangRate) {
+        hangRates.put(paymentMode, hangRate);
+    }
+
+    /**
+     * Set the fraction of settlement entries (0.0 to 1.0) that are rejected
+     */
+    public synchronized void setSettlementFailureRate(PaymentMode paymentMode, double failureRate) {
+        settlementFailureRates.put(paymentMode, failureRate);
+    }
+
+    /**
+     * Stop the scheduler thread
+     */
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+}
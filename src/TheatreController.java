@@ -1,34 +1,177 @@
 import enums.City;
+import enums.SeatCategory;
 
 import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
 
 public class TheatreController {
 
-    Map<City, List<Theatre>> cityVsTheatre;
-    List<Theatre> allTheatre;
+    // Latency metrics of the browse operations
+    private static final int GET_ALL_SHOWS = Metrics.operation("theatre.getAllShows");
+    private static final int GET_SHOWS_BETWEEN = Metrics.operation("theatre.getShowsBetween");
+
+    // Theatres in each city (guarded by catalogLock)
+    private final Map<City, List<Theatre>> cityVsTheatre;
+    private final List<Theatre> allTheatre;
+
+    // Published, immutable view of the catalog that all reads go through
+    private final Catalog catalog;
+
+    // Lock for catalog edits (the catalog's write lock)
+    private final Lock catalogLock;
+
+    // City of each theatre, to tell which part of the catalog an edit touched (guarded by catalogLock)
+    private final Map<Integer, City> cityByTheatreId = new HashMap<>();
+
+    // Theatres edited since the last flush, by city; everything when rebuildAll is set (guarded by catalogLock)
+    private final Map<City, Set<Integer>> changedTheatres = new EnumMap<>(City.class);
+    private boolean rebuildAll;
+
+    private final Runnable flushTask = this::flushUnsafe;
 
     public TheatreController() {
-        this.cityVsTheatre = new HashMap<>();
+        this(new Catalog());
+    }
+
+    /**
+     * Create a controller that publishes into a catalog shared with other controllers
+     */
+    public TheatreController(Catalog catalog) {
+        this.catalog = catalog;
+        this.catalogLock = catalog.getWriteLock();
+        this.cityVsTheatre = new EnumMap<>(City.class);
         this.allTheatre = new ArrayList<>();
     }
 
+    public Catalog getCatalog() {
+        return catalog;
+    }
+
     public void addTheatre(Theatre theatre, City city) {
-        allTheatre.add(theatre);
-        List<Theatre> theatres = cityVsTheatre.getOrDefault(city, new ArrayList<>());
-        theatres.add(theatre);
-        cityVsTheatre.put(city, theatres);
+        catalogLock.lock();
+        try {
+            allTheatre.add(theatre);
+            cityVsTheatre.computeIfAbsent(city, k -> new ArrayList<>()).add(theatre);
+            cityByTheatreId.put(theatre.getTheatreId(), city);
+            markChangedUnsafe(theatre);
+            publishUnsafe();
+        } finally {
+            catalogLock.unlock();
+        }
+    }
+
+    /**
+     * Add a screen to a theatre and publish it
+     */
+    public void addScreen(Theatre theatre, Screen screen) {
+        catalogLock.lock();
+        try {
+            theatre.getScreens().add(screen);
+            markChangedUnsafe(theatre);
+            publishUnsafe();
+        } finally {
+            catalogLock.unlock();
+        }
+    }
+
+    /**
+     * Add a show to a theatre and publish it
+     */
+    public void addShow(Theatre theatre, Show show) {
+        catalogLock.lock();
+        try {
+            theatre.getShows().add(show);
+            markChangedUnsafe(theatre);
+            publishUnsafe();
+        } finally {
+            catalogLock.unlock();
+        }
+    }
+
+    /**
+     * Remove a show from a theatre and publish the change
+     */
+    public void removeShow(Theatre theatre, Show show) {
+        catalogLock.lock();
+        try {
+            theatre.getShows().remove(show);
+            markChangedUnsafe(theatre);
+            publishUnsafe();
+        } finally {
+            catalogLock.unlock();
+        }
+    }
+
+    /**
+     * Publish edits made directly on Theatre or Screen objects.
+     * Readers do not see such edits until this is called.
+     */
+    public void publish() {
+        catalogLock.lock();
+        try {
+            rebuildAll = true;
+            publishUnsafe();
+        } finally {
+            catalogLock.unlock();
+        }
+    }
+
+    /**
+     * Internal method to note that a theatre's screens or shows changed (assumes lock is already held)
+     */
+    private void markChangedUnsafe(Theatre theatre) {
+        City city = cityByTheatreId.get(theatre.getTheatreId());
+        if (city == null) {
+            // Not one of ours; rebuild everything as before
+            rebuildAll = true;
+            return;
+        }
+        changedTheatres.computeIfAbsent(city, k -> new HashSet<>()).add(theatre.getTheatreId());
+    }
+
+    /**
+     * Internal method to publish the theatres to the catalog, now or at the end of the current
+     * batch (assumes lock is already held)
+     */
+    private void publishUnsafe() {
+        catalog.flush(flushTask);
+    }
+
+    /**
+     * Internal method to rebuild the parts of the snapshot that changed since the last flush
+     * (assumes lock is already held)
+     */
+    private void flushUnsafe() {
+        catalog.update(snapshot -> {
+            if (rebuildAll) {
+                return snapshot.withTheatres(cityVsTheatre);
+            }
+            CatalogSnapshot updated = snapshot;
+            for (Map.Entry<City, Set<Integer>> entry : changedTheatres.entrySet()) {
+                updated = updated.withCityTheatres(entry.getKey(),
+                        cityVsTheatre.getOrDefault(entry.getKey(), List.of()), entry.getValue());
+            }
+            return updated;
+        });
+        rebuildAll = false;
+        changedTheatres.clear();
     }
 
     public Map<Theatre, List<Show>> getAllShows(Movie movie, City city) {
+        long startNanos = System.nanoTime();
+        CatalogSnapshot snapshot = catalog.getSnapshot();
         Map<Theatre, List<Show>> theatreVsShows = new HashMap<>();
-        List<Theatre> theatres = cityVsTheatre.get(city);
+        List<Theatre> theatres = snapshot.getTheatres(city);
         // filter the theatres which run this movie
         for (Theatre theatre : theatres) {
             List<Show> givenMovieShows = new ArrayList<>();
-            List<Show> shows = theatre.getShows();
+            List<Show> shows = snapshot.getShows(theatre);
             for (Show show : shows) {
                 if (show.movie.getMovieId() == movie.getMovieId()) {
                     givenMovieShows.add(show);
@@ -38,22 +181,114 @@ public class TheatreController {
                 theatreVsShows.put(theatre, givenMovieShows);
             }
         }
+        Metrics.record(GET_ALL_SHOWS, startNanos);
         return theatreVsShows;
     }
 
+    /**
+     * Get shows in a city starting between fromTime and toTime (inclusive, 24-hour format like 1800),
+     * ordered by start time. Null movie, language or seatCategory match any show.
+     */
+    public List<Show> getShowsBetween(City city, int fromTime, int toTime,
+                                      Movie movie, String language, SeatCategory seatCategory) {
+        long startNanos = System.nanoTime();
+        List<Show> shows = catalog.getSnapshot().getShowTimes(city).getShowsBetween(fromTime, toTime);
+        List<Show> result = filterShows(shows, movie, language, seatCategory);
+        Metrics.record(GET_SHOWS_BETWEEN, startNanos);
+        return result;
+    }
+
+    /**
+     * Get shows in a theatre starting between fromTime and toTime (inclusive), ordered by start time
+     */
+    public List<Show> getShowsBetween(Theatre theatre, int fromTime, int toTime,
+                                      Movie movie, String language, SeatCategory seatCategory) {
+        List<Show> shows = catalog.getSnapshot().getShowTimes(theatre).getShowsBetween(fromTime, toTime);
+        return filterShows(shows, movie, language, seatCategory);
+    }
+
+    /**
+     * Keep the shows of the given movie and language that still have a seat in the given category
+     */
+    private List<Show> filterShows(List<Show> shows, Movie movie, String language, SeatCategory seatCategory) {
+        List<Show> result = new ArrayList<>();
+        for (Show show : shows) {
+            if (movie != null && show.getMovie().getMovieId() != movie.getMovieId()) {
+                continue;
+            }
+            if (language != null && !language.equalsIgnoreCase(show.getMovie().getLanguage())) {
+                continue;
+            }
+            if (seatCategory != null && !show.hasAvailableSeat(seatCategory)) {
+                continue;
+            }
+            result.add(show);
+        }
+        return result;
+    }
+
+    /**
+     * Get show by show ID
+     */
+    public Show getShowById(int showId) {
+        return catalog.getSnapshot().getShow(showId);
+    }
+
     public Map<City, List<Theatre>> getCityVsTheatre() {
-        return cityVsTheatre;
+        return catalog.getSnapshot().getTheatresByCity();
     }
 
     public void setCityVsTheatre(Map<City, List<Theatre>> cityVsTheatre) {
-        this.cityVsTheatre = cityVsTheatre;
+        catalogLock.lock();
+        try {
+            this.cityVsTheatre.clear();
+            this.allTheatre.clear();
+            for (Map.Entry<City, List<Theatre>> entry : cityVsTheatre.entrySet()) {
+                this.cityVsTheatre.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+                this.allTheatre.addAll(entry.getValue());
+            }
+            indexCitiesUnsafe();
+            rebuildAll = true;
+            publishUnsafe();
+        } finally {
+            catalogLock.unlock();
+        }
     }
 
     public List<Theatre> getAllTheatre() {
-        return allTheatre;
+        List<Theatre> theatres = new ArrayList<>();
+        for (List<Theatre> cityTheatres : catalog.getSnapshot().getTheatresByCity().values()) {
+            theatres.addAll(cityTheatres);
+        }
+        return theatres;
     }
 
     public void setAllTheatre(List<Theatre> allTheatre) {
-        this.allTheatre = allTheatre;
+        catalogLock.lock();
+        try {
+            this.allTheatre.clear();
+            this.allTheatre.addAll(allTheatre);
+            this.cityVsTheatre.clear();
+            for (Theatre theatre : allTheatre) {
+                cityVsTheatre.computeIfAbsent(theatre.getCity(), k -> new ArrayList<>()).add(theatre);
+            }
+            indexCitiesUnsafe();
+            rebuildAll = true;
+            publishUnsafe();
+        } finally {
+            catalogLock.unlock();
+        }
+    }
+
+    /**
+     * Internal method to rebuild the theatre-to-city index (assumes lock is already held)
+     */
+    private void indexCitiesUnsafe() {
+        cityByTheatreId.clear();
+        for (Map.Entry<City, List<Theatre>> entry : cityVsTheatre.entrySet()) {
+            for (Theatre theatre : entry.getValue()) {
+                cityByTheatreId.put(theatre.getTheatreId(), entry.getKey());
+            }
+        }
     }
 }
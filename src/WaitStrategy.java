@@ -0,0 +1,138 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+/**
+ * How an event consumer waits for the next event: trading latency against CPU.
+ * busySpin and yielding react fastest but keep a core busy; sleeping backs off to short parks
+ * and costs producers nothing; blocking parks until signalled, at the price of a lock on
+ * every publish.
+ */
+public interface WaitStrategy {
+
+    /**
+     * Wait until cursor reaches sequence or stopped returns true; returns the last cursor value seen
+     */
+    long waitFor(long sequence, AtomicLong cursor, BooleanSupplier stopped) throws InterruptedException;
+
+    /**
+     * Called by producers after publishing, and on shutdown, to wake blocked consumers
+     */
+    void signalAllWhenBlocking();
+
+    /**
+     * Spin on the cursor; lowest latency, one busy core per consumer
+     */
+    static WaitStrategy busySpin() {
+        return new WaitStrategy() {
+            @Override
+            public long waitFor(long sequence, AtomicLong cursor, BooleanSupplier stopped) {
+                long available;
+                while ((available = cursor.get()) < sequence && !stopped.getAsBoolean()) {
+                    Thread.onSpinWait();
+                }
+                return available;
+            }
+
+            @Override
+            public void signalAllWhenBlocking() {
+            }
+        };
+    }
+
+    /**
+     * Spin briefly, then yield the CPU between checks
+     */
+    static WaitStrategy yielding() {
+        return new WaitStrategy() {
+            @Override
+            public long waitFor(long sequence, AtomicLong cursor, BooleanSupplier stopped) {
+                long available;
+                int spins = 100;
+                while ((available = cursor.get()) < sequence && !stopped.getAsBoolean()) {
+                    if (spins > 0) {
+                        spins--;
+                        Thread.onSpinWait();
+                    } else {
+                        Thread.yield();
+                    }
+                }
+                return available;
+            }
+
+            @Override
+            public void signalAllWhenBlocking() {
+            }
+        };
+    }
+
+    /**
+     * Spin, then yield, then park for sleepNanos between checks; the default
+     */
+    static WaitStrategy sleeping(long sleepNanos) {
+        return new WaitStrategy() {
+            @Override
+            public long waitFor(long sequence, AtomicLong cursor, BooleanSupplier stopped) {
+                long available;
+                int retries = 200;
+                while ((available = cursor.get()) < sequence && !stopped.getAsBoolean()) {
+                    if (retries > 100) {
+                        Thread.onSpinWait();
+                    } else if (retries > 0) {
+                        Thread.yield();
+                    } else {
+                        LockSupport.parkNanos(sleepNanos);
+                    }
+                    if (retries > 0) {
+                        retries--;
+                    }
+                }
+                return available;
+            }
+
+            @Override
+            public void signalAllWhenBlocking() {
+            }
+        };
+    }
+
+    /**
+     * Park on a condition until a producer signals; no CPU while idle
+     */
+    static WaitStrategy blocking() {
+        return new WaitStrategy() {
+            private final Lock waitLock = new ReentrantLock();
+            private final Condition published = waitLock.newCondition();
+
+            @Override
+            public long waitFor(long sequence, AtomicLong cursor, BooleanSupplier stopped) throws InterruptedException {
+                long available = cursor.get();
+                if (available >= sequence) {
+                    return available;
+                }
+                waitLock.lock();
+                try {
+                    while ((available = cursor.get()) < sequence && !stopped.getAsBoolean()) {
+                        published.await();
+                    }
+                    return available;
+                } finally {
+                    waitLock.unlock();
+                }
+            }
+
+            @Override
+            public void signalAllWhenBlocking() {
+                waitLock.lock();
+                try {
+                    published.signalAll();
+                } finally {
+                    waitLock.unlock();
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,113 @@
+import enums.SeatCategory;
+import enums.WaitlistStatus;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A customer waiting for seats in a sold-out show. When seats free up they are held for the
+ * customer (OFFERED) until the hold expires; claimWaitlistOffer turns the hold into a booking.
+ * State changes happen under the show lock; the fields are volatile so the customer's own
+ * reference shows the current state.
+ */
+public class WaitlistEntry {
+
+    // Counter for generating entry IDs
+    private static final AtomicLong NEXT_ID = new AtomicLong(1);
+
+    private final String entryId;
+    private final Customer customer;
+    private final Show show;
+    private final int seatCount;
+
+    // Seat category wanted, or null for any
+    private final SeatCategory seatCategory;
+
+    // Higher priority is offered seats first; equal priorities are served in joining order
+    private final int priority;
+
+    // Position in joining order within the show's waitlist
+    private long sequence;
+
+    private volatile WaitlistStatus status = WaitlistStatus.WAITING;
+
+    // Seats held while OFFERED, and when the hold runs out
+    private volatile List<Seat> heldSeats;
+    private volatile long holdExpiresAtMillis;
+
+    // Booking made by claiming the offer
+    private volatile Booking booking;
+
+    public WaitlistEntry(Customer customer, Show show, int seatCount, SeatCategory seatCategory, int priority) {
+        this.entryId = "WL" + NEXT_ID.getAndIncrement();
+        this.customer = customer;
+        this.show = show;
+        this.seatCount = seatCount;
+        this.seatCategory = seatCategory;
+        this.priority = priority;
+    }
+
+    public String getEntryId() {
+        return entryId;
+    }
+
+    public Customer getCustomer() {
+        return customer;
+    }
+
+    public Show getShow() {
+        return show;
+    }
+
+    public int getSeatCount() {
+        return seatCount;
+    }
+
+    public SeatCategory getSeatCategory() {
+        return seatCategory;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public void setSequence(long sequence) {
+        this.sequence = sequence;
+    }
+
+    public WaitlistStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(WaitlistStatus status) {
+        this.status = status;
+    }
+
+    public List<Seat> getHeldSeats() {
+        return heldSeats;
+    }
+
+    public void setHeldSeats(List<Seat> heldSeats) {
+        this.heldSeats = heldSeats;
+    }
+
+    public long getHoldExpiresAtMillis() {
+        return holdExpiresAtMillis;
+    }
+
+    public void setHoldExpiresAtMillis(long holdExpiresAtMillis) {
+        this.holdExpiresAtMillis = holdExpiresAtMillis;
+    }
+
+    public Booking getBooking() {
+        return booking;
+    }
+
+    public void setBooking(Booking booking) {
+        this.booking = booking;
+    }
+}
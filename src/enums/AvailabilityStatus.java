@@ -0,0 +1,7 @@
+package enums;
+
+public enum AvailabilityStatus {
+    AVAILABLE,
+    FAST_FILLING,
+    SOLD_OUT
+}
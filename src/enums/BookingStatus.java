@@ -4,5 +4,6 @@ public enum BookingStatus {
     CONFIRMED,
     CHECKED_IN,
     CHECKED_OUT,
-    NO_SHOW
+    NO_SHOW,
+    CANCELLED
 }
@@ -0,0 +1,11 @@
+package enums;
+
+public enum EventType {
+    SEAT_CLAIMED,
+    BOOKING_CANCELLED,
+    PAYMENT_SUCCEEDED,
+    REFUND_ISSUED,
+    REFUND_QUEUED,
+    PAYMENT_SETTLED,
+    WAITLIST_OFFERED
+}
@@ -0,0 +1,9 @@
+package enums;
+
+public enum WaitlistStatus {
+    WAITING,
+    OFFERED,
+    CLAIMED,
+    EXPIRED,
+    CANCELLED
+}